@@ -0,0 +1,121 @@
+package ru.klavogonki.kgparser.importer;
+
+import lombok.extern.log4j.Log4j2;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.SnapshotParseOptions;
+import ru.klavogonki.kgparser.pipeline.PipelineOptions;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Options of the database import by {@link PlayerDatabaseImporter}, in form {@code --name=value}.
+ * <br>
+ * The downloader does not use them, so they are not a part of {@link PlayerDataDownloader.Config}:
+ * pass {@link #NAMES} to {@link PlayerDataDownloader.Config#parseFromArguments(String[], Set)} to skip them there.
+ */
+@Log4j2
+public class ImportOptions {
+    public static final String IMPORT_OPTION = "import";
+    public static final String CONSUMER_BATCH_SIZE_OPTION = "consumer-batch-size";
+    public static final String DRY_RUN_OPTION = "dry-run";
+    public static final String BULK_LOAD_OPTION = "bulk-load";
+
+    public static final int DEFAULT_CONSUMER_BATCH_SIZE = 1000;
+
+    /**
+     * Names of the import options and of the {@link PipelineOptions}, including the {@link SnapshotParseOptions},
+     * since the import parses the snapshot or runs the pipeline.
+     */
+    public static final Set<String> NAMES = createNames();
+
+    boolean importSnapshot; // stream the snapshot of the start date to the database, batch by batch
+    int consumerBatchSize = DEFAULT_CONSUMER_BATCH_SIZE; // players saved to the database in one batch
+    boolean dryRun; // validate the snapshot to a report instead of the import
+    boolean bulkLoad; // insert the players with multi-row JDBC inserts instead of the JPA saveAll
+
+    PipelineOptions pipelineOptions = new PipelineOptions();
+
+    public boolean isImportSnapshot() {
+        return importSnapshot;
+    }
+
+    public int getConsumerBatchSize() {
+        return consumerBatchSize;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    public PipelineOptions getPipelineOptions() {
+        return pipelineOptions;
+    }
+
+    public SnapshotParseOptions getParseOptions() {
+        return pipelineOptions.getParseOptions();
+    }
+
+    public void log() {
+        logger.debug("Import options: ");
+        logger.debug("  importSnapshot: {}", importSnapshot);
+        logger.debug("  consumerBatchSize: {}", consumerBatchSize);
+        logger.debug("  dryRun: {}", dryRun);
+        logger.debug("  bulkLoad: {}", bulkLoad);
+
+        pipelineOptions.log();
+    }
+
+    /**
+     * @param args all arguments, the required arguments and the options not in {@link #NAMES} are skipped
+     */
+    public static ImportOptions parseFromArguments(final String[] args) {
+        ImportOptions options = new ImportOptions();
+
+        PlayerDataDownloader.Config.forEachOption(args, (name, value) -> {
+            if (NAMES.contains(name) && !PipelineOptions.NAMES.contains(name)) {
+                options.parseOption(name, value);
+            }
+        });
+
+        options.pipelineOptions = PipelineOptions.parseFromArguments(args);
+
+        return options;
+    }
+
+    private void parseOption(final String name, final String value) {
+        switch (name) {
+            case IMPORT_OPTION:
+                importSnapshot = Boolean.parseBoolean(value);
+                break;
+
+            case CONSUMER_BATCH_SIZE_OPTION:
+                consumerBatchSize = PlayerDataDownloader.Config.parsePositiveInt(name, value);
+                break;
+
+            case DRY_RUN_OPTION:
+                dryRun = Boolean.parseBoolean(value);
+                break;
+
+            case BULK_LOAD_OPTION:
+                bulkLoad = Boolean.parseBoolean(value);
+                break;
+
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: %s%s", PlayerDataDownloader.Config.OPTION_PREFIX, name));
+        }
+    }
+
+    private static Set<String> createNames() {
+        Set<String> names = new HashSet<>(PipelineOptions.NAMES);
+        names.add(IMPORT_OPTION);
+        names.add(CONSUMER_BATCH_SIZE_OPTION);
+        names.add(DRY_RUN_OPTION);
+        names.add(BULK_LOAD_OPTION);
+        return Set.copyOf(names);
+    }
+}
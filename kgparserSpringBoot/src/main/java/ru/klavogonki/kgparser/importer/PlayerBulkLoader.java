@@ -0,0 +1,263 @@
+package ru.klavogonki.kgparser.importer;
+
+import lombok.extern.log4j.Log4j2;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.klavogonki.kgparser.jsonParser.entity.CarEntity;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts the players with their stats by multi-row JDBC inserts, bypassing the JPA persistence context:
+ * no dirty checking, no cascades, no managed entity per row. See {@code --bulk-load} option.
+ * <br>
+ * The primary keys are assigned in bulk by the same Hibernate id generators as the JPA saves use,
+ * so the sequences stay consistent, and a sequence is only read once per {@code allocationSize} keys.
+ * <br>
+ * This is a write-only path: the players must not exist in the database, {@link PlayerDatabaseImporter#importBatch} deletes the changed players before.
+ * <br>
+ * The table and column names are the physical names generated by Hibernate for {@link PlayerEntity} and {@link PlayerVocabularyStatsEntity}.
+ * Keep them in sync with the entities, {@code PlayerBulkLoaderTest} compares the loaded players with the players saved by JPA.
+ */
+@Log4j2
+@Component
+public class PlayerBulkLoader {
+
+    public static final int ROWS_PER_INSERT = 500;
+
+    static final String PLAYER_TABLE = "player";
+    static final String[] PLAYER_COLUMNS = {
+        "db_id",
+        "import_date",
+        "content_digest",
+        "get_summary_error",
+        "get_index_data_error",
+        "get_stats_overview_error",
+        "player_id",
+        "login",
+        "car_id",
+        "car_color",
+        "rank_level",
+        "title",
+        "blocked",
+        "registered",
+        "achievements_count",
+        "total_races_count",
+        "best_speed",
+        "rating_level",
+        "friends_count",
+        "vocabularies_count",
+        "cars_count"
+    };
+
+    static final String STATS_TABLE = "player_vocabulary_stats";
+    static final String[] STATS_COLUMNS = {
+        "db_id",
+        "import_date",
+        "player_id",
+        "error",
+        "vocabulary_code",
+        "vocabulary_id",
+        "vocabulary_info_id",
+        "vocabulary_name",
+        "vocabulary_type",
+        "vocabulary_symbols",
+        "vocabulary_rows",
+        "vocabulary_mode",
+        "vocabulary_text_type",
+        "races_count",
+        "average_speed",
+        "best_speed",
+        "average_error",
+        "haul",
+        "qual",
+        "dirty",
+        "updated",
+        "book_done"
+    };
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Inserts the players and their stats in the current transaction, e.g. the batch transaction of {@link PlayerDatabaseImporter#importBatch}.
+     * A new transaction is started if there is none.
+     * The {@code dbId} of the players and the stats are set, the entities do not become managed.
+     */
+    @Transactional
+    public void load(final List<PlayerEntity> players) {
+        List<PlayerVocabularyStatsEntity> allStats = players
+            .stream()
+            .flatMap(player -> player.getStats().stream())
+            .collect(Collectors.toList());
+
+        logger.info("Bulk loading {} players with {} vocabulary stats to the database...", players.size(), allStats.size());
+        long startNanos = System.nanoTime();
+
+        // the session of the current transaction, the inserts use its connection
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        SessionFactoryImplementor sessionFactory = session.getFactory();
+
+        assignIds(sessionFactory, session, PlayerEntity.class, players, PlayerEntity::setDbId);
+        assignIds(sessionFactory, session, PlayerVocabularyStatsEntity.class, allStats, PlayerVocabularyStatsEntity::setDbId);
+
+        session.doWork(connection -> {
+            insert(connection, PLAYER_TABLE, PLAYER_COLUMNS, players, PlayerBulkLoader::toPlayerRow);
+            insert(connection, STATS_TABLE, STATS_COLUMNS, allStats, PlayerBulkLoader::toStatsRow);
+        });
+
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info("{} players with {} vocabulary stats bulk loaded to the database in {} ms.", players.size(), allStats.size(), millis);
+    }
+
+    private static <T> void assignIds(
+        final SessionFactoryImplementor sessionFactory,
+        final SharedSessionContractImplementor session,
+        final Class<T> entityClass,
+        final List<T> entities,
+        final BiConsumer<T, Long> idSetter
+    ) {
+        IdentifierGenerator generator = sessionFactory
+            .getMetamodel()
+            .entityPersister(entityClass)
+            .getIdentifierGenerator();
+
+        for (T entity : entities) {
+            idSetter.accept(entity, (Long) generator.generate(session, entity));
+        }
+    }
+
+    private static <T> void insert(
+        final Connection connection,
+        final String table,
+        final String[] columns,
+        final List<T> rows,
+        final Function<T, Object[]> toRow
+    ) throws SQLException {
+        for (int fromIndex = 0; fromIndex < rows.size(); fromIndex += ROWS_PER_INSERT) {
+            List<T> chunk = rows.subList(fromIndex, Math.min(fromIndex + ROWS_PER_INSERT, rows.size()));
+
+            try (PreparedStatement statement = connection.prepareStatement(createInsertSql(table, columns, chunk.size()))) {
+                int parameterIndex = 1;
+
+                for (T row : chunk) {
+                    Object[] values = toRow.apply(row);
+                    if (values.length != columns.length) {
+                        throw new IllegalStateException(String.format("Table %s: %d values given for %d columns", table, values.length, columns.length));
+                    }
+
+                    for (Object value : values) {
+                        statement.setObject(parameterIndex++, value);
+                    }
+                }
+
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return {@code insert into <table> (<columns>) values (?, ?), (?, ?), ...}
+     */
+    static String createInsertSql(final String table, final String[] columns, final int rowsCount) {
+        String rowPlaceholders = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+
+        StringBuilder sql = new StringBuilder(64 + rowsCount * (rowPlaceholders.length() + 2))
+            .append("insert into ")
+            .append(table)
+            .append(" (")
+            .append(String.join(", ", columns))
+            .append(") values ");
+
+        for (int i = 0; i < rowsCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+
+            sql.append(rowPlaceholders);
+        }
+
+        return sql.toString();
+    }
+
+    private static Object[] toPlayerRow(final PlayerEntity player) {
+        CarEntity car = player.getCar();
+
+        return new Object[] {
+            player.getDbId(),
+            toTimestamp(player.getImportDate()),
+            player.getContentDigest(),
+            player.getGetSummaryError(),
+            player.getGetIndexDataError(),
+            player.getGetStatsOverviewError(),
+            player.getPlayerId(),
+            player.getLogin(),
+            (car == null) ? null : car.getId(),
+            (car == null) ? null : car.getColor(),
+            player.getRankLevel(),
+            player.getTitle(),
+            player.getBlocked(),
+            toTimestamp(player.getRegistered()),
+            player.getAchievementsCount(),
+            player.getTotalRacesCount(),
+            player.getBestSpeed(),
+            player.getRatingLevel(),
+            player.getFriendsCount(),
+            player.getVocabulariesCount(),
+            player.getCarsCount()
+        };
+    }
+
+    private static Object[] toStatsRow(final PlayerVocabularyStatsEntity stats) {
+        return new Object[] {
+            stats.getDbId(),
+            toTimestamp(stats.getImportDate()),
+            stats.getPlayer().getPlayerId(), // the foreign key references Player.playerId, not Player.dbId
+            stats.getError(),
+            stats.getVocabularyCode(),
+            stats.getVocabularyId(),
+            stats.getVocabularyInfoId(),
+            stats.getVocabularyName(),
+            toName(stats.getVocabularyType()),
+            stats.getVocabularySymbols(),
+            stats.getVocabularyRows(),
+            toName(stats.getVocabularyMode()),
+            stats.getVocabularyTextType(),
+            stats.getRacesCount(),
+            stats.getAverageSpeed(),
+            stats.getBestSpeed(),
+            stats.getAverageError(),
+            stats.getHaul(),
+            stats.getQual(),
+            stats.getDirty(),
+            toTimestamp(stats.getUpdated()),
+            stats.getBookDone()
+        };
+    }
+
+    // the same conversion as Hibernate uses for LocalDateTime, so the driver applies the same time zone conversion
+    private static Timestamp toTimestamp(final LocalDateTime dateTime) {
+        return (dateTime == null) ? null : Timestamp.valueOf(dateTime);
+    }
+
+    // @Enumerated(EnumType.STRING)
+    private static String toName(final Enum<?> value) {
+        return (value == null) ? null : value.name();
+    }
+}
@@ -0,0 +1,270 @@
+package ru.klavogonki.kgparser.importer;
+
+import lombok.extern.log4j.Log4j2;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.PlayerJsonParser;
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
+import ru.klavogonki.kgparser.jsonParser.VocabularyStats;
+import ru.klavogonki.kgparser.jsonParser.dto.PlayerContentDigest;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
+import ru.klavogonki.kgparser.jsonParser.mapper.PlayerMapper;
+import ru.klavogonki.kgparser.jsonParser.mapper.PlayerVocabularyStatsMapper;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerRepository;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerVocabularyStatsRepository;
+import ru.klavogonki.kgparser.pipeline.PlayerDataConsumer;
+import ru.klavogonki.kgparser.pipeline.PlayerImportPipeline;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Converts the parsed players to the entities and saves them to the database in batches.
+ * The players that have not changed since the previous import are skipped, see {@link #importBatch}.
+ * <br>
+ * Each batch is saved in its own transaction, and the persistence context is cleared after it,
+ * so only the current batch is kept in memory, regardless of the number of imported players.
+ */
+@Log4j2
+@Component
+public class PlayerDatabaseImporter {
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private PlayerVocabularyStatsRepository playerVocabularyStatsRepository;
+
+    @Autowired
+    private PlayerBulkLoader bulkLoader;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // todo: autowire it, @see https://mapstruct.org/documentation/stable/reference/html/#using-dependency-injection
+    private final PlayerMapper mapper = Mappers.getMapper(PlayerMapper.class);
+
+    // todo: autowire it, @see https://mapstruct.org/documentation/stable/reference/html/#using-dependency-injection
+    private final PlayerVocabularyStatsMapper statsMapper = Mappers.getMapper(PlayerVocabularyStatsMapper.class);
+
+    /**
+     * Downloads, parses and saves the players to the database in one pass, see {@link PlayerImportPipeline}.
+     */
+    public void importPlayers(final PlayerDataDownloader.Config config, final ImportOptions options) {
+        int batchSize = options.getConsumerBatchSize();
+        boolean bulkLoad = options.isBulkLoad();
+
+        PlayerImportPipeline pipeline = new PlayerImportPipeline(config, options.getPipelineOptions(), () -> new BatchSavingConsumer(batchSize, bulkLoad));
+        pipeline.run();
+    }
+
+    /**
+     * Parses the downloaded snapshot and saves the players to the database batch by batch, see {@link PlayerJsonParser#handlePlayers}.
+     * The batch size is {@code --consumer-batch-size}.
+     */
+    public void importSnapshot(final PlayerDataDownloader.Config config, final ImportOptions options) {
+        BatchSavingConsumer consumer = new BatchSavingConsumer(options.getConsumerBatchSize(), options.isBulkLoad());
+
+        PlayerJsonParser.handlePlayers(config, options.getParseOptions(), (playerId, player) -> {
+            if (player.isEmpty()) {
+                String errorMessage = String.format("Something really serious happened for player %d. JsonData is not present.", playerId);
+                logger.error(errorMessage);
+                throw new IllegalStateException(errorMessage);
+            }
+
+            consumer.accept(playerId, player.get());
+        });
+
+        consumer.finish();
+    }
+
+    public PlayerEntity toEntity(final int playerId, final PlayerJsonData jsonData) {
+        PlayerEntity player = mapper.playerJsonDataToPlayerEntity(jsonData);
+
+        // todo: this can be done in @AfterMapping in the mapper, passing playerId as @Context
+        if (player.getPlayerId() == null) { // non-existing user -> no playerId in neither summary nor indexData
+            logger.debug(
+                "Player {}: setting playerId manually. Most probably this player does not exist.\n/get-summary error: {}\n/get-index/data error: {}",
+                playerId,
+                player.getGetSummaryError(),
+                player.getGetIndexDataError()
+            );
+
+            player.setPlayerId(playerId);
+        }
+
+        StatsOverview statsOverview = jsonData.statsOverview;
+
+        List<PlayerVocabularyStatsEntity> allPlayerStats = new ArrayList<>();
+        for (VocabularyStats vocabularyStats : statsOverview.getVocabularies()) {
+            PlayerVocabularyStatsEntity stats = statsMapper.vocabularyStatsToEntity(vocabularyStats, jsonData.importDate, statsOverview, player);
+            allPlayerStats.add(stats);
+        }
+
+        player.setStats(allPlayerStats);
+        return player;
+    }
+
+    /**
+     * Saves the new and the changed players of the batch, comparing their {@link PlayerJsonData#contentDigest} with the database.
+     * <br>
+     * An unchanged player is neither mapped nor saved, only the import date of the player and its stats is moved forward to the new snapshot.
+     * A changed player is deleted with its stats and saved again.
+     * A player without a digest is always considered changed.
+     * <br>
+     * The batch is saved in a single transaction.
+     *
+     * @param players playerId -> parsed player
+     * @param bulkLoad {@code true} - insert the players by {@link PlayerBulkLoader}, {@code false} - save them by JPA
+     */
+    public void importBatch(final Map<Integer, PlayerJsonData> players, final boolean bulkLoad) {
+        if (players.isEmpty()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> importBatchInTransaction(players, bulkLoad));
+
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info("Batch of {} players committed in {} ms. Heap used: {} MB.", players.size(), millis, getUsedHeapMegabytes());
+    }
+
+    private void importBatchInTransaction(final Map<Integer, PlayerJsonData> players, final boolean bulkLoad) {
+        Map<Integer, PlayerContentDigest> savedDigests = playerRepository
+            .getContentDigests(players.keySet())
+            .stream()
+            .collect(Collectors.toMap(PlayerContentDigest::getPlayerId, Function.identity()));
+
+        List<PlayerEntity> playersToSave = new ArrayList<>();
+        List<Long> changedPlayerDbIds = new ArrayList<>();
+        Map<LocalDateTime, List<Integer>> unchangedPlayerIds = new HashMap<>(); // import date -> player ids
+
+        for (Map.Entry<Integer, PlayerJsonData> entry : players.entrySet()) {
+            int playerId = entry.getKey();
+            PlayerJsonData jsonData = entry.getValue();
+            PlayerContentDigest saved = savedDigests.get(playerId);
+
+            if ((saved != null) && (jsonData.contentDigest != null) && jsonData.contentDigest.equals(saved.getContentDigest())) {
+                unchangedPlayerIds
+                    .computeIfAbsent(jsonData.importDate, importDate -> new ArrayList<>())
+                    .add(playerId);
+
+                continue;
+            }
+
+            if (saved != null) {
+                changedPlayerDbIds.add(saved.getDbId());
+            }
+
+            playersToSave.add(toEntity(playerId, jsonData));
+        }
+
+        if (!changedPlayerDbIds.isEmpty()) {
+            logger.info("Deleting {} changed players from the database...", changedPlayerDbIds.size());
+            playerRepository.deleteAll(playerRepository.findAllById(changedPlayerDbIds)); // cascade deletes the stats
+            entityManager.flush(); // the bulk loader inserts the same players by JDBC, the deletes must be executed before
+        }
+
+        if (!playersToSave.isEmpty()) {
+            if (bulkLoad) {
+                bulkLoader.load(playersToSave);
+            }
+            else {
+                saveBatch(playersToSave);
+            }
+        }
+
+        unchangedPlayerIds.forEach((importDate, playerIds) -> {
+            playerRepository.updateImportDate(playerIds, importDate);
+            playerVocabularyStatsRepository.updateImportDate(playerIds, importDate); // the stats must belong to the same snapshot as their player
+        });
+
+        // the saved entities must not stay in the persistence context after the batch
+        entityManager.flush();
+        entityManager.clear();
+
+        int unchangedCount = players.size() - playersToSave.size();
+        int newCount = playersToSave.size() - changedPlayerDbIds.size();
+        logger.info("Batch of {} players: {} new, {} changed, {} unchanged.", players.size(), newCount, changedPlayerDbIds.size(), unchangedCount);
+    }
+
+    private static long getUsedHeapMegabytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+    }
+
+    /**
+     * Cascade saves the players with their stats, in the current transaction.
+     */
+    public void saveBatch(final List<PlayerEntity> players) {
+        int size = players.size();
+        logger.info("Saving {} players to the database...", size);
+
+        long startNanos = System.nanoTime();
+        playerRepository.saveAll(players);
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        logger.info("{} players saved to the database in {} ms.", size, millis);
+    }
+
+    /**
+     * Not thread-safe, the pipeline creates one instance per consumer thread.
+     */
+    private class BatchSavingConsumer implements PlayerDataConsumer {
+        private final int batchSize;
+        private final boolean bulkLoad;
+        private final Map<Integer, PlayerJsonData> batch; // playerId -> player
+        private int batchesCount;
+        private int playersCount;
+
+        BatchSavingConsumer(final int batchSize, final boolean bulkLoad) {
+            this.batchSize = batchSize;
+            this.bulkLoad = bulkLoad;
+            this.batch = new LinkedHashMap<>();
+        }
+
+        @Override
+        public void accept(final int playerId, final PlayerJsonData player) {
+            batch.put(playerId, player);
+
+            if (batch.size() >= batchSize) {
+                saveAndClear();
+            }
+        }
+
+        @Override
+        public void finish() {
+            if (!batch.isEmpty()) { // save remainder from batch size
+                saveAndClear();
+            }
+        }
+
+        private void saveAndClear() {
+            importBatch(batch, bulkLoad);
+
+            batchesCount++;
+            playersCount += batch.size();
+            logger.info("Batch {} saved. Total players saved: {}.", batchesCount, playersCount);
+
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package ru.klavogonki.kgparser.importer;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.klavogonki.kgparser.download.RefreshPlan;
+import ru.klavogonki.kgparser.download.RefreshScheduler;
+import ru.klavogonki.kgparser.jsonParser.dto.PlayerActivity;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerRepository;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Builds the {@link RefreshPlan} of the next download from the players imported to the database by the previous download.
+ * <br>
+ * Pass the plan to {@code --refresh-plan} together with {@code --previous-snapshot} of the imported download.
+ */
+@Log4j2
+@Component
+public class RefreshPlanner {
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    public RefreshPlan writePlan(final LocalDate runDate, final int hotActivityDays, final File file) {
+        logger.info("Loading the players activity from the database...");
+        List<PlayerActivity> activities = playerRepository.getPlayersActivity();
+        logger.info("Activity of {} players loaded.", activities.size());
+
+        RefreshScheduler scheduler = new RefreshScheduler(runDate, hotActivityDays);
+        for (PlayerActivity activity : activities) {
+            scheduler.add(activity.getPlayerId(), activity.getTotalRacesCount(), activity.getLastActivity());
+        }
+
+        RefreshPlan plan = scheduler.createPlan();
+        plan.write(file);
+
+        logger.info("Refresh plan for {} written to {}: {} of {} players will be requested.", runDate, file.getPath(), plan.getScheduledCount(), activities.size());
+        return plan;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.klavogonki.kgparser.jsonParser.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Minimal amount of data to assign a {@link ru.klavogonki.kgparser.download.RefreshTier} to a player.
+ */
+@Data
+public class PlayerActivity {
+
+    public PlayerActivity(final Integer playerId, final Integer totalRacesCount, final LocalDateTime lastActivity) {
+        this.playerId = playerId;
+        this.totalRacesCount = totalRacesCount;
+        this.lastActivity = lastActivity;
+    }
+
+    private Integer playerId;
+    private Integer totalRacesCount; // null for non-existing players
+    private LocalDateTime lastActivity; // max PlayerVocabularyStatsEntity#updated, null if the player has no stats
+}
@@ -0,0 +1,20 @@
+package ru.klavogonki.kgparser.jsonParser.dto;
+
+import lombok.Data;
+
+/**
+ * Content digest of a player already saved to the database, see {@link ru.klavogonki.kgparser.util.ContentDigest}.
+ */
+@Data
+public class PlayerContentDigest {
+
+    public PlayerContentDigest(final Long dbId, final Integer playerId, final String contentDigest) {
+        this.dbId = dbId;
+        this.playerId = playerId;
+        this.contentDigest = contentDigest;
+    }
+
+    private Long dbId;
+    private Integer playerId;
+    private String contentDigest; // null for the players imported before the digest has been added
+}
@@ -4,6 +4,7 @@ import lombok.Data;
 import org.hibernate.annotations.NaturalId;
 import ru.klavogonki.kgparser.Rank;
 import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.util.ContentDigest;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
@@ -18,13 +19,14 @@ import javax.persistence.OneToMany;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.Transient;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
 @Entity
 @Table(name = "Player")
-public class PlayerEntity {
+public class PlayerEntity implements Serializable { // Hibernate requires it for PlayerVocabularyStatsEntity#player, which references a non-primary key column
 
     @Id
 //    @GeneratedValue
@@ -34,6 +36,9 @@ public class PlayerEntity {
 
     private LocalDateTime importDate; // when PlayerDataDownloader has been executed
 
+    @Column(length = ContentDigest.LENGTH)
+    private String contentDigest; // digest of the raw responses, an unchanged player is not saved again on the next import
+
     private String getSummaryError; // we import all users, including non-existing
 
     private String getIndexDataError; // we import all users, including non-existing and users with failed /get-index-data
@@ -86,8 +91,9 @@ public class PlayerEntity {
 
     private Integer carsCount;
 
-    @OneToMany(cascade = CascadeType.ALL)
-//    @JoinColumn(name = "player_id") // do not create a join table! // todo: it's hard for non-pk column, does not work easily. Investigate this
+    // the stats are linked by PlayerVocabularyStatsEntity#player foreign key only, without a join table
+    // see src/main/sql/migrate-player-stats-join-table.sql for the databases imported with the join table
+    @OneToMany(mappedBy = "player", cascade = CascadeType.ALL)
     List<PlayerVocabularyStatsEntity> stats;
 
     @Transient
@@ -1,6 +1,8 @@
 package ru.klavogonki.kgparser.jsonParser.entity;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import ru.klavogonki.kgparser.Dictionary;
 import ru.klavogonki.kgparser.DictionaryMode;
 import ru.klavogonki.kgparser.NonStandardDictionaryType;
@@ -35,6 +37,8 @@ public class PlayerVocabularyStatsEntity {
     @ManyToOne
 //    @JoinColumn(name = "player_id", referencedColumnName = "player_id")
     @JoinColumn(nullable = false, name = "player_id", referencedColumnName = "playerId") // weird behaviour, db column name fails, entity field name is working.
+    @EqualsAndHashCode.Exclude // PlayerEntity#stats contains this entity, Lombok methods would recurse infinitely
+    @ToString.Exclude
     private PlayerEntity player;
 
     private String error; // also duplicated in PlayerEntity#getStatsOverviewError
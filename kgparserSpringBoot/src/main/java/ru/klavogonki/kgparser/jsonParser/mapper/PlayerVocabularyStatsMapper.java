@@ -9,11 +9,11 @@ import org.mapstruct.ValueMapping;
 import org.mapstruct.ValueMappings;
 import ru.klavogonki.kgparser.DictionaryMode;
 import ru.klavogonki.kgparser.NonStandardDictionaryType;
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
+import ru.klavogonki.kgparser.jsonParser.VocabularyStats;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
 import ru.klavogonki.kgparser.util.DateUtils;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
-import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
 import ru.klavogonki.openapi.model.NonStandardVocabularyType;
 import ru.klavogonki.openapi.model.VocabularyMode;
 
@@ -22,7 +22,7 @@ import java.time.LocalDateTime;
 @Mapper
 public interface PlayerVocabularyStatsMapper {
 
-//    @Mapping(source = "", target = "vocabularyCode")
+    @Mapping(source = "code", target = "vocabularyCode")
     @Mapping(source = "id", target = "vocabularyId")
     @Mapping(source = "name", target = "vocabularyName")
     @Mapping(source = "numRaces", target = "racesCount")
@@ -31,23 +31,23 @@ public interface PlayerVocabularyStatsMapper {
     @Mapping(source = "rows", target = "vocabularyRows")
     @Mapping(source = "bookDone", target = "bookDone")
 
-    @Mapping(source = "info.id", target = "vocabularyInfoId")
-//    @Mapping(source = "info.userId", target = "playerId") // todo: map to PlayerEntity
-    @Mapping(source = "info.mode", target = "vocabularyMode")
-    @Mapping(source = "info.texttype", target = "vocabularyTextType")
-//    @Mapping(source = "info.numRaces", target = "") // we assume gameType.numRaces is the same, it is also validated
-    @Mapping(source = "info.avgSpeed", target = "averageSpeed")
-    @Mapping(source = "info.bestSpeed", target = "bestSpeed")
-    @Mapping(source = "info.avgError", target = "averageError")
-    @Mapping(source = "info.haul", target = "haul")
-    @Mapping(source = "info.qual", target = "qual")
-    @Mapping(source = "info.dirty", target = "dirty")
-    @Mapping(source = "info.updated", target = "updated", dateFormat = DateUtils.DATE_TIME_FORMAT_FOR_UI)
-    PlayerVocabularyStatsEntity statsGameTypeToEntity(
-        GetStatsOverviewGameType gameType,
+    // info fields
+    @Mapping(source = "infoId", target = "vocabularyInfoId")
+//    @Mapping(source = "userId", target = "playerId") // todo: map to PlayerEntity
+    @Mapping(source = "mode", target = "vocabularyMode")
+    @Mapping(source = "texttype", target = "vocabularyTextType")
+//    @Mapping(source = "infoNumRaces", target = "") // we assume numRaces is the same, it is also validated
+    @Mapping(source = "avgSpeed", target = "averageSpeed")
+    @Mapping(source = "bestSpeed", target = "bestSpeed")
+    @Mapping(source = "avgError", target = "averageError")
+    @Mapping(source = "haul", target = "haul")
+    @Mapping(source = "qual", target = "qual")
+    @Mapping(source = "dirty", target = "dirty")
+    @Mapping(source = "updated", target = "updated", dateFormat = DateUtils.DATE_TIME_FORMAT_FOR_UI)
+    PlayerVocabularyStatsEntity vocabularyStatsToEntity(
+        VocabularyStats vocabularyStats,
         @Context LocalDateTime importDate,
-        @Context GetStatsOverviewResponse response,
-        @Context String vocabularyCode,
+        @Context StatsOverview statsOverview,
         @Context PlayerEntity player
     );
 
@@ -71,16 +71,14 @@ public interface PlayerVocabularyStatsMapper {
 
     @AfterMapping
     default void fillContextData(
-        GetStatsOverviewGameType gameType,
+        VocabularyStats vocabularyStats,
         @MappingTarget PlayerVocabularyStatsEntity entity,
         @Context LocalDateTime importDate,
-        @Context GetStatsOverviewResponse response,
-        @Context String vocabularyCode,
+        @Context StatsOverview statsOverview,
         @Context PlayerEntity player
     ) {
         entity.setImportDate(importDate);
-        entity.setError(response.getErr());
-        entity.setVocabularyCode(vocabularyCode);
+        entity.setError(statsOverview.getErr());
 
 /*
         // todo: do we need to set the whole playerEntity, at least with its dbId?
@@ -1,12 +1,18 @@
 package ru.klavogonki.kgparser.jsonParser.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.klavogonki.kgparser.jsonParser.dto.PlayerActivity;
+import ru.klavogonki.kgparser.jsonParser.dto.PlayerContentDigest;
 import ru.klavogonki.kgparser.jsonParser.dto.PlayerRankLevelAndTotalRacesCount;
 import ru.klavogonki.kgparser.jsonParser.dto.PlayersByRankCount;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -85,6 +91,41 @@ public interface PlayerRepository extends CrudRepository<PlayerEntity, Long> {
     )
     List<PlayersByRankCount> getActualPlayerCountByRank(@Param("minTotalRacesCount") int minTotalRacesCount);
 
+    @Query(value =
+        "select" +
+        " new ru.klavogonki.kgparser.jsonParser.dto.PlayerActivity(" + // full class name required else ClassLoadingException will be thrown
+        "   p.playerId," +
+        "   p.totalRacesCount," +
+        "   max(s.updated)" +
+        " )" +
+        " from PlayerEntity p" +
+        " left join PlayerVocabularyStatsEntity s on (s.player = p)" + // all players, including the players without stats
+        " group by p.playerId, p.totalRacesCount"
+    )
+    List<PlayerActivity> getPlayersActivity();
+
+    @Query(value =
+        "select" +
+        " new ru.klavogonki.kgparser.jsonParser.dto.PlayerContentDigest(" + // full class name required else ClassLoadingException will be thrown
+        "   p.dbId," +
+        "   p.playerId," +
+        "   p.contentDigest" +
+        " )" +
+        " from PlayerEntity p" +
+        " where p.playerId in :playerIds"
+    )
+    List<PlayerContentDigest> getContentDigests(@Param("playerIds") Collection<Integer> playerIds);
+
+    // carry-forward of the unchanged players to the new snapshot, without loading them
+    @Transactional
+    @Modifying
+    @Query(value =
+        "update PlayerEntity p" +
+        " set p.importDate = :importDate" +
+        " where p.playerId in :playerIds"
+    )
+    int updateImportDate(@Param("playerIds") Collection<Integer> playerIds, @Param("importDate") LocalDateTime importDate);
+
     // JPA query, non-native
     @Query(value =
         "select" +
@@ -1,7 +1,24 @@
 package ru.klavogonki.kgparser.jsonParser.repository;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+
 public interface PlayerVocabularyStatsRepository extends CrudRepository<PlayerVocabularyStatsEntity, Long> {
+
+    // carry-forward of the stats of the unchanged players, see PlayerRepository#updateImportDate
+    @Transactional
+    @Modifying
+    @Query(value =
+        "update PlayerVocabularyStatsEntity s" +
+        " set s.importDate = :importDate" +
+        " where s.player.playerId in :playerIds"
+    )
+    int updateImportDate(@Param("playerIds") Collection<Integer> playerIds, @Param("importDate") LocalDateTime importDate);
 }
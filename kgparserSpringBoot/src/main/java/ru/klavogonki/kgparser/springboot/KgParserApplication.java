@@ -1,7 +1,6 @@
 package ru.klavogonki.kgparser.springboot;
 
 import lombok.extern.log4j.Log4j2;
-import org.mapstruct.factory.Mappers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -10,27 +9,28 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import ru.klavogonki.kgparser.PlayerDataDownloader;
-import ru.klavogonki.kgparser.PlayerJsonData;
 import ru.klavogonki.kgparser.PlayerJsonParser;
+import ru.klavogonki.kgparser.SnapshotParseOptions;
+import ru.klavogonki.kgparser.SnapshotValidationReport;
+import ru.klavogonki.kgparser.download.RefreshScheduler;
 import ru.klavogonki.kgparser.export.ExportContext;
 import ru.klavogonki.kgparser.export.IndexPageExporter;
 import ru.klavogonki.kgparser.export.PlayersByRankExporter;
 import ru.klavogonki.kgparser.export.Top500PagesExporter;
 import ru.klavogonki.kgparser.export.TopBySpeedExporter;
+import ru.klavogonki.kgparser.importer.ImportOptions;
+import ru.klavogonki.kgparser.importer.PlayerDatabaseImporter;
+import ru.klavogonki.kgparser.importer.RefreshPlanner;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
 import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
-import ru.klavogonki.kgparser.jsonParser.mapper.PlayerMapper;
-import ru.klavogonki.kgparser.jsonParser.mapper.PlayerVocabularyStatsMapper;
 import ru.klavogonki.kgparser.jsonParser.repository.PlayerRepository;
 import ru.klavogonki.kgparser.jsonParser.repository.PlayerVocabularyStatsRepository;
 import ru.klavogonki.kgparser.util.DateUtils;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
-import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 
 @SpringBootApplication
 @EntityScan(basePackages= {"ru.klavogonki.kgparser.jsonParser.entity"})
@@ -40,6 +40,9 @@ import java.util.Optional;
 public class KgParserApplication implements CommandLineRunner {
 	public static final int REQUIRED_ARGUMENTS_COUNT = 5;
 
+	public static final String PIPELINE_MODE = "pipeline";
+	public static final String REFRESH_PLAN_MODE = "refresh-plan";
+
 	@Autowired
 	private PlayerRepository playerRepository;
 
@@ -58,27 +61,49 @@ public class KgParserApplication implements CommandLineRunner {
 	@Autowired
 	private PlayersByRankExporter playersByRankExporter;
 
-	// todo: autowire it, @see https://mapstruct.org/documentation/stable/reference/html/#using-dependency-injection
-	private final PlayerMapper mapper = Mappers.getMapper(PlayerMapper.class);
+	@Autowired
+	private PlayerDatabaseImporter playerDatabaseImporter;
 
-	// todo: autowire it, @see https://mapstruct.org/documentation/stable/reference/html/#using-dependency-injection
-	private final PlayerVocabularyStatsMapper statsMapper = Mappers.getMapper(PlayerVocabularyStatsMapper.class);
+	@Autowired
+	private RefreshPlanner refreshPlanner;
 
 	public static void main(String[] args) {
 		SpringApplication.run(KgParserApplication.class, args);
 	}
 
-	private List<PlayerEntity> playersBatch = new ArrayList<>(); // todo: find a nicer solution
-
 	@Override
 	public void run(final String... args) {
+		if ((args.length >= REQUIRED_ARGUMENTS_COUNT) && PIPELINE_MODE.equals(args[REQUIRED_ARGUMENTS_COUNT - 1])) {
+			importWithPipeline(args);
+			return;
+		}
+
+		if (args.length >= REQUIRED_ARGUMENTS_COUNT) {
+			ImportOptions options = ImportOptions.parseFromArguments(args);
+
+			if (options.isDryRun()) {
+				validateSnapshot(args);
+				return;
+			}
+
+			if (options.isImportSnapshot() || (options.getParseOptions().getReimportFile() != null)) { // --reimport: the quarantined players have been downloaded again
+				importSnapshot(args);
+				return;
+			}
+		}
+
+		if ((args.length >= 2) && REFRESH_PLAN_MODE.equals(args[0])) {
+			writeRefreshPlan(args);
+			return;
+		}
+
 		// todo: parse context from args of from json file given by args
 		ExportContext context = new ExportContext();
 		context.webRootDir = "C:/java/kgparser/kgparserWeb/src/main/webapp/";
 
 		// data load from 2020-12-28
 		context.minPlayerId = 1;
-		context.maxPlayerId = 628000;
+		context.maxPlayerId = getMaxExistingPlayerId(); // no need to update it manually, e.g. when the download has discovered the max player id
 		context.dataDownloadStartDate = DateUtils.parseLocalDateTimeWithUiDateFormat("2020-12-28 00:28:13");
 		context.dataDownloadEndDate = DateUtils.parseLocalDateTimeWithUiDateFormat("2020-12-28 01:44:43");
 
@@ -119,96 +144,83 @@ public class KgParserApplication implements CommandLineRunner {
 			return;
 		}
 
+		importSnapshot(args);
+	}
 
+	/**
+	 * Parses the downloaded snapshot and saves the players to the database batch by batch, see {@link PlayerDatabaseImporter#importSnapshot}.
+	 * Selected by {@code --import=true}, or by {@code --reimport=<file>} for the quarantined players only.
+	 * With {@code --quarantine}, a player that cannot be parsed does not stop the import, see {@link PlayerJsonParser#handlePlayers}.
+	 */
+	private void importSnapshot(final String... args) {
 		// todo: pass a path to a json file with config instead
 
-		if (args.length != REQUIRED_ARGUMENTS_COUNT) {
+		if (args.length < REQUIRED_ARGUMENTS_COUNT) {
 			// todo: use logger instead of System.out??
-			System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId> <threadsCount> <yyyy-MM-dd HH-mm-ss> %n", KgParserApplication.class.getSimpleName());
+			System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId> <threadsCount> <yyyy-MM-dd HH-mm-ss>|%s [--options] [--%s=true] [--%s=true] [--%s=<file>] [--%s=<file>] [--%s=true] [--%s=<batchSize>] %n", KgParserApplication.class.getSimpleName(), PIPELINE_MODE, ImportOptions.IMPORT_OPTION, ImportOptions.DRY_RUN_OPTION, SnapshotParseOptions.QUARANTINE_OPTION, SnapshotParseOptions.REIMPORT_OPTION, ImportOptions.BULK_LOAD_OPTION, ImportOptions.CONSUMER_BATCH_SIZE_OPTION);
 			return;
 		}
 
-		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, ImportOptions.NAMES);
 		config.setStartDate(args[4]);
 		config.log();
 
-		PlayerJsonParser.handlePlayers(config, this::handlePlayer);
+		ImportOptions options = ImportOptions.parseFromArguments(args);
+		options.log();
 
-		if (!playersBatch.isEmpty()) { // save remainder from batch size
-			handlePlayersBatch(true);
-		}
+		playerDatabaseImporter.importSnapshot(config, options);
 	}
 
-	private void handlePlayer(int playerId, Optional<PlayerJsonData> jsonDataOptional) {
-		if (jsonDataOptional.isEmpty()) {
-			String errorMessage = String.format("Something really serious happened for player %d. JsonData is not present.", playerId);
-			logger.error(errorMessage);
-			throw new IllegalStateException(errorMessage);
-		}
-
-/*
-		if (true) { // just test the parsing + validation, no DB save. Todo: make it configurable, like "dry-run"
-			return;
-		}
-*/
-
-		PlayerJsonData jsonData = jsonDataOptional.get();
-
-		PlayerEntity player = mapper.playerJsonDataToPlayerEntity(jsonData);
-
-		// todo: this can be done in @AfterMapping in the mapper, passing playerId as @Context
-		if (player.getPlayerId() == null) { // non-existing user -> no playerId in neither summary nor indexData
-			logger.debug(
-				"Player {}: setting playerId manually. Most probably this player does not exist.\n/get-summary error: {}\n/get-index/data error: {}",
-				playerId,
-				player.getGetSummaryError(),
-				player.getGetIndexDataError()
-			);
+	/**
+	 * Downloads the players and saves them to the database without waiting for the whole download to finish.
+	 */
+	private void importWithPipeline(final String... args) {
+		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, ImportOptions.NAMES);
+		config.setStartDate(DateUtils.formatDateTime(LocalDateTime.now()));
+		config.log();
 
-			player.setPlayerId(playerId);
-		}
+		ImportOptions options = ImportOptions.parseFromArguments(args);
+		options.log();
 
-//		savePlayerToDatabase(player);
+		playerDatabaseImporter.importPlayers(config, options);
+	}
 
-		GetStatsOverviewResponse statsOverview = jsonData.statsOverview;
-		Map<String, GetStatsOverviewGameType> gameTypes = statsOverview.getGametypes();
+	/**
+	 * Validates the downloaded snapshot without saving anything to the database, see {@link PlayerJsonParser#validateSnapshot}.
+	 */
+	private void validateSnapshot(final String... args) {
+		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, ImportOptions.NAMES);
+		config.setStartDate(args[4]);
+		config.log();
 
-		List<PlayerVocabularyStatsEntity> allPlayerStats = new ArrayList<>();
-		for (Map.Entry<String, GetStatsOverviewGameType> entry : gameTypes.entrySet()) {
-			String vocabularyCode = entry.getKey();
-			GetStatsOverviewGameType gameType = entry.getValue();
+		ImportOptions options = ImportOptions.parseFromArguments(args);
+		options.log();
 
-			PlayerVocabularyStatsEntity stats = statsMapper.statsGameTypeToEntity(gameType, jsonData.importDate, statsOverview, vocabularyCode, player);
-			allPlayerStats.add(stats);
+		SnapshotValidationReport report = PlayerJsonParser.validateSnapshot(config, options.getParseOptions());
+		if (report.hasErrors()) {
+			logger.error("Snapshot contains {} invalid players. Fix or exclude them before the import.", report.getInvalidPlayers());
 		}
-
-
-		player.setStats(allPlayerStats);
-
-		playersBatch.add(player);
-		handlePlayersBatch(false);
-//		savePlayerToDatabase(player); // cascade save player with its stats
-
-//		saveStatsToDatabase(player, allPlayerStats);
 	}
 
-	private void handlePlayersBatch(boolean force) {
-		int size = playersBatch.size();
-		if ((size == 1000) || force) { // force for last execution
-			logger.info("!!! Batch size is {}. Saving {} players to the database...", size, size);
-
-			playerRepository.saveAll(playersBatch);
+	/**
+	 * Arguments: {@code refresh-plan <planFile> [<yyyy-MM-dd run date, default today>] [<hotActivityDays>]}.
+	 */
+	private void writeRefreshPlan(final String... args) {
+		File file = new File(args[1]);
+		LocalDate runDate = (args.length > 2) ? LocalDate.parse(args[2]) : LocalDate.now();
+		int hotActivityDays = (args.length > 3) ? Integer.parseInt(args[3]) : RefreshScheduler.DEFAULT_HOT_ACTIVITY_DAYS;
 
-			// todo: time measure for saving 1000 players?
-			logger.info("!!! {} players saved to the database.", size);
-
-			playersBatch.clear();
-			logger.info("Batch cleared from {} to {} players", size, playersBatch.size());
+		refreshPlanner.writePlan(runDate, hotActivityDays, file);
+	}
 
+	private int getMaxExistingPlayerId() {
+		Integer maxPlayerId = playerRepository.selectMaxExistingPlayerId();
+		if (maxPlayerId == null) {
+			throw new IllegalStateException("No existing players found in the database. Import the players before the export.");
 		}
-		else {
-			logger.info("Batch size is {}. Do not save it yet.", size);
-		}
+
+		logger.info("Max existing player id in the database: {}", maxPlayerId);
+		return maxPlayerId;
 	}
 
 	private void savePlayerToDatabase(PlayerEntity player) {
@@ -0,0 +1,20 @@
+-- Migrates a snapshot database imported before PlayerEntity#stats has been mapped by PlayerVocabularyStatsEntity#player (MySQL).
+-- Such a database links every stats row to its player twice: by player_vocabulary_stats.player_id
+-- and by the player_stats join table generated by Hibernate. The foreign key is kept, the join table is dropped.
+-- spring.jpa.hibernate.ddl-auto=update does not drop the table, and its foreign keys would block deleting the stats.
+
+-- 1. The join table must not contain any link that the foreign key does not have. Must return 0, do not continue otherwise.
+select count(*)
+from player_stats ps
+join player p on (p.db_id = ps.player_entity_db_id)
+join player_vocabulary_stats s on (s.db_id = ps.stats_db_id)
+where (s.player_id <> p.player_id);
+
+-- 2. Every stats row must have its player. Must return 0, do not continue otherwise.
+select count(*)
+from player_vocabulary_stats s
+left join player p on (p.player_id = s.player_id)
+where (p.db_id is null);
+
+-- 3. Drop the join table with its foreign keys.
+drop table player_stats;
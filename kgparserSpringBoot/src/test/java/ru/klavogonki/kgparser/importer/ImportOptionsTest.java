@@ -0,0 +1,43 @@
+package ru.klavogonki.kgparser.importer;
+
+import org.junit.jupiter.api.Test;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportOptionsTest {
+
+    @Test
+    void testImportOptions() {
+        ImportOptions defaultOptions = ImportOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultOptions.isImportSnapshot()).isFalse();
+        assertThat(defaultOptions.getConsumerBatchSize()).isEqualTo(ImportOptions.DEFAULT_CONSUMER_BATCH_SIZE);
+        assertThat(defaultOptions.isDryRun()).isFalse();
+        assertThat(defaultOptions.isBulkLoad()).isFalse();
+        assertThat(defaultOptions.getParseOptions().getReimportFile()).isNull();
+
+        String[] args = {"c:/java/kg", "1", "2", "1", "--batch-size=50", "--queue-size=20", "--parse-threads=4", "--import=true", "--consumer-batch-size=500", "--dry-run=true", "--bulk-load=true", "--reimport=c:/java/kg/quarantine-1.txt"};
+
+        ImportOptions options = ImportOptions.parseFromArguments(args);
+        assertThat(options.isImportSnapshot()).isTrue();
+        assertThat(options.getConsumerBatchSize()).isEqualTo(500);
+        assertThat(options.isDryRun()).isTrue();
+        assertThat(options.isBulkLoad()).isTrue();
+        assertThat(options.getParseOptions().getReimportFile()).isEqualTo("c:/java/kg/quarantine-1.txt");
+        assertThat(options.getParseOptions().getParseThreads()).isEqualTo(4);
+        assertThat(options.getPipelineOptions().getQueueSize()).isEqualTo(20);
+
+        // the same arguments are valid for the downloader config when the import options are skipped
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, ImportOptions.NAMES);
+        assertThat(config.getBatchSize()).isEqualTo(50);
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(args))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown option: --queue-size"); // the first of the import options
+
+        assertThatThrownBy(() -> ImportOptions.parseFromArguments(new String[] {"--consumer-batch-size=0"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--consumer-batch-size");
+    }
+}
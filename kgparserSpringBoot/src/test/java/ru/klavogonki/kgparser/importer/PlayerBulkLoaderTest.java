@@ -0,0 +1,316 @@
+package ru.klavogonki.kgparser.importer;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerEntity;
+import ru.klavogonki.kgparser.jsonParser.entity.PlayerVocabularyStatsEntity;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerRepository;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerVocabularyStatsRepository;
+import ru.klavogonki.openapi.model.Car;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetIndexDataStats;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+import ru.klavogonki.openapi.model.GetSummaryUser;
+import ru.klavogonki.openapi.model.Microtime;
+import ru.klavogonki.openapi.model.NonStandardVocabularyType;
+import ru.klavogonki.openapi.model.VocabularyMode;
+
+import javax.persistence.EntityManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The bulk loader writes to an embedded H2 database with the schema generated by Hibernate,
+ * the players are read back by JPA.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the importer commits a transaction per batch
+class PlayerBulkLoaderTest {
+
+    private static final int EXISTING_PLAYER_ID = 242585;
+    private static final int OTHER_EXISTING_PLAYER_ID = 242586;
+    private static final int NON_EXISTING_PLAYER_ID = 1;
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan(basePackages = {"ru.klavogonki.kgparser.jsonParser.entity"})
+    @EnableJpaRepositories("ru.klavogonki.kgparser.jsonParser.repository")
+    @Import({PlayerBulkLoader.class, PlayerDatabaseImporter.class})
+    static class TestConfiguration {
+    }
+
+    @Autowired
+    private PlayerBulkLoader bulkLoader;
+
+    @Autowired
+    private PlayerDatabaseImporter importer;
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private PlayerVocabularyStatsRepository statsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void deletePlayers() {
+        playerRepository.deleteAll(); // cascade deletes the stats
+    }
+
+    @Test
+    @DisplayName("Bulk loaded players with their stats must be read by JPA, the keys must not clash with the keys of JPA")
+    void testLoad() {
+        LocalDateTime importDate = LocalDateTime.of(2021, 1, 1, 12, 30, 45);
+
+        PlayerEntity existingPlayer = importer.toEntity(EXISTING_PLAYER_ID, createExistingPlayer(EXISTING_PLAYER_ID, importDate, "digest-1"));
+        PlayerEntity nonExistingPlayer = importer.toEntity(NON_EXISTING_PLAYER_ID, createNonExistingPlayer(importDate, "digest-2"));
+
+        bulkLoader.load(List.of(existingPlayer, nonExistingPlayer));
+
+        assertThat(existingPlayer.getDbId()).isNotNull();
+        assertThat(existingPlayer.getStats()).allSatisfy(stats -> assertThat(stats.getDbId()).isNotNull());
+        assertThat(playerRepository.count()).isEqualTo(2);
+        assertThat(statsRepository.count()).isEqualTo(2);
+
+        inTransaction(() -> {
+            PlayerEntity loaded = playerRepository.findByPlayerId(EXISTING_PLAYER_ID).orElseThrow();
+
+            assertThat(loaded)
+                .usingRecursiveComparison()
+                .ignoringFields("stats")
+                .isEqualTo(existingPlayer);
+
+            assertThat(loaded.getStats())
+                .usingElementComparatorIgnoringFields("player")
+                .containsExactlyInAnyOrderElementsOf(existingPlayer.getStats());
+
+            assertThat(loaded.getStats()).allSatisfy(stats -> assertThat(stats.getPlayer().getDbId()).isEqualTo(existingPlayer.getDbId()));
+
+            PlayerEntity loadedNonExisting = playerRepository.findByPlayerId(NON_EXISTING_PLAYER_ID).orElseThrow();
+            assertThat(loadedNonExisting.getGetSummaryError()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+            assertThat(loadedNonExisting.getLogin()).isNull();
+            assertThat(loadedNonExisting.getCar()).isNull();
+            assertThat(loadedNonExisting.getStats()).isEmpty();
+        });
+
+        // JPA after the bulk load: the keys of the same id generator
+        PlayerEntity savedByJpa = importer.toEntity(2, createNonExistingPlayer(importDate, "digest-3"));
+        playerRepository.save(savedByJpa);
+
+        assertThat(savedByJpa.getDbId()).isNotIn(existingPlayer.getDbId(), nonExistingPlayer.getDbId());
+        assertThat(playerRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Stats must be linked to their player by the foreign key only, without a join table")
+    void testNoJoinTable() {
+        Number joinTables = (Number) entityManager
+            .createNativeQuery("select count(*) from information_schema.tables where (upper(table_name) = 'PLAYER_STATS')")
+            .getSingleResult();
+
+        assertThat(joinTables.intValue()).isZero();
+    }
+
+    @Test
+    @DisplayName("Insert statements must contain a placeholders group per row")
+    void testCreateInsertSql() {
+        assertThat(PlayerBulkLoader.createInsertSql("t", new String[] {"a", "b"}, 3))
+            .isEqualTo("insert into t (a, b) values (?, ?), (?, ?), (?, ?)");
+    }
+
+    @Test
+    @DisplayName("Unchanged players must only get the new import date, with their stats, changed players must be replaced with their stats")
+    void testImportBatch() {
+        LocalDateTime firstImportDate = LocalDateTime.of(2021, 1, 1, 0, 0, 0);
+
+        Map<Integer, PlayerJsonData> firstBatch = new LinkedHashMap<>();
+        firstBatch.put(NON_EXISTING_PLAYER_ID, createNonExistingPlayer(firstImportDate, "non-existing"));
+        firstBatch.put(EXISTING_PLAYER_ID, createExistingPlayer(EXISTING_PLAYER_ID, firstImportDate, "existing"));
+        firstBatch.put(OTHER_EXISTING_PLAYER_ID, createExistingPlayer(OTHER_EXISTING_PLAYER_ID, firstImportDate, "other-existing-1"));
+        importer.importBatch(firstBatch, true);
+
+        PlayerEntity nonExistingBefore = playerRepository.findByPlayerId(NON_EXISTING_PLAYER_ID).orElseThrow();
+        PlayerEntity unchangedBefore = playerRepository.findByPlayerId(EXISTING_PLAYER_ID).orElseThrow();
+        PlayerEntity changedBefore = playerRepository.findByPlayerId(OTHER_EXISTING_PLAYER_ID).orElseThrow();
+
+        LocalDateTime secondImportDate = LocalDateTime.of(2021, 2, 1, 0, 0, 0);
+
+        Map<Integer, PlayerJsonData> secondBatch = new LinkedHashMap<>();
+        secondBatch.put(NON_EXISTING_PLAYER_ID, createNonExistingPlayer(secondImportDate, "non-existing"));
+        secondBatch.put(EXISTING_PLAYER_ID, createExistingPlayer(EXISTING_PLAYER_ID, secondImportDate, "existing"));
+        secondBatch.put(OTHER_EXISTING_PLAYER_ID, createExistingPlayer(OTHER_EXISTING_PLAYER_ID, secondImportDate, "other-existing-2"));
+        importer.importBatch(secondBatch, true);
+
+        PlayerEntity nonExistingAfter = playerRepository.findByPlayerId(NON_EXISTING_PLAYER_ID).orElseThrow();
+        assertThat(nonExistingAfter.getDbId()).isEqualTo(nonExistingBefore.getDbId()); // not saved again
+        assertThat(nonExistingAfter.getImportDate()).isEqualTo(secondImportDate);
+
+        PlayerEntity unchangedAfter = playerRepository.findByPlayerId(EXISTING_PLAYER_ID).orElseThrow();
+        assertThat(unchangedAfter.getDbId()).isEqualTo(unchangedBefore.getDbId()); // not saved again
+        assertThat(unchangedAfter.getImportDate()).isEqualTo(secondImportDate);
+
+        PlayerEntity changedAfter = playerRepository.findByPlayerId(OTHER_EXISTING_PLAYER_ID).orElseThrow();
+        assertThat(changedAfter.getDbId()).isNotEqualTo(changedBefore.getDbId());
+        assertThat(changedAfter.getContentDigest()).isEqualTo("other-existing-2");
+        assertThat(changedAfter.getImportDate()).isEqualTo(secondImportDate);
+
+        assertThat(playerRepository.count()).isEqualTo(3);
+        assertThat(statsRepository.count()).isEqualTo(4); // the stats of the changed player have been replaced, not added
+        assertThat(statsRepository.findAll()).allSatisfy(stats -> assertThat(stats.getImportDate()).isEqualTo(secondImportDate)); // including the stats of the unchanged player
+    }
+
+    @Test
+    @DisplayName("Snapshot must be imported batch by batch, a changed player must be replaced in the transaction of its batch")
+    void testImportSnapshot(@TempDir File rootDir) throws IOException {
+        int playersCount = 5;
+        String startDate = "2021-01-01 00-00-00";
+
+        PlayerDataDownloader.Config config = createSnapshotConfig(rootDir, playersCount, startDate);
+        for (int playerId = 1; playerId <= playersCount; playerId++) {
+            FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(playerId)), "{\"err\":\"" + ApiErrors.INVALID_USER_ID_ERROR + "\"}", StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(new File(config.getPlayerIndexDataFilePath(playerId)), ApiErrors.SKIPPED_RESPONSE_JSON, StandardCharsets.UTF_8);
+            FileUtils.writeStringToFile(new File(config.getStatsOverviewFilePath(playerId)), ApiErrors.SKIPPED_RESPONSE_JSON, StandardCharsets.UTF_8);
+        }
+
+        importer.importSnapshot(config, ImportOptions.parseFromArguments(new String[] {"--consumer-batch-size=2"})); // 3 batches: 2 + 2 + 1 players
+        assertThat(playerRepository.count()).isEqualTo(playersCount);
+
+        PlayerEntity unchangedBefore = playerRepository.findByPlayerId(2).orElseThrow();
+        PlayerEntity changedBefore = playerRepository.findByPlayerId(3).orElseThrow();
+
+        // the same error with another formatting changes the digest
+        FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(3)), "{\"err\": \"" + ApiErrors.INVALID_USER_ID_ERROR + "\"}", StandardCharsets.UTF_8);
+
+        importer.importSnapshot(config, ImportOptions.parseFromArguments(new String[] {"--consumer-batch-size=2", "--bulk-load=true"}));
+        assertThat(playerRepository.count()).isEqualTo(playersCount);
+
+        assertThat(playerRepository.findByPlayerId(2).orElseThrow().getDbId()).isEqualTo(unchangedBefore.getDbId());
+
+        PlayerEntity changedAfter = playerRepository.findByPlayerId(3).orElseThrow();
+        assertThat(changedAfter.getDbId()).isNotEqualTo(changedBefore.getDbId());
+        assertThat(changedAfter.getContentDigest()).isNotEqualTo(changedBefore.getContentDigest());
+    }
+
+    private void inTransaction(final Runnable runnable) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> runnable.run());
+    }
+
+    private static PlayerDataDownloader.Config createSnapshotConfig(final File rootDir, final int maxPlayerId, final String startDate) {
+        String[] args = {rootDir.getPath(), "1", String.valueOf(maxPlayerId), "1"};
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+        config.setStartDate(startDate);
+        return config;
+    }
+
+    private static PlayerJsonData createExistingPlayer(final int playerId, final LocalDateTime importDate, final String contentDigest) {
+        GetSummaryResponse summary = new GetSummaryResponse()
+            .level(5)
+            .title("Профи")
+            .blocked(0)
+            .user(new GetSummaryUser().id(playerId).login("nosferatum"))
+            .car(new Car().car(1).color("#BF1300"));
+
+        GetIndexDataResponse indexData = new GetIndexDataResponse()
+            .ok(ApiErrors.OK_CORRECT_VALUE)
+            .stats(
+                new GetIndexDataStats()
+                    .registered(new Microtime().sec(1297852113L).usec(0L))
+                    .achievesCnt(225)
+                    .totalNumRaces(60633)
+                    .bestSpeed(626)
+                    .ratingLevel(32)
+                    .friendsCnt(102)
+                    .vocsCnt(2)
+                    .carsCnt(33)
+            );
+
+        Map<String, GetStatsOverviewGameType> gameTypes = new LinkedHashMap<>();
+        gameTypes.put("normal", new GetStatsOverviewGameType()
+            .name("Обычный")
+            .numRaces(29445)
+            .info(
+                new GetStatsOverviewGameTypeInfo()
+                    .id(1)
+                    .userId(playerId)
+                    .mode(VocabularyMode.NORMAL)
+                    .texttype(0)
+                    .numRaces(29445)
+                    .avgSpeed(567.5)
+                    .bestSpeed(626)
+                    .avgError(1.25)
+                    .haul(3600)
+                    .qual(550)
+                    .dirty(0)
+                    .updated("2020-12-27 23:15:00")
+            )
+        );
+        gameTypes.put("voc-107263", new GetStatsOverviewGameType()
+            .id(107263)
+            .name("Книга")
+            .type(NonStandardVocabularyType.BOOK)
+            .symbols(1000)
+            .rows(10)
+            .bookDone(true)
+            .numRaces(3)
+            .info(null)
+        );
+
+        GetStatsOverviewResponse statsOverview = new GetStatsOverviewResponse()
+            .ok(ApiErrors.OK_CORRECT_VALUE)
+            .gametypes(gameTypes);
+
+        // the importer reads the compact form, as the snapshot parser does
+        StatsOverview compactStatsOverview = JacksonUtils.parse(JacksonUtils.serializeToString(statsOverview), "stats overview", StatsOverview.class);
+
+        PlayerJsonData player = new PlayerJsonData(importDate, summary, indexData, compactStatsOverview);
+        player.contentDigest = contentDigest;
+        return player;
+    }
+
+    private static PlayerJsonData createNonExistingPlayer(final LocalDateTime importDate, final String contentDigest) {
+        PlayerJsonData player = new PlayerJsonData(
+            importDate,
+            new GetSummaryResponse().err(ApiErrors.INVALID_USER_ID_ERROR),
+            new GetIndexDataResponse().err(ApiErrors.INVALID_USER_ID_ERROR),
+            StatsOverview.error(ApiErrors.INVALID_USER_ID_ERROR)
+        );
+
+        player.contentDigest = contentDigest;
+        return player;
+    }
+}
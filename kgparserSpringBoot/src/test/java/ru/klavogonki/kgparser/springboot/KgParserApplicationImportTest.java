@@ -0,0 +1,199 @@
+package ru.klavogonki.kgparser.springboot;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerQuarantine;
+import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.importer.PlayerBulkLoader;
+import ru.klavogonki.kgparser.importer.PlayerDatabaseImporter;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerRepository;
+import ru.klavogonki.kgparser.jsonParser.repository.PlayerVocabularyStatsRepository;
+import ru.klavogonki.kgparser.mock.MockKgApiServer;
+import ru.klavogonki.kgparser.pipeline.PlayerImportPipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs {@link KgParserApplication} with the import options on a snapshot downloaded from the {@link MockKgApiServer},
+ * the players are saved to an embedded H2 database.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the importer commits a transaction per batch
+class KgParserApplicationImportTest {
+
+	private static final int MAX_PLAYER_ID = 60;
+	private static final String START_DATE = "2021-01-01 00-00-00";
+	private static final int BROKEN_PLAYER_ID = 17;
+
+	@SpringBootConfiguration
+	@EnableAutoConfiguration
+	@EntityScan(basePackages = {"ru.klavogonki.kgparser.jsonParser.entity"})
+	@EnableJpaRepositories("ru.klavogonki.kgparser.jsonParser.repository")
+	@Import({PlayerBulkLoader.class, PlayerDatabaseImporter.class})
+	static class TestConfiguration {
+	}
+
+	@Autowired
+	private PlayerDatabaseImporter importer;
+
+	@SpyBean
+	private PlayerBulkLoader bulkLoader;
+
+	@Autowired
+	private PlayerRepository playerRepository;
+
+	@Autowired
+	private PlayerVocabularyStatsRepository statsRepository;
+
+	private KgParserApplication application;
+
+	@BeforeEach
+	void createApplication() {
+		playerRepository.deleteAll(); // cascade deletes the stats
+
+		application = new KgParserApplication();
+		ReflectionTestUtils.setField(application, "playerDatabaseImporter", importer);
+	}
+
+	@AfterEach
+	void resetBaseUrl() {
+		UrlConstructor.resetApiBaseUrl();
+	}
+
+	@Test
+	@DisplayName("Import mode must save all players of the snapshot to the database, batch by batch")
+	void testImport(@TempDir File rootDir) {
+		download(rootDir);
+
+		application.run(rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", START_DATE, "--import=true", "--consumer-batch-size=7", "--parse-threads=2");
+
+		assertThat(playerRepository.count()).isEqualTo(MAX_PLAYER_ID); // the non-existing players are saved as well
+		assertThat(playerRepository.findByPlayerId(MAX_PLAYER_ID)).isPresent();
+		verify(bulkLoader, never()).load(any());
+	}
+
+	@Test
+	@DisplayName("Import mode with --bulk-load must insert the players by the bulk loader, with the same players and stats as the JPA import")
+	void testImportWithBulkLoad(@TempDir File rootDir) {
+		download(rootDir);
+		String[] args = {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", START_DATE, "--import=true", "--consumer-batch-size=7"};
+
+		application.run(args);
+		long jpaStatsCount = statsRepository.count();
+		verify(bulkLoader, never()).load(any());
+
+		playerRepository.deleteAll(); // cascade deletes the stats
+		application.run(ArrayUtils.add(args, "--bulk-load=true"));
+
+		verify(bulkLoader, atLeastOnce()).load(any());
+		assertThat(playerRepository.count()).isEqualTo(MAX_PLAYER_ID);
+		assertThat(statsRepository.count()).isEqualTo(jpaStatsCount).isPositive();
+	}
+
+	@Test
+	@DisplayName("Import with a quarantine must save all players except the broken one and write the broken one to the quarantine file")
+	void testImportWithQuarantine(@TempDir File rootDir) throws IOException {
+		download(rootDir);
+
+		String[] args = {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", START_DATE};
+		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+		config.setStartDate(START_DATE);
+		FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(BROKEN_PLAYER_ID)), "{", StandardCharsets.UTF_8);
+
+		File quarantineFile = new File(rootDir, "quarantine.txt");
+		application.run(ArrayUtils.addAll(args, "--import=true", "--quarantine=" + quarantineFile.getPath()));
+
+		assertThat(playerRepository.count()).isEqualTo(MAX_PLAYER_ID - 1);
+		assertThat(playerRepository.findByPlayerId(BROKEN_PLAYER_ID)).isEmpty();
+		assertThat(PlayerQuarantine.readPlayerIds(quarantineFile)).containsExactly(BROKEN_PLAYER_ID);
+	}
+
+	@Test
+	@DisplayName("Quarantined player must be downloaded again with --player-ids and then imported with --reimport")
+	void testQuarantineDownloadAgainReimport(@TempDir File rootDir) throws IOException {
+		String[] args = {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", START_DATE};
+		File quarantineFile = new File(rootDir, "quarantine.txt");
+
+		try (MockKgApiServer server = startServer()) {
+			download(rootDir, server);
+
+			PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+			config.setStartDate(START_DATE);
+			File brokenFile = new File(config.getPlayerSummaryFilePath(BROKEN_PLAYER_ID));
+			String summaryJson = FileUtils.readFileToString(brokenFile, StandardCharsets.UTF_8);
+			FileUtils.writeStringToFile(brokenFile, "{", StandardCharsets.UTF_8);
+
+			application.run(ArrayUtils.addAll(args, "--import=true", "--quarantine=" + quarantineFile.getPath()));
+			assertThat(playerRepository.findByPlayerId(BROKEN_PLAYER_ID)).isEmpty();
+
+			PlayerDataDownloader.main(new String[] {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", "--resume=" + START_DATE, "--player-ids=" + quarantineFile.getPath(), "--base-url=" + server.getBaseUrl()});
+			assertThat(brokenFile).usingCharset(StandardCharsets.UTF_8).hasContent(summaryJson);
+		}
+		finally {
+			UrlConstructor.resetApiBaseUrl();
+		}
+
+		application.run(ArrayUtils.addAll(args, "--reimport=" + quarantineFile.getPath(), "--quarantine=" + quarantineFile.getPath()));
+
+		assertThat(playerRepository.count()).isEqualTo(MAX_PLAYER_ID);
+		assertThat(playerRepository.findByPlayerId(BROKEN_PLAYER_ID)).isPresent();
+		assertThat(PlayerQuarantine.readPlayerIds(quarantineFile)).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Without the import mode, the snapshot must not be imported")
+	void testNoImportWithoutImportMode(@TempDir File rootDir) {
+		download(rootDir);
+
+		application.run(rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", START_DATE, "--dry-run=true");
+
+		assertThat(playerRepository.count()).isZero();
+	}
+
+	private static void download(final File rootDir) {
+		try (MockKgApiServer server = startServer()) {
+			download(rootDir, server);
+		}
+		finally {
+			UrlConstructor.resetApiBaseUrl();
+		}
+	}
+
+	private static void download(final File rootDir, final MockKgApiServer server) {
+		String[] args = {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2", "--base-url=" + server.getBaseUrl()};
+
+		PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+		config.setStartDate(START_DATE);
+
+		new PlayerImportPipeline(config, () -> (playerId, player) -> {}).run();
+	}
+
+	private static MockKgApiServer startServer() {
+		return MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(MAX_PLAYER_ID).nonExistingRate(0.2).hiddenProfileRate(0.1).blockedRate(0.1));
+	}
+}
@@ -0,0 +1,415 @@
+package ru.klavogonki.kgparser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DownloadJournal;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.NegativePlayerCache;
+import ru.klavogonki.kgparser.download.PlayerFetcher;
+import ru.klavogonki.kgparser.download.RateLimiter;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+import ru.klavogonki.kgparser.telemetry.CrawlTelemetry;
+import ru.klavogonki.kgparser.util.DateUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Long-running alternative to {@link PlayerDataDownloader#main}: instead of downloading all players as fast as possible,
+ * it keeps refreshing them at a steady rate, one cycle over {@code [minPlayerId; maxPlayerId]} per {@code --daemon-cycle}.
+ * <br>
+ * Each cycle is an ordinary snapshot in {@code <rootJsonDir>/<cycle start date>}, written by {@link PlayerFetcher} with the usual journal,
+ * so it can be parsed and imported as any other download. When a cycle is completed, its start date is written to {@link #LATEST_SNAPSHOT_FILE_NAME},
+ * which always points to the latest complete snapshot. The dead players of the latest snapshot are carried forward to the next one, see {@link NegativePlayerCache}.
+ * <br>
+ * The current cycle and the first player of the next batch are saved to {@link #STATE_FILE_NAME} after each batch,
+ * so a restarted daemon continues the interrupted cycle.
+ */
+public class CrawlerDaemon {
+    private static final Logger logger = LogManager.getLogger(CrawlerDaemon.class);
+
+    public static final String STATE_FILE_NAME = "daemon-state.properties";
+    public static final String LATEST_SNAPSHOT_FILE_NAME = "latest-snapshot.txt";
+
+    public static final Duration DEFAULT_CYCLE = Duration.ofDays(1);
+
+    private final PlayerDataDownloader.Config config;
+    private final File stateFile;
+    private final State state;
+
+    private volatile boolean stopped;
+
+    public CrawlerDaemon(final PlayerDataDownloader.Config config) {
+        if (config.getRefreshPlanFile() != null) {
+            throw new IllegalArgumentException(String.format("%s does not support %s%s", CrawlerDaemon.class.getSimpleName(), PlayerDataDownloader.Config.OPTION_PREFIX, PlayerDataDownloader.Config.REFRESH_PLAN_OPTION));
+        }
+
+        this.config = config;
+        this.stateFile = new File(config.rootDir, STATE_FILE_NAME);
+        this.state = State.load(stateFile);
+    }
+
+    /**
+     * @param maxCycles number of cycles to complete, {@code 0} to run until {@link #stop()}
+     */
+    public void run(final int maxCycles) {
+        config.applyBaseUrl();
+        HttpDownloader httpDownloader = new HttpDownloader(config.getMaxRequestsInFlight());
+
+        int cycles = 0;
+        while (!stopped && ((maxCycles == 0) || (cycles < maxCycles))) {
+            runCycle(httpDownloader);
+
+            if (!stopped) {
+                cycles++;
+            }
+        }
+
+        logger.info("Crawler daemon stopped after {} completed cycles.", cycles);
+    }
+
+    /**
+     * The current batch is completed before the daemon stops.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return start date of the latest complete snapshot in {@code rootDir}, or {@code null} if there is none yet
+     */
+    public static String readLatestSnapshot(final File rootDir) {
+        File file = new File(rootDir, LATEST_SNAPSHOT_FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return FileUtils.readFileToString(file, StandardCharsets.UTF_8).trim();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read %s", file.getPath()), e);
+        }
+    }
+
+    private void runCycle(final HttpDownloader httpDownloader) {
+        boolean resume = (state.cycleStartDate != null);
+        if (resume) {
+            logger.info("Resuming cycle {} from player {}.", state.cycleStartDate, state.nextPlayerId);
+        }
+        else {
+            startNewCycle(httpDownloader);
+        }
+
+        config.setStartDate(state.cycleStartDate);
+        config.maxPlayerId = state.maxPlayerId;
+        if (state.latestSnapshot != null) { // the first cycle uses --previous-snapshot, if it is set
+            config.previousSnapshotStartDate = state.latestSnapshot;
+        }
+
+        int totalPlayers = config.getTotalPlayers();
+        RateLimiter rateLimiter = new RateLimiter(totalPlayers / (double) config.getDaemonCycle().getSeconds());
+        logger.info(
+            "Cycle {}: players [{}; {}], one player every {} ms.",
+            state.cycleStartDate,
+            config.minPlayerId,
+            config.maxPlayerId,
+            TimeUnit.NANOSECONDS.toMillis(rateLimiter.getIntervalNanos())
+        );
+
+        DownloadJournal journal = DownloadJournal.open(new File(config.getJournalFilePath()), resume);
+        RawDataWriter writer = config.storageType.createWriter(config);
+        NegativePlayerCache negativeCache = PlayerDataDownloader.openNegativeCache(config);
+
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(config.threadsCount);
+        ExecutorService followUpExecutor = Executors.newFixedThreadPool(config.threadsCount); // each fetch waits for at most one follow-up request at a time
+
+        AtomicInteger completedPlayers = new AtomicInteger(state.nextPlayerId - config.minPlayerId);
+        CrawlTelemetry telemetry = new CrawlTelemetry(totalPlayers, completedPlayers::get);
+        telemetry.start(config.progressInterval);
+
+        PlayerFetcher fetcher = new PlayerFetcher(httpDownloader, writer, journal, followUpExecutor, config.skipBlocked, telemetry, config.streamResponses, negativeCache);
+
+        try {
+            while (!stopped && (state.nextPlayerId <= config.maxPlayerId)) {
+                int batchMaxPlayerId = (int) Math.min((long) state.nextPlayerId + config.batchSize - 1, config.maxPlayerId);
+
+                List<Integer> batchFailedPlayerIds = fetchBatch(fetcher, fetchExecutor, rateLimiter, state.nextPlayerId, batchMaxPlayerId);
+                completedPlayers.addAndGet(batchMaxPlayerId - state.nextPlayerId + 1);
+
+                state.failedPlayerIds.addAll(batchFailedPlayerIds);
+                state.nextPlayerId = batchMaxPlayerId + 1;
+                state.save(stateFile);
+            }
+
+            if (!stopped) {
+                List<Integer> stillFailedPlayerIds = PlayerDataDownloader.retryFailedPlayers(fetcher, new ArrayList<>(state.failedPlayerIds));
+                if (!stillFailedPlayerIds.isEmpty()) {
+                    logger.error("Cycle {}: failed to download data for {} players even after retry: {}", state.cycleStartDate, stillFailedPlayerIds.size(), stillFailedPlayerIds);
+                }
+            }
+        }
+        finally {
+            fetchExecutor.shutdown();
+            followUpExecutor.shutdown();
+
+            telemetry.stop();
+            telemetry.logProgress();
+            telemetry.writeSummary(new File(config.getTelemetryFilePath()));
+
+            close(writer, String.format("%s storage of %s", config.storageType.getName(), config.getSnapshotDirectory()));
+            close(journal, String.format("download journal %s", config.getJournalFilePath())); // after the writer, see PlayerDataDownloader.main
+            PlayerDataDownloader.closeNegativeCache(negativeCache);
+        }
+
+        if (!stopped) {
+            publishSnapshot();
+        }
+    }
+
+    private void startNewCycle(final HttpDownloader httpDownloader) {
+        String cycleStartDate = DateUtils.formatDateTime(LocalDateTime.now());
+        while (cycleStartDate.equals(state.latestSnapshot)) { // a short cycle must not overwrite the previous one
+            sleep(Duration.ofMillis(100));
+            cycleStartDate = DateUtils.formatDateTime(LocalDateTime.now());
+        }
+
+        PlayerDataDownloader.resolveMaxPlayerId(config, httpDownloader); // new players may have registered since the previous cycle
+
+        state.cycleStartDate = cycleStartDate;
+        state.nextPlayerId = config.minPlayerId;
+        state.maxPlayerId = config.maxPlayerId;
+        state.failedPlayerIds.clear();
+        state.save(stateFile);
+
+        logger.info("Starting cycle {}.", cycleStartDate);
+    }
+
+    private List<Integer> fetchBatch(
+        final PlayerFetcher fetcher,
+        final ExecutorService fetchExecutor,
+        final RateLimiter rateLimiter,
+        final int batchMinPlayerId,
+        final int batchMaxPlayerId
+    ) {
+        List<Future<Boolean>> results = new ArrayList<>(batchMaxPlayerId - batchMinPlayerId + 1);
+
+        for (int playerId = batchMinPlayerId; playerId <= batchMaxPlayerId; playerId++) {
+            try {
+                rateLimiter.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Crawler daemon has been interrupted", e);
+            }
+
+            int finalPlayerId = playerId;
+            results.add(fetchExecutor.submit(() -> fetcher.fetch(finalPlayerId)));
+        }
+
+        List<Integer> failedPlayerIds = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            int playerId = batchMinPlayerId + i;
+
+            try {
+                if (!results.get(i).get()) {
+                    failedPlayerIds.add(playerId);
+                }
+            }
+            catch (ExecutionException e) {
+                logger.error(String.format("Unexpected error on fetching player %d", playerId), e.getCause());
+                failedPlayerIds.add(playerId);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Crawler daemon has been interrupted", e);
+            }
+        }
+
+        return failedPlayerIds;
+    }
+
+    private void publishSnapshot() {
+        File latestSnapshotFile = new File(config.rootDir, LATEST_SNAPSHOT_FILE_NAME);
+        writeAtomically(latestSnapshotFile, state.cycleStartDate.getBytes(StandardCharsets.UTF_8));
+
+        logger.info("Cycle {} completed. Snapshot {} published to {}.", state.cycleStartDate, config.getSnapshotDirectory(), latestSnapshotFile.getPath());
+
+        state.latestSnapshot = state.cycleStartDate;
+        state.cycleStartDate = null;
+        state.failedPlayerIds.clear();
+        state.save(stateFile);
+    }
+
+    private static void close(final Closeable closeable, final String name) {
+        try {
+            closeable.close();
+        }
+        catch (IOException e) {
+            logger.error(String.format("Cannot close %s", name), e);
+        }
+    }
+
+    private static void sleep(final Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Crawler daemon has been interrupted", e);
+        }
+    }
+
+    /**
+     * Readers of the file never see a partially written content.
+     */
+    static void writeAtomically(final File file, final byte[] bytes) {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try {
+            FileUtils.forceMkdirParent(file);
+            FileUtils.writeByteArrayToFile(tempFile, bytes);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot write %s", file.getPath()), e);
+        }
+    }
+
+    /**
+     * Persistent cursor of the daemon.
+     */
+    public static class State {
+        private static final String CYCLE_START_DATE_KEY = "cycleStartDate";
+        private static final String NEXT_PLAYER_ID_KEY = "nextPlayerId";
+        private static final String MAX_PLAYER_ID_KEY = "maxPlayerId";
+        private static final String FAILED_PLAYER_IDS_KEY = "failedPlayerIds";
+        private static final String LATEST_SNAPSHOT_KEY = "latestSnapshot";
+
+        private static final String IDS_SEPARATOR = ",";
+
+        String cycleStartDate; // null if no cycle is in progress
+        int nextPlayerId;
+        int maxPlayerId;
+        final TreeSet<Integer> failedPlayerIds = new TreeSet<>(); // players of the current cycle to retry at its end
+        String latestSnapshot; // start date of the latest completed cycle
+
+        public String getCycleStartDate() {
+            return cycleStartDate;
+        }
+
+        public int getNextPlayerId() {
+            return nextPlayerId;
+        }
+
+        public String getLatestSnapshot() {
+            return latestSnapshot;
+        }
+
+        static State load(final File file) {
+            State state = new State();
+            if (!file.exists()) {
+                return state;
+            }
+
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                properties.load(in);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot read crawler daemon state from %s", file.getPath()), e);
+            }
+
+            state.cycleStartDate = properties.getProperty(CYCLE_START_DATE_KEY);
+            state.nextPlayerId = Integer.parseInt(properties.getProperty(NEXT_PLAYER_ID_KEY, "0"));
+            state.maxPlayerId = Integer.parseInt(properties.getProperty(MAX_PLAYER_ID_KEY, "0"));
+            state.latestSnapshot = properties.getProperty(LATEST_SNAPSHOT_KEY);
+
+            String failedPlayerIds = properties.getProperty(FAILED_PLAYER_IDS_KEY, "");
+            Arrays
+                .stream(failedPlayerIds.split(IDS_SEPARATOR))
+                .filter(id -> !id.isEmpty())
+                .map(Integer::valueOf)
+                .forEach(state.failedPlayerIds::add);
+
+            logger.info("Crawler daemon state loaded from {}: cycle {}, next player {}, latest snapshot {}.", file.getPath(), state.cycleStartDate, state.nextPlayerId, state.latestSnapshot);
+            return state;
+        }
+
+        void save(final File file) {
+            Properties properties = new Properties();
+            if (cycleStartDate != null) {
+                properties.setProperty(CYCLE_START_DATE_KEY, cycleStartDate);
+            }
+            if (latestSnapshot != null) {
+                properties.setProperty(LATEST_SNAPSHOT_KEY, latestSnapshot);
+            }
+            properties.setProperty(NEXT_PLAYER_ID_KEY, String.valueOf(nextPlayerId));
+            properties.setProperty(MAX_PLAYER_ID_KEY, String.valueOf(maxPlayerId));
+            properties.setProperty(FAILED_PLAYER_IDS_KEY, failedPlayerIds.stream().map(String::valueOf).collect(Collectors.joining(IDS_SEPARATOR)));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                properties.store(bytes, "crawler daemon state");
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot write crawler daemon state to %s", file.getPath()), e);
+            }
+
+            writeAtomically(file, bytes.toByteArray());
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < PlayerDataDownloader.Config.REQUIRED_ARGUMENTS_COUNT) {
+            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId>|%s <threadsCount> [--%s=<seconds>] [%s options] %n", CrawlerDaemon.class.getSimpleName(), PlayerDataDownloader.Config.MAX_PLAYER_ID_AUTO, PlayerDataDownloader.Config.DAEMON_CYCLE_OPTION, PlayerDataDownloader.class.getSimpleName());
+            return;
+        }
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+        config.log();
+
+        CrawlerDaemon daemon = new CrawlerDaemon(config);
+
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Stopping the crawler daemon after the current batch...");
+            daemon.stop();
+
+            try {
+                mainThread.join(); // let the daemon save its state
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "crawler-daemon-shutdown"));
+
+        daemon.run(0);
+    }
+}
@@ -1,29 +1,43 @@
 package ru.klavogonki.kgparser;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import ru.klavogonki.kgparser.download.DataDownloader;
-import ru.klavogonki.kgparser.download.IndexDataDownloader;
-import ru.klavogonki.kgparser.download.StatsOverviewDownloader;
-import ru.klavogonki.kgparser.download.SummaryDownloader;
+import ru.klavogonki.kgparser.distributed.CrawlCoordinator;
+import ru.klavogonki.kgparser.distributed.CrawlWorker;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.download.DownloadJournal;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.MaxPlayerIdFinder;
+import ru.klavogonki.kgparser.download.NegativePlayerCache;
+import ru.klavogonki.kgparser.download.PlayerFetcher;
+import ru.klavogonki.kgparser.download.PlayerIdBatchQueue;
+import ru.klavogonki.kgparser.download.RefreshPlan;
+import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.storage.RawDataReader;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+import ru.klavogonki.kgparser.storage.SegmentArchiveReader;
+import ru.klavogonki.kgparser.storage.StorageType;
+import ru.klavogonki.kgparser.telemetry.CrawlTelemetry;
 import ru.klavogonki.kgparser.util.DateUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 public class PlayerDataDownloader {
     private static final Logger logger = LogManager.getLogger(PlayerDataDownloader.class);
@@ -31,246 +45,772 @@ public class PlayerDataDownloader {
     public static class Config {
         public static final int REQUIRED_ARGUMENTS_COUNT = 4;
 
+        public static final String OPTION_PREFIX = "--";
+        public static final String OPTION_VALUE_SEPARATOR = "=";
+
+        public static final String MAX_REQUESTS_IN_FLIGHT_OPTION = "max-requests-in-flight";
+        public static final String BATCH_SIZE_OPTION = "batch-size";
+        public static final String RESUME_OPTION = "resume";
+        public static final String STORAGE_OPTION = "storage";
+        public static final String COMPRESS_OPTION = "compress";
+        public static final String SKIP_BLOCKED_OPTION = "skip-blocked";
+        public static final String MAX_PLAYER_ID_GAP_OPTION = "max-player-id-gap";
+        public static final String PROGRESS_INTERVAL_OPTION = "progress-interval";
+        public static final String BASE_URL_OPTION = "base-url";
+        public static final String STREAM_RESPONSES_OPTION = "stream-responses";
+        public static final String PREVIOUS_SNAPSHOT_OPTION = "previous-snapshot";
+        public static final String DEAD_RESAMPLE_RATE_OPTION = "dead-resample-rate";
+        public static final String REFRESH_PLAN_OPTION = "refresh-plan";
+        public static final String DAEMON_CYCLE_OPTION = "daemon-cycle";
+        public static final String PLAYER_IDS_OPTION = "player-ids";
+
+        // distributed crawl options, see CrawlCoordinator
+        public static final String COORDINATOR_PORT_OPTION = "coordinator-port";
+        public static final String LEASE_TIMEOUT_OPTION = "lease-timeout";
+
+        public static final String MAX_PLAYER_ID_AUTO = "auto"; // <maxPlayerId> argument value to discover the max player id
+
+        public static final String JOURNAL_FILE_NAME = "download-journal.log";
+        public static final String TELEMETRY_FILE_NAME = "telemetry.json";
+
         int threadsCount;
+        int batchSize = PlayerIdBatchQueue.DEFAULT_BATCH_SIZE;
+        int maxRequestsInFlight; // 0 means "same as threadsCount"
         String rootDir;
         int minPlayerId;
         int maxPlayerId;
+        boolean discoverMaxPlayerId;
+        int maxPlayerIdGap = MaxPlayerIdFinder.DEFAULT_GAP_TOLERANCE;
         private String startDateString;
         LocalDateTime startDate;
+        String resumeStartDate; // start date of the interrupted download to continue, null for a new download
+        StorageType storageType = StorageType.FILES;
+        boolean compress; // gzip the raw json, both for files and archive storage
+        boolean skipBlocked; // do not request /get-index-data and /get-stats-overview for blocked players
+        Duration progressInterval = CrawlTelemetry.DEFAULT_PROGRESS_INTERVAL;
+        boolean streamResponses; // write the responses to the storage without loading them to memory, see HttpDownloader.loadUrlToChannel
+        String previousSnapshotStartDate; // start date of the previous download for the NegativePlayerCache, null to request all players
+        double deadResampleRate = NegativePlayerCache.DEFAULT_RESAMPLE_RATE;
+        String refreshPlanFile; // RefreshPlan of the players to request, null to request all players. Requires previousSnapshotStartDate
+        String playerIdsFile; // PlayerQuarantine file of the players to download again, null to download all players. Requires resumeStartDate
+        Duration daemonCycle = CrawlerDaemon.DEFAULT_CYCLE; // CrawlerDaemon refreshes all players once per cycle
+        int coordinatorPort = CrawlCoordinator.DEFAULT_PORT;
+        Duration leaseTimeout = CrawlCoordinator.DEFAULT_LEASE_TIMEOUT; // a lease without a heartbeat for this time is given to another worker
+        String baseUrl; // base url of the API, null for klavogonki.ru. E.g. a MockKgApiServer url
 
         public void setStartDate(String startDate) {
             this.startDateString = startDate;
             this.startDate = DateUtils.parseLocalDateTime(startDateString);
         }
 
+        public int getThreadsCount() {
+            return threadsCount;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public int getMinPlayerId() {
+            return minPlayerId;
+        }
+
+        public int getMaxPlayerId() {
+            return maxPlayerId;
+        }
+
+        public boolean isDiscoverMaxPlayerId() {
+            return discoverMaxPlayerId;
+        }
+
+        public LocalDateTime getStartDate() {
+            return startDate;
+        }
+
+        public boolean isSkipBlocked() {
+            return skipBlocked;
+        }
+
+        public Duration getProgressInterval() {
+            return progressInterval;
+        }
+
+        public boolean isStreamResponses() {
+            return streamResponses;
+        }
+
+        public String getPreviousSnapshotStartDate() {
+            return previousSnapshotStartDate;
+        }
+
+        public double getDeadResampleRate() {
+            return deadResampleRate;
+        }
+
+        public String getRefreshPlanFile() {
+            return refreshPlanFile;
+        }
+
+        public String getPlayerIdsFile() {
+            return playerIdsFile;
+        }
+
+        public Duration getDaemonCycle() {
+            return daemonCycle;
+        }
+
+        public int getCoordinatorPort() {
+            return coordinatorPort;
+        }
+
+        public Duration getLeaseTimeout() {
+            return leaseTimeout;
+        }
+
+        /**
+         * @return config to read the snapshot of {@code --previous-snapshot}, or {@code null} if it is not set
+         */
+        public Config getPreviousSnapshotConfig() {
+            if (previousSnapshotStartDate == null) {
+                return null;
+            }
+
+            Config previous = new Config();
+            previous.rootDir = rootDir;
+            previous.minPlayerId = minPlayerId;
+            previous.maxPlayerId = maxPlayerId;
+            previous.setStartDate(previousSnapshotStartDate);
+            return previous;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Points {@link UrlConstructor} API calls to {@code --base-url}, if it is set.
+         */
+        public void applyBaseUrl() {
+            if (baseUrl != null) {
+                UrlConstructor.setApiBaseUrl(baseUrl);
+            }
+        }
+
+        public int getMaxRequestsInFlight() {
+            return (maxRequestsInFlight > 0) ? maxRequestsInFlight : threadsCount;
+        }
+
         public int getTotalPlayers() {
             return maxPlayerId - minPlayerId + 1;
         }
 
+        public boolean isResume() {
+            return resumeStartDate != null;
+        }
+
+        public StorageType getStorageType() {
+            return storageType;
+        }
+
+        public boolean isCompress() {
+            return compress;
+        }
+
         public String getPlayerSummaryFilePath(final int playerId) {
-            return getDataDirectory(playerId, "summary");
+            return getDataDirectory(playerId, DataEndpoint.SUMMARY.getName());
         }
 
         public String getPlayerIndexDataFilePath(final int playerId) {
-            return getDataDirectory(playerId, "index-data");
+            return getDataDirectory(playerId, DataEndpoint.INDEX_DATA.getName());
         }
 
         public String getStatsOverviewFilePath(final int playerId) {
-            return getDataDirectory(playerId, "stats-overview");
+            return getDataDirectory(playerId, DataEndpoint.STATS_OVERVIEW.getName());
         }
 
         public String getDataDirectory(final int playerId, final String subdir) {
-            return rootDir + File.separator + startDateString + File.separator + subdir + File.separator + playerId + ".json";
+            return getSnapshotDirectory() + File.separator + subdir + File.separator + playerId + ".json";
+        }
+
+        public String getSnapshotDirectory() {
+            return rootDir + File.separator + startDateString;
+        }
+
+        public String getJournalFilePath() {
+            return getSnapshotDirectory() + File.separator + JOURNAL_FILE_NAME;
+        }
+
+        public String getTelemetryFilePath() {
+            return getSnapshotDirectory() + File.separator + TELEMETRY_FILE_NAME;
         }
 
         public void log() {
             logger.debug("============================================");
             logger.debug("Config:");
             logger.debug("  threadsCount: {}", threadsCount);
+            logger.debug("  maxRequestsInFlight: {}", getMaxRequestsInFlight());
+            logger.debug("  batchSize: {}", batchSize);
             logger.debug("  rootDir: {}", rootDir);
             logger.debug("  minPlayerId: {}", minPlayerId);
             logger.debug("  maxPlayerId: {}", maxPlayerId);
+            logger.debug("  discoverMaxPlayerId: {}", discoverMaxPlayerId);
+            logger.debug("  maxPlayerIdGap: {}", maxPlayerIdGap);
             logger.debug("  startDateString: {}", startDateString);
             logger.debug("  startDate: {}", startDate);
+            logger.debug("  resumeStartDate: {}", resumeStartDate);
+            logger.debug("  storageType: {}", storageType.getName());
+            logger.debug("  compress: {}", compress);
+            logger.debug("  skipBlocked: {}", skipBlocked);
+            logger.debug("  progressInterval: {}", progressInterval);
+            logger.debug("  streamResponses: {}", streamResponses);
+            logger.debug("  previousSnapshotStartDate: {}", previousSnapshotStartDate);
+            logger.debug("  deadResampleRate: {}", deadResampleRate);
+            logger.debug("  refreshPlanFile: {}", refreshPlanFile);
+            logger.debug("  playerIdsFile: {}", playerIdsFile);
+            logger.debug("  daemonCycle: {}", daemonCycle);
+            logger.debug("  coordinatorPort: {}", coordinatorPort);
+            logger.debug("  leaseTimeout: {}", leaseTimeout);
+            logger.debug("  baseUrl: {}", baseUrl);
             logger.debug("============================================");
         }
 
         public static Config parseFromArguments(final String[] args) {
+            return parseFromArguments(args, Set.of());
+        }
+
+        /**
+         * @param otherOptions names of the options parsed by another options type from the same arguments, e.g. {@link SnapshotParseOptions#NAMES}.
+         *                     They are skipped, any other unknown option fails the parse
+         */
+        public static Config parseFromArguments(final String[] args, final Set<String> otherOptions) {
             int index = 0;
 
             Config config = new Config();
             config.rootDir = args[index++];
             config.minPlayerId = Integer.parseInt(args[index++]);
-            config.maxPlayerId = Integer.parseInt(args[index++]);
+
+            String maxPlayerId = args[index++];
+            if (MAX_PLAYER_ID_AUTO.equals(maxPlayerId)) { // will be set by resolveMaxPlayerId
+                config.discoverMaxPlayerId = true;
+            }
+            else {
+                config.maxPlayerId = Integer.parseInt(maxPlayerId);
+            }
+
             config.threadsCount = Integer.parseInt(args[index++]);
+            config.parseOptions(args, index, otherOptions);
+
+            if ((config.refreshPlanFile != null) && (config.previousSnapshotStartDate == null)) { // the players out of the plan are carried forward from the previous snapshot
+                throw new IllegalArgumentException(String.format("%s%s requires %s%s", OPTION_PREFIX, REFRESH_PLAN_OPTION, OPTION_PREFIX, PREVIOUS_SNAPSHOT_OPTION));
+            }
+
+            if ((config.playerIdsFile != null) && (config.resumeStartDate == null)) { // the players are downloaded again into an existing snapshot
+                throw new IllegalArgumentException(String.format("%s%s requires %s%s", OPTION_PREFIX, PLAYER_IDS_OPTION, OPTION_PREFIX, RESUME_OPTION));
+            }
+
+            return config;
+        }
+
+        /**
+         * Config without the player ids, for the processes that get them elsewhere, e.g. {@link CrawlWorker}.
+         * @param args options in form {@code --name=value}, starting from {@code fromIndex}
+         */
+        public static Config parseOptions(final int threadsCount, final String[] args, final int fromIndex) {
+            Config config = new Config();
+            config.threadsCount = threadsCount;
+            config.parseOptions(args, fromIndex, Set.of());
             return config;
         }
+
+        private void parseOptions(final String[] args, final int fromIndex, final Set<String> otherOptions) {
+            forEachOption(Arrays.copyOfRange(args, fromIndex, args.length), (name, value) -> {
+                if (!otherOptions.contains(name)) {
+                    parseOption(name, value);
+                }
+            });
+        }
+
+        /**
+         * Optional arguments in form {@code --name=value}, can follow the required arguments in any order.
+         * The arguments that are not options are skipped, e.g. the start date passed by {@link PlayerJsonParser} and {@code KgParserApplication}.
+         */
+        public static void forEachOption(final String[] args, final BiConsumer<String, String> optionHandler) {
+            for (String arg : args) {
+                if (!arg.startsWith(OPTION_PREFIX)) {
+                    continue;
+                }
+
+                String option = arg.substring(OPTION_PREFIX.length());
+                String name = StringUtils.substringBefore(option, OPTION_VALUE_SEPARATOR);
+                String value = StringUtils.substringAfter(option, OPTION_VALUE_SEPARATOR);
+                optionHandler.accept(name, value);
+            }
+        }
+
+        void parseOption(final String name, final String value) {
+            switch (name) {
+                case MAX_REQUESTS_IN_FLIGHT_OPTION:
+                    maxRequestsInFlight = Integer.parseInt(value);
+                    break;
+
+                case BATCH_SIZE_OPTION:
+                    batchSize = Integer.parseInt(value);
+                    break;
+
+                case RESUME_OPTION:
+                    DateUtils.parseLocalDateTime(value); // fail fast on incorrect date format
+                    resumeStartDate = value;
+                    break;
+
+                case STORAGE_OPTION:
+                    storageType = StorageType.getByName(value);
+                    break;
+
+                case COMPRESS_OPTION:
+                    compress = Boolean.parseBoolean(value);
+                    break;
+
+                case SKIP_BLOCKED_OPTION:
+                    skipBlocked = Boolean.parseBoolean(value);
+                    break;
+
+                case MAX_PLAYER_ID_GAP_OPTION:
+                    maxPlayerIdGap = parsePositiveInt(name, value);
+                    break;
+
+                case PROGRESS_INTERVAL_OPTION:
+                    progressInterval = Duration.ofSeconds(parsePositiveInt(name, value));
+                    break;
+
+                case STREAM_RESPONSES_OPTION:
+                    streamResponses = Boolean.parseBoolean(value);
+                    break;
+
+                case PREVIOUS_SNAPSHOT_OPTION:
+                    DateUtils.parseLocalDateTime(value); // fail fast on incorrect date format
+                    previousSnapshotStartDate = value;
+                    break;
+
+                case DEAD_RESAMPLE_RATE_OPTION:
+                    deadResampleRate = Double.parseDouble(value);
+                    if ((deadResampleRate < 0) || (deadResampleRate > 1)) {
+                        throw new IllegalArgumentException(String.format("Incorrect %s%s value: %s, value must be in [0; 1]", OPTION_PREFIX, name, value));
+                    }
+                    break;
+
+                case REFRESH_PLAN_OPTION:
+                    if (StringUtils.isBlank(value)) {
+                        throw new IllegalArgumentException(String.format("%s%s value must not be blank", OPTION_PREFIX, name));
+                    }
+
+                    refreshPlanFile = value;
+                    break;
+
+                case PLAYER_IDS_OPTION:
+                    if (StringUtils.isBlank(value)) {
+                        throw new IllegalArgumentException(String.format("%s%s value must not be blank", OPTION_PREFIX, name));
+                    }
+
+                    playerIdsFile = value;
+                    break;
+
+                case DAEMON_CYCLE_OPTION:
+                    daemonCycle = Duration.ofSeconds(parsePositiveInt(name, value));
+                    break;
+
+                case COORDINATOR_PORT_OPTION:
+                    coordinatorPort = parsePositiveInt(name, value);
+                    break;
+
+                case LEASE_TIMEOUT_OPTION:
+                    leaseTimeout = Duration.ofSeconds(parsePositiveInt(name, value));
+                    break;
+
+                case BASE_URL_OPTION:
+                    if (StringUtils.isBlank(value)) {
+                        throw new IllegalArgumentException(String.format("%s%s value must not be blank", OPTION_PREFIX, name));
+                    }
+
+                    baseUrl = value;
+                    break;
+
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown option: %s%s", OPTION_PREFIX, name));
+            }
+        }
+
+        /**
+         * Also used by the option types parsed from the same arguments, e.g. {@link SnapshotParseOptions}.
+         */
+        public static int parsePositiveInt(final String name, final String value) {
+            int result = Integer.parseInt(value);
+            if (result < 1) {
+                throw new IllegalArgumentException(String.format("Incorrect %s%s value: %d, value must be >= 1", OPTION_PREFIX, name, result));
+            }
+
+            return result;
+        }
     }
 
     public static void main(String[] args) {
         // todo: pass a path to a json file with config instead
 
-        if (args.length != Config.REQUIRED_ARGUMENTS_COUNT) {
+        if (args.length < Config.REQUIRED_ARGUMENTS_COUNT) {
             // todo: use logger instead of System.out??
-            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId> <threadsCount> %n", PlayerDataDownloader.class.getSimpleName());
+            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId>|%s <threadsCount> [--%s=<n>] [--%s=<n>] [--%s=<yyyy-MM-dd HH-mm-ss>] [--%s=files|archive] [--%s=true|false] [--%s=true|false] [--%s=<n>] [--%s=<seconds>] [--%s=true|false] [--%s=<yyyy-MM-dd HH-mm-ss>] [--%s=<0..1>] [--%s=<file>] [--%s=<file>] [--%s=<seconds>] [--%s=<port>] [--%s=<seconds>] [--%s=<url>] %n", PlayerDataDownloader.class.getSimpleName(), Config.MAX_PLAYER_ID_AUTO, Config.MAX_REQUESTS_IN_FLIGHT_OPTION, Config.BATCH_SIZE_OPTION, Config.RESUME_OPTION, Config.STORAGE_OPTION, Config.COMPRESS_OPTION, Config.SKIP_BLOCKED_OPTION, Config.MAX_PLAYER_ID_GAP_OPTION, Config.PROGRESS_INTERVAL_OPTION, Config.STREAM_RESPONSES_OPTION, Config.PREVIOUS_SNAPSHOT_OPTION, Config.DEAD_RESAMPLE_RATE_OPTION, Config.REFRESH_PLAN_OPTION, Config.PLAYER_IDS_OPTION, Config.DAEMON_CYCLE_OPTION, Config.COORDINATOR_PORT_OPTION, Config.LEASE_TIMEOUT_OPTION, Config.BASE_URL_OPTION);
             return;
         }
 
         Config config = Config.parseFromArguments(args);
+        config.applyBaseUrl();
 
         LocalDateTime startDate = LocalDateTime.now();
         logger.info("Download start date: {}", startDate);
 
-        config.setStartDate(DateUtils.formatDateTime(startDate));
+        if (config.isResume()) { // continue writing to the directory of the interrupted download
+            logger.info("Resuming the download started at {}", config.resumeStartDate);
+            config.setStartDate(config.resumeStartDate);
+
+            if ((config.storageType != StorageType.ARCHIVE) && SegmentArchiveReader.exists(StorageType.getArchiveDirectory(config))) {
+                logger.warn("The download to resume has been written to a segment archive. Using {} storage.", StorageType.ARCHIVE.getName());
+                config.storageType = StorageType.ARCHIVE;
+            }
+        }
+        else {
+            config.setStartDate(DateUtils.formatDateTime(startDate));
+        }
+
+        // one client for all threads, so that the connections are reused by all of them
+        HttpDownloader httpDownloader = new HttpDownloader(config.getMaxRequestsInFlight());
+
+        if (config.playerIdsFile != null) {
+            config.log();
+            downloadPlayersAgain(config, httpDownloader);
+            return;
+        }
+
+        resolveMaxPlayerId(config, httpDownloader);
         config.log();
 
-        // parallel loading
-        List<ImmutablePair<Integer, Integer>> threadChunks = split(config);
-        int threadsCount = threadChunks.size(); // might be config.threadsCount + 1 in case of threadsCount % totalPlayersCount != 0
+        DownloadJournal journal = DownloadJournal.open(new File(config.getJournalFilePath()), config.isResume());
+        RawDataWriter writer = config.storageType.createWriter(config);
+        NegativePlayerCache negativeCache = openNegativeCache(config);
+
+        // parallel loading: all threads take small batches of player ids from the shared queue until the queue is empty
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(config.minPlayerId, config.maxPlayerId, config.batchSize);
+        int threadsCount = Math.min(config.threadsCount, queue.getTotalBatches()); // no need for more threads than batches
 
         ExecutorService executorService = Executors.newFixedThreadPool(threadsCount);
+        ExecutorService followUpExecutorService = Executors.newFixedThreadPool(threadsCount); // each worker waits for at most one follow-up request at a time
 
-        // fill callables for each chunk, each chunk performs all operations for players range for chunk
-        List<Callable<String>> callableTasks = new ArrayList<>(threadsCount);
+        CrawlTelemetry telemetry = new CrawlTelemetry(queue.getTotalPlayers(), queue::getCompletedPlayers);
+        telemetry.start(config.progressInterval);
 
-        for (ImmutablePair<Integer, Integer> chunk : threadChunks) {
-            Integer minPlayerId = chunk.getLeft();
-            Integer maxPlayerId = chunk.getRight();
+        List<Integer> failedPlayerIds;
 
-            Callable<String> chunkCallable = () -> {
-                try {
-                    return callableTask(config, minPlayerId, maxPlayerId);
-                }
-                catch (Exception e) {
-                    logger.error(String.format("Exception on handling players [%d; %d]", minPlayerId, maxPlayerId), e);
-                    throw e;
-                }
-            };
+        try {
+            PlayerFetcher fetcher = new PlayerFetcher(httpDownloader, writer, journal, followUpExecutorService, config.skipBlocked, telemetry, config.streamResponses, negativeCache);
 
-            callableTasks.add(chunkCallable);
-        }
+            List<Callable<String>> callableTasks = new ArrayList<>(threadsCount);
 
-        try {
-            executorService.invokeAll(callableTasks); // we don't use the returned futures
-        }
-        catch (InterruptedException e) {
-            logger.debug("============================================");
-            logger.error("executorService.invokeAll was interrupted", e);
-            throw new RuntimeException(e);
-        }
+            for (int i = 0; i < threadsCount; i++) {
+                int workerNumber = i + 1;
+
+                Callable<String> workerCallable = () -> {
+                    try {
+                        return workerTask(fetcher, queue, workerNumber);
+                    }
+                    catch (Exception e) {
+                        logger.error(String.format("Exception in download worker %d", workerNumber), e);
+                        throw e;
+                    }
+                };
+
+                callableTasks.add(workerCallable);
+            }
+
+            try {
+                executorService.invokeAll(callableTasks); // we don't use the returned futures
+            }
+            catch (InterruptedException e) {
+                logger.debug("============================================");
+                logger.error("executorService.invokeAll was interrupted", e);
+                throw new RuntimeException(e);
+            }
 
-        executorService.shutdown();
+            executorService.shutdown();
 
-        // wait until all threads finish their execution
-        try {
-            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.HOURS); // wait more or less infinitely
-            logger.debug("executorService.awaitTermination executed.");
+            // wait until all threads finish their execution
+            try {
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.HOURS); // wait more or less infinitely
+                logger.debug("executorService.awaitTermination executed.");
+            }
+            catch (InterruptedException e) {
+                logger.error("executorService.awaitTermination was terminated. Shutting down NOW.", e);
+                executorService.shutdownNow();
+                throw new RuntimeException(e);
+            }
+
+            // one more attempt for the players that failed, e.g. on a temporary network problem
+            failedPlayerIds = retryFailedPlayers(fetcher, queue.getFailedPlayerIds());
         }
-        catch (InterruptedException e) {
-            logger.error("executorService.awaitTermination was terminated. Shutting down NOW.", e);
-            executorService.shutdownNow();
-            throw new RuntimeException(e);
+        finally {
+            // also on an interrupted download: the non-daemon threads must not keep the JVM running, the storage index and the journal must be written
+            executorService.shutdown();
+            followUpExecutorService.shutdown();
+
+            telemetry.stop();
+            telemetry.logProgress();
+            telemetry.writeSummary(new File(config.getTelemetryFilePath()));
+
+            try {
+                writer.close(); // before the journal, so that all records marked as completed in the journal are persisted
+            }
+            catch (IOException e) {
+                logger.error(String.format("Cannot close %s storage of %s", config.storageType.getName(), config.getSnapshotDirectory()), e);
+            }
+
+            try {
+                journal.close();
+            }
+            catch (IOException e) {
+                logger.error(String.format("Cannot close download journal %s", config.getJournalFilePath()), e);
+            }
+
+            closeNegativeCache(negativeCache);
         }
 
         // log the results summary
         LocalDateTime endDate = LocalDateTime.now();
 
         logger.info("Threads used: {}", threadsCount);
+        logger.info("Final concurrency limit: {} (max {})", httpDownloader.getConcurrencyController().getLimit(), httpDownloader.getMaxRequestsInFlight());
         logger.info("Download start date: {}", startDate);
         logger.info("Download end date: {}", endDate);
 
         logger.info("Downloading data for players [{}; {}] (total {} players) took:", config.minPlayerId, config.maxPlayerId, config.getTotalPlayers());
         logDateTimeDiff(startDate, endDate);
+
+        logger.info("Completed batches: {} / {}", queue.getCompletedBatches(), queue.getTotalBatches());
+
+        if (failedPlayerIds.isEmpty()) {
+            logger.info("All players have been downloaded successfully.");
+        }
+        else {
+            logger.error("Failed to download data for {} players even after retry: {}", failedPlayerIds.size(), failedPlayerIds);
+            logger.error("Execute the download with --{}={} to retry them.", Config.RESUME_OPTION, DateUtils.formatDateTime(config.startDate));
+        }
     }
 
-    public static String callableTask(final Config config, final Integer minPlayerId, final Integer maxPlayerId) throws IOException {
-        String threadName = String.format("players-from-%d-to-%d", minPlayerId, maxPlayerId);
-        Thread.currentThread().setName(threadName);
+    /**
+     * If {@code <maxPlayerId>} is {@link Config#MAX_PLAYER_ID_AUTO}, finds the max existing player id by {@code /get-summary} requests.
+     */
+    public static void resolveMaxPlayerId(final Config config, final HttpDownloader httpDownloader) {
+        if (!config.discoverMaxPlayerId) {
+            return;
+        }
 
-        LocalDateTime chunkStartDate = LocalDateTime.now();
-        logger.info("Chunk download start date for players [{}; {}]: {}", minPlayerId, maxPlayerId, chunkStartDate);
+        logger.info("Discovering the max player id starting from player {}...", config.minPlayerId);
 
-        // for great thread-safety, create the downloader objects in each of the threads
-        SummaryDownloader summaryDownloader = new SummaryDownloader();
-        IndexDataDownloader indexDataDownloader = new IndexDataDownloader();
-        StatsOverviewDownloader statsOverviewDownloader = new StatsOverviewDownloader();
+        try {
+            config.maxPlayerId = MaxPlayerIdFinder
+                .forHttp(httpDownloader, config.maxPlayerIdGap)
+                .find(config.minPlayerId);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Cannot discover the max player id", e);
+        }
 
-        for (int playerId = minPlayerId; playerId <= maxPlayerId; playerId++) {
-            savePlayerDataToJsonFile(summaryDownloader, config, playerId);
-            savePlayerDataToJsonFile(indexDataDownloader, config, playerId);
-            savePlayerDataToJsonFile(statsOverviewDownloader, config, playerId);
+        logger.info("Max player id discovered: {}. Total players to download: {}.", config.maxPlayerId, config.getTotalPlayers());
+    }
+
+    /**
+     * @return dead players of {@code --previous-snapshot} and the players out of {@code --refresh-plan}, or {@code null} if there is no previous snapshot.
+     * The dead player ids are built on the first use of the previous snapshot and then read from its {@link NegativePlayerCache#FILE_NAME}.
+     */
+    public static NegativePlayerCache openNegativeCache(final Config config) {
+        Config previousConfig = config.getPreviousSnapshotConfig();
+        if (previousConfig == null) {
+            return null;
         }
 
-        LocalDateTime chunkEndDate = LocalDateTime.now();
-        logger.info("Chunk download start date for players [{}; {}]: {}", minPlayerId, maxPlayerId, chunkStartDate);
-        logger.info("Chunk download end date for players [{}; {}]: {}", minPlayerId, maxPlayerId, chunkEndDate);
+        RawDataReader previousSnapshot = StorageType.openReader(previousConfig);
+        File file = new File(previousConfig.getSnapshotDirectory(), NegativePlayerCache.FILE_NAME);
+
+        NegativePlayerCache.DeadPlayerIds deadPlayerIds = null;
+        if (file.exists()) {
+            deadPlayerIds = NegativePlayerCache.DeadPlayerIds.load(file);
+
+            if (!deadPlayerIds.covers(config.minPlayerId, config.maxPlayerId)) {
+                logger.info("Dead player ids {} do not cover players [{}; {}]. Building them again.", file.getPath(), config.minPlayerId, config.maxPlayerId);
+                deadPlayerIds = null;
+            }
+        }
+
+        if (deadPlayerIds == null) {
+            logger.info("Building dead player ids from the previous snapshot {}...", previousConfig.getSnapshotDirectory());
+            deadPlayerIds = NegativePlayerCache.DeadPlayerIds.build(previousSnapshot, config.minPlayerId, config.maxPlayerId);
+            deadPlayerIds.save(file);
+        }
 
-        logger.info("Downloading data for {} players took:", maxPlayerId - minPlayerId + 1);
-        logDateTimeDiff(chunkStartDate, chunkEndDate);
+        logger.info(
+            "Previous snapshot {}: {} dead players will be carried forward. Resample rate: {}.",
+            previousConfig.getSnapshotDirectory(),
+            deadPlayerIds.size(),
+            config.deadResampleRate
+        );
+
+        RefreshPlan refreshPlan = null;
+        if (config.refreshPlanFile != null) {
+            refreshPlan = RefreshPlan.read(new File(config.refreshPlanFile));
+
+            logger.info(
+                "Refresh plan {}: {} of players [{}; {}] will be requested, the other live players will be carried forward.",
+                config.refreshPlanFile,
+                refreshPlan.getScheduledCount(),
+                refreshPlan.getMinPlayerId(),
+                refreshPlan.getMaxPlayerId()
+            );
+        }
 
-        return String.format("Successfully downloaded player info for players from %d to %d", minPlayerId, maxPlayerId);
+        return new NegativePlayerCache(deadPlayerIds, previousSnapshot, config.deadResampleRate, refreshPlan);
     }
 
-    public static void logDateTimeDiff(final LocalDateTime startDate, final LocalDateTime endDate) {
-        logger.info("Hours: {}", ChronoUnit.HOURS.between(startDate, endDate));
-        logger.info("Minutes: {}", ChronoUnit.MINUTES.between(startDate, endDate));
-        logger.info("Seconds: {}", ChronoUnit.SECONDS.between(startDate, endDate));
+    public static void closeNegativeCache(final NegativePlayerCache negativeCache) {
+        if (negativeCache == null) {
+            return;
+        }
+
+        try {
+            negativeCache.close();
+        }
+        catch (IOException e) {
+            logger.error("Cannot close the previous snapshot", e);
+        }
     }
 
-    private static void savePlayerDataToJsonFile(final DataDownloader downloader, final Config config, final int playerId) throws IOException {
-        downloader.logDownloadStarting(playerId);
+    /**
+     * {@code --player-ids}: downloads the players of the file again into the snapshot of {@code --resume},
+     * e.g. the players quarantined by the import. The journal records of these players are ignored and their data is overwritten,
+     * the other players of the snapshot are not touched.
+     */
+    public static void downloadPlayersAgain(final Config config, final HttpDownloader httpDownloader) {
+        int[] playerIds = PlayerQuarantine.readPlayerIds(new File(config.playerIdsFile));
+        logger.info("Downloading {} players of {} again into {}: {}", playerIds.length, config.playerIdsFile, config.getSnapshotDirectory(), Arrays.toString(playerIds));
 
-        String urlString = downloader.getUrl(playerId);
+        DownloadJournal journal = DownloadJournal.open(new File(config.getJournalFilePath()), true);
+        RawDataWriter writer = config.storageType.createWriter(config);
+        ExecutorService followUpExecutorService = Executors.newSingleThreadExecutor(); // a single worker waits for at most one follow-up request at a time
 
-        String out = loadUrlToString(urlString);
-        // todo: make fake mode turned on/off with config
-//        String out = String.format("player-%d-fake-result (url: %s)", playerId, urlString);
+        AtomicInteger handledPlayers = new AtomicInteger();
+        CrawlTelemetry telemetry = new CrawlTelemetry(playerIds.length, handledPlayers::get);
 
-        String jsonFilePath = downloader.getJsonFilePath(config, playerId);
-        FileUtils.writeStringToFile(new File(jsonFilePath), out, StandardCharsets.UTF_8);
+        List<Integer> failedPlayerIds = new ArrayList<>();
 
-        downloader.logDataWrittenToFile(playerId, jsonFilePath);
-    }
+        try {
+            // no negative cache: the players are requested even if they are dead in the previous snapshot
+            PlayerFetcher fetcher = new PlayerFetcher(httpDownloader, writer, journal, followUpExecutorService, config.skipBlocked, telemetry, config.streamResponses, null);
 
-    private static String loadUrlToString(final String urlString) throws IOException {
-        logger.debug("Url to load: {}", urlString);
+            for (int playerId : playerIds) {
+                journal.forget(playerId);
 
-        // todo: use some nice library instead
-        URL url = new URL(urlString);
-        String out = new Scanner(url.openStream(), StandardCharsets.UTF_8) // this line will require java 10
-            .useDelimiter("\\A")
-            .next();
+                boolean success = fetcher.fetch(playerId);
+                if (!success) {
+                    failedPlayerIds.add(playerId);
+                }
 
-        logger.debug("Response for url {}:", urlString);
-        logger.debug(StringUtils.abbreviate(out, 100));  // do not spam the whole response to log!
-        return out;
-    }
+                handledPlayers.incrementAndGet();
+            }
+
+            failedPlayerIds = retryFailedPlayers(fetcher, failedPlayerIds);
+        }
+        finally {
+            followUpExecutorService.shutdown();
+            telemetry.logProgress(); // the telemetry summary of the snapshot is not overwritten
 
-    static List<ImmutablePair<Integer, Integer>> split(Config config) {
-        return split(config.threadsCount, config.minPlayerId, config.maxPlayerId);
+            try {
+                writer.close(); // before the journal, so that all records marked as completed in the journal are persisted
+            }
+            catch (IOException e) {
+                logger.error(String.format("Cannot close %s storage of %s", config.storageType.getName(), config.getSnapshotDirectory()), e);
+            }
+
+            try {
+                journal.close();
+            }
+            catch (IOException e) {
+                logger.error(String.format("Cannot close download journal %s", config.getJournalFilePath()), e);
+            }
+        }
+
+        if (failedPlayerIds.isEmpty()) {
+            logger.info("All {} players have been downloaded again successfully.", playerIds.length);
+        }
+        else {
+            logger.error("Failed to download data for {} players even after retry: {}", failedPlayerIds.size(), failedPlayerIds);
+        }
     }
 
-    // returns list of minPlayerId; maxPlayerId
-    static List<ImmutablePair<Integer, Integer>> split(int threadsCount, int minPlayerId, int maxPlayerId) {
-        if (threadsCount < 1) {
-            throw new IllegalArgumentException(String.format("Incorrect threadsCount: %d, threadsCount must be >= 1", threadsCount));
+    public static List<Integer> retryFailedPlayers(final PlayerFetcher fetcher, final List<Integer> failedPlayerIds) {
+        if (failedPlayerIds.isEmpty()) {
+            return failedPlayerIds;
         }
 
-        if (minPlayerId > maxPlayerId) {
-            throw new IllegalArgumentException(String.format("minPlayerId = %d > maxPlayerId = %d", minPlayerId, maxPlayerId));
+        logger.info("Retrying {} failed players: {}", failedPlayerIds.size(), failedPlayerIds);
+
+        List<Integer> stillFailedPlayerIds = new ArrayList<>();
+
+        for (Integer playerId : failedPlayerIds) {
+            boolean success = fetcher.fetch(playerId);
+            if (!success) {
+                stillFailedPlayerIds.add(playerId);
+            }
         }
 
-        int totalPlayers = maxPlayerId - minPlayerId + 1;
-        int chunkSize = totalPlayers / threadsCount;
+        logger.info("Retry finished. Players successfully downloaded on retry: {}, still failed: {}", failedPlayerIds.size() - stillFailedPlayerIds.size(), stillFailedPlayerIds.size());
+        return stillFailedPlayerIds;
+    }
+
+    public static String workerTask(final PlayerFetcher fetcher, final PlayerIdBatchQueue queue, final int workerNumber) {
+        String threadName = String.format("download-worker-%d", workerNumber);
+        Thread.currentThread().setName(threadName);
 
-        logger.debug("threadsCount: {}", threadsCount);
-        logger.debug("minPlayerId: {}", minPlayerId);
-        logger.debug("maxPlayerId: {}", maxPlayerId);
-        logger.debug("totalPlayers: {}", totalPlayers);
-        logger.debug("chunkSize: {}", chunkSize);
+        LocalDateTime workerStartDate = LocalDateTime.now();
+        logger.info("Worker {} start date: {}", workerNumber, workerStartDate);
 
-        List<ImmutablePair<Integer, Integer>> result = new ArrayList<>();
+        int batchesHandled = 0;
+        int playersHandled = 0;
 
-        if (chunkSize > 0) {
-            for (int i = 0; i < threadsCount; i++) {
-                int chunkMinPlayerId = minPlayerId + (chunkSize * i);
-                int chunkMaxPlayerId = chunkMinPlayerId + chunkSize - 1;
+        ImmutablePair<Integer, Integer> batch;
+        while ((batch = queue.nextBatch()) != null) {
+            List<Integer> batchFailedPlayerIds = new ArrayList<>();
 
-                result.add(new ImmutablePair<>(chunkMinPlayerId, chunkMaxPlayerId));
+            for (int playerId = batch.getLeft(); playerId <= batch.getRight(); playerId++) {
+                boolean success = fetcher.fetch(playerId);
+                if (!success) {
+                    batchFailedPlayerIds.add(playerId);
+                }
             }
-        }
-        else {
-            logger.warn("chunkSize = {}, probably totalPlayers = {} < threadsCount = {}. Only one chunk with all tasks will be returned.", chunkSize, totalPlayers, threadsCount);
-        }
 
-        if (totalPlayers % threadsCount != 0) { // add a "tail part" if required
-            int chunkMinPlayerId = minPlayerId + (chunkSize * threadsCount);
-            int chunkMaxPlayerId = maxPlayerId;
+            queue.batchCompleted(batch, batchFailedPlayerIds);
 
-            result.add(new ImmutablePair<>(chunkMinPlayerId, chunkMaxPlayerId));
+            batchesHandled++;
+            playersHandled += batch.getRight() - batch.getLeft() + 1;
         }
 
-        logger.debug("Total player chunks: {}", result.size());
-        return result;
+        LocalDateTime workerEndDate = LocalDateTime.now();
+        logger.info("Worker {} start date: {}", workerNumber, workerStartDate);
+        logger.info("Worker {} end date: {}", workerNumber, workerEndDate);
+
+        logger.info("Downloading data for {} players in {} batches took:", playersHandled, batchesHandled);
+        logDateTimeDiff(workerStartDate, workerEndDate);
+
+        return String.format("Worker %d handled %d players in %d batches", workerNumber, playersHandled, batchesHandled);
+    }
+
+    public static void logDateTimeDiff(final LocalDateTime startDate, final LocalDateTime endDate) {
+        logger.info("Hours: {}", ChronoUnit.HOURS.between(startDate, endDate));
+        logger.info("Minutes: {}", ChronoUnit.MINUTES.between(startDate, endDate));
+        logger.info("Seconds: {}", ChronoUnit.SECONDS.between(startDate, endDate));
     }
 }
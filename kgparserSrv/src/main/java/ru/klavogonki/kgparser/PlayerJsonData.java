@@ -1,13 +1,13 @@
 package ru.klavogonki.kgparser;
 
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
 import ru.klavogonki.openapi.model.GetIndexDataResponse;
-import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
 import ru.klavogonki.openapi.model.GetSummaryResponse;
 
 import java.time.LocalDateTime;
 
 public class PlayerJsonData {
-    public PlayerJsonData(final LocalDateTime importDate, final GetSummaryResponse summary, final GetIndexDataResponse indexData, final GetStatsOverviewResponse statsOverview) {
+    public PlayerJsonData(final LocalDateTime importDate, final GetSummaryResponse summary, final GetIndexDataResponse indexData, final StatsOverview statsOverview) {
         this.importDate = importDate;
         this.summary = summary;
         this.indexData = indexData;
@@ -17,5 +17,8 @@ public class PlayerJsonData {
     public LocalDateTime importDate;
     public GetSummaryResponse summary;
     public GetIndexDataResponse indexData;
-    public GetStatsOverviewResponse statsOverview;
+    public StatsOverview statsOverview;
+
+    // digest of the raw responses, see ContentDigest. Null if the player has not been read from the raw responses
+    public String contentDigest;
 }
@@ -1,16 +1,21 @@
 package ru.klavogonki.kgparser;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DataEndpoint;
 import ru.klavogonki.kgparser.jsonParser.ApiErrors;
 import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
+import ru.klavogonki.kgparser.jsonParser.VocabularyStats;
+import ru.klavogonki.kgparser.storage.RawDataReader;
+import ru.klavogonki.kgparser.storage.StorageType;
+import ru.klavogonki.kgparser.util.ContentDigest;
 import ru.klavogonki.kgparser.util.DateUtils;
 import ru.klavogonki.openapi.model.GetIndexDataResponse;
 import ru.klavogonki.openapi.model.GetIndexDataStats;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
-import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
 import ru.klavogonki.openapi.model.GetSummaryResponse;
 import ru.klavogonki.openapi.model.GetSummaryUser;
 import ru.klavogonki.openapi.model.Microtime;
@@ -18,12 +23,28 @@ import ru.klavogonki.openapi.model.NonStandardVocabularyType;
 import ru.klavogonki.openapi.model.VocabularyMode;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /**
  * Parses the json files saved by {@link PlayerDataDownloader}.
@@ -33,6 +54,9 @@ public class PlayerJsonParser {
 
     public static final int REQUIRED_ARGUMENTS_COUNT = 4;
 
+    public static final int PARSE_CHUNK_SIZE = 100; // players parsed by a single task in the parallel mode
+    public static final int CHUNKS_IN_FLIGHT_PER_THREAD = 4; // bounds the parsed players kept in memory in the parallel mode
+
     static class ParserException extends RuntimeException {
         public ParserException(final String message, final Object... messageArguments) {
             super(String.format(message, messageArguments));
@@ -50,63 +74,344 @@ public class PlayerJsonParser {
     public static void main(String[] args) {
         // todo: pass a path to a json file with config instead
 
-        if (args.length != REQUIRED_ARGUMENTS_COUNT) {
+        if (args.length < REQUIRED_ARGUMENTS_COUNT) {
             // todo: use logger instead of System.out??
-            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId> <yyyy-MM-dd HH-mm-ss> %n", PlayerJsonParser.class.getSimpleName());
+            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId> <yyyy-MM-dd HH-mm-ss> [--%s=<n>] [--%s=files|archive] [--%s=<file>] %n", PlayerJsonParser.class.getSimpleName(), SnapshotParseOptions.PARSE_THREADS_OPTION, PlayerDataDownloader.Config.STORAGE_OPTION, SnapshotParseOptions.VALIDATION_REPORT_OPTION);
             return;
         }
 
-        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
-        config.setStartDate(args[3]);
+        // the date takes the place of <threadsCount> of the download, which is not used by the parser
+        String[] configArgs = ArrayUtils.insert(REQUIRED_ARGUMENTS_COUNT - 1, args, "1");
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(configArgs, SnapshotParseOptions.NAMES);
+        config.setStartDate(args[REQUIRED_ARGUMENTS_COUNT - 1]);
         config.log();
 
-        List<PlayerJsonData> players = new ArrayList<>();
-        List<Integer> nonExistingPlayerIds = new ArrayList<>();
+        SnapshotParseOptions options = SnapshotParseOptions.parseFromArguments(args);
+        options.log();
 
-        BiConsumer<Integer, Optional<PlayerJsonData>> playerHandler = (playerId, playerOptional) -> {
-            if (playerOptional.isPresent()) {
-                PlayerJsonData player = playerOptional.get();
-                players.add(player);
+        // an invalid player does not stop the parse, all errors are collected to the report
+        validateSnapshot(config, options);
 
-                if (player.summary.getErr().equals(ApiErrors.INVALID_USER_ID_ERROR)) {
-                    nonExistingPlayerIds.add(playerId);
-                }
+        // todo: validate over all users
+        // todo: all users must have unique id
+        // todo: should login be unique over all users?
+    }
+
+    /**
+     * Parses all players of the snapshot with the default {@link SnapshotParseOptions}, in player id order.
+     * @see #handlePlayers(PlayerDataDownloader.Config, SnapshotParseOptions, BiConsumer, boolean)
+     */
+    public static void handlePlayers(final PlayerDataDownloader.Config config, final BiConsumer<Integer, Optional<PlayerJsonData>> playerHandler) {
+        handlePlayers(config, new SnapshotParseOptions(), playerHandler, true);
+    }
+
+    /**
+     * Parses the players of the snapshot and passes them to the {@code playerHandler} in player id order.
+     * @see #handlePlayers(PlayerDataDownloader.Config, SnapshotParseOptions, BiConsumer, boolean)
+     */
+    public static void handlePlayers(final PlayerDataDownloader.Config config, final SnapshotParseOptions options, final BiConsumer<Integer, Optional<PlayerJsonData>> playerHandler) {
+        handlePlayers(config, options, playerHandler, true);
+    }
+
+    /**
+     * Parses the players of the snapshot and passes them to the {@code playerHandler}.
+     * <br>
+     * With {@code --parse-threads} > 1, the player ids are split to chunks of {@link #PARSE_CHUNK_SIZE} players,
+     * which are parsed and validated in parallel on a {@link ForkJoinPool}. At most {@link #CHUNKS_IN_FLIGHT_PER_THREAD} chunks per thread
+     * are parsed or wait for the handler at a time, so the memory does not depend on the snapshot size.
+     * <br>
+     * The handler is always called from the calling thread, one player at a time, so it does not have to be thread-safe.
+     * <br>
+     * By default, the first player that cannot be parsed stops the parsing. With {@code --quarantine}, such players are written
+     * to a {@link PlayerQuarantine} file and are not passed to the handler, the other players are still handled.
+     * With {@code --reimport}, only the players of a quarantine file are handled.
+     * <br>
+     * The players are passed with their {@link PlayerJsonData#contentDigest}, for the database import.
+     *
+     * @param ordered {@code true} to pass the players in player id order,
+     *                {@code false} to pass the chunks as soon as they are parsed, e.g. if the handler only counts the players
+     */
+    public static void handlePlayers(
+        final PlayerDataDownloader.Config config,
+        final SnapshotParseOptions options,
+        final BiConsumer<Integer, Optional<PlayerJsonData>> playerHandler,
+        final boolean ordered
+    ) {
+        int[] playerIds = getPlayerIds(config, options); // read before the quarantine file is opened, it can be the same file
+
+        try (
+            RawDataReader reader = StorageType.openReader(config);
+            PlayerQuarantine quarantine = (options.getQuarantineFile() == null) ? null : PlayerQuarantine.open(new File(options.getQuarantineFile()))
+        ) {
+            if (quarantine == null) {
+                forEachPlayer(config, options, playerIds, playerId -> readPlayerData(config, reader, playerId, true), playerHandler, ordered);
+                return;
             }
-            else {
-                nonExistingPlayerIds.add(playerId);
+
+            // a quarantined player is read as null and is not passed to the handler
+            forEachPlayer(
+                config,
+                options,
+                playerIds,
+                playerId -> readPlayerDataOrQuarantine(config, reader, quarantine, playerId),
+                (playerId, player) -> {
+                    if (player != null) {
+                        playerHandler.accept(playerId, player);
+                    }
+                },
+                ordered
+            );
+
+            if (quarantine.getCount() > 0) {
+                logger.error(
+                    "{} players have been quarantined to {}. Download them again with {}{}={} and handle them with {}{}={}.",
+                    quarantine.getCount(),
+                    quarantine.getFile().getPath(),
+                    PlayerDataDownloader.Config.OPTION_PREFIX,
+                    PlayerDataDownloader.Config.PLAYER_IDS_OPTION,
+                    quarantine.getFile().getPath(),
+                    PlayerDataDownloader.Config.OPTION_PREFIX,
+                    SnapshotParseOptions.REIMPORT_OPTION,
+                    quarantine.getFile().getPath()
+                );
             }
-        };
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot close the reader of %s", config.getSnapshotDirectory()), e);
+        }
+    }
 
-        handlePlayers(config, playerHandler);
+    /**
+     * @return all player ids of {@code [minPlayerId; maxPlayerId]} or, with {@code --reimport}, the quarantined player ids within this range
+     */
+    static int[] getPlayerIds(final PlayerDataDownloader.Config config, final SnapshotParseOptions options) {
+        if (options.getReimportFile() == null) {
+            return IntStream.rangeClosed(config.minPlayerId, config.maxPlayerId).toArray();
+        }
 
-        logger.info("=======================================================");
-        logger.info("Total player ids handled: {}", config.maxPlayerId - config.minPlayerId + 1);
-        logger.info("Total existing players parsed: {}", players.size());
-        logger.info("Total non existing players: {}", nonExistingPlayerIds.size());
+        int[] quarantinedPlayerIds = PlayerQuarantine.readPlayerIds(new File(options.getReimportFile()));
+        int[] playerIds = Arrays
+            .stream(quarantinedPlayerIds)
+            .filter(playerId -> (playerId >= config.minPlayerId) && (playerId <= config.maxPlayerId))
+            .toArray();
 
-        // todo: validate over all users
-        // todo: all users must have unique id
-        // todo: should login be unique over all users?
+        if (playerIds.length < quarantinedPlayerIds.length) {
+            logger.warn("{} of {} quarantined players are out of [{}; {}] and will not be handled.", quarantinedPlayerIds.length - playerIds.length, quarantinedPlayerIds.length, config.minPlayerId, config.maxPlayerId);
+        }
+
+        logger.info("Re-importing {} quarantined players from {}.", playerIds.length, options.getReimportFile());
+        return playerIds;
     }
 
-    public static void handlePlayers(final PlayerDataDownloader.Config config, final BiConsumer<Integer, Optional<PlayerJsonData>> playerHandler) {
-        int totalPlayersToHandle = config.maxPlayerId - config.minPlayerId + 1;
+    private static Optional<PlayerJsonData> readPlayerDataOrQuarantine(
+        final PlayerDataDownloader.Config config,
+        final RawDataReader reader,
+        final PlayerQuarantine quarantine,
+        final int playerId
+    ) {
+        try {
+            Optional<PlayerJsonData> player = readPlayerData(config, reader, playerId, true);
+            if (player.isEmpty()) {
+                throw new ParserException("Player %d: json data is not present", playerId);
+            }
 
-        for (int playerId = config.minPlayerId; playerId <= config.maxPlayerId; playerId++) {
-            logger.info("=======================================================");
-            int indexOfCurrentPlayer = playerId - config.minPlayerId + 1; // starting from 1
-            logger.info("Handling player {} (player {} / {})...", playerId, indexOfCurrentPlayer, totalPlayersToHandle);
+            return player;
+        }
+        catch (RuntimeException e) { // e.g. a broken json or ParserException, the other players are still handled
+            List<String> locations = new ArrayList<>();
+            for (DataEndpoint endpoint : DataEndpoint.values()) {
+                locations.add(reader.getLocation(playerId, endpoint));
+            }
+
+            quarantine.add(playerId, locations, e);
+            return null;
+        }
+    }
+
+    /**
+     * Validates all players of the snapshot, without stopping on an invalid player, and nothing is saved.
+     * The players are parsed in parallel with {@code --parse-threads}, same as in {@link #handlePlayers}.
+     * <br>
+     * The report is logged and, with {@code --validation-report}, written to a file.
+     */
+    public static SnapshotValidationReport validateSnapshot(final PlayerDataDownloader.Config config, final SnapshotParseOptions options) {
+        SnapshotValidationReport report = new SnapshotValidationReport(config.minPlayerId, config.maxPlayerId);
+
+        int[] playerIds = IntStream.rangeClosed(config.minPlayerId, config.maxPlayerId).toArray();
+
+        try (RawDataReader reader = StorageType.openReader(config)) {
+            forEachPlayer(config, options, playerIds, playerId -> validatePlayer(config, reader, playerId), report::add, false); // the report does not depend on the order
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot close the reader of %s", config.getSnapshotDirectory()), e);
+        }
+
+        report.log();
+
+        if (options.getValidationReportFile() != null) {
+            report.write(new File(options.getValidationReportFile()));
+            logger.info("Validation report has been written to {}.", options.getValidationReportFile());
+        }
+
+        return report;
+    }
+
+    private static SnapshotValidationReport.PlayerResult validatePlayer(final PlayerDataDownloader.Config config, final RawDataReader reader, final int playerId) {
+        try {
+            Optional<PlayerJsonData> player = readPlayerData(config, reader, playerId, false);
+            if (player.isEmpty()) {
+                throw new ParserException("Player %d: json data is not present", playerId);
+            }
+
+            return SnapshotValidationReport.PlayerResult.valid(player.get());
+        }
+        catch (RuntimeException e) { // e.g. ParserException or a broken json, the validation goes on
+            logger.error("Player {} is invalid: {}", playerId, e.getMessage());
 
-            File summaryFile = new File(config.getPlayerSummaryFilePath(playerId));
-            File indexDataFile = new File(config.getPlayerIndexDataFilePath(playerId));
-            File statsOverviewFile = new File(config.getStatsOverviewFilePath(playerId));
+            Map<String, String> locations = new LinkedHashMap<>();
+            for (DataEndpoint endpoint : DataEndpoint.values()) {
+                locations.put(endpoint.getName(), reader.getLocation(playerId, endpoint));
+            }
 
-            Optional<PlayerJsonData> playerOptional = readPlayerData(config.startDate, playerId, summaryFile, indexDataFile, statsOverviewFile);
+            return SnapshotValidationReport.PlayerResult.invalid(e, locations);
+        }
+    }
 
-            playerHandler.accept(playerId, playerOptional);
+    /**
+     * Reads the players of the snapshot with the {@code playerReader} and passes them to the {@code playerHandler},
+     * see {@link #handlePlayers(PlayerDataDownloader.Config, SnapshotParseOptions, BiConsumer, boolean)}.
+     */
+    private static <T> void forEachPlayer(
+        final PlayerDataDownloader.Config config,
+        final SnapshotParseOptions options,
+        final int[] playerIds,
+        final IntFunction<T> playerReader,
+        final BiConsumer<Integer, T> playerHandler,
+        final boolean ordered
+    ) {
+        if (config.discoverMaxPlayerId) { // the downloaded data is not checked for the max player id
+            throw new IllegalArgumentException(String.format("<maxPlayerId> = \"%s\" is supported only for the download. Pass the max player id of the downloaded data.", PlayerDataDownloader.Config.MAX_PLAYER_ID_AUTO));
+        }
+
+        if (options.getParseThreads() > 1) {
+            forEachPlayerInParallel(config, options.getParseThreads(), playerIds, playerReader, playerHandler, ordered);
+            return;
+        }
+
+        for (int playerId : playerIds) {
+            playerHandler.accept(playerId, playerReader.apply(playerId));
         }
     }
 
+    private static <T> void forEachPlayerInParallel(
+        final PlayerDataDownloader.Config config,
+        final int parseThreads,
+        final int[] playerIds,
+        final IntFunction<T> playerReader,
+        final BiConsumer<Integer, T> playerHandler,
+        final boolean ordered
+    ) {
+        int maxChunksInFlight = parseThreads * CHUNKS_IN_FLIGHT_PER_THREAD;
+        logger.info("Parsing {} players of [{}; {}] with {} threads, {} order.", playerIds.length, config.minPlayerId, config.maxPlayerId, parseThreads, ordered ? "player id" : "completion");
+
+        ForkJoinPool pool = new ForkJoinPool(parseThreads);
+        CompletionService<List<ImmutablePair<Integer, T>>> completionService = new ExecutorCompletionService<>(pool); // unordered mode only
+
+        Deque<Future<List<ImmutablePair<Integer, T>>>> chunksInFlight = new ArrayDeque<>(maxChunksInFlight); // in player id order
+        int nextChunkIndex = 0; // index of the first player id of the next chunk in playerIds
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        try {
+            while (true) {
+                while ((chunksInFlight.size() < maxChunksInFlight) && (nextChunkIndex < playerIds.length)) {
+                    int chunkFromIndex = nextChunkIndex;
+                    int chunkToIndex = Math.min(nextChunkIndex + PARSE_CHUNK_SIZE, playerIds.length); // exclusive
+
+                    Callable<List<ImmutablePair<Integer, T>>> task = () -> parseChunk(playerReader, playerIds, chunkFromIndex, chunkToIndex, stopped);
+                    chunksInFlight.add(ordered ? pool.submit(task) : completionService.submit(task)); // the completion queue is never drained in the ordered mode
+
+                    nextChunkIndex = chunkToIndex;
+                }
+
+                if (chunksInFlight.isEmpty()) {
+                    break;
+                }
+
+                Future<List<ImmutablePair<Integer, T>>> chunk;
+                if (ordered) {
+                    chunk = chunksInFlight.poll();
+                }
+                else {
+                    chunk = completionService.take();
+                    chunksInFlight.remove(chunk);
+                }
+
+                for (ImmutablePair<Integer, T> player : getChunk(chunk)) {
+                    playerHandler.accept(player.getLeft(), player.getRight());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Parsing of the players has been interrupted", e);
+        }
+        finally { // e.g. a player failed to parse, the chunks in flight are not needed
+            stopped.set(true); // the running chunks are not interrupted, an interrupted read would log misleading errors
+            chunksInFlight.forEach(chunk -> chunk.cancel(false));
+            pool.shutdown();
+
+            awaitTermination(pool); // the reader is closed after the return
+        }
+    }
+
+    private static void awaitTermination(final ForkJoinPool pool) {
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.HOURS); // a chunk stops after its current player
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> List<ImmutablePair<Integer, T>> getChunk(final Future<List<ImmutablePair<Integer, T>>> chunk) throws InterruptedException {
+        try {
+            return chunk.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) { // e.g. ParserException, same as in the sequential mode
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static <T> List<ImmutablePair<Integer, T>> parseChunk(
+        final IntFunction<T> playerReader,
+        final int[] playerIds,
+        final int fromIndex,
+        final int toIndex,
+        final AtomicBoolean stopped
+    ) {
+        List<ImmutablePair<Integer, T>> players = new ArrayList<>(toIndex - fromIndex);
+
+        for (int index = fromIndex; (index < toIndex) && !stopped.get(); index++) {
+            players.add(new ImmutablePair<>(playerIds[index], playerReader.apply(playerIds[index])));
+        }
+
+        return players;
+    }
+
+    private static Optional<PlayerJsonData> readPlayerData(final PlayerDataDownloader.Config config, final RawDataReader reader, final int playerId, final boolean calculateDigest) {
+        logger.info("=======================================================");
+        int totalPlayersToHandle = config.maxPlayerId - config.minPlayerId + 1;
+        int indexOfCurrentPlayer = playerId - config.minPlayerId + 1; // starting from 1
+        logger.info("Handling player {} (player {} / {})...", playerId, indexOfCurrentPlayer, totalPlayersToHandle);
+
+        return readPlayerData(config.startDate, playerId, reader, calculateDigest);
+    }
+
     static Optional<PlayerJsonData> readPlayerData(
         final LocalDateTime importDate,
         final int playerId,
@@ -114,10 +419,6 @@ public class PlayerJsonParser {
         final File indexDataFile,
         final File statsOverviewFile
     ) {
-        String summaryFilePath = summaryFile.getPath();
-        String indexDataFilePath = indexDataFile.getPath();
-        String statsOverviewFilePath = statsOverviewFile.getPath();
-
         // parse summary file
         GetSummaryResponse summary = JacksonUtils.parse(summaryFile, GetSummaryResponse.class);
 
@@ -125,14 +426,103 @@ public class PlayerJsonParser {
         GetIndexDataResponse indexData = JacksonUtils.parse(indexDataFile, GetIndexDataResponse.class);
 
         // parse stats-overview file
-        GetStatsOverviewResponse statsOverview = JacksonUtils.parse(statsOverviewFile, GetStatsOverviewResponse.class);
+        StatsOverview statsOverview = JacksonUtils.parse(statsOverviewFile, StatsOverview.class);
+
+        return validatePlayerData(importDate, playerId, summary, summaryFile.getPath(), indexData, indexDataFile.getPath(), statsOverview, statsOverviewFile.getPath());
+    }
+
+    /**
+     * Reads the player data from the storage of the snapshot, either json files or a segment archive, without the {@link PlayerJsonData#contentDigest}.
+     */
+    public static Optional<PlayerJsonData> readPlayerData(final LocalDateTime importDate, final int playerId, final RawDataReader reader) {
+        return readPlayerData(importDate, playerId, reader, false);
+    }
+
+    /**
+     * Reads the player data from the storage of the snapshot, either json files or a segment archive.
+     * <br>
+     * With {@code calculateDigest}, the {@link PlayerJsonData#contentDigest} is calculated over the raw responses
+     * while they are parsed, see {@link RawDataReader#parse(int, DataEndpoint, Class, ContentDigest)}.
+     * Only the database import uses the digest.
+     */
+    public static Optional<PlayerJsonData> readPlayerData(final LocalDateTime importDate, final int playerId, final RawDataReader reader, final boolean calculateDigest) {
+        ContentDigest digest = calculateDigest ? new ContentDigest() : null;
+
+        // the digest depends on the order of the responses
+        GetSummaryResponse summary = parse(reader, playerId, DataEndpoint.SUMMARY, GetSummaryResponse.class, digest);
+        GetIndexDataResponse indexData = parse(reader, playerId, DataEndpoint.INDEX_DATA, GetIndexDataResponse.class, digest);
+        StatsOverview statsOverview = parse(reader, playerId, DataEndpoint.STATS_OVERVIEW, StatsOverview.class, digest);
+
+        Optional<PlayerJsonData> player = validatePlayerData(
+            importDate,
+            playerId,
+            summary,
+            reader.getLocation(playerId, DataEndpoint.SUMMARY),
+            indexData,
+            reader.getLocation(playerId, DataEndpoint.INDEX_DATA),
+            statsOverview,
+            reader.getLocation(playerId, DataEndpoint.STATS_OVERVIEW)
+        );
+
+        if (digest != null) {
+            String contentDigest = digest.getValue();
+            player.ifPresent(data -> data.contentDigest = contentDigest);
+        }
+
+        return player;
+    }
+
+    private static <T> T parse(final RawDataReader reader, final int playerId, final DataEndpoint endpoint, final Class<T> clazz, final ContentDigest digest) {
+        if (digest == null) {
+            return reader.parse(playerId, endpoint, clazz);
+        }
+
+        return reader.parse(playerId, endpoint, clazz, digest);
+    }
+
+    private static Optional<PlayerJsonData> validatePlayerData(
+        final LocalDateTime importDate,
+        final int playerId,
+        final GetSummaryResponse summary,
+        final String summaryFilePath,
+        final GetIndexDataResponse downloadedIndexData,
+        final String indexDataFilePath,
+        final StatsOverview downloadedStatsOverview,
+        final String statsOverviewFilePath
+    ) {
+        GetIndexDataResponse indexData = downloadedIndexData;
+        StatsOverview statsOverview = downloadedStatsOverview;
+
+        // non-existing player: the downloader has not requested the other endpoints, they would return the same error as the summary
+        if (ApiErrors.INVALID_USER_ID_ERROR.equals(summary.getErr())) {
+            if (isSkipped(indexData.getErr())) {
+                logger.debug("Index data file {} has been skipped for a non-existing player {}.", indexDataFilePath, playerId);
+                indexData = new GetIndexDataResponse().err(ApiErrors.INVALID_USER_ID_ERROR);
+            }
+
+            if (isSkipped(statsOverview.getErr())) {
+                logger.debug("Stats overview file {} has been skipped for a non-existing player {}.", statsOverviewFilePath, playerId);
+                statsOverview = StatsOverview.error(ApiErrors.INVALID_USER_ID_ERROR);
+            }
+        }
+        else if (isSkipped(indexData.getErr()) || isSkipped(statsOverview.getErr())) { // skipped for a blocked player
+            Integer blocked = summary.getBlocked();
+            if ((blocked == null) || (blocked == 0)) {
+                throw new ParserException(
+                    "Index data file %s or stats overview file %s has been skipped, but summary file %s contains no error and the player is not blocked",
+                    indexDataFilePath,
+                    statsOverviewFilePath,
+                    summaryFilePath
+                );
+            }
+        }
 
         // validate expected data
         // todo: use some validation framework instead of this manual code hell
         validate(playerId, summary, summaryFilePath);
         validate(playerId, summary.getBlocked(), indexData, indexDataFilePath);
         validate(playerId, statsOverview, statsOverviewFilePath);
-        // todo: we can check that summary.stats.totalNumRaces = sum(stats.gametypes.num_races) , but this is not very reliable since data can change between 2 requests
+        // totalNumRaces = sum(stats.gametypes.num_races) is not validated here, since data can change between 2 requests. SnapshotValidationReport reports the mismatches
 
         // check whether this is a parse error
 
@@ -151,6 +541,10 @@ public class PlayerJsonParser {
         return Optional.of(result);
     }
 
+    private static boolean isSkipped(final String err) {
+        return ApiErrors.SKIPPED_ERROR.equals(err);
+    }
+
     private static boolean validateErrorCase( // true if user does not exist, false if user exists
         final String summaryFilePath,
         final String indexDataFilePath,
@@ -165,6 +559,11 @@ public class PlayerJsonParser {
             return false;
         }
 
+        if (StringUtils.isBlank(summaryError) && isSkipped(indexDataError)) { // blocked user, the downloader has not requested the index data
+            logger.info("Summary file {} contains no error, index data file {} has been skipped. User exists, but will have no index data.", summaryFilePath, indexDataFilePath);
+            return false;
+        }
+
         if (StringUtils.isBlank(summaryError) && indexDataError.equals(ApiErrors.HIDDEN_PROFILE_USER_ERROR)) { // hidden profile -> ok user, there will be no index data
             logger.info("Summary file {} contains no error, index data file {} contain a error. User exists, but will have no index data.", summaryFilePath, indexDataFilePath);
             return false;
@@ -302,6 +701,7 @@ public class PlayerJsonParser {
                 !err.equals(ApiErrors.INVALID_USER_ID_ERROR)
                 && !err.equals(ApiErrors.HIDDEN_PROFILE_USER_ERROR)
                 && !err.equals(ApiErrors.MONGO_REFS_ERROR_USER_498727)
+                && !isSkipped(err)
             ) {
                 throw new ParserException("Index data file %s: Unknown error: %s", indexDataFilePath, err);
             }
@@ -408,11 +808,11 @@ public class PlayerJsonParser {
         }
     }
 
-    private static void validate(int playerId, GetStatsOverviewResponse response, String statsOverviewFilePath) {
+    private static void validate(int playerId, StatsOverview response, String statsOverviewFilePath) {
         String err = response.getErr();
 
         if (StringUtils.isNotBlank(err)) {
-            if (!err.equals(ApiErrors.INVALID_USER_ID_ERROR) && !err.equals(ApiErrors.PERMISSION_BLOCKED_ERROR)) {
+            if (!err.equals(ApiErrors.INVALID_USER_ID_ERROR) && !err.equals(ApiErrors.PERMISSION_BLOCKED_ERROR) && !isSkipped(err)) {
                 throw new ParserException("Stats overview file %s: Unknown error: %s", statsOverviewFilePath, err);
             }
 
@@ -421,11 +821,8 @@ public class PlayerJsonParser {
             return;
         }
 
-        Map<String, GetStatsOverviewGameType> gameTypes = response.getGametypes();
-        for (Map.Entry<String, GetStatsOverviewGameType> entry : gameTypes.entrySet()) {
-            String vocabularyCode = entry.getKey();
-
-            GetStatsOverviewGameType vocabularyStats = entry.getValue();
+        for (VocabularyStats vocabularyStats : response.getVocabularies()) {
+            String vocabularyCode = vocabularyStats.getCode();
 
             if (!Dictionary.isValid(vocabularyCode)) { // we have dictionaries with "" code
                 logger.warn("Stats overview file {}: Invalid vocabulary code: {}. Cannot validate it as standard or non-standard.", statsOverviewFilePath, vocabularyCode);
@@ -444,14 +841,12 @@ public class PlayerJsonParser {
             }
         }
 
-        List<String> recentGameTypes = response.getRecentGametypes();
-
-
+        // recent_gametypes are not read by StatsOverviewReader
         // todo: recent gametypes - all types must be present in gametypes
         // todo: recent gametypes - size from 0 to 10
     }
 
-    private static void validateCommon(final String statsOverviewFilePath, final String vocabularyCode, final GetStatsOverviewGameType vocabularyStats) {
+    private static void validateCommon(final String statsOverviewFilePath, final String vocabularyCode, final VocabularyStats vocabularyStats) {
         if (StringUtils.isBlank(vocabularyStats.getName())) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: name is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -466,7 +861,7 @@ public class PlayerJsonParser {
         }
     }
 
-    private static void validateStandardVocabulary(final String statsOverviewFilePath, final String vocabularyCode, final GetStatsOverviewGameType vocabularyStats) {
+    private static void validateStandardVocabulary(final String statsOverviewFilePath, final String vocabularyCode, final VocabularyStats vocabularyStats) {
         Integer id = vocabularyStats.getId();
         if (id != null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s is standard, but id = %d is present.", statsOverviewFilePath, vocabularyCode, id);
@@ -493,7 +888,7 @@ public class PlayerJsonParser {
         }
     }
 
-    private static void validateNonStandardVocabulary(final String statsOverviewFilePath, final String vocabularyCode, final GetStatsOverviewGameType vocabularyStats) {
+    private static void validateNonStandardVocabulary(final String statsOverviewFilePath, final String vocabularyCode, final VocabularyStats vocabularyStats) {
         // id
         Integer id = vocabularyStats.getId();
         if (id == null) {
@@ -564,15 +959,13 @@ public class PlayerJsonParser {
         }
     }
 
-    private static void validateInfo(final int playerId, final String statsOverviewFilePath, final String vocabularyCode, final GetStatsOverviewGameType vocabularyStats) {
-        GetStatsOverviewGameTypeInfo info = vocabularyStats.getInfo();
-
-        if (info == null) {
+    private static void validateInfo(final int playerId, final String statsOverviewFilePath, final String vocabularyCode, final VocabularyStats vocabularyStats) {
+        if (!vocabularyStats.isInfoPresent()) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info is not present.", statsOverviewFilePath, vocabularyCode);
         }
 
         // id
-        Integer id = info.getId();
+        Integer id = vocabularyStats.getInfoId();
         if (id == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.id is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -582,7 +975,7 @@ public class PlayerJsonParser {
         }
 
         // user_id
-        Integer userId = info.getUserId();
+        Integer userId = vocabularyStats.getUserId();
         if (userId == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.userId is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -592,7 +985,7 @@ public class PlayerJsonParser {
         }
 
         // mode
-        VocabularyMode mode = info.getMode();
+        VocabularyMode mode = vocabularyStats.getMode();
         if (mode == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.mode is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -605,7 +998,7 @@ public class PlayerJsonParser {
         }
 
         // texttype
-        Integer textType = info.getTexttype();
+        Integer textType = vocabularyStats.getTexttype();
         if (textType == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.texttype is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -616,7 +1009,7 @@ public class PlayerJsonParser {
         }
 
         // num_races
-        Integer numRaces = info.getNumRaces();
+        Integer numRaces = vocabularyStats.getInfoNumRaces();
         if (numRaces == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.num_races is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -627,7 +1020,7 @@ public class PlayerJsonParser {
         }
 
         // avg_speed
-        Double avgSpeed = info.getAvgSpeed();
+        Double avgSpeed = vocabularyStats.getAvgSpeed();
         if (avgSpeed == null) {
             logger.warn("Stats overview file {}: Vocabulary {}: info.avg_speed is not present. NumRaces = {}.", statsOverviewFilePath, vocabularyCode, numRaces);
 
@@ -649,7 +1042,7 @@ public class PlayerJsonParser {
         }
 
         // best_speed - nullable
-        Integer bestSpeed = info.getBestSpeed();
+        Integer bestSpeed = vocabularyStats.getBestSpeed();
         if (bestSpeed == null) {
             logger.warn("Stats overview file {}: Vocabulary {}: info.best_speed is not present. NumRaces = {}.", statsOverviewFilePath, vocabularyCode, numRaces);
 
@@ -672,7 +1065,7 @@ public class PlayerJsonParser {
         }
 
         // avg_error - nullable, eg players 142478, 141327, 109842
-        Double avgError = info.getAvgError();
+        Double avgError = vocabularyStats.getAvgError();
         if (avgError == null) {
             logger.warn("Stats overview file {}: Vocabulary {}: info.avg_error is not present. NumRaces = {}.", statsOverviewFilePath, vocabularyCode, numRaces);
 
@@ -694,7 +1087,7 @@ public class PlayerJsonParser {
         }
 
         // haul
-        Integer haul = info.getHaul();
+        Integer haul = vocabularyStats.getHaul();
         if (haul == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.haul is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -704,7 +1097,7 @@ public class PlayerJsonParser {
         }
 
         // qual
-        Integer qual = info.getQual();
+        Integer qual = vocabularyStats.getQual();
         if (qual == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.qual is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -714,7 +1107,7 @@ public class PlayerJsonParser {
         }
 
         // dirty
-        Integer dirty = info.getDirty();
+        Integer dirty = vocabularyStats.getDirty();
         if (dirty == null) {
             throw new ParserException("Stats overview file %s: Vocabulary %s: info.dirty is not present.", statsOverviewFilePath, vocabularyCode);
         }
@@ -724,7 +1117,7 @@ public class PlayerJsonParser {
         }
 
         // updated - nullable
-        String updated = info.getUpdated();
+        String updated = vocabularyStats.getUpdated();
         if (updated == null) {
             if (!vocabularyCode.equals(StandardDictionary.normal.name())) {
                 throw new ParserException("Stats overview file %s: Vocabulary %s: info.updated is not present and vocabularyCode != %s.", statsOverviewFilePath, vocabularyCode, StandardDictionary.normal);
@@ -0,0 +1,130 @@
+package ru.klavogonki.kgparser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Players that could not be parsed in the fault-isolating mode of {@link PlayerJsonParser#handlePlayers}, see {@code --quarantine} option.
+ * <br>
+ * Each line is {@code <playerId> <file locations> <cause>}, separated by tabs.
+ * The cause is the exception class and message in a single line.
+ * <br>
+ * Pass the file to {@code --player-ids} option of {@link PlayerDataDownloader} to download the quarantined players again,
+ * then to {@code --reimport} option to handle only these players.
+ * The same file can be passed to both options: the player ids are read before the file is rewritten.
+ * <br>
+ * This class is thread-safe.
+ */
+public class PlayerQuarantine implements Closeable {
+    private static final Logger logger = LogManager.getLogger(PlayerQuarantine.class);
+
+    public static final String SEPARATOR = "\t";
+
+    private final File file;
+    private final BufferedWriter writer;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private PlayerQuarantine(final File file, final BufferedWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * Starts a new quarantine file, an existing file is overwritten.
+     */
+    public static PlayerQuarantine open(final File file) {
+        try {
+            FileUtils.forceMkdirParent(file);
+            return new PlayerQuarantine(file, Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot open quarantine file %s", file.getPath()), e);
+        }
+    }
+
+    /**
+     * @param locations locations of the player files, e.g. from {@link ru.klavogonki.kgparser.storage.RawDataReader#getLocation}
+     */
+    public void add(final int playerId, final Collection<String> locations, final Throwable cause) {
+        String line = playerId + SEPARATOR + toSingleLine(String.join(" ", locations)) + SEPARATOR + toSingleLine(cause.getClass().getName() + ": " + cause.getMessage());
+
+        synchronized (writer) {
+            try {
+                writer.write(line);
+                writer.newLine();
+                writer.flush(); // the quarantined players must be known even if the import crashes later
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot write line \"%s\" to quarantine file %s", line, file.getPath()), e);
+            }
+        }
+
+        count.incrementAndGet();
+        logger.error("Player {} has been quarantined to {}: {}", playerId, file.getPath(), cause.getMessage());
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return distinct player ids of the quarantine file, in ascending order
+     */
+    public static int[] readPlayerIds(final File file) {
+        TreeSet<Integer> playerIds = new TreeSet<>();
+        int linesRead = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+
+                String playerId = line.split(SEPARATOR, 2)[0].trim();
+                if (playerId.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    playerIds.add(Integer.parseInt(playerId));
+                }
+                catch (NumberFormatException e) {
+                    logger.warn("Quarantine file {}: skipping incorrect line {}: \"{}\".", file.getPath(), linesRead, line);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read quarantine file %s", file.getPath()), e);
+        }
+
+        logger.info("Quarantine file {} read: {} lines, {} players.", file.getPath(), linesRead, playerIds.size());
+        return playerIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String toSingleLine(final String value) {
+        return value.replaceAll("[\\t\\r\\n]+", " ");
+    }
+}
@@ -0,0 +1,99 @@
+package ru.klavogonki.kgparser;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Set;
+
+/**
+ * Options of parsing a downloaded snapshot by {@link PlayerJsonParser}, in form {@code --name=value}.
+ * <br>
+ * The downloader does not use them, so they are not a part of {@link PlayerDataDownloader.Config}:
+ * pass {@link #NAMES} to {@link PlayerDataDownloader.Config#parseFromArguments(String[], Set)} to skip them there.
+ */
+public class SnapshotParseOptions {
+    private static final Logger logger = LogManager.getLogger(SnapshotParseOptions.class);
+
+    public static final String PARSE_THREADS_OPTION = "parse-threads";
+    public static final String VALIDATION_REPORT_OPTION = "validation-report";
+    public static final String QUARANTINE_OPTION = "quarantine";
+    public static final String REIMPORT_OPTION = "reimport";
+
+    public static final Set<String> NAMES = Set.of(PARSE_THREADS_OPTION, VALIDATION_REPORT_OPTION, QUARANTINE_OPTION, REIMPORT_OPTION);
+
+    int parseThreads = 1; // > 1 to parse the players in parallel, also used by PlayerImportPipeline
+    String validationReportFile; // file to write the SnapshotValidationReport to, null to only log it
+    String quarantineFile; // PlayerQuarantine file for the players that cannot be parsed, null to stop on the first such player
+    String reimportFile; // PlayerQuarantine file with the only players to handle, null to handle all players
+
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public String getValidationReportFile() {
+        return validationReportFile;
+    }
+
+    public String getQuarantineFile() {
+        return quarantineFile;
+    }
+
+    public String getReimportFile() {
+        return reimportFile;
+    }
+
+    public void log() {
+        logger.debug("Snapshot parse options: ");
+        logger.debug("  parseThreads: {}", parseThreads);
+        logger.debug("  validationReportFile: {}", validationReportFile);
+        logger.debug("  quarantineFile: {}", quarantineFile);
+        logger.debug("  reimportFile: {}", reimportFile);
+    }
+
+    /**
+     * @param args all arguments, the required arguments and the options not in {@link #NAMES} are skipped
+     */
+    public static SnapshotParseOptions parseFromArguments(final String[] args) {
+        SnapshotParseOptions options = new SnapshotParseOptions();
+
+        PlayerDataDownloader.Config.forEachOption(args, (name, value) -> {
+            if (NAMES.contains(name)) {
+                options.parseOption(name, value);
+            }
+        });
+
+        return options;
+    }
+
+    private void parseOption(final String name, final String value) {
+        switch (name) {
+            case PARSE_THREADS_OPTION:
+                parseThreads = PlayerDataDownloader.Config.parsePositiveInt(name, value);
+                break;
+
+            case VALIDATION_REPORT_OPTION:
+                validationReportFile = requireNotBlank(name, value);
+                break;
+
+            case QUARANTINE_OPTION:
+                quarantineFile = requireNotBlank(name, value);
+                break;
+
+            case REIMPORT_OPTION:
+                reimportFile = requireNotBlank(name, value);
+                break;
+
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: %s%s", PlayerDataDownloader.Config.OPTION_PREFIX, name));
+        }
+    }
+
+    private static String requireNotBlank(final String name, final String value) {
+        if (StringUtils.isBlank(value)) {
+            throw new IllegalArgumentException(String.format("%s%s value must not be blank", PlayerDataDownloader.Config.OPTION_PREFIX, name));
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,311 @@
+package ru.klavogonki.kgparser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.StatsOverview;
+import ru.klavogonki.kgparser.jsonParser.VocabularyStats;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregated result of {@link PlayerJsonParser#validateSnapshot}: every player of the snapshot is validated,
+ * an invalid player is counted and does not stop the validation.
+ * <br>
+ * The errors are grouped by their error class: the exception message with the file paths and the numbers replaced,
+ * e.g. {@code Summary file <summary> contains incorrect summary.user.id <n>. Expected playerId: <n>}.
+ * <br>
+ * Not thread-safe, {@link PlayerJsonParser} adds the players from the calling thread only.
+ */
+public class SnapshotValidationReport {
+    private static final Logger logger = LogManager.getLogger(SnapshotValidationReport.class);
+
+    public static final int MAX_EXAMPLE_PLAYER_IDS = 10;
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("-?\\d+(\\.\\d+)?");
+    private static final String NUMBER_REPLACEMENT = "<n>";
+
+    /**
+     * Validation result of a single player, created by the parse threads.
+     */
+    static class PlayerResult {
+        final PlayerJsonData player; // null if the player is invalid
+        final String errorClass;
+        final String errorMessage;
+
+        private PlayerResult(final PlayerJsonData player, final String errorClass, final String errorMessage) {
+            this.player = player;
+            this.errorClass = errorClass;
+            this.errorMessage = errorMessage;
+        }
+
+        static PlayerResult valid(final PlayerJsonData player) {
+            return new PlayerResult(player, null, null);
+        }
+
+        /**
+         * @param locations locations of the player files, replaced by the endpoint names in the error class
+         */
+        static PlayerResult invalid(final RuntimeException e, final Map<String, String> locations) {
+            String message = Objects.toString(e.getMessage(), "");
+
+            String errorClass = message;
+            for (Map.Entry<String, String> entry : locations.entrySet()) { // endpoint name -> location
+                errorClass = errorClass.replace(entry.getValue(), "<" + entry.getKey() + ">");
+            }
+            errorClass = e.getClass().getSimpleName() + ": " + NUMBER_PATTERN.matcher(errorClass).replaceAll(NUMBER_REPLACEMENT);
+
+            return new PlayerResult(null, errorClass, message);
+        }
+    }
+
+    /**
+     * Players with the same error class or the same finding.
+     */
+    public static class PlayerGroup {
+        private final String name;
+        private int count;
+        private final List<Integer> examplePlayerIds = new ArrayList<>();
+        private String exampleMessage; // the message of the first player
+
+        PlayerGroup(final String name) {
+            this.name = name;
+        }
+
+        void add(final int playerId, final String message) {
+            count++;
+
+            if (examplePlayerIds.size() < MAX_EXAMPLE_PLAYER_IDS) {
+                examplePlayerIds.add(playerId);
+            }
+
+            if (exampleMessage == null) {
+                exampleMessage = message;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<Integer> getExamplePlayerIds() {
+            return examplePlayerIds;
+        }
+
+        public String getExampleMessage() {
+            return exampleMessage;
+        }
+    }
+
+    private final int minPlayerId;
+    private final int maxPlayerId;
+
+    private int validPlayers;
+    private int existingPlayers;
+    private int nonExistingPlayers;
+
+    private final PlayerGroup blockedPlayers = new PlayerGroup("Blocked players");
+    private final PlayerGroup hiddenProfiles = new PlayerGroup("Hidden profiles (/get-index-data error \"" + ApiErrors.HIDDEN_PROFILE_USER_ERROR + "\")");
+    private final PlayerGroup permissionBlockedStats = new PlayerGroup("Hidden stats (/get-stats-overview error \"" + ApiErrors.PERMISSION_BLOCKED_ERROR + "\")");
+    private final PlayerGroup summaryIndexDataMismatches = new PlayerGroup("Summary without an error, index data with an error");
+    private final PlayerGroup totalRacesMismatches = new PlayerGroup("index-data totalNumRaces != sum of stats-overview num_races");
+    private long maxTotalRacesDifference;
+
+    private final Map<String, PlayerGroup> errors = new HashMap<>(); // error class -> players
+
+    public SnapshotValidationReport(final int minPlayerId, final int maxPlayerId) {
+        this.minPlayerId = minPlayerId;
+        this.maxPlayerId = maxPlayerId;
+    }
+
+    void add(final int playerId, final PlayerResult result) {
+        if (result.player == null) {
+            errors
+                .computeIfAbsent(result.errorClass, PlayerGroup::new)
+                .add(playerId, result.errorMessage);
+
+            return;
+        }
+
+        validPlayers++;
+
+        GetSummaryResponse summary = result.player.summary;
+        GetIndexDataResponse indexData = result.player.indexData;
+        StatsOverview statsOverview = result.player.statsOverview;
+
+        if (ApiErrors.INVALID_USER_ID_ERROR.equals(summary.getErr())) {
+            nonExistingPlayers++;
+            return;
+        }
+
+        existingPlayers++;
+
+        Integer blocked = summary.getBlocked();
+        if ((blocked != null) && (blocked != 0)) {
+            blockedPlayers.add(playerId, "blocked: " + blocked);
+        }
+
+        String indexDataError = indexData.getErr();
+        if (ApiErrors.HIDDEN_PROFILE_USER_ERROR.equals(indexDataError)) {
+            hiddenProfiles.add(playerId, indexDataError);
+        }
+        else if (StringUtils.isBlank(summary.getErr()) && StringUtils.isNotBlank(indexDataError) && !ApiErrors.SKIPPED_ERROR.equals(indexDataError)) {
+            summaryIndexDataMismatches.add(playerId, indexDataError);
+        }
+
+        if (ApiErrors.PERMISSION_BLOCKED_ERROR.equals(statsOverview.getErr())) {
+            permissionBlockedStats.add(playerId, statsOverview.getErr());
+        }
+
+        checkTotalRaces(playerId, indexData, statsOverview);
+    }
+
+    // the data can change between the requests, so a mismatch is reported, but it is not an error
+    private void checkTotalRaces(final int playerId, final GetIndexDataResponse indexData, final StatsOverview statsOverview) {
+        if (StringUtils.isNotBlank(indexData.getErr()) || StringUtils.isNotBlank(statsOverview.getErr()) || (indexData.getStats() == null)) {
+            return;
+        }
+
+        Integer totalRaces = indexData.getStats().getTotalNumRaces();
+        if ((totalRaces == null) || (statsOverview.getVocabularies() == null)) {
+            return;
+        }
+
+        long vocabulariesRaces = statsOverview
+            .getVocabularies()
+            .stream()
+            .map(VocabularyStats::getNumRaces)
+            .filter(Objects::nonNull)
+            .mapToLong(Integer::longValue)
+            .sum();
+
+        if (vocabulariesRaces != totalRaces) {
+            long difference = Math.abs(vocabulariesRaces - totalRaces);
+            maxTotalRacesDifference = Math.max(maxTotalRacesDifference, difference);
+
+            totalRacesMismatches.add(playerId, String.format("totalNumRaces = %d, sum of num_races = %d", totalRaces, vocabulariesRaces));
+        }
+    }
+
+    public int getTotalPlayers() {
+        return maxPlayerId - minPlayerId + 1;
+    }
+
+    public int getValidPlayers() {
+        return validPlayers;
+    }
+
+    public int getInvalidPlayers() {
+        return errors.values().stream().mapToInt(PlayerGroup::getCount).sum();
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public int getExistingPlayers() {
+        return existingPlayers;
+    }
+
+    public int getNonExistingPlayers() {
+        return nonExistingPlayers;
+    }
+
+    public PlayerGroup getBlockedPlayers() {
+        return blockedPlayers;
+    }
+
+    public PlayerGroup getHiddenProfiles() {
+        return hiddenProfiles;
+    }
+
+    public PlayerGroup getPermissionBlockedStats() {
+        return permissionBlockedStats;
+    }
+
+    public PlayerGroup getSummaryIndexDataMismatches() {
+        return summaryIndexDataMismatches;
+    }
+
+    public PlayerGroup getTotalRacesMismatches() {
+        return totalRacesMismatches;
+    }
+
+    /**
+     * @return error classes, the most frequent first
+     */
+    public List<PlayerGroup> getErrors() {
+        List<PlayerGroup> result = new ArrayList<>(errors.values());
+        result.sort(Comparator.comparingInt(PlayerGroup::getCount).reversed().thenComparing(PlayerGroup::getName));
+        return result;
+    }
+
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add("=======================================================");
+        lines.add(String.format("Snapshot validation report, players [%d; %d]", minPlayerId, maxPlayerId));
+        lines.add(String.format("Total player ids: %d", getTotalPlayers()));
+        lines.add(String.format("Valid players: %d (existing: %d, non-existing: %d)", validPlayers, existingPlayers, nonExistingPlayers));
+        lines.add(String.format("Invalid players: %d", getInvalidPlayers()));
+
+        lines.add("");
+        lines.add("Findings:");
+        addGroup(lines, blockedPlayers);
+        addGroup(lines, hiddenProfiles);
+        addGroup(lines, permissionBlockedStats);
+        addGroup(lines, summaryIndexDataMismatches);
+        addGroup(lines, totalRacesMismatches);
+        if (totalRacesMismatches.getCount() > 0) {
+            lines.add(String.format("    max difference: %d", maxTotalRacesDifference));
+        }
+
+        lines.add("");
+        lines.add(String.format("Error classes: %d", errors.size()));
+        for (PlayerGroup error : getErrors()) {
+            addGroup(lines, error);
+        }
+
+        lines.add("=======================================================");
+        return lines;
+    }
+
+    private static void addGroup(final List<String> lines, final PlayerGroup group) {
+        lines.add(String.format("  %s: %d", group.getName(), group.getCount()));
+
+        if (group.getCount() > 0) {
+            lines.add(String.format("    example player ids: %s", group.getExamplePlayerIds()));
+            lines.add(String.format("    example: %s", group.getExampleMessage()));
+        }
+    }
+
+    public void log() {
+        toLines().forEach(logger::info);
+    }
+
+    public void write(final File file) {
+        try {
+            FileUtils.writeLines(file, StandardCharsets.UTF_8.name(), toLines());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot write validation report to %s", file.getPath()), e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.klavogonki.kgparser.distributed;
+
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * HTTP client of the {@link CrawlCoordinator} API, used by {@link CrawlWorker}.
+ * <br>
+ * This class is thread-safe.
+ */
+public class CoordinatorClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2); // a completion sends all records of the lease
+
+    private final String baseUrl;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .connectTimeout(HttpDownloader.CONNECT_TIMEOUT)
+        .build();
+
+    private volatile boolean finished;
+
+    public CoordinatorClient(final String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @return next lease, or {@code null} if there is no lease at the moment. See {@link #isFinished()}
+     */
+    public Lease acquire(final String workerId) throws IOException {
+        String url = String.format("%s%s?%s=%s", baseUrl, CrawlCoordinator.LEASE_PATH, CrawlCoordinator.WORKER_PARAMETER, URLEncoder.encode(workerId, StandardCharsets.UTF_8));
+        HttpResponse<String> response = post(url, HttpRequest.BodyPublishers.noBody());
+
+        switch (response.statusCode()) {
+            case HttpDownloader.HTTP_OK:
+                return JacksonUtils.parse(response.body(), url, Lease.class);
+
+            case CrawlCoordinator.HTTP_NO_CONTENT:
+                return null;
+
+            case CrawlCoordinator.HTTP_GONE:
+                finished = true;
+                return null;
+
+            default:
+                throw unexpectedStatus(url, response);
+        }
+    }
+
+    /**
+     * @return {@code true} if the coordinator has no more leases to give
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return {@code false} if the lease has expired and has been given to another worker
+     */
+    public boolean heartbeat(final long leaseId) throws IOException {
+        String url = getLeaseUrl(CrawlCoordinator.HEARTBEAT_PATH, leaseId);
+        return isLeaseValid(url, post(url, HttpRequest.BodyPublishers.noBody()));
+    }
+
+    /**
+     * @return {@code false} if the lease has expired and its result has been ignored
+     */
+    public boolean complete(final long leaseId, final LeaseResult result) throws IOException {
+        String url = getLeaseUrl(CrawlCoordinator.COMPLETE_PATH, leaseId);
+        return isLeaseValid(url, post(url, HttpRequest.BodyPublishers.ofString(JacksonUtils.serializeToString(result), StandardCharsets.UTF_8)));
+    }
+
+    private String getLeaseUrl(final String path, final long leaseId) {
+        return String.format("%s%s?%s=%d", baseUrl, path, CrawlCoordinator.LEASE_PARAMETER, leaseId);
+    }
+
+    private static boolean isLeaseValid(final String url, final HttpResponse<String> response) throws IOException {
+        switch (response.statusCode()) {
+            case HttpDownloader.HTTP_OK:
+                return true;
+
+            case CrawlCoordinator.HTTP_CONFLICT:
+                return false;
+
+            default:
+                throw unexpectedStatus(url, response);
+        }
+    }
+
+    private HttpResponse<String> post(final String url, final HttpRequest.BodyPublisher body) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json; charset=utf-8")
+            .POST(body)
+            .build();
+
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("Request to %s has been interrupted", url), e);
+        }
+    }
+
+    private static IOException unexpectedStatus(final String url, final HttpResponse<String> response) {
+        return new IOException(String.format("Unexpected status %d of %s", response.statusCode(), url));
+    }
+}
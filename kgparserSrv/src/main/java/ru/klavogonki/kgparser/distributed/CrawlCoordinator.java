@@ -0,0 +1,345 @@
+package ru.klavogonki.kgparser.distributed;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.download.DownloadJournal;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+import ru.klavogonki.kgparser.util.DateUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Coordinator of a download distributed over several {@link CrawlWorker} processes, possibly on different hosts.
+ * <br>
+ * The coordinator does not request the API itself. It splits {@code [minPlayerId; maxPlayerId]} to the leases of {@code --batch-size} players,
+ * see {@link LeaseManager}, and gives them to the workers over HTTP:
+ * <ul>
+ *     <li>{@code POST /lease?worker=<id>} returns the next {@link Lease}, {@code 204} if all ranges are leased at the moment, {@code 410} if the download is finished.</li>
+ *     <li>{@code POST /heartbeat?lease=<id>} extends the lease, {@code 409} if it has expired and has been given to another worker.</li>
+ *     <li>{@code POST /complete?lease=<id>} with a {@link LeaseResult} body writes the records of the lease, {@code 409} if it has expired.</li>
+ * </ul>
+ * All records are written by the coordinator to a single snapshot (files or archive, see {@code --storage}) with the usual download journal,
+ * so the snapshot can be parsed and imported as any other download, and the workers need no shared file system.
+ */
+public class CrawlCoordinator implements Closeable {
+    private static final Logger logger = LogManager.getLogger(CrawlCoordinator.class);
+
+    public static final int DEFAULT_PORT = 8090;
+    public static final Duration DEFAULT_LEASE_TIMEOUT = Duration.ofSeconds(60);
+
+    public static final String LEASE_PATH = "/lease";
+    public static final String HEARTBEAT_PATH = "/heartbeat";
+    public static final String COMPLETE_PATH = "/complete";
+
+    public static final String WORKER_PARAMETER = "worker";
+    public static final String LEASE_PARAMETER = "lease";
+
+    public static final int HTTP_NO_CONTENT = 204;
+    public static final int HTTP_BAD_REQUEST = 400;
+    public static final int HTTP_CONFLICT = 409;
+    public static final int HTTP_GONE = 410;
+
+    private static final int STOP_DELAY_SECONDS = 1; // let the workers get 410 for their last requests
+
+    private final PlayerDataDownloader.Config config;
+    private final LeaseManager leaseManager;
+    private final RawDataWriter writer;
+    private final DownloadJournal journal;
+    private final HttpServer server;
+    private final ExecutorService executorService;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private CrawlCoordinator(
+        final PlayerDataDownloader.Config config,
+        final LeaseManager leaseManager,
+        final RawDataWriter writer,
+        final DownloadJournal journal,
+        final HttpServer server,
+        final ExecutorService executorService
+    ) {
+        this.config = config;
+        this.leaseManager = leaseManager;
+        this.writer = writer;
+        this.journal = journal;
+        this.server = server;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Starts the coordinator on all interfaces, so that the workers on other hosts can reach it.
+     * @param config config with the resolved {@code maxPlayerId} and the start date of the snapshot
+     * @param port port to listen to, {@code 0} for an ephemeral port
+     */
+    public static CrawlCoordinator start(final PlayerDataDownloader.Config config, final int port) {
+        LeaseManager leaseManager = new LeaseManager(config.getMinPlayerId(), config.getMaxPlayerId(), config.getBatchSize(), config.getLeaseTimeout().toMillis());
+
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot start crawl coordinator on port %d", port), e);
+        }
+
+        RawDataWriter writer = config.getStorageType().createWriter(config);
+        DownloadJournal journal = DownloadJournal.open(new File(config.getJournalFilePath()), false);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(config.getThreadsCount()); // completions write the records, do not serialize them
+        CrawlCoordinator coordinator = new CrawlCoordinator(config, leaseManager, writer, journal, server, executorService);
+
+        server.createContext(LEASE_PATH, coordinator::handleLease);
+        server.createContext(HEARTBEAT_PATH, coordinator::handleHeartbeat);
+        server.createContext(COMPLETE_PATH, coordinator::handleComplete);
+        server.setExecutor(executorService);
+        server.start();
+
+        logger.info(
+            "Crawl coordinator started on port {}. Players [{}; {}], {} players per lease, lease timeout {}. Snapshot: {}.",
+            coordinator.getPort(),
+            config.getMinPlayerId(),
+            config.getMaxPlayerId(),
+            config.getBatchSize(),
+            config.getLeaseTimeout(),
+            config.getSnapshotDirectory()
+        );
+        return coordinator;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    public LeaseManager getLeaseManager() {
+        return leaseManager;
+    }
+
+    /**
+     * Blocks until all leases are completed.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        finished.await();
+    }
+
+    private void handleLease(final HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            if (leaseManager.isFinished()) {
+                exchange.sendResponseHeaders(HTTP_GONE, -1);
+                return;
+            }
+
+            String workerId = getParameter(exchange.getRequestURI(), WORKER_PARAMETER);
+            Lease lease = leaseManager.acquire((workerId == null) ? exchange.getRemoteAddress().toString() : workerId);
+            if (lease == null) {
+                exchange.sendResponseHeaders(HTTP_NO_CONTENT, -1);
+                return;
+            }
+
+            writeJson(exchange, JacksonUtils.serializeToString(lease));
+        });
+    }
+
+    private void handleHeartbeat(final HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            Long leaseId = getLeaseId(exchange);
+            if (leaseId == null) {
+                exchange.sendResponseHeaders(HTTP_BAD_REQUEST, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(leaseManager.heartbeat(leaseId) ? HttpDownloader.HTTP_OK : HTTP_CONFLICT, -1);
+        });
+    }
+
+    private void handleComplete(final HttpExchange exchange) throws IOException {
+        handle(exchange, () -> {
+            Long leaseId = getLeaseId(exchange);
+            if (leaseId == null) {
+                exchange.sendResponseHeaders(HTTP_BAD_REQUEST, -1);
+                return;
+            }
+
+            LeaseResult result;
+            try (InputStream in = exchange.getRequestBody()) {
+                result = JacksonUtils.parse(in, String.format("result of lease %d", leaseId), LeaseResult.class);
+            }
+
+            if (!leaseManager.startCompletion(leaseId)) { // the range has been given to another worker, its records will be written on its completion
+                logger.warn("Lease {} has expired before its completion. Its {} records are ignored.", leaseId, result.records.size());
+                exchange.sendResponseHeaders(HTTP_CONFLICT, -1);
+                return;
+            }
+
+            try {
+                writeRecords(result);
+            }
+            catch (IOException | RuntimeException e) {
+                logger.error(String.format("Cannot write records of lease %d", leaseId), e);
+                leaseManager.release(leaseId);
+                throw e;
+            }
+
+            leaseManager.complete(leaseId, result.failedPlayerIds);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, -1);
+
+            if (leaseManager.isFinished()) {
+                finished.countDown();
+            }
+        });
+    }
+
+    private void writeRecords(final LeaseResult result) throws IOException {
+        for (LeaseResult.Record record : result.records) {
+            DataEndpoint endpoint = DataEndpoint.getByName(record.endpoint);
+            writer.write(record.playerId, endpoint, record.json);
+            journal.recordCompleted(record.playerId, endpoint);
+        }
+    }
+
+    private interface ExchangeHandler {
+        void handle() throws IOException;
+    }
+
+    private static void handle(final HttpExchange exchange, final ExchangeHandler handler) throws IOException {
+        try {
+            handler.handle();
+        }
+        catch (IOException | RuntimeException e) { // HttpServer silently drops the connection on an exception
+            logger.error("Crawl coordinator: error on handling {}", exchange.getRequestURI(), e);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_INTERNAL_SERVER_ERROR, -1);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private static Long getLeaseId(final HttpExchange exchange) {
+        String leaseId = getParameter(exchange.getRequestURI(), LEASE_PARAMETER);
+        if (leaseId == null) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(leaseId);
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getParameter(final URI uri, final String name) {
+        String query = uri.getQuery();
+        if (query == null) {
+            return null;
+        }
+
+        String prefix = name + "=";
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(prefix)) {
+                return parameter.substring(prefix.length());
+            }
+        }
+
+        return null;
+    }
+
+    private static void writeJson(final HttpExchange exchange, final String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stops the server and closes the snapshot storage.
+     */
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executorService.shutdown();
+
+        try {
+            writer.close(); // before the journal, see PlayerDataDownloader.main
+        }
+        catch (IOException e) {
+            logger.error(String.format("Cannot close %s storage of %s", config.getStorageType().getName(), config.getSnapshotDirectory()), e);
+        }
+
+        try {
+            journal.close();
+        }
+        catch (IOException e) {
+            logger.error(String.format("Cannot close download journal %s", config.getJournalFilePath()), e);
+        }
+
+        logger.info(
+            "Crawl coordinator stopped. Completed players: {} / {}, expired leases: {}.",
+            leaseManager.getCompletedPlayers(),
+            leaseManager.getTotalPlayers(),
+            leaseManager.getExpiredLeases()
+        );
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < PlayerDataDownloader.Config.REQUIRED_ARGUMENTS_COUNT) {
+            System.out.printf("Usage: %s <rootJsonDir> <minPlayerId> <maxPlayerId>|%s <threadsCount> [--%s=<port>] [--%s=<seconds>] [--%s=<n>] [--%s=files|archive] [--%s=true|false] [--%s=<url>] %n", CrawlCoordinator.class.getSimpleName(), PlayerDataDownloader.Config.MAX_PLAYER_ID_AUTO, PlayerDataDownloader.Config.COORDINATOR_PORT_OPTION, PlayerDataDownloader.Config.LEASE_TIMEOUT_OPTION, PlayerDataDownloader.Config.BATCH_SIZE_OPTION, PlayerDataDownloader.Config.STORAGE_OPTION, PlayerDataDownloader.Config.COMPRESS_OPTION, PlayerDataDownloader.Config.BASE_URL_OPTION);
+            return;
+        }
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+        config.applyBaseUrl();
+
+        LocalDateTime startDate = LocalDateTime.now();
+        config.setStartDate(DateUtils.formatDateTime(startDate));
+
+        PlayerDataDownloader.resolveMaxPlayerId(config, new HttpDownloader(config.getMaxRequestsInFlight()));
+        config.log();
+
+        CrawlCoordinator coordinator = start(config, config.getCoordinatorPort());
+        try {
+            coordinator.awaitCompletion();
+        }
+        finally {
+            coordinator.close();
+        }
+
+        LocalDateTime endDate = LocalDateTime.now();
+        logger.info("Distributed download of players [{}; {}] (total {} players) took:", config.getMinPlayerId(), config.getMaxPlayerId(), config.getTotalPlayers());
+        PlayerDataDownloader.logDateTimeDiff(startDate, endDate);
+
+        List<Integer> failedPlayerIds = coordinator.getLeaseManager().getFailedPlayerIds();
+        if (failedPlayerIds.isEmpty()) {
+            logger.info("All players have been downloaded successfully.");
+        }
+        else {
+            logger.error("Failed to download data for {} players even after retry: {}", failedPlayerIds.size(), failedPlayerIds);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.klavogonki.kgparser.distributed;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DownloadJournal;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.PlayerFetcher;
+import ru.klavogonki.kgparser.download.PlayerIdBatchQueue;
+import ru.klavogonki.kgparser.telemetry.CrawlTelemetry;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker of a distributed download, see {@link CrawlCoordinator}.
+ * <br>
+ * The worker takes the leases from the coordinator until it has no more leases to give.
+ * The players of a lease are fetched by {@link PlayerFetcher} with {@code <threadsCount>} threads, exactly as in {@link PlayerDataDownloader},
+ * but the responses are kept in memory and sent to the coordinator on the lease completion.
+ * While the lease is fetched, the worker sends a heartbeat 3 times per lease timeout.
+ * <br>
+ * Several workers can run on a single host, e.g. to test the distributed download on {@code localhost}.
+ */
+public class CrawlWorker {
+    private static final Logger logger = LogManager.getLogger(CrawlWorker.class);
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500); // when all leases are taken by other workers
+    private static final int MAX_COORDINATOR_ERRORS = 5; // in a row, e.g. the coordinator has stopped
+    private static final int HEARTBEATS_PER_TIMEOUT = 3;
+    private static final int SUB_BATCHES_PER_THREAD = 4; // the lease is split to smaller batches, so that a slow player does not hold other threads idle
+
+    private final CoordinatorClient client;
+    private final PlayerDataDownloader.Config config;
+    private final String workerId;
+
+    private final HttpDownloader httpDownloader;
+    private final AtomicInteger completedPlayers = new AtomicInteger();
+    private final CrawlTelemetry telemetry = new CrawlTelemetry(0, completedPlayers::get); // the total is known only to the coordinator
+
+    private int completedLeases;
+    private int lostLeases;
+
+    public CrawlWorker(final String coordinatorUrl, final PlayerDataDownloader.Config config, final String workerId) {
+        this.client = new CoordinatorClient(coordinatorUrl);
+        this.config = config;
+        this.workerId = workerId;
+        this.httpDownloader = new HttpDownloader(config.getMaxRequestsInFlight());
+    }
+
+    /**
+     * @return number of completed leases
+     */
+    public int run() {
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(config.getThreadsCount());
+        ExecutorService followUpExecutor = Executors.newFixedThreadPool(config.getThreadsCount()); // each fetch waits for at most one follow-up request at a time
+        ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        telemetry.start(config.getProgressInterval());
+        logger.info("Crawl worker {} started.", workerId);
+
+        try {
+            int errors = 0;
+
+            while (!client.isFinished()) {
+                Lease lease;
+                try {
+                    lease = client.acquire(workerId);
+                    errors = 0;
+                }
+                catch (IOException e) {
+                    errors++;
+                    if (errors >= MAX_COORDINATOR_ERRORS) {
+                        logger.error(String.format("Crawl worker %s: coordinator is not available after %d attempts. Stopping.", workerId, errors), e);
+                        break;
+                    }
+
+                    logger.warn("Crawl worker {}: cannot get a lease, attempt {} / {}: {}", workerId, errors, MAX_COORDINATOR_ERRORS, e.getMessage());
+                    sleep(POLL_INTERVAL);
+                    continue;
+                }
+
+                if (lease == null) {
+                    if (!client.isFinished()) {
+                        sleep(POLL_INTERVAL);
+                    }
+
+                    continue;
+                }
+
+                runLease(lease, fetchExecutor, followUpExecutor, heartbeatExecutor);
+            }
+        }
+        finally {
+            fetchExecutor.shutdown();
+            followUpExecutor.shutdown();
+            heartbeatExecutor.shutdownNow();
+
+            telemetry.stop();
+            telemetry.logProgress();
+        }
+
+        logger.info("Crawl worker {} stopped. Completed leases: {}, lost leases: {}.", workerId, completedLeases, lostLeases);
+        return completedLeases;
+    }
+
+    private void runLease(
+        final Lease lease,
+        final ExecutorService fetchExecutor,
+        final ExecutorService followUpExecutor,
+        final ScheduledExecutorService heartbeatExecutor
+    ) {
+        logger.info("Crawl worker {}: fetching {}.", workerId, lease);
+
+        AtomicBoolean lost = new AtomicBoolean();
+        long heartbeatIntervalMillis = Math.max(1, lease.timeoutMillis / HEARTBEATS_PER_TIMEOUT);
+        ScheduledFuture<?> heartbeat = heartbeatExecutor.scheduleAtFixedRate(
+            () -> sendHeartbeat(lease, lost),
+            heartbeatIntervalMillis,
+            heartbeatIntervalMillis,
+            TimeUnit.MILLISECONDS
+        );
+
+        LeaseResultWriter writer = new LeaseResultWriter();
+        PlayerFetcher fetcher = new PlayerFetcher(httpDownloader, writer, DownloadJournal.inMemory(), followUpExecutor, config.isSkipBlocked(), telemetry, config.isStreamResponses(), null);
+
+        int subBatchSize = Math.max(1, lease.getPlayersCount() / (config.getThreadsCount() * SUB_BATCHES_PER_THREAD));
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(lease.minPlayerId, lease.maxPlayerId, subBatchSize);
+        int threadsCount = Math.min(config.getThreadsCount(), queue.getTotalBatches());
+
+        List<Callable<String>> tasks = new ArrayList<>(threadsCount);
+        for (int i = 0; i < threadsCount; i++) {
+            int workerNumber = i + 1;
+            tasks.add(() -> PlayerDataDownloader.workerTask(fetcher, queue, workerNumber));
+        }
+
+        List<Integer> failedPlayerIds;
+        try {
+            fetchExecutor.invokeAll(tasks);
+            failedPlayerIds = PlayerDataDownloader.retryFailedPlayers(fetcher, queue.getFailedPlayerIds());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(String.format("Crawl worker %s has been interrupted", workerId), e);
+        }
+        finally {
+            heartbeat.cancel(false);
+        }
+
+        completedPlayers.addAndGet(lease.getPlayersCount());
+
+        if (lost.get()) {
+            lostLeases++;
+            logger.warn("Crawl worker {}: {} has expired, its result is not sent.", workerId, lease);
+            return;
+        }
+
+        try {
+            if (client.complete(lease.leaseId, writer.toResult(failedPlayerIds))) {
+                completedLeases++;
+                logger.info("Crawl worker {}: {} completed, failed players: {}.", workerId, lease, failedPlayerIds.size());
+            }
+            else {
+                lostLeases++;
+                logger.warn("Crawl worker {}: {} has expired, its result has been rejected.", workerId, lease);
+            }
+        }
+        catch (IOException e) { // the lease will expire and will be given to another worker
+            lostLeases++;
+            logger.error(String.format("Crawl worker %s: cannot complete %s", workerId, lease), e);
+        }
+    }
+
+    private void sendHeartbeat(final Lease lease, final AtomicBoolean lost) {
+        try {
+            if (!client.heartbeat(lease.leaseId)) {
+                lost.set(true);
+            }
+        }
+        catch (IOException | RuntimeException e) { // an exception would cancel the next heartbeats
+            logger.warn("Crawl worker {}: cannot send heartbeat of {}: {}", workerId, lease, e.getMessage());
+        }
+    }
+
+    private void sleep(final Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(String.format("Crawl worker %s has been interrupted", workerId), e);
+        }
+    }
+
+    /**
+     * @return e.g. {@code 12345@hostname}, unique for the processes of the same host
+     */
+    public static String getDefaultWorkerId() {
+        return ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.printf("Usage: %s <coordinatorUrl> <threadsCount> [--%s=<n>] [--%s=true|false] [--%s=true|false] [--%s=<url>] %n", CrawlWorker.class.getSimpleName(), PlayerDataDownloader.Config.MAX_REQUESTS_IN_FLIGHT_OPTION, PlayerDataDownloader.Config.SKIP_BLOCKED_OPTION, PlayerDataDownloader.Config.STREAM_RESPONSES_OPTION, PlayerDataDownloader.Config.BASE_URL_OPTION);
+            return;
+        }
+
+        String coordinatorUrl = args[0];
+        int threadsCount = Integer.parseInt(args[1]);
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseOptions(threadsCount, args, 2);
+        config.applyBaseUrl();
+        config.log();
+
+        new CrawlWorker(coordinatorUrl, config, getDefaultWorkerId()).run();
+    }
+}
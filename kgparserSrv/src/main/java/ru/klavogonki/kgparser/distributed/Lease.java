@@ -0,0 +1,32 @@
+package ru.klavogonki.kgparser.distributed;
+
+/**
+ * Range of player ids given by the {@link CrawlCoordinator} to a single {@link CrawlWorker}.
+ * <br>
+ * The worker must send a heartbeat at least once per {@code timeoutMillis}, otherwise the range is given to another worker.
+ */
+public class Lease {
+    public long leaseId;
+    public int minPlayerId;
+    public int maxPlayerId;
+    public long timeoutMillis;
+
+    public Lease() { // for Jackson
+    }
+
+    public Lease(final long leaseId, final int minPlayerId, final int maxPlayerId, final long timeoutMillis) {
+        this.leaseId = leaseId;
+        this.minPlayerId = minPlayerId;
+        this.maxPlayerId = maxPlayerId;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getPlayersCount() {
+        return maxPlayerId - minPlayerId + 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lease %d [%d; %d]", leaseId, minPlayerId, maxPlayerId);
+    }
+}
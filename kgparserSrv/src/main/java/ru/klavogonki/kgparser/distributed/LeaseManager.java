@@ -0,0 +1,208 @@
+package ru.klavogonki.kgparser.distributed;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Splits {@code [minPlayerId; maxPlayerId]} to the ranges of {@code batchSize} players and leases them to the workers.
+ * <br>
+ * A lease expires if its worker does not send a heartbeat within {@code timeoutMillis}.
+ * The range of an expired lease is returned to the head of the queue and is given to the next worker that asks for a lease,
+ * the expired lease cannot be completed anymore.
+ * <br>
+ * Completion is two-phase: {@link #startCompletion} protects the lease from the expiration while its records are written,
+ * then {@link #complete} or {@link #release} finishes it.
+ * <br>
+ * This class is thread-safe.
+ */
+public class LeaseManager {
+    private static final Logger logger = LogManager.getLogger(LeaseManager.class);
+
+    private final int totalPlayers;
+    private final long timeoutMillis;
+    private final LongSupplier clockMillis;
+
+    private final Deque<int[]> pendingRanges = new ArrayDeque<>(); // [minPlayerId, maxPlayerId]
+    private final Map<Long, ActiveLease> activeLeases = new LinkedHashMap<>();
+    private final TreeSet<Integer> failedPlayerIds = new TreeSet<>();
+
+    private long nextLeaseId = 1;
+    private int completedPlayers;
+    private int expiredLeases;
+
+    public LeaseManager(final int minPlayerId, final int maxPlayerId, final int batchSize, final long timeoutMillis) {
+        this(minPlayerId, maxPlayerId, batchSize, timeoutMillis, System::currentTimeMillis);
+    }
+
+    LeaseManager(final int minPlayerId, final int maxPlayerId, final int batchSize, final long timeoutMillis, final LongSupplier clockMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect batchSize: %d, batchSize must be >= 1", batchSize));
+        }
+
+        if (minPlayerId > maxPlayerId) {
+            throw new IllegalArgumentException(String.format("minPlayerId = %d > maxPlayerId = %d", minPlayerId, maxPlayerId));
+        }
+
+        this.totalPlayers = maxPlayerId - minPlayerId + 1;
+        this.timeoutMillis = timeoutMillis;
+        this.clockMillis = clockMillis;
+
+        for (long batchMinPlayerId = minPlayerId; batchMinPlayerId <= maxPlayerId; batchMinPlayerId += batchSize) { // long to not overflow near Integer.MAX_VALUE
+            int batchMaxPlayerId = (int) Math.min(batchMinPlayerId + batchSize - 1, maxPlayerId);
+            pendingRanges.add(new int[] {(int) batchMinPlayerId, batchMaxPlayerId});
+        }
+    }
+
+    /**
+     * @return new lease, or {@code null} if all ranges are leased at the moment or completed
+     */
+    public synchronized Lease acquire(final String workerId) {
+        expireLeases();
+
+        int[] range = pendingRanges.poll();
+        if (range == null) {
+            return null;
+        }
+
+        Lease lease = new Lease(nextLeaseId++, range[0], range[1], timeoutMillis);
+        activeLeases.put(lease.leaseId, new ActiveLease(lease, workerId, clockMillis.getAsLong() + timeoutMillis));
+
+        logger.debug("{} given to worker {}.", lease, workerId);
+        return lease;
+    }
+
+    /**
+     * @return {@code false} if the lease has expired and the worker must stop working on it
+     */
+    public synchronized boolean heartbeat(final long leaseId) {
+        expireLeases();
+
+        ActiveLease activeLease = activeLeases.get(leaseId);
+        if (activeLease == null) {
+            return false;
+        }
+
+        activeLease.expiresAtMillis = clockMillis.getAsLong() + timeoutMillis;
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the lease has expired, its records must not be written
+     */
+    public synchronized boolean startCompletion(final long leaseId) {
+        expireLeases();
+
+        ActiveLease activeLease = activeLeases.get(leaseId);
+        if (activeLease == null) {
+            return false;
+        }
+
+        activeLease.completing = true;
+        return true;
+    }
+
+    public synchronized void complete(final long leaseId, final Collection<Integer> leaseFailedPlayerIds) {
+        ActiveLease activeLease = removeCompleting(leaseId);
+
+        failedPlayerIds.addAll(leaseFailedPlayerIds);
+        completedPlayers += activeLease.lease.getPlayersCount();
+
+        logger.info(
+            "{} completed by worker {}, failed players: {}. Completed players: {} / {}.",
+            activeLease.lease,
+            activeLease.workerId,
+            leaseFailedPlayerIds.size(),
+            completedPlayers,
+            totalPlayers
+        );
+    }
+
+    /**
+     * Returns the range of the lease to the queue, e.g. if its records could not be written.
+     */
+    public synchronized void release(final long leaseId) {
+        ActiveLease activeLease = removeCompleting(leaseId);
+        pendingRanges.addFirst(new int[] {activeLease.lease.minPlayerId, activeLease.lease.maxPlayerId});
+
+        logger.warn("{} of worker {} released, it will be given to another worker.", activeLease.lease, activeLease.workerId);
+    }
+
+    private ActiveLease removeCompleting(final long leaseId) {
+        ActiveLease activeLease = activeLeases.get(leaseId);
+        if ((activeLease == null) || !activeLease.completing) {
+            throw new IllegalStateException(String.format("Lease %d is not being completed", leaseId));
+        }
+
+        activeLeases.remove(leaseId);
+        return activeLease;
+    }
+
+    private void expireLeases() {
+        long now = clockMillis.getAsLong();
+
+        List<ActiveLease> expired = new ArrayList<>();
+        for (Iterator<ActiveLease> iterator = activeLeases.values().iterator(); iterator.hasNext(); ) {
+            ActiveLease activeLease = iterator.next();
+            if (!activeLease.completing && (activeLease.expiresAtMillis <= now)) {
+                iterator.remove();
+                expired.add(activeLease);
+            }
+        }
+
+        for (int i = expired.size() - 1; i >= 0; i--) { // keep the order of the ranges
+            ActiveLease activeLease = expired.get(i);
+            pendingRanges.addFirst(new int[] {activeLease.lease.minPlayerId, activeLease.lease.maxPlayerId});
+            expiredLeases++;
+
+            logger.warn("{} of worker {} has expired without a heartbeat. It will be given to another worker.", activeLease.lease, activeLease.workerId);
+        }
+    }
+
+    /**
+     * @return {@code true} if all ranges have been completed
+     */
+    public synchronized boolean isFinished() {
+        expireLeases();
+        return pendingRanges.isEmpty() && activeLeases.isEmpty();
+    }
+
+    public synchronized int getCompletedPlayers() {
+        return completedPlayers;
+    }
+
+    public synchronized int getTotalPlayers() {
+        return totalPlayers;
+    }
+
+    public synchronized int getExpiredLeases() {
+        return expiredLeases;
+    }
+
+    public synchronized List<Integer> getFailedPlayerIds() {
+        return new ArrayList<>(failedPlayerIds);
+    }
+
+    private static class ActiveLease {
+        final Lease lease;
+        final String workerId;
+        long expiresAtMillis;
+        boolean completing;
+
+        ActiveLease(final Lease lease, final String workerId, final long expiresAtMillis) {
+            this.lease = lease;
+            this.workerId = workerId;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
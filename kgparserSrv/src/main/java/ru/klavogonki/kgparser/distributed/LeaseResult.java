@@ -0,0 +1,28 @@
+package ru.klavogonki.kgparser.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downloaded records of a {@link Lease}, sent by the {@link CrawlWorker} to the {@link CrawlCoordinator} on the lease completion.
+ * The coordinator writes them to the snapshot.
+ */
+public class LeaseResult {
+    public List<Integer> failedPlayerIds = new ArrayList<>();
+    public List<Record> records = new ArrayList<>();
+
+    public static class Record {
+        public int playerId;
+        public String endpoint; // DataEndpoint name
+        public String json;
+
+        public Record() { // for Jackson
+        }
+
+        public Record(final int playerId, final String endpoint, final String json) {
+            this.playerId = playerId;
+            this.endpoint = endpoint;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.klavogonki.kgparser.distributed;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the responses fetched for a {@link Lease} in memory, until they are sent to the {@link CrawlCoordinator}.
+ */
+class LeaseResultWriter implements RawDataWriter {
+    private final List<LeaseResult.Record> records = new ArrayList<>(); // guarded by this
+
+    @Override
+    public synchronized void write(final int playerId, final DataEndpoint endpoint, final String json) {
+        records.add(new LeaseResult.Record(playerId, endpoint.getName(), json));
+    }
+
+    synchronized LeaseResult toResult(final List<Integer> failedPlayerIds) {
+        LeaseResult result = new LeaseResult();
+        result.records = new ArrayList<>(records);
+        result.failedPlayerIds = new ArrayList<>(failedPlayerIds);
+        return result;
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return String.format("lease!%s/%d", endpoint.getName(), playerId);
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
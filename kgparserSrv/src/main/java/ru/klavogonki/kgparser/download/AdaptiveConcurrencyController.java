@@ -0,0 +1,142 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+
+/**
+ * Limits the number of API requests executed at the same time using AIMD (additive increase, multiplicative decrease).
+ * <br>
+ * Each healthy response (fast enough and successful) raises the limit by {@code 1 / limit},
+ * i.e. approximately by 1 per {@code limit} successful requests, up to {@code maxLimit}.
+ * <br>
+ * A failure (timeout, 5xx, non-json response) or a too slow response halves the limit, down to {@code minLimit}.
+ * The limit is decreased at most once per {@link #DECREASE_COOLDOWN}, so that a burst of failures of the requests
+ * that were started with the old limit does not collapse the limit to the minimum.
+ * <br>
+ * This class is thread-safe.
+ */
+public class AdaptiveConcurrencyController {
+    private static final Logger logger = LogManager.getLogger(AdaptiveConcurrencyController.class);
+
+    public static final double DECREASE_FACTOR = 0.5;
+    public static final Duration DECREASE_COOLDOWN = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofSeconds(10);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyController(final int minLimit, final int maxLimit) {
+        this(minLimit, maxLimit, DEFAULT_LATENCY_THRESHOLD);
+    }
+
+    public AdaptiveConcurrencyController(final int minLimit, final int maxLimit, final Duration latencyThreshold) {
+        if (minLimit < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect minLimit: %d, minLimit must be >= 1", minLimit));
+        }
+
+        if (minLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format("minLimit = %d > maxLimit = %d", minLimit, maxLimit));
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+
+        this.limit = minLimit; // slow start: let the healthy responses raise the limit
+        this.lastDecreaseNanos = System.nanoTime() - DECREASE_COOLDOWN.toNanos();
+    }
+
+    /**
+     * Waits until the number of requests in flight is below the current limit and takes a request slot.
+     * <br>
+     * Each successful {@code acquire} must be followed by exactly one of {@link #onSuccess}, {@link #onFailure} or {@link #release}.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= getLimit()) {
+            wait();
+        }
+
+        inFlight++;
+    }
+
+    /**
+     * Releases the request slot of a successful request.
+     * @param latencyNanos request duration, in nanoseconds
+     */
+    public synchronized void onSuccess(final long latencyNanos) {
+        releaseSlot();
+
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease(String.format("slow response: %d ms", latencyNanos / 1_000_000));
+            return;
+        }
+
+        int oldLimit = getLimit();
+        limit = Math.min(maxLimit, limit + (1.0 / limit));
+
+        if (getLimit() > oldLimit) {
+            logger.debug("Concurrency limit increased: {} -> {}.", oldLimit, getLimit());
+        }
+    }
+
+    /**
+     * Releases the request slot of a request that failed because of the server or network problems.
+     */
+    public synchronized void onFailure() {
+        releaseSlot();
+        decrease("request failed");
+    }
+
+    /**
+     * Releases the request slot without changing the limit, e.g. for a request that was interrupted.
+     */
+    public synchronized void release() {
+        releaseSlot();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    private void releaseSlot() {
+        if (inFlight <= 0) {
+            throw new IllegalStateException("No request slot has been acquired.");
+        }
+
+        inFlight--;
+        notifyAll();
+    }
+
+    private void decrease(final String reason) {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN.toNanos()) {
+            return;
+        }
+
+        lastDecreaseNanos = now;
+
+        int oldLimit = getLimit();
+        limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+
+        logger.info("Concurrency limit decreased ({}): {} -> {}.", reason, oldLimit, getLimit());
+    }
+}
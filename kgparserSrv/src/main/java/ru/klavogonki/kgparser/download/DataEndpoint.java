@@ -0,0 +1,35 @@
+package ru.klavogonki.kgparser.download;
+
+import java.util.Arrays;
+
+/**
+ * API endpoints that are downloaded for each player.
+ * <br>
+ * Do not reorder the constants: the ordinals are stored in the segment archive index.
+ */
+public enum DataEndpoint {
+    SUMMARY("summary"), // /get-summary
+    INDEX_DATA("index-data"), // /get-index-data
+    STATS_OVERVIEW("stats-overview"); // /get-stats-overview
+
+    private final String name;
+
+    DataEndpoint(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name used for the data subdirectory and in the download journal
+     */
+    public String getName() {
+        return name;
+    }
+
+    public static DataEndpoint getByName(final String name) {
+        return Arrays
+            .stream(values())
+            .filter(endpoint -> endpoint.name.equals(name))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException(String.format("Unknown endpoint name: %s", name)));
+    }
+}
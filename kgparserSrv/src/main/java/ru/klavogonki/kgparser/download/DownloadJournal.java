@@ -0,0 +1,206 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only journal of downloaded {@code (playerId, endpoint)} pairs.
+ * <br>
+ * Each line is {@code <playerId> <endpoint name> <OK|FAILED>}, separated by tabs.
+ * A pair is recorded as {@code OK} only after its json file has been completely written,
+ * so on resume the pairs that were in progress during a crash are downloaded again.
+ * <br>
+ * An {@link #inMemory() in-memory} journal does not write anything, it is used when the raw data is not persisted.
+ * <br>
+ * This class is thread-safe.
+ */
+public class DownloadJournal implements Closeable {
+    private static final Logger logger = LogManager.getLogger(DownloadJournal.class);
+
+    public static final String SEPARATOR = "\t";
+
+    public enum Status {
+        OK,
+        FAILED
+    }
+
+    private final File file;
+    private final BufferedWriter writer; // null for in-memory journal
+
+    private final Set<Long> completed = ConcurrentHashMap.newKeySet();
+    private final Set<Long> failed = ConcurrentHashMap.newKeySet();
+
+    private DownloadJournal(final File file, final BufferedWriter writer) {
+        this.file = file;
+        this.writer = writer;
+    }
+
+    /**
+     * @param file journal file
+     * @param resume {@code true} - read the existing journal and append to it, {@code false} - start a new journal
+     * @return opened journal
+     */
+    public static DownloadJournal open(final File file, final boolean resume) {
+        try {
+            FileUtils.forceMkdirParent(file);
+
+            StandardOpenOption mode = resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+
+            DownloadJournal journal = new DownloadJournal(file, writer);
+            if (resume) {
+                journal.read();
+            }
+
+            return journal;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot open download journal %s", file.getPath()), e);
+        }
+    }
+
+    public static DownloadJournal inMemory() {
+        return new DownloadJournal(null, null);
+    }
+
+    private void read() throws IOException {
+        int linesRead = 0;
+        int incorrectLines = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+
+                String[] parts = line.split(SEPARATOR);
+                if (parts.length != 3) { // e.g. the last line not completely written before a crash
+                    logger.warn("Download journal {}: skipping incorrect line {}: \"{}\".", file.getPath(), linesRead, line);
+                    incorrectLines++;
+                    continue;
+                }
+
+                try {
+                    int playerId = Integer.parseInt(parts[0]);
+                    DataEndpoint endpoint = DataEndpoint.getByName(parts[1]);
+                    Status status = Status.valueOf(parts[2]);
+
+                    apply(playerId, endpoint, status);
+                }
+                catch (IllegalArgumentException e) {
+                    logger.warn("Download journal {}: skipping incorrect line {}: \"{}\".", file.getPath(), linesRead, line);
+                    incorrectLines++;
+                }
+            }
+        }
+
+        logger.info(
+            "Download journal {} read: {} lines, {} incorrect lines. Completed pairs: {}, failed pairs: {}.",
+            file.getPath(),
+            linesRead,
+            incorrectLines,
+            completed.size(),
+            failed.size()
+        );
+    }
+
+    private void apply(final int playerId, final DataEndpoint endpoint, final Status status) {
+        long key = getKey(playerId, endpoint);
+
+        switch (status) {
+            case OK:
+                completed.add(key);
+                failed.remove(key);
+                break;
+
+            case FAILED:
+                if (!completed.contains(key)) { // FAILED after OK is not possible in a correct journal, but keep the downloaded data
+                    failed.add(key);
+                }
+                break;
+
+            default:
+                throw new IllegalStateException(String.format("Unknown status: %s", status));
+        }
+    }
+
+    public boolean isCompleted(final int playerId, final DataEndpoint endpoint) {
+        return completed.contains(getKey(playerId, endpoint));
+    }
+
+    /**
+     * Marks all endpoints of the player as not downloaded, so that the player is downloaded again, see {@code --player-ids} option.
+     * The journal file is not changed: the new records of the player are appended after the old ones.
+     */
+    public void forget(final int playerId) {
+        for (DataEndpoint endpoint : DataEndpoint.values()) {
+            long key = getKey(playerId, endpoint);
+            completed.remove(key);
+            failed.remove(key);
+        }
+    }
+
+    public int getCompletedCount() {
+        return completed.size();
+    }
+
+    public int getFailedCount() {
+        return failed.size();
+    }
+
+    public void recordCompleted(final int playerId, final DataEndpoint endpoint) {
+        record(playerId, endpoint, Status.OK);
+    }
+
+    public void recordFailed(final int playerId, final DataEndpoint endpoint) {
+        record(playerId, endpoint, Status.FAILED);
+    }
+
+    private void record(final int playerId, final DataEndpoint endpoint, final Status status) {
+        apply(playerId, endpoint, status);
+
+        if (writer == null) {
+            return;
+        }
+
+        String line = playerId + SEPARATOR + endpoint.getName() + SEPARATOR + status;
+
+        synchronized (writer) {
+            try {
+                writer.write(line);
+                writer.newLine();
+                writer.flush(); // the line must survive a JVM crash
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot write line \"%s\" to download journal %s", line, file.getPath()), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            return;
+        }
+
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+
+    private static long getKey(final int playerId, final DataEndpoint endpoint) {
+        return ((long) playerId * DataEndpoint.values().length) + endpoint.ordinal();
+    }
+}
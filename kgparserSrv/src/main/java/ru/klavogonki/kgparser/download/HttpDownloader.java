@@ -0,0 +1,328 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads API responses using a single shared {@link HttpClient}.
+ * <br>
+ * The client keeps the connections alive and reuses them between the requests (HTTP/2 is used when the server supports it),
+ * so the TLS handshake is not repeated for each of the millions of requests of a full download.
+ * <br>
+ * The responses are requested gzip-compressed.
+ * <br>
+ * A response can be either decoded to a {@link String} ({@link #loadUrlToString}), or streamed through a small buffer
+ * directly to a {@link WritableByteChannel} ({@link #loadUrlToChannel}), e.g. a file.
+ * The streamed response is never held in memory as a whole, its json structure is checked in the same pass by {@link JsonStructureChecker}.
+ * <br>
+ * The number of requests executed at the same time is adjusted by {@link AdaptiveConcurrencyController}
+ * within {@code [1; maxRequestsInFlight]}. Timeouts, 5xx / 429 responses and non-json responses
+ * lower the limit and are retried with {@link RetryBackoff}.
+ * <br>
+ * This class is thread-safe, one instance should be shared by all downloading threads.
+ */
+public class HttpDownloader {
+    private static final Logger logger = LogManager.getLogger(HttpDownloader.class);
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    public static final String GZIP_ENCODING = "gzip";
+
+    public static final int HTTP_OK = 200;
+    public static final int HTTP_TOO_MANY_REQUESTS = 429;
+    public static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+
+    public static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    // direct buffer: a FileChannel writes it without copying to a temporary direct buffer. Reused by all responses of a thread
+    private static final ThreadLocal<ByteBuffer> STREAM_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE));
+
+    /**
+     * Opens the destination of a streamed response. It is called once per attempt, so each retry starts from the empty destination.
+     */
+    @FunctionalInterface
+    public interface ChannelOpener {
+        WritableByteChannel open() throws IOException;
+    }
+
+    /**
+     * Reads the decoded body of a successful (HTTP 200) response.
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        /**
+         * @throws RetryableException if the response is not a json
+         */
+        T read(InputStream body, String urlString) throws IOException;
+    }
+
+    private final HttpClient client;
+    private final AdaptiveConcurrencyController concurrencyController;
+    private final RetryBackoff backoff;
+
+    public HttpDownloader(final int maxRequestsInFlight) {
+        this(createConcurrencyController(maxRequestsInFlight), new RetryBackoff());
+    }
+
+    public HttpDownloader(final AdaptiveConcurrencyController concurrencyController, final RetryBackoff backoff) {
+        this.concurrencyController = concurrencyController;
+        this.backoff = backoff;
+
+        this.client = HttpClient
+            .newBuilder()
+            .version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1 with keep-alive if HTTP/2 is not supported by the server
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+    }
+
+    private static AdaptiveConcurrencyController createConcurrencyController(final int maxRequestsInFlight) {
+        if (maxRequestsInFlight < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect maxRequestsInFlight: %d, maxRequestsInFlight must be >= 1", maxRequestsInFlight));
+        }
+
+        return new AdaptiveConcurrencyController(1, maxRequestsInFlight);
+    }
+
+    public int getMaxRequestsInFlight() {
+        return concurrencyController.getMaxLimit();
+    }
+
+    public AdaptiveConcurrencyController getConcurrencyController() {
+        return concurrencyController;
+    }
+
+    /**
+     * Loads the url, retrying the failed attempts with backoff.
+     * @throws IOException if all attempts have failed, or the url returned a non-retryable HTTP status
+     */
+    public String loadUrlToString(final String urlString) throws IOException {
+        return load(urlString, HttpDownloader::readString);
+    }
+
+    /**
+     * Loads the url, streaming the decoded body to the channel opened by {@code opener}, retrying the failed attempts with backoff.
+     * The channel is closed after each attempt.
+     * @throws IOException if all attempts have failed, or the url returned a non-retryable HTTP status.
+     *                     The destination can contain a partial response in this case.
+     */
+    public StreamedResponse loadUrlToChannel(final String urlString, final ChannelOpener opener) throws IOException {
+        return load(urlString, (body, url) -> {
+            try (WritableByteChannel channel = opener.open()) {
+                return stream(body, channel, url);
+            }
+        });
+    }
+
+    private <T> T load(final String urlString, final BodyReader<T> bodyReader) throws IOException {
+        HttpRequest request = HttpRequest
+            .newBuilder(URI.create(urlString))
+            .timeout(REQUEST_TIMEOUT)
+            .header(ACCEPT_ENCODING_HEADER, GZIP_ENCODING)
+            .GET()
+            .build();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return loadOnce(request, bodyReader);
+            }
+            catch (RetryableException e) {
+                if (!backoff.canRetry(attempt)) {
+                    throw new IOException(String.format("Url %s failed after %d attempts", urlString, attempt), e);
+                }
+
+                long delayMillis = getRetryDelay(urlString, attempt);
+                logger.warn("Attempt {} for url {} failed: {}. Retrying in {} ms.", attempt, urlString, e.getMessage(), delayMillis);
+            }
+        }
+    }
+
+    private long getRetryDelay(final String urlString, final int attempt) throws IOException {
+        try {
+            return backoff.sleep(attempt);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("Interrupted while waiting to retry url %s", urlString), e);
+        }
+    }
+
+    private <T> T loadOnce(final HttpRequest request, final BodyReader<T> bodyReader) throws IOException {
+        String urlString = request.uri().toString();
+
+        try {
+            concurrencyController.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("Interrupted while waiting for a free request slot for url %s", urlString), e);
+        }
+
+        long startNanos = System.nanoTime();
+        boolean slotReleased = false;
+
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStream body = getDecodedBody(response)) {
+                int statusCode = response.statusCode();
+
+                if (isRetryableStatus(statusCode)) {
+                    concurrencyController.onFailure();
+                    slotReleased = true;
+                    throw new RetryableException(String.format("Url %s returned HTTP status %d", urlString, statusCode));
+                }
+
+                if (statusCode != HTTP_OK) { // e.g. 404, retrying will not help
+                    concurrencyController.release();
+                    slotReleased = true;
+                    throw new IOException(String.format("Url %s returned HTTP status %d", urlString, statusCode));
+                }
+
+                T out;
+                try {
+                    out = bodyReader.read(body, urlString);
+                }
+                catch (RetryableException e) { // e.g. an html error page of an overloaded server
+                    concurrencyController.onFailure();
+                    slotReleased = true;
+                    throw e;
+                }
+
+                concurrencyController.onSuccess(System.nanoTime() - startNanos);
+                slotReleased = true;
+                return out;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(String.format("Interrupted while loading url %s", urlString), e);
+        }
+        catch (RetryableException e) {
+            throw e;
+        }
+        catch (IOException e) { // timeout, connection reset etc.
+            if (slotReleased) { // non-retryable HTTP status
+                throw e;
+            }
+
+            concurrencyController.onFailure();
+            slotReleased = true;
+            throw new RetryableException(String.format("Url %s failed: %s", urlString, e), e);
+        }
+        finally {
+            if (!slotReleased) {
+                concurrencyController.release();
+            }
+        }
+    }
+
+    private static String readString(final InputStream body, final String urlString) throws IOException {
+        String out = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+
+        if (!looksLikeJson(out)) {
+            throw new RetryableException(String.format("Url %s returned a non-json response: %s", urlString, StringUtils.abbreviate(out, 100)));
+        }
+
+        return out;
+    }
+
+    static StreamedResponse stream(final InputStream body, final WritableByteChannel channel, final String urlString) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(body);
+        ByteBuffer buffer = STREAM_BUFFER.get();
+        buffer.clear();
+        JsonStructureChecker checker = new JsonStructureChecker();
+
+        byte[] head = new byte[StreamedResponse.HEAD_SIZE];
+        int headLength = 0;
+        long bytes = 0;
+
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+
+            checker.update(buffer);
+
+            if (headLength < head.length) {
+                int length = Math.min(head.length - headLength, buffer.remaining());
+                buffer.duplicate().get(head, headLength, length); // the duplicate does not move the position of the buffer
+                headLength += length;
+            }
+
+            bytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        StreamedResponse response = new StreamedResponse(bytes, head, headLength);
+
+        if (!checker.isComplete()) {
+            throw new RetryableException(String.format("Url %s returned a non-json or incomplete json response (%d bytes): %s", urlString, bytes, StringUtils.abbreviate(response.getHead(), 100)));
+        }
+
+        return response;
+    }
+
+    public static boolean isRetryableStatus(final int statusCode) {
+        return (statusCode == HTTP_TOO_MANY_REQUESTS) || (statusCode >= HTTP_INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Cheap check that the response is a json object or array, without parsing it.
+     */
+    static boolean looksLikeJson(final String response) {
+        String trimmed = response.strip();
+        return (trimmed.startsWith("{") && trimmed.endsWith("}"))
+            || (trimmed.startsWith("[") && trimmed.endsWith("]"));
+    }
+
+    static InputStream getDecodedBody(final HttpResponse<InputStream> response) throws IOException {
+        String contentEncoding = response
+            .headers()
+            .firstValue(CONTENT_ENCODING_HEADER)
+            .orElse("");
+
+        if (contentEncoding.equalsIgnoreCase(GZIP_ENCODING)) {
+            return new GZIPInputStream(response.body());
+        }
+
+        if (!contentEncoding.isEmpty()) {
+            logger.warn("Unexpected {} \"{}\" for url {}. Reading the body as is.", CONTENT_ENCODING_HEADER, contentEncoding, response.uri());
+        }
+
+        return response.body();
+    }
+
+    /**
+     * Failure caused by the server or network state, the request can succeed on retry.
+     */
+    static class RetryableException extends IOException {
+        RetryableException(final String message) {
+            super(message);
+        }
+
+        RetryableException(final String message, final Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
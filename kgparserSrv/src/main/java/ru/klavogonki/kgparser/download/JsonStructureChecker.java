@@ -0,0 +1,108 @@
+package ru.klavogonki.kgparser.download;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap incremental check that the bytes form a single complete json object or array.
+ * <br>
+ * Only the structure is checked: braces and brackets are balanced outside of the strings,
+ * the strings are closed, and there is nothing but whitespace around the root value.
+ * The values themselves are not validated, this is the job of the parser.
+ * It is enough to detect a truncated response or an html error page without parsing the json or decoding it to a {@link String}.
+ * <br>
+ * Works on the UTF-8 bytes: all bytes of multi-byte characters are {@code >= 0x80}, so they never match the structural characters.
+ * <br>
+ * This class is not thread-safe, use one instance per response.
+ */
+public class JsonStructureChecker {
+
+    private int depth;
+    private boolean started;
+    private boolean finished; // root value closed
+    private boolean inString;
+    private boolean escaped;
+    private boolean malformed;
+
+    public void update(final ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            update(buffer.get(i));
+        }
+    }
+
+    public void update(final byte[] bytes, final int offset, final int length) {
+        for (int i = offset; i < offset + length; i++) {
+            update(bytes[i]);
+        }
+    }
+
+    private void update(final byte b) {
+        if (malformed) {
+            return;
+        }
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            }
+            else if (b == '\\') {
+                escaped = true;
+            }
+            else if (b == '"') {
+                inString = false;
+            }
+
+            return;
+        }
+
+        if (isWhitespace(b)) {
+            return;
+        }
+
+        if (finished) { // anything after the root value
+            malformed = true;
+            return;
+        }
+
+        if (!started) {
+            if ((b != '{') && (b != '[')) {
+                malformed = true;
+                return;
+            }
+
+            started = true;
+        }
+
+        switch (b) {
+            case '"':
+                inString = true;
+                break;
+
+            case '{':
+            case '[':
+                depth++;
+                break;
+
+            case '}':
+            case ']':
+                depth--;
+                if (depth == 0) {
+                    finished = true;
+                }
+                break;
+
+            default:
+                // values, colons and commas are not validated
+        }
+    }
+
+    /**
+     * @return {@code true} if all bytes passed so far form a complete json object or array
+     */
+    public boolean isComplete() {
+        return finished && !malformed;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t');
+    }
+}
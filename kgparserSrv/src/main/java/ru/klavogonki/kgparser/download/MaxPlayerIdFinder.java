@@ -0,0 +1,151 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds the max id of a registered player with a few dozen {@code /get-summary} requests:
+ * <ol>
+ *     <li>exponential probing from the start id finds an id range {@code [alive; dead]}</li>
+ *     <li>binary search narrows down the range to the last alive id</li>
+ * </ol>
+ * Deleted accounts make gaps in the ids, so an id is treated as "alive"
+ * if any of {@code gapTolerance} ids starting from it exists.
+ * A gap longer than {@code gapTolerance} may be taken for the end of the ids.
+ * <br>
+ * This class is not thread-safe.
+ */
+public class MaxPlayerIdFinder {
+    private static final Logger logger = LogManager.getLogger(MaxPlayerIdFinder.class);
+
+    public static final int DEFAULT_GAP_TOLERANCE = 5;
+    public static final int DEFAULT_INITIAL_STEP = 1024;
+
+    @FunctionalInterface
+    public interface PlayerExistenceProbe {
+        boolean exists(int playerId) throws IOException;
+    }
+
+    private final PlayerExistenceProbe probe;
+    private final int gapTolerance;
+    private final int initialStep;
+
+    private final Map<Integer, Boolean> probedPlayerIds = new HashMap<>(); // every id is requested at most once
+
+    public MaxPlayerIdFinder(final PlayerExistenceProbe probe, final int gapTolerance, final int initialStep) {
+        if (gapTolerance < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect gapTolerance: %d, gapTolerance must be >= 1", gapTolerance));
+        }
+
+        if (initialStep < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect initialStep: %d, initialStep must be >= 1", initialStep));
+        }
+
+        this.probe = probe;
+        this.gapTolerance = gapTolerance;
+        this.initialStep = initialStep;
+    }
+
+    /**
+     * Probes the players by {@code /get-summary} requests: a player exists unless the response is {@link ApiErrors#INVALID_USER_ID_ERROR}.
+     */
+    public static MaxPlayerIdFinder forHttp(final HttpDownloader httpDownloader, final int gapTolerance) {
+        DataDownloader summaryDownloader = new SummaryDownloader();
+
+        PlayerExistenceProbe probe = playerId -> {
+            String url = summaryDownloader.getUrl(playerId);
+            String json = httpDownloader.loadUrlToString(url);
+
+            GetSummaryResponse summary = JacksonUtils.parse(json, url, GetSummaryResponse.class);
+            return !ApiErrors.INVALID_USER_ID_ERROR.equals(summary.getErr());
+        };
+
+        return new MaxPlayerIdFinder(probe, gapTolerance, DEFAULT_INITIAL_STEP);
+    }
+
+    /**
+     * @param startPlayerId id of an existing player, e.g. the min player id or the max player id of the previous download
+     * @return max existing player id
+     * @throws IOException if a probe request fails
+     */
+    public int find(final int startPlayerId) throws IOException {
+        if (!isAlive(startPlayerId)) {
+            throw new IllegalStateException(String.format("No existing players in [%d; %d]. Cannot start the search from player %d.", startPlayerId, getWindowEnd(startPlayerId), startPlayerId));
+        }
+
+        // exponential probing: find a dead id
+        int alive = startPlayerId;
+        long step = initialStep;
+        int dead;
+        while (true) {
+            int next = (int) Math.min(alive + step, Integer.MAX_VALUE - gapTolerance); // do not overflow the window end
+            if (next == alive) {
+                logger.warn("Player ids reached {}. Stopping the search.", alive);
+                return alive;
+            }
+
+            if (!isAlive(next)) {
+                dead = next;
+                break;
+            }
+
+            alive = next;
+            step *= 2;
+        }
+
+        logger.debug("Max player id is in ({}; {}]. Starting binary search.", alive, dead);
+
+        // binary search: alive + 1 is dead
+        while ((dead - alive) > 1) {
+            int middle = alive + ((dead - alive) / 2);
+
+            if (isAlive(middle)) {
+                alive = middle;
+            }
+            else {
+                dead = middle;
+            }
+        }
+
+        // [alive + 1; alive + gapTolerance] do not exist, therefore alive itself exists
+        logger.info("Max player id found: {}. Requests made: {}.", alive, getRequestsCount());
+        return alive;
+    }
+
+    public int getRequestsCount() {
+        return probedPlayerIds.size();
+    }
+
+    private boolean isAlive(final int playerId) throws IOException {
+        for (int id = playerId; id <= getWindowEnd(playerId); id++) {
+            if (exists(id)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getWindowEnd(final int playerId) {
+        return playerId + gapTolerance - 1;
+    }
+
+    private boolean exists(final int playerId) throws IOException {
+        Boolean exists = probedPlayerIds.get(playerId);
+        if (exists == null) {
+            exists = probe.exists(playerId);
+            probedPlayerIds.put(playerId, exists);
+
+            logger.debug("Player {} exists: {}", playerId, exists);
+        }
+
+        return exists;
+    }
+}
@@ -0,0 +1,263 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.storage.RawDataReader;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ids of the players that were non-existing or blocked in the previous snapshot ("dead" players).
+ * <br>
+ * Deleted accounts stay deleted, so a dead player is requested again only with {@code resampleRate} probability.
+ * Otherwise, its records of the previous snapshot are carried forward to the new snapshot as is,
+ * so the new snapshot is still complete for the parser and the import.
+ * <br>
+ * The ids are kept in a {@link BitSet} (about 80 KB for 600 000 players),
+ * which is built once by reading the summaries of the previous snapshot and saved to {@link #FILE_NAME} in its directory.
+ * <br>
+ * With a {@link RefreshPlan}, the live players that are not scheduled for this download are carried forward as well.
+ * <br>
+ * This class is thread-safe.
+ */
+public class NegativePlayerCache implements Closeable {
+    private static final Logger logger = LogManager.getLogger(NegativePlayerCache.class);
+
+    public static final String FILE_NAME = "dead-player-ids.bin";
+    public static final double DEFAULT_RESAMPLE_RATE = 0.05;
+
+    // not an API error: reason of the skipped requests in the telemetry
+    public static final String CARRIED_FORWARD_REASON = "carried forward";
+
+    private static final int BUILD_PROGRESS_INTERVAL = 50_000;
+
+    private final DeadPlayerIds deadPlayerIds;
+    private final RawDataReader previousSnapshot;
+    private final double resampleRate;
+    private final RefreshPlan refreshPlan; // null to request all live players
+
+    private final AtomicInteger carriedForward = new AtomicInteger();
+    private final AtomicInteger resampled = new AtomicInteger();
+    private final AtomicInteger notScheduled = new AtomicInteger();
+
+    /**
+     * @param previousSnapshot reader of the previous snapshot, closed by {@link #close()}
+     * @param resampleRate probability to request a dead player again, from {@code 0} to {@code 1}
+     */
+    public NegativePlayerCache(final DeadPlayerIds deadPlayerIds, final RawDataReader previousSnapshot, final double resampleRate) {
+        this(deadPlayerIds, previousSnapshot, resampleRate, null);
+    }
+
+    /**
+     * @param previousSnapshot reader of the previous snapshot, closed by {@link #close()}
+     * @param resampleRate probability to request a dead player again, from {@code 0} to {@code 1}
+     * @param refreshPlan live players to request, {@code null} to request all live players
+     */
+    public NegativePlayerCache(final DeadPlayerIds deadPlayerIds, final RawDataReader previousSnapshot, final double resampleRate, final RefreshPlan refreshPlan) {
+        if ((resampleRate < 0) || (resampleRate > 1)) {
+            throw new IllegalArgumentException(String.format("Incorrect resampleRate: %s, resampleRate must be in [0; 1]", resampleRate));
+        }
+
+        this.deadPlayerIds = deadPlayerIds;
+        this.previousSnapshot = previousSnapshot;
+        this.resampleRate = resampleRate;
+        this.refreshPlan = refreshPlan;
+    }
+
+    public boolean isDead(final int playerId) {
+        return deadPlayerIds.contains(playerId);
+    }
+
+    /**
+     * @return {@code true} if the player is dead and has not been picked for the resampling,
+     * or if the player is live and is not scheduled by the refresh plan
+     */
+    public boolean shouldCarryForward(final int playerId) {
+        if (isDead(playerId)) {
+            if ((resampleRate > 0) && (ThreadLocalRandom.current().nextDouble() < resampleRate)) {
+                resampled.incrementAndGet();
+                return false;
+            }
+
+            return true;
+        }
+
+        if ((refreshPlan != null) && !refreshPlan.isScheduled(playerId)) {
+            notScheduled.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return previous records of the player, by endpoint
+     * @throws RuntimeException if a record is missing in the previous snapshot, e.g. its download had failed
+     */
+    public Map<DataEndpoint, String> readPrevious(final int playerId) {
+        Map<DataEndpoint, String> records = new EnumMap<>(DataEndpoint.class);
+        for (DataEndpoint endpoint : DataEndpoint.values()) {
+            records.put(endpoint, previousSnapshot.read(playerId, endpoint));
+        }
+
+        return records;
+    }
+
+    public void recordCarriedForward() {
+        carriedForward.incrementAndGet();
+    }
+
+    public int getDeadPlayersCount() {
+        return deadPlayerIds.size();
+    }
+
+    public int getCarriedForwardCount() {
+        return carriedForward.get();
+    }
+
+    public int getResampledCount() {
+        return resampled.get();
+    }
+
+    /**
+     * @return number of the live players that were not scheduled by the refresh plan
+     */
+    public int getNotScheduledCount() {
+        return notScheduled.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.info(
+            "Negative cache: {} dead players, {} live players not scheduled for the refresh, {} carried forward, {} resampled.",
+            deadPlayerIds.size(),
+            notScheduled.get(),
+            carriedForward.get(),
+            resampled.get()
+        );
+
+        previousSnapshot.close();
+    }
+
+    /**
+     * Immutable set of dead player ids within {@code [minPlayerId; maxPlayerId]} that were checked.
+     */
+    public static class DeadPlayerIds {
+        private final int minPlayerId;
+        private final int maxPlayerId;
+        private final BitSet ids; // bit index = player id
+
+        public DeadPlayerIds(final int minPlayerId, final int maxPlayerId, final BitSet ids) {
+            this.minPlayerId = minPlayerId;
+            this.maxPlayerId = maxPlayerId;
+            this.ids = ids;
+        }
+
+        public boolean contains(final int playerId) {
+            return (playerId >= minPlayerId) && (playerId <= maxPlayerId) && ids.get(playerId);
+        }
+
+        public int size() {
+            return ids.cardinality();
+        }
+
+        /**
+         * @return {@code true} if all players of {@code [minPlayerId; maxPlayerId]} have been checked
+         */
+        public boolean covers(final int minPlayerId, final int maxPlayerId) {
+            return (this.minPlayerId <= minPlayerId) && (this.maxPlayerId >= maxPlayerId);
+        }
+
+        /**
+         * Reads the summaries of the snapshot. A player without a readable summary is not considered dead.
+         */
+        public static DeadPlayerIds build(final RawDataReader snapshot, final int minPlayerId, final int maxPlayerId) {
+            BitSet ids = new BitSet(maxPlayerId + 1);
+            int missing = 0;
+
+            for (int playerId = minPlayerId; playerId <= maxPlayerId; playerId++) {
+                try {
+                    GetSummaryResponse summary = snapshot.parse(playerId, DataEndpoint.SUMMARY, GetSummaryResponse.class);
+                    if (isDead(summary)) {
+                        ids.set(playerId);
+                    }
+                }
+                catch (RuntimeException e) {
+                    missing++;
+                }
+
+                if ((playerId - minPlayerId + 1) % BUILD_PROGRESS_INTERVAL == 0) {
+                    logger.info("Dead player ids: {} / {} summaries read.", playerId - minPlayerId + 1, maxPlayerId - minPlayerId + 1);
+                }
+            }
+
+            logger.info(
+                "Dead player ids built for players [{}; {}]: {} dead players, {} players without a readable summary.",
+                minPlayerId,
+                maxPlayerId,
+                ids.cardinality(),
+                missing
+            );
+
+            return new DeadPlayerIds(minPlayerId, maxPlayerId, ids);
+        }
+
+        static boolean isDead(final GetSummaryResponse summary) {
+            if (ApiErrors.INVALID_USER_ID_ERROR.equals(summary.getErr())) {
+                return true;
+            }
+
+            Integer blocked = summary.getBlocked();
+            return (blocked != null) && (blocked != 0);
+        }
+
+        public void save(final File file) {
+            try {
+                FileUtils.forceMkdirParent(file);
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                    byte[] bytes = ids.toByteArray();
+
+                    out.writeInt(minPlayerId);
+                    out.writeInt(maxPlayerId);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot write dead player ids to %s", file.getPath()), e);
+            }
+        }
+
+        public static DeadPlayerIds load(final File file) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int minPlayerId = in.readInt();
+                int maxPlayerId = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+
+                return new DeadPlayerIds(minPlayerId, maxPlayerId, BitSet.valueOf(bytes));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(String.format("Cannot read dead player ids from %s", file.getPath()), e);
+            }
+        }
+    }
+}
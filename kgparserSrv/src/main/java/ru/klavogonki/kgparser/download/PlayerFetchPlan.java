@@ -0,0 +1,62 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.lang3.StringUtils;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+/**
+ * Decides by the {@code /get-summary} response whether {@code /get-index-data} and {@code /get-stats-overview}
+ * of the player must be requested.
+ * <br>
+ * For a non-existing player, all endpoints return {@link ApiErrors#INVALID_USER_ID_ERROR},
+ * so the follow-up requests are skipped and {@link ApiErrors#SKIPPED_RESPONSE_JSON} is stored instead.
+ * <br>
+ * Blocked players are skipped only if {@code skipBlocked} is set:
+ * their {@code /get-index-data} and {@code /get-stats-overview} still return data that is used by the export.
+ */
+public class PlayerFetchPlan {
+    private final boolean fetchFollowUps;
+    private final String skipReason;
+
+    private PlayerFetchPlan(final boolean fetchFollowUps, final String skipReason) {
+        this.fetchFollowUps = fetchFollowUps;
+        this.skipReason = skipReason;
+    }
+
+    public static PlayerFetchPlan fromSummary(final GetSummaryResponse summary, final boolean skipBlocked) {
+        String err = summary.getErr();
+        if (ApiErrors.INVALID_USER_ID_ERROR.equals(err)) {
+            return skip(err);
+        }
+
+        if (StringUtils.isNotBlank(err)) { // unknown error, let the parser decide what to do with the full data
+            return fetchAll();
+        }
+
+        Integer blocked = summary.getBlocked();
+        if (skipBlocked && (blocked != null) && (blocked != 0)) {
+            return skip(String.format("blocked = %d", blocked));
+        }
+
+        return fetchAll();
+    }
+
+    private static PlayerFetchPlan fetchAll() {
+        return new PlayerFetchPlan(true, null);
+    }
+
+    private static PlayerFetchPlan skip(final String reason) {
+        return new PlayerFetchPlan(false, reason);
+    }
+
+    public boolean isFetchFollowUps() {
+        return fetchFollowUps;
+    }
+
+    /**
+     * @return why the follow-up requests are skipped, {@code null} if they are not skipped
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+}
@@ -0,0 +1,311 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+import ru.klavogonki.kgparser.telemetry.CrawlTelemetry;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Downloads all data of a single player according to its {@link PlayerFetchPlan}:
+ * <ol>
+ *     <li>{@code /get-summary} is requested first</li>
+ *     <li>for a non-existing (and optionally blocked) player, {@link ApiErrors#SKIPPED_RESPONSE_JSON} is stored for the other endpoints without requesting them</li>
+ *     <li>otherwise, {@code /get-index-data} and {@code /get-stats-overview} are requested concurrently</li>
+ * </ol>
+ * The endpoints that are already completed according to the {@link DownloadJournal} are not requested again.
+ * <br>
+ * If {@code streamResponses} is {@code true} and the {@link RawDataWriter} supports it, the follow-up responses
+ * are streamed directly to the storage, see {@link HttpDownloader#loadUrlToChannel}.
+ * The summary is always loaded to a {@link String}, since the fetch plan is built from it.
+ * <br>
+ * A dead player of the {@link NegativePlayerCache} is not requested at all, its previous records are stored instead,
+ * unless it has been picked for the resampling.
+ * <br>
+ * This class is thread-safe, one instance should be shared by all downloading threads.
+ */
+public class PlayerFetcher {
+    private static final Logger logger = LogManager.getLogger(PlayerFetcher.class);
+
+    private final HttpDownloader httpDownloader;
+    private final RawDataWriter writer;
+    private final DownloadJournal journal;
+    private final ExecutorService followUpExecutor;
+    private final boolean skipBlocked;
+    private final CrawlTelemetry telemetry;
+    private final boolean streamResponses;
+    private final NegativePlayerCache negativeCache; // null if there is no previous snapshot
+
+    // the downloaders are stateless
+    private final DataDownloader summaryDownloader = new SummaryDownloader();
+    private final List<DataDownloader> followUpDownloaders = List.of(new IndexDataDownloader(), new StatsOverviewDownloader());
+
+    /**
+     * @param followUpExecutor executor for the concurrent follow-up requests.
+     *                         Each fetching thread submits at most one task at a time, so the executor must have as many threads as the fetching threads.
+     * @param negativeCache dead and not scheduled players of the previous snapshot, {@code null} to request all players
+     */
+    public PlayerFetcher(
+        final HttpDownloader httpDownloader,
+        final RawDataWriter writer,
+        final DownloadJournal journal,
+        final ExecutorService followUpExecutor,
+        final boolean skipBlocked,
+        final CrawlTelemetry telemetry,
+        final boolean streamResponses,
+        final NegativePlayerCache negativeCache
+    ) {
+        this.httpDownloader = httpDownloader;
+        this.writer = writer;
+        this.journal = journal;
+        this.followUpExecutor = followUpExecutor;
+        this.skipBlocked = skipBlocked;
+        this.telemetry = telemetry;
+        this.streamResponses = streamResponses && writer.isStreamingSupported();
+        this.negativeCache = negativeCache;
+
+        if (streamResponses && !writer.isStreamingSupported()) {
+            logger.warn("{} does not support streaming. The responses will be loaded to memory.", writer.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @return {@code true} if all endpoints of the player have been downloaded (or skipped), {@code false} otherwise
+     */
+    public boolean fetch(final int playerId) {
+        if ((negativeCache != null) && negativeCache.shouldCarryForward(playerId)) {
+            Map<DataEndpoint, String> previousRecords = readPreviousRecords(playerId);
+            if (previousRecords != null) {
+                return carryForward(playerId, previousRecords);
+            }
+        }
+
+        List<DataDownloader> followUps = followUpDownloaders
+            .stream()
+            .filter(downloader -> !journal.isCompleted(playerId, downloader.getEndpoint()))
+            .collect(Collectors.toList());
+
+        if (followUps.isEmpty()) { // the plan does not depend on the summary anymore
+            if (journal.isCompleted(playerId, DataEndpoint.SUMMARY)) {
+                logger.debug("Player {}: all data has already been downloaded. Skipping it.", playerId);
+                return true;
+            }
+
+            return tryFetchAndStore(summaryDownloader, playerId);
+        }
+
+        // the summary is requested even if it has already been downloaded, since the plan depends on it
+        String summaryJson;
+        try {
+            summaryJson = fetchAndStore(summaryDownloader, playerId);
+        }
+        catch (Exception e) {
+            handleError(summaryDownloader, playerId, e);
+            return false;
+        }
+
+        PlayerFetchPlan plan = getPlan(playerId, summaryJson);
+        if (!plan.isFetchFollowUps()) {
+            logger.debug("Player {}: {}. Skipping {}.", playerId, plan.getSkipReason(), getEndpointNames(followUps));
+
+            boolean success = true;
+            for (DataDownloader followUp : followUps) {
+                telemetry.recordSkipped(followUp.getEndpoint(), ApiErrors.SKIPPED_ERROR);
+                success &= tryStore(followUp, playerId, ApiErrors.SKIPPED_RESPONSE_JSON);
+            }
+
+            return success;
+        }
+
+        if (followUps.size() == 1) {
+            return tryFetchAndStore(followUps.get(0), playerId);
+        }
+
+        // request the endpoints concurrently: one in the executor, one in the current thread
+        DataDownloader asyncFollowUp = followUps.get(followUps.size() - 1);
+        Future<Boolean> asyncResult = followUpExecutor.submit(() -> tryFetchAndStore(asyncFollowUp, playerId));
+
+        boolean success = true;
+        for (DataDownloader followUp : followUps.subList(0, followUps.size() - 1)) {
+            success &= tryFetchAndStore(followUp, playerId);
+        }
+
+        return success & waitFor(asyncResult, asyncFollowUp, playerId);
+    }
+
+    private Map<DataEndpoint, String> readPreviousRecords(final int playerId) {
+        try {
+            return negativeCache.readPrevious(playerId);
+        }
+        catch (RuntimeException e) { // e.g. the previous download of the player had failed
+            logger.debug("Player {} must be carried forward, but its previous records cannot be read: {}. Downloading the player.", playerId, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean carryForward(final int playerId, final Map<DataEndpoint, String> previousRecords) {
+        logger.debug("Player {} is dead or not scheduled for the refresh. Carrying its records of the previous snapshot forward.", playerId);
+
+        boolean success = true;
+        for (DataDownloader downloader : getAllDownloaders()) {
+            DataEndpoint endpoint = downloader.getEndpoint();
+            if (journal.isCompleted(playerId, endpoint)) {
+                continue;
+            }
+
+            telemetry.recordSkipped(endpoint, NegativePlayerCache.CARRIED_FORWARD_REASON);
+            success &= tryStore(downloader, playerId, previousRecords.get(endpoint));
+        }
+
+        negativeCache.recordCarriedForward();
+        return success;
+    }
+
+    private List<DataDownloader> getAllDownloaders() {
+        List<DataDownloader> result = new ArrayList<>();
+        result.add(summaryDownloader);
+        result.addAll(followUpDownloaders);
+        return result;
+    }
+
+    private PlayerFetchPlan getPlan(final int playerId, final String summaryJson) {
+        try {
+            GetSummaryResponse summary = JacksonUtils.parse(summaryJson, writer.getLocation(playerId, DataEndpoint.SUMMARY), GetSummaryResponse.class);
+            return PlayerFetchPlan.fromSummary(summary, skipBlocked);
+        }
+        catch (RuntimeException e) { // let the parser report the incorrect summary, just download everything
+            logger.warn("Player {}: cannot parse summary to build the fetch plan. Downloading all endpoints.", playerId);
+            return PlayerFetchPlan.fromSummary(new GetSummaryResponse(), skipBlocked);
+        }
+    }
+
+    private boolean waitFor(final Future<Boolean> result, final DataDownloader downloader, final int playerId) {
+        try {
+            return result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            handleError(downloader, playerId, e);
+            return false;
+        }
+        catch (ExecutionException e) { // tryFetchAndStore does not throw, but be safe
+            handleError(downloader, playerId, e.getCause());
+            return false;
+        }
+    }
+
+    private boolean tryFetchAndStore(final DataDownloader downloader, final int playerId) {
+        try {
+            if (streamResponses && (downloader != summaryDownloader)) {
+                fetchAndStream(downloader, playerId);
+            }
+            else {
+                fetchAndStore(downloader, playerId);
+            }
+
+            return true;
+        }
+        catch (Exception e) { // do not let one failed player abort the whole batch
+            handleError(downloader, playerId, e);
+            return false;
+        }
+    }
+
+    private boolean tryStore(final DataDownloader downloader, final int playerId, final String json) {
+        try {
+            store(downloader, playerId, json);
+            return true;
+        }
+        catch (Exception e) {
+            handleError(downloader, playerId, e);
+            return false;
+        }
+    }
+
+    private String fetchAndStore(final DataDownloader downloader, final int playerId) throws IOException {
+        downloader.logDownloadStarting(playerId);
+
+        String urlString = downloader.getUrl(playerId);
+        logger.debug("Url to load: {}", urlString);
+
+        // the latency includes the retries and waiting for a free request slot
+        long startNanos = System.nanoTime();
+        String out;
+        try {
+            out = httpDownloader.loadUrlToString(urlString);
+        }
+        catch (IOException e) {
+            telemetry.recordFailure(downloader.getEndpoint(), System.nanoTime() - startNanos);
+            throw e;
+        }
+
+        telemetry.recordResponse(downloader.getEndpoint(), System.nanoTime() - startNanos, out);
+
+        logger.debug("Response for url {}:", urlString);
+        logger.debug(StringUtils.abbreviate(out, 100));  // do not spam the whole response to log!
+
+        store(downloader, playerId, out);
+        return out;
+    }
+
+    private void fetchAndStream(final DataDownloader downloader, final int playerId) throws IOException {
+        downloader.logDownloadStarting(playerId);
+
+        DataEndpoint endpoint = downloader.getEndpoint();
+        String urlString = downloader.getUrl(playerId);
+        logger.debug("Url to stream: {}", urlString);
+
+        long startNanos = System.nanoTime();
+        StreamedResponse response;
+        try {
+            response = httpDownloader.loadUrlToChannel(urlString, () -> writer.openChannel(playerId, endpoint));
+        }
+        catch (IOException e) {
+            telemetry.recordFailure(endpoint, System.nanoTime() - startNanos);
+            throw e;
+        }
+
+        telemetry.recordResponse(endpoint, System.nanoTime() - startNanos, response);
+
+        logger.debug("Response for url {} ({} bytes):", urlString, response.getBytes());
+        logger.debug(StringUtils.abbreviate(response.getHead(), 100));
+
+        journal.recordCompleted(playerId, endpoint);
+        downloader.logDataWrittenToFile(playerId, writer.getLocation(playerId, endpoint));
+    }
+
+    private void store(final DataDownloader downloader, final int playerId, final String json) throws IOException {
+        DataEndpoint endpoint = downloader.getEndpoint();
+
+        writer.write(playerId, endpoint, json);
+        journal.recordCompleted(playerId, endpoint);
+
+        downloader.logDataWrittenToFile(playerId, writer.getLocation(playerId, endpoint));
+    }
+
+    private void handleError(final DataDownloader downloader, final int playerId, final Throwable e) {
+        DataEndpoint endpoint = downloader.getEndpoint();
+
+        logger.error(String.format("Failed to download %s for player %d", endpoint.getName(), playerId), e);
+        journal.recordFailed(playerId, endpoint);
+    }
+
+    private static String getEndpointNames(final List<DataDownloader> downloaders) {
+        return downloaders
+            .stream()
+            .map(downloader -> downloader.getEndpoint().getName())
+            .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,115 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared queue of small {@code [minPlayerId; maxPlayerId]} batches.
+ * <br>
+ * Download threads take the next batch as soon as they finish the previous one,
+ * so a range of slow players does not keep a single thread busy while the other threads are idle.
+ * <br>
+ * This class is thread-safe.
+ */
+public class PlayerIdBatchQueue {
+    private static final Logger logger = LogManager.getLogger(PlayerIdBatchQueue.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final int minPlayerId;
+    private final int maxPlayerId;
+    private final int batchSize;
+    private final int totalBatches;
+
+    private final AtomicInteger nextBatchMinPlayerId;
+    private final AtomicInteger completedBatches = new AtomicInteger();
+    private final AtomicInteger completedPlayers = new AtomicInteger();
+    private final Set<Integer> failedPlayerIds = ConcurrentHashMap.newKeySet();
+
+    public PlayerIdBatchQueue(final int minPlayerId, final int maxPlayerId, final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect batchSize: %d, batchSize must be >= 1", batchSize));
+        }
+
+        if (minPlayerId > maxPlayerId) {
+            throw new IllegalArgumentException(String.format("minPlayerId = %d > maxPlayerId = %d", minPlayerId, maxPlayerId));
+        }
+
+        this.minPlayerId = minPlayerId;
+        this.maxPlayerId = maxPlayerId;
+        this.batchSize = batchSize;
+
+        int totalPlayers = maxPlayerId - minPlayerId + 1;
+        this.totalBatches = (totalPlayers + batchSize - 1) / batchSize;
+
+        this.nextBatchMinPlayerId = new AtomicInteger(minPlayerId);
+
+        logger.debug("Player ids [{}; {}] (total {} players) split to {} batches of max {} players.", minPlayerId, maxPlayerId, totalPlayers, totalBatches, batchSize);
+    }
+
+    /**
+     * @return next batch as {@code [minPlayerId; maxPlayerId]}, or {@code null} if all batches have already been taken
+     */
+    public ImmutablePair<Integer, Integer> nextBatch() {
+        int batchMinPlayerId = nextBatchMinPlayerId.getAndUpdate(value -> (value > maxPlayerId) ? value : value + batchSize);
+        if (batchMinPlayerId > maxPlayerId) {
+            return null;
+        }
+
+        int batchMaxPlayerId = (int) Math.min((long) batchMinPlayerId + batchSize - 1, maxPlayerId); // long to not overflow for maxPlayerId near Integer.MAX_VALUE
+        return new ImmutablePair<>(batchMinPlayerId, batchMaxPlayerId);
+    }
+
+    public void batchCompleted(final ImmutablePair<Integer, Integer> batch, final Collection<Integer> batchFailedPlayerIds) {
+        failedPlayerIds.addAll(batchFailedPlayerIds);
+
+        int batchPlayers = batch.getRight() - batch.getLeft() + 1;
+        int players = completedPlayers.addAndGet(batchPlayers);
+        int batches = completedBatches.incrementAndGet();
+
+        logger.info(
+            "Batch [{}; {}] completed, failed players in batch: {}. Completed batches: {} / {}, completed players: {} / {}.",
+            batch.getLeft(),
+            batch.getRight(),
+            batchFailedPlayerIds.size(),
+            batches,
+            totalBatches,
+            players,
+            getTotalPlayers()
+        );
+    }
+
+    public int getTotalPlayers() {
+        return maxPlayerId - minPlayerId + 1;
+    }
+
+    public int getTotalBatches() {
+        return totalBatches;
+    }
+
+    public int getCompletedBatches() {
+        return completedBatches.get();
+    }
+
+    public int getCompletedPlayers() {
+        return completedPlayers.get();
+    }
+
+    public boolean isCompleted() {
+        return completedBatches.get() == totalBatches;
+    }
+
+    public List<Integer> getFailedPlayerIds() {
+        List<Integer> result = new ArrayList<>(failedPlayerIds);
+        result.sort(Integer::compareTo);
+        return result;
+    }
+}
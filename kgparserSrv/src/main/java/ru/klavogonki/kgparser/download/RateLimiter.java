@@ -0,0 +1,48 @@
+package ru.klavogonki.kgparser.download;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the calls of {@link #acquire()} evenly in time, at most {@code permitsPerSecond} calls per second.
+ * <br>
+ * Unused permits are not accumulated: after an idle period, the calls are still paced, without a burst.
+ * <br>
+ * This class is thread-safe.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextPermitNanos; // guarded by this
+
+    public RateLimiter(final double permitsPerSecond) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException(String.format("Incorrect permitsPerSecond: %s, permitsPerSecond must be > 0", permitsPerSecond));
+        }
+
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.nextPermitNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the next permit is available.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permitNanos = Math.max(nextPermitNanos, now);
+
+            nextPermitNanos = permitNanos + intervalNanos;
+            waitNanos = permitNanos - now;
+        }
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.BitSet;
+
+/**
+ * Players to request in a single download, see {@code --refresh-plan} option of {@link ru.klavogonki.kgparser.PlayerDataDownloader}.
+ * The other players are carried forward from the previous snapshot by {@link NegativePlayerCache}.
+ * <br>
+ * The plan covers the players within {@code [minPlayerId; maxPlayerId]} that were known when it was built by {@link RefreshScheduler}.
+ * The players out of this range (e.g. registered later) are always requested.
+ * <br>
+ * File format: {@code minPlayerId=<n>} and {@code maxPlayerId=<n>} lines, then one requested player id per line.
+ * Blank lines and lines starting with {@code #} are ignored.
+ */
+public class RefreshPlan {
+    private static final String MIN_PLAYER_ID_KEY = "minPlayerId";
+    private static final String MAX_PLAYER_ID_KEY = "maxPlayerId";
+    private static final String KEY_VALUE_SEPARATOR = "=";
+    private static final String COMMENT_PREFIX = "#";
+
+    private final int minPlayerId;
+    private final int maxPlayerId;
+    private final BitSet scheduledPlayerIds; // bit index = player id
+
+    public RefreshPlan(final int minPlayerId, final int maxPlayerId, final BitSet scheduledPlayerIds) {
+        this.minPlayerId = minPlayerId;
+        this.maxPlayerId = maxPlayerId;
+        this.scheduledPlayerIds = scheduledPlayerIds;
+    }
+
+    public boolean isScheduled(final int playerId) {
+        if ((playerId < minPlayerId) || (playerId > maxPlayerId)) {
+            return true;
+        }
+
+        return scheduledPlayerIds.get(playerId);
+    }
+
+    public int getMinPlayerId() {
+        return minPlayerId;
+    }
+
+    public int getMaxPlayerId() {
+        return maxPlayerId;
+    }
+
+    /**
+     * @return number of the requested players within {@code [minPlayerId; maxPlayerId]}
+     */
+    public int getScheduledCount() {
+        return scheduledPlayerIds.cardinality();
+    }
+
+    public void write(final File file) {
+        try {
+            FileUtils.forceMkdirParent(file);
+
+            try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(MIN_PLAYER_ID_KEY + KEY_VALUE_SEPARATOR + minPlayerId);
+                writer.newLine();
+                writer.write(MAX_PLAYER_ID_KEY + KEY_VALUE_SEPARATOR + maxPlayerId);
+                writer.newLine();
+
+                for (int playerId = scheduledPlayerIds.nextSetBit(0); playerId >= 0; playerId = scheduledPlayerIds.nextSetBit(playerId + 1)) {
+                    writer.write(String.valueOf(playerId));
+                    writer.newLine();
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot write refresh plan to %s", file.getPath()), e);
+        }
+    }
+
+    public static RefreshPlan read(final File file) {
+        Integer minPlayerId = null;
+        Integer maxPlayerId = null;
+        BitSet scheduledPlayerIds = new BitSet();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+
+                if (!line.contains(KEY_VALUE_SEPARATOR)) {
+                    scheduledPlayerIds.set(Integer.parseInt(line));
+                    continue;
+                }
+
+                String key = StringUtils.substringBefore(line, KEY_VALUE_SEPARATOR);
+                int value = Integer.parseInt(StringUtils.substringAfter(line, KEY_VALUE_SEPARATOR));
+
+                switch (key) {
+                    case MIN_PLAYER_ID_KEY:
+                        minPlayerId = value;
+                        break;
+
+                    case MAX_PLAYER_ID_KEY:
+                        maxPlayerId = value;
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown key \"%s\" in refresh plan %s", key, file.getPath()));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read refresh plan from %s", file.getPath()), e);
+        }
+
+        if ((minPlayerId == null) || (maxPlayerId == null)) {
+            throw new IllegalArgumentException(String.format("Refresh plan %s must contain %s and %s", file.getPath(), MIN_PLAYER_ID_KEY, MAX_PLAYER_ID_KEY));
+        }
+
+        return new RefreshPlan(minPlayerId, maxPlayerId, scheduledPlayerIds);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Builds the {@link RefreshPlan} of a single daily download from the activity of the previously imported players.
+ * <br>
+ * A player is {@link RefreshTier#HOT} if any of the player's vocabulary stats has been updated within {@code hotActivityDays}
+ * before the run date, and {@link RefreshTier#COLD} otherwise.
+ * <br>
+ * The cold players are spread evenly across the days of {@link RefreshTier#COLD} interval by their player id,
+ * so that each run requests about the same number of them. There is no state between the runs:
+ * if a daily run is skipped, its cold players wait for the next interval.
+ * <br>
+ * This class is not thread-safe.
+ */
+public class RefreshScheduler {
+    private static final Logger logger = LogManager.getLogger(RefreshScheduler.class);
+
+    public static final int DEFAULT_HOT_ACTIVITY_DAYS = 30;
+
+    private final LocalDate runDate;
+    private final LocalDateTime hotActivityStart;
+
+    private final BitSet scheduledPlayerIds = new BitSet();
+    private final Map<RefreshTier, Integer> playersByTier = new EnumMap<>(RefreshTier.class);
+    private final Map<RefreshTier, Integer> scheduledByTier = new EnumMap<>(RefreshTier.class);
+
+    private int minPlayerId = Integer.MAX_VALUE;
+    private int maxPlayerId = Integer.MIN_VALUE;
+
+    public RefreshScheduler(final LocalDate runDate, final int hotActivityDays) {
+        if (hotActivityDays < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect hotActivityDays: %d, hotActivityDays must be >= 1", hotActivityDays));
+        }
+
+        this.runDate = runDate;
+        this.hotActivityStart = runDate.minusDays(hotActivityDays).atStartOfDay();
+
+        for (RefreshTier tier : RefreshTier.values()) {
+            playersByTier.put(tier, 0);
+            scheduledByTier.put(tier, 0);
+        }
+    }
+
+    /**
+     * @param totalRacesCount total races count of the player, {@code null} for a non-existing player
+     * @param lastActivity max {@code updated} of the player vocabulary stats, {@code null} if the player has no stats
+     */
+    public RefreshTier getTier(final Integer totalRacesCount, final LocalDateTime lastActivity) {
+        if ((totalRacesCount == null) || (totalRacesCount == 0) || (lastActivity == null)) {
+            return RefreshTier.COLD;
+        }
+
+        return lastActivity.isBefore(hotActivityStart) ? RefreshTier.COLD : RefreshTier.HOT;
+    }
+
+    /**
+     * @return {@code true} if the player of the tier must be requested on the run date
+     */
+    public boolean isDue(final int playerId, final RefreshTier tier) {
+        int intervalDays = tier.getIntervalDays();
+        return Math.floorMod(playerId, intervalDays) == Math.floorMod(runDate.toEpochDay(), intervalDays);
+    }
+
+    /**
+     * Adds a previously imported player to the plan.
+     * @see #getTier
+     */
+    public void add(final int playerId, final Integer totalRacesCount, final LocalDateTime lastActivity) {
+        RefreshTier tier = getTier(totalRacesCount, lastActivity);
+        playersByTier.merge(tier, 1, Integer::sum);
+
+        if (isDue(playerId, tier)) {
+            scheduledPlayerIds.set(playerId);
+            scheduledByTier.merge(tier, 1, Integer::sum);
+        }
+
+        minPlayerId = Math.min(minPlayerId, playerId);
+        maxPlayerId = Math.max(maxPlayerId, playerId);
+    }
+
+    /**
+     * @return plan of the added players. Players out of their id range (e.g. registered after the import) are always requested
+     */
+    public RefreshPlan createPlan() {
+        if (minPlayerId > maxPlayerId) {
+            throw new IllegalStateException("No players have been added to the refresh plan.");
+        }
+
+        for (RefreshTier tier : RefreshTier.values()) {
+            logger.info(
+                "Refresh plan for {}: {} {} players, {} of them will be requested.",
+                runDate,
+                playersByTier.get(tier),
+                tier,
+                scheduledByTier.get(tier)
+            );
+        }
+
+        return new RefreshPlan(minPlayerId, maxPlayerId, (BitSet) scheduledPlayerIds.clone());
+    }
+
+    public int getPlayersCount(final RefreshTier tier) {
+        return playersByTier.get(tier);
+    }
+
+    public int getScheduledCount(final RefreshTier tier) {
+        return scheduledByTier.get(tier);
+    }
+}
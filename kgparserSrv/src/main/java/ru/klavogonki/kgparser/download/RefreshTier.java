@@ -0,0 +1,29 @@
+package ru.klavogonki.kgparser.download;
+
+/**
+ * How often a player is requested again, see {@link RefreshScheduler}.
+ */
+public enum RefreshTier {
+    /**
+     * Player has raced recently, the player data changes every day.
+     */
+    HOT(1),
+
+    /**
+     * Dormant, never raced or deleted player, the player data changes rarely if ever.
+     */
+    COLD(30);
+
+    private final int intervalDays;
+
+    RefreshTier(final int intervalDays) {
+        this.intervalDays = intervalDays;
+    }
+
+    /**
+     * @return player of this tier is requested once in {@code intervalDays} days
+     */
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.klavogonki.kgparser.download;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Capped exponential backoff with full jitter.
+ * <br>
+ * The delay before the retry after the {@code n}-th failed attempt is a random value
+ * in {@code [0; min(maxDelay, baseDelay * 2^(n-1))]}, so that the threads that failed at the same time
+ * do not retry at the same time as well.
+ */
+public class RetryBackoff {
+    public static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(500);
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(1);
+    public static final int DEFAULT_MAX_ATTEMPTS = 8;
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+
+    public RetryBackoff() {
+        this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public RetryBackoff(final Duration baseDelay, final Duration maxDelay, final int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException(String.format("Incorrect maxAttempts: %d, maxAttempts must be >= 1", maxAttempts));
+        }
+
+        if (baseDelay.compareTo(maxDelay) > 0) {
+            throw new IllegalArgumentException(String.format("baseDelay = %s > maxDelay = %s", baseDelay, maxDelay));
+        }
+
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting from 1
+     * @return {@code true} if one more attempt is allowed after the failed {@code attempt}
+     */
+    public boolean canRetry(final int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting from 1
+     * @return maximal delay before the next attempt, in milliseconds
+     */
+    public long getMaxDelayMillis(final int attempt) {
+        int shift = Math.min(attempt - 1, 30); // do not overflow on large attempt numbers
+        return Math.min(maxDelayMillis, baseDelayMillis << shift);
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting from 1
+     * @return random delay before the next attempt, in milliseconds
+     */
+    public long getDelayMillis(final int attempt) {
+        return ThreadLocalRandom.current().nextLong(getMaxDelayMillis(attempt) + 1);
+    }
+
+    /**
+     * Sleeps before the next attempt.
+     * @param attempt number of the failed attempt, starting from 1
+     * @return the delay slept, in milliseconds
+     */
+    public long sleep(final int attempt) throws InterruptedException {
+        long delayMillis = getDelayMillis(attempt);
+        Thread.sleep(delayMillis);
+        return delayMillis;
+    }
+}
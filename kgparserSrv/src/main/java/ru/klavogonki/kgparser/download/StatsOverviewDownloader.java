@@ -2,12 +2,16 @@ package ru.klavogonki.kgparser.download;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import ru.klavogonki.kgparser.PlayerDataDownloader;
 import ru.klavogonki.kgparser.http.UrlConstructor;
 
 public class StatsOverviewDownloader implements DataDownloader {
     private static final Logger logger = LogManager.getLogger(StatsOverviewDownloader.class);
 
+    @Override
+    public DataEndpoint getEndpoint() {
+        return DataEndpoint.STATS_OVERVIEW;
+    }
+
     @Override
     public void logDownloadStarting(final int playerId) {
         logger.debug("Loading player stats overview for player {}...", playerId);
@@ -18,11 +22,6 @@ public class StatsOverviewDownloader implements DataDownloader {
         return UrlConstructor.getStatsOverview(playerId);
     }
 
-    @Override
-    public String getJsonFilePath(final PlayerDataDownloader.Config config, final int playerId) {
-        return config.getStatsOverviewFilePath(playerId);
-    }
-
     @Override
     public void logDataWrittenToFile(final int playerId, final String jsonFilePath) {
         logger.debug("Stats overview for player {} successfully written to file {}.", playerId, jsonFilePath);
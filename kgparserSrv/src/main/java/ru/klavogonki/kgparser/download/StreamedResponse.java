@@ -0,0 +1,43 @@
+package ru.klavogonki.kgparser.download;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Response written by {@link HttpDownloader#loadUrlToChannel} directly to its destination.
+ * <br>
+ * Only the first {@link #HEAD_SIZE} bytes are kept in memory, for logging and for the error responses,
+ * which are always shorter than that.
+ */
+public class StreamedResponse {
+    public static final int HEAD_SIZE = 256;
+
+    private final long bytes;
+    private final byte[] head;
+
+    StreamedResponse(final long bytes, final byte[] head, final int headLength) {
+        this.bytes = bytes;
+        this.head = Arrays.copyOf(head, headLength);
+    }
+
+    /**
+     * @return size of the decoded response body
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return up to {@link #HEAD_SIZE} first bytes of the response, a multi-byte character at the end can be cut
+     */
+    public String getHead() {
+        return new String(head, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return {@code true} if {@link #getHead()} contains the whole response
+     */
+    public boolean isHeadComplete() {
+        return bytes == head.length;
+    }
+}
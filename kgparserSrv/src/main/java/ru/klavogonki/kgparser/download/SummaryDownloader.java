@@ -2,12 +2,16 @@ package ru.klavogonki.kgparser.download;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import ru.klavogonki.kgparser.PlayerDataDownloader;
 import ru.klavogonki.kgparser.http.UrlConstructor;
 
 public class SummaryDownloader implements DataDownloader {
     private static final Logger logger = LogManager.getLogger(SummaryDownloader.class);
 
+    @Override
+    public DataEndpoint getEndpoint() {
+        return DataEndpoint.SUMMARY;
+    }
+
     @Override
     public void logDownloadStarting(final int playerId) {
         logger.debug("Loading player summary for player {}...", playerId);
@@ -18,11 +22,6 @@ public class SummaryDownloader implements DataDownloader {
         return UrlConstructor.getSummary(playerId);
     }
 
-    @Override
-    public String getJsonFilePath(final PlayerDataDownloader.Config config, final int playerId) {
-        return config.getPlayerSummaryFilePath(playerId);
-    }
-
     @Override
     public void logDataWrittenToFile(final int playerId, final String jsonFilePath) {
         logger.debug("Summary for player {} successfully written to file {}.", playerId, jsonFilePath);
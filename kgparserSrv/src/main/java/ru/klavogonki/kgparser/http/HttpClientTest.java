@@ -2,6 +2,7 @@ package ru.klavogonki.kgparser.http;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicResponseHandler;
@@ -14,6 +15,9 @@ import org.apache.logging.log4j.core.config.DefaultConfiguration;
 import org.json.JSONObject;
 import ru.klavogonki.kgparser.Rank;
 import ru.klavogonki.kgparser.StandardDictionary;
+import ru.klavogonki.kgparser.download.AdaptiveConcurrencyController;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.RetryBackoff;
 import su.opencode.kefir.util.JsonUtils;
 import su.opencode.kefir.util.ObjectUtils;
 import su.opencode.kefir.util.StringUtils;
@@ -199,61 +203,101 @@ public class HttpClientTest
 	}
 
 	private static String getResponseBody(String url) throws IOException {
-		boolean failed;
-		String response = null;
+		return getResponseBody(url, false);
+	}
+	private static String getResponseBodyEnsureJson(String url) throws IOException {
+		return getResponseBody(url, true);
+	}
+
+	/**
+	 * Retries failed requests with capped exponential backoff and jitter instead of retrying them immediately,
+	 * so that the server is not hammered while it is down.
+	 */
+	private static String getResponseBody(String url, boolean ensureJson) throws IOException {
 		String cookie = new ConfigurationLoader().readConfigurationFile(ConfigurationLoader.COOKIE_CONF_FILE_NAME);
 
-		do
+		for (int attempt = 1; ; attempt++)
 		{
 			try
 			{
-				response = tryToGetResponseBody(url, cookie);
-				failed = false;
+				return tryToGetResponseBodyLimited(url, cookie, ensureJson);
 			}
 			catch (UrlAccessFailedException e)
 			{
-				logger.warn("Failed to access url \"{}\", trying once more.", url);
-				failed = true;
+				if ( !backoff.canRetry(attempt) )
+				{
+					String errorMessage = String.format("Failed to access url \"%s\" after %d attempts.", url, attempt);
+					throw new IOException(errorMessage, e);
+				}
+
+				try
+				{
+					long delayMillis = backoff.getDelayMillis(attempt);
+					String errorMessage = String.format("Failed to access url \"%s\" (attempt %d), trying once more in %d ms.", url, attempt, delayMillis);
+					logger.error(errorMessage, e);
+
+					Thread.sleep(delayMillis);
+				}
+				catch (InterruptedException ie)
+				{
+					Thread.currentThread().interrupt();
+					throw new IOException(String.format("Interrupted while waiting to retry url \"%s\".", url), ie);
+				}
 			}
 		}
-		while (failed);
-
-		return response;
 	}
-	private static String getResponseBodyEnsureJson(String url) throws IOException {
-		boolean failed;
-		String response = null;
-		String cookie = new ConfigurationLoader().readConfigurationFile(ConfigurationLoader.COOKIE_CONF_FILE_NAME);
 
-		do
+	private static String tryToGetResponseBodyLimited(String url, String cookie, boolean ensureJson) throws IOException, UrlAccessFailedException {
+		try
 		{
-			try
-			{
-				response = tryToGetResponseBody(url, cookie);
+			concurrencyController.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(String.format("Interrupted while waiting for a free request slot for url \"%s\".", url), e);
+		}
 
-				try
-				{
-					new JSONObject(response);
-					failed = false;
-				}
-				catch (Exception e)
-				{
-					String errorMessage = String.format("Access to url \"%s\" granted, but response is not a valid JSON string. Trying once more.", url);
-					logger.error(errorMessage, e);
+		long startNanos = System.nanoTime();
+		String response;
 
-					failed = true;
-				}
+		try
+		{
+			response = tryToGetResponseBody(url, cookie);
+		}
+		catch (HttpResponseException e)
+		{
+			if ( !HttpDownloader.isRetryableStatus(e.getStatusCode()) )
+			{ // e.g. 404, retrying will not help
+				concurrencyController.release();
+				throw e;
 			}
-			catch (UrlAccessFailedException e)
+
+			concurrencyController.onFailure();
+			throw new UrlAccessFailedException(e);
+		}
+		catch (IOException e)
+		{ // timeout, connection reset etc.
+			concurrencyController.onFailure();
+			throw new UrlAccessFailedException(e);
+		}
+
+		if (ensureJson)
+		{
+			try
+			{
+				new JSONObject(response);
+			}
+			catch (Exception e)
 			{
-				String errorMessage = String.format("Failed to access url \"%s\", trying once more.", url);
-				logger.error(errorMessage, e);
+				concurrencyController.onFailure();
 
-				failed = true;
+				String errorMessage = String.format("Access to url \"%s\" granted, but response is not a valid JSON string.", url);
+				throw new UrlAccessFailedException(errorMessage, e);
 			}
 		}
-		while (failed);
 
+		concurrencyController.onSuccess(System.nanoTime() - startNanos);
 		return response;
 	}
 
@@ -299,6 +343,11 @@ public class HttpClientTest
 
 	public static final int NOSFERATUM_PROFILE_ID = 242585;
 
+	public static final int MAX_REQUESTS_IN_FLIGHT = 4;
+
+	private static final AdaptiveConcurrencyController concurrencyController = new AdaptiveConcurrencyController(1, MAX_REQUESTS_IN_FLIGHT);
+	private static final RetryBackoff backoff = new RetryBackoff();
+
 	public static final String OK_FIELD_NAME = "ok";
 	public static final int OK_FIELD_CORRECT_VALUE = 1;
 
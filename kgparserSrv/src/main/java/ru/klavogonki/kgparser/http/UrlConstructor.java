@@ -1,5 +1,6 @@
 package ru.klavogonki.kgparser.http;
 
+import org.apache.commons.lang3.StringUtils;
 import ru.klavogonki.kgparser.Car;
 import ru.klavogonki.kgparser.Player;
 
@@ -16,6 +17,28 @@ public class UrlConstructor
 	public static final String DOMAIN_NAME = "http://klavogonki.ru";
 	public static final String DOMAIN_NAME_HTTPS = "https://klavogonki.ru";
 
+	/**
+	 * Base url of the API calls only, the links to the web pages always point to klavogonki.ru.
+	 * Can be changed to use a mock server, see {@link ru.klavogonki.kgparser.mock.MockKgApiServer}.
+	 */
+	private static volatile String apiBaseUrl = DOMAIN_NAME_HTTPS;
+
+	public static String getApiBaseUrl() {
+		return apiBaseUrl;
+	}
+
+	public static void setApiBaseUrl(String apiBaseUrl) {
+		UrlConstructor.apiBaseUrl = StringUtils.removeEnd(apiBaseUrl, "/");
+	}
+
+	public static void resetApiBaseUrl() {
+		apiBaseUrl = DOMAIN_NAME_HTTPS;
+	}
+
+	public static String getApiLink(String relativeUrl, Object... relativeUrlArguments) {
+		return apiBaseUrl + String.format(relativeUrl, relativeUrlArguments);
+	}
+
 	public static String getLink(String relativeUrl, Object... relativeUrlArguments) {
 		return DOMAIN_NAME_HTTPS + String.format(relativeUrl, relativeUrlArguments);
 	}
@@ -114,18 +137,18 @@ public class UrlConstructor
 	// API calls
 	// /api/profile
 	public static String getSummary(final int playerId) {
-		return getLink("/api/profile/get-summary?id=%d", playerId);
+		return getApiLink("/api/profile/get-summary?id=%d", playerId);
 	}
 
 	public static String getIndexData(final int playerId) {
-		return getLink("/api/profile/get-index-data?userId=%d", playerId);
+		return getApiLink("/api/profile/get-index-data?userId=%d", playerId);
 	}
 
 	public static String getStatsOverview(int playerId) {
-		return getLink("/api/profile/get-stats-overview?userId=%d", playerId);
+		return getApiLink("/api/profile/get-stats-overview?userId=%d", playerId);
 	}
 
 	public static String getStatsDetail(int playerId, String dictionaryCode) {
-		return getLink("/api/profile/get-stats-details?userId=%d&gametype=%s", playerId, dictionaryCode);
+		return getApiLink("/api/profile/get-stats-details?userId=%d&gametype=%s", playerId, dictionaryCode);
 	}
 }
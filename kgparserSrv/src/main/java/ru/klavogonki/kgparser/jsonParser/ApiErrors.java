@@ -15,4 +15,9 @@ public class ApiErrors {
 
     // happens in /get-stats-overview
     public static final String PERMISSION_BLOCKED_ERROR = "permission blocked";
+
+    // not an API error: written by PlayerDataDownloader instead of a response that has not been requested, see PlayerFetchPlan
+    public static final String SKIPPED_ERROR = "skipped";
+
+    public static final String SKIPPED_RESPONSE_JSON = "{\"err\":\"" + SKIPPED_ERROR + "\"}";
 }
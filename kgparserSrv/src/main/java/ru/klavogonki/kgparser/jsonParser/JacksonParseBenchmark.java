@@ -0,0 +1,171 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.util.GzipUtils;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the per-file parse cost of {@code /get-stats-overview} responses read by the cached data binding to {@link GetStatsOverviewResponse}
+ * with the same responses read by {@link StatsOverviewReader} to {@link StatsOverview}, which the snapshot parser uses.
+ * Both variants use the cached readers of {@link JacksonUtils}. The heap retained by the parsed corpus is compared as well.
+ * <br>
+ * The corpus is either a snapshot directory with a {@code stats-overview} subdirectory,
+ * or a directory with {@code get-stats-overview-*.json} files, like the test resources.
+ * All files are read to memory before the measurement, so the disk does not affect the results.
+ */
+public class JacksonParseBenchmark {
+    private static final Logger logger = LogManager.getLogger(JacksonParseBenchmark.class);
+
+    public static final int DEFAULT_ROUNDS = 5;
+
+    /**
+     * Average parse time of a single file, in nanoseconds, and the heap retained by all parsed files, in bytes.
+     * <br>
+     * The heap is measured as the difference of the used heap after a {@link System#gc()}, so it is approximate.
+     */
+    public static class Result {
+        public int files;
+        public int rounds;
+        public double dataBindingNanosPerFile;
+        public double streamingReaderNanosPerFile;
+        public long dataBindingRetainedBytes;
+        public long streamingReaderRetainedBytes;
+
+        public double getSpeedup() {
+            return dataBindingNanosPerFile / streamingReaderNanosPerFile;
+        }
+    }
+
+    public static class CorpusFile {
+        final String name;
+        final byte[] bytes; // decompressed
+
+        CorpusFile(final String name, final byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    public static List<CorpusFile> readCorpus(final File dir) {
+        List<CorpusFile> corpus = new ArrayList<>();
+
+        DataEndpoint endpoint = DataEndpoint.STATS_OVERVIEW;
+
+        File endpointDir = new File(dir, endpoint.getName());
+        File[] files = endpointDir.isDirectory()
+            ? endpointDir.listFiles(file -> file.getName().endsWith(".json"))
+            : dir.listFiles(file -> file.getName().startsWith("get-" + endpoint.getName() + "-") && file.getName().endsWith(".json"));
+
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                corpus.add(new CorpusFile(file.getPath(), readDecompressed(file)));
+            }
+        }
+
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No %s json files found in %s", endpoint.getName(), dir.getPath()));
+        }
+
+        return corpus;
+    }
+
+    /**
+     * @param rounds measured passes over the corpus, after one warm-up pass
+     */
+    public static Result run(final List<CorpusFile> corpus, final int rounds) {
+        // warm-up, including the JIT compilation of both variants
+        parse(corpus, GetStatsOverviewResponse.class);
+        parse(corpus, StatsOverview.class);
+
+        long dataBindingNanos = 0;
+        long streamingReaderNanos = 0;
+
+        for (int round = 0; round < rounds; round++) { // interleaved, so that a background load affects both variants
+            long start = System.nanoTime();
+            parse(corpus, GetStatsOverviewResponse.class);
+            dataBindingNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            parse(corpus, StatsOverview.class);
+            streamingReaderNanos += System.nanoTime() - start;
+        }
+
+        Result result = new Result();
+        result.files = corpus.size();
+        result.rounds = rounds;
+        result.dataBindingNanosPerFile = dataBindingNanos / (double) (corpus.size() * rounds);
+        result.streamingReaderNanosPerFile = streamingReaderNanos / (double) (corpus.size() * rounds);
+        result.dataBindingRetainedBytes = measureRetainedBytes(corpus, GetStatsOverviewResponse.class);
+        result.streamingReaderRetainedBytes = measureRetainedBytes(corpus, StatsOverview.class);
+        return result;
+    }
+
+    private static <T> List<T> parse(final List<CorpusFile> corpus, final Class<T> clazz) {
+        List<T> responses = new ArrayList<>(corpus.size());
+
+        for (CorpusFile file : corpus) {
+            responses.add(JacksonUtils.parse(new ByteArrayInputStream(file.bytes), file.name, clazz));
+        }
+
+        return responses;
+    }
+
+    private static long measureRetainedBytes(final List<CorpusFile> corpus, final Class<?> clazz) {
+        long before = getUsedHeap();
+        List<?> responses = parse(corpus, clazz);
+        long after = getUsedHeap();
+
+        logger.debug("Measured {} parsed {} responses.", responses.size(), clazz.getSimpleName()); // keeps the responses reachable until the measurement
+        return Math.max(after - before, 0);
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static byte[] readDecompressed(final File file) {
+        try (InputStream in = GzipUtils.decompressIfGzipped(new FileInputStream(file))) {
+            return IOUtils.toByteArray(in);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read %s", file.getPath()), e);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.printf("Usage: %s <snapshotDir>|<jsonFilesDir> [<rounds>] %n", JacksonParseBenchmark.class.getSimpleName());
+            return;
+        }
+
+        File dir = new File(args[0]);
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        List<CorpusFile> corpus = readCorpus(dir);
+        long bytes = corpus.stream().mapToLong(file -> file.bytes.length).sum();
+        logger.info("Corpus {}: {} stats overview files, {} KB.", dir.getPath(), corpus.size(), bytes / 1024);
+
+        Result result = run(corpus, rounds);
+
+        logger.info("Rounds: {}", result.rounds);
+        logger.info("Data binding to {}: {} us per file, {} KB retained", GetStatsOverviewResponse.class.getSimpleName(), String.format("%.1f", result.dataBindingNanosPerFile / 1000), result.dataBindingRetainedBytes / 1024);
+        logger.info("{} to {}: {} us per file, {} KB retained", StatsOverviewReader.class.getSimpleName(), StatsOverview.class.getSimpleName(), String.format("%.1f", result.streamingReaderNanosPerFile / 1000), result.streamingReaderRetainedBytes / 1024);
+        logger.info("Speedup: {}x", String.format("%.1f", result.getSpeedup()));
+    }
+}
@@ -4,19 +4,50 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.util.GzipUtils;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * All methods share a single configured {@link ObjectMapper} and cache an {@link ObjectReader} / {@link ObjectWriter} per class,
+ * so that the (de)serializers of a class are built once, not on every call.
+ * The readers of the API responses are built in advance. The parse buffers are recycled by the shared {@link com.fasterxml.jackson.core.JsonFactory}.
+ * <br>
+ * {@code /get-stats-overview} responses are read to a {@link StatsOverview} by {@link StatsOverviewReader}.
+ * <br>
+ * This class is thread-safe.
+ */
 public class JacksonUtils {
     private static final Logger logger = LogManager.getLogger(JacksonUtils.class);
 
+    private static final ObjectMapper MAPPER = createObjectMapper();
+
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    static {
+        getReader(GetSummaryResponse.class);
+        getReader(GetIndexDataResponse.class);
+        getReader(StatsOverview.class);
+    }
+
+    /**
+     * The file can be gzip-compressed, the compression is detected by the file content, not by its name.
+     */
     public static <T> T parse(File file, Class<T> clazz) {
-        try {
-            ObjectMapper mapper = createObjectMapper();
-            return mapper.readValue(file, clazz);
+        try (InputStream in = GzipUtils.decompressIfGzipped(new FileInputStream(file))) {
+            return getReader(clazz).readValue(in);
         }
         catch (IOException e) {
             String errorMessage = String.format("Error on parsing file %s to class %s", file.getPath(), clazz.getName());
@@ -24,10 +55,35 @@ public class JacksonUtils {
         }
     }
 
+    /**
+     * @param sourceName name of the parsed source, for the error message
+     */
+    public static <T> T parse(String json, String sourceName, Class<T> clazz) {
+        try {
+            return getReader(clazz).readValue(json);
+        }
+        catch (IOException e) {
+            String errorMessage = String.format("Error on parsing %s to class %s", sourceName, clazz.getName());
+            throw handleError(e, errorMessage);
+        }
+    }
+
+    /**
+     * @param sourceName name of the parsed source, for the error message
+     */
+    public static <T> T parse(InputStream in, String sourceName, Class<T> clazz) {
+        try {
+            return getReader(clazz).readValue(in);
+        }
+        catch (IOException e) {
+            String errorMessage = String.format("Error on parsing %s to class %s", sourceName, clazz.getName());
+            throw handleError(e, errorMessage);
+        }
+    }
+
     public static void serialize(File file, Object object) {
         try {
-            ObjectMapper mapper = createObjectMapper();
-            mapper.writeValue(file, object);
+            getWriter(object.getClass()).writeValue(file, object);
         }
         catch (IOException e) {
             String errorMessage = String.format("Error on writing object of class %s to file %s", object.getClass().getName(), file.getPath());
@@ -38,8 +94,7 @@ public class JacksonUtils {
 
     public static String serializeToString(Object object) {
         try {
-            ObjectMapper mapper = createObjectMapper();
-            return mapper.writeValueAsString(object);
+            return getWriter(object.getClass()).writeValueAsString(object);
         }
         catch (JsonProcessingException e) {
             String errorMessage = String.format("Error on writing object of class %s to String", object.getClass().getName());
@@ -47,12 +102,23 @@ public class JacksonUtils {
         }
     }
 
+    private static ObjectReader getReader(final Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, MAPPER::readerFor);
+    }
+
+    private static ObjectWriter getWriter(final Class<?> clazz) {
+        return WRITERS.computeIfAbsent(clazz, MAPPER::writerFor);
+    }
+
     private static RuntimeException handleError(final IOException e, final String errorMessage) {
         logger.error(errorMessage, e);
         return new RuntimeException(errorMessage, e);
     }
 
-    private static ObjectMapper createObjectMapper() {
+    /**
+     * Creates a new mapper with the settings of all methods of this class.
+     */
+    static ObjectMapper createObjectMapper() {
         return new ObjectMapper()
             .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false) // because of _id / id clash in /get-summary response, see https://github.com/OpenAPITools/openapi-generator/issues/8291
             .configure(JsonParser.Feature.ALLOW_COMMENTS, true)
@@ -0,0 +1,53 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact form of the {@code /get-stats-overview} response, read by {@link StatsOverviewReader}.
+ * <br>
+ * Unlike {@link GetStatsOverviewResponse}, it holds a flat list of {@link VocabularyStats} instead of a map of game types with nested infos,
+ * and it does not hold {@code ok} and {@code recent_gametypes}, since neither the validation nor the import uses them.
+ */
+@JsonDeserialize(using = StatsOverviewReader.class)
+public class StatsOverview {
+    String err;
+    List<VocabularyStats> vocabularies = new ArrayList<>(); // null for "gametypes": null
+
+    public static StatsOverview error(final String err) {
+        StatsOverview statsOverview = new StatsOverview();
+        statsOverview.err = err;
+        return statsOverview;
+    }
+
+    public String getErr() {
+        return err;
+    }
+
+    /**
+     * @return vocabularies in the order of the {@code gametypes} object
+     */
+    public List<VocabularyStats> getVocabularies() {
+        return vocabularies;
+    }
+
+    /**
+     * @return stats of the vocabulary, {@code null} if the player has no stats in it
+     */
+    public VocabularyStats getVocabulary(final String code) {
+        if (vocabularies == null) {
+            return null;
+        }
+
+        for (VocabularyStats vocabulary : vocabularies) {
+            if (vocabulary.code.equals(code)) {
+                return vocabulary;
+            }
+        }
+
+        return null;
+    }
+}
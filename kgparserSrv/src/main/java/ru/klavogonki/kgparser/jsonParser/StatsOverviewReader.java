@@ -0,0 +1,273 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+import ru.klavogonki.openapi.model.NonStandardVocabularyType;
+import ru.klavogonki.openapi.model.VocabularyMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads {@code /get-stats-overview} response token by token to a {@link StatsOverview}.
+ * <br>
+ * The response is the largest one per player: one {@code gametypes} entry with a nested {@code info} per vocabulary.
+ * The data binding to {@link GetStatsOverviewResponse} builds a map entry, a game type and an info object per vocabulary,
+ * this reader writes each entry with its info straight to a single {@link VocabularyStats}.
+ * {@code ok}, {@code recent_gametypes} and the unknown fields are skipped with their sub-trees.
+ * <br>
+ * Vocabulary codes and names are interned, so the same vocabulary of different players shares a single string
+ * while a batch of players is kept in memory.
+ * <br>
+ * The read fields are equal to the fields of the data binding with the settings of {@link JacksonUtils}:
+ * unknown enum values are read as {@code null}, the scalars are coerced in the same way.
+ */
+public class StatsOverviewReader extends StdDeserializer<StatsOverview> {
+
+    public StatsOverviewReader() {
+        super(StatsOverview.class);
+    }
+
+    @Override
+    public StatsOverview deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        StatsOverview statsOverview = new StatsOverview();
+
+        for (String field = startObject(p, ctxt); field != null; field = p.nextFieldName()) {
+            p.nextToken();
+
+            switch (field) {
+                case "err":
+                    statsOverview.err = readString(p, ctxt);
+                    break;
+
+                case "gametypes":
+                    statsOverview.vocabularies = readVocabularies(p, ctxt);
+                    break;
+
+                default: // "ok", "recent_gametypes" and unknown fields
+                    p.skipChildren();
+            }
+        }
+
+        return statsOverview;
+    }
+
+    private List<VocabularyStats> readVocabularies(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+
+        List<VocabularyStats> vocabularies = new ArrayList<>();
+
+        for (String code = startObject(p, ctxt); code != null; code = p.nextFieldName()) {
+            p.nextToken();
+
+            if (p.hasToken(JsonToken.VALUE_NULL)) { // the data binding keeps a null entry, but no vocabulary has it
+                continue;
+            }
+
+            VocabularyStats vocabulary = new VocabularyStats();
+            vocabulary.code = code.intern();
+            readVocabulary(p, ctxt, vocabulary);
+            vocabularies.add(vocabulary);
+        }
+
+        return vocabularies;
+    }
+
+    private void readVocabulary(final JsonParser p, final DeserializationContext ctxt, final VocabularyStats vocabulary) throws IOException {
+        for (String field = startObject(p, ctxt); field != null; field = p.nextFieldName()) {
+            p.nextToken();
+
+            switch (field) {
+                case "id":
+                    vocabulary.id = readInteger(p, ctxt);
+                    break;
+
+                case "name":
+                    vocabulary.name = intern(readString(p, ctxt));
+                    break;
+
+                case "num_races":
+                    vocabulary.numRaces = readInteger(p, ctxt);
+                    break;
+
+                case "type":
+                    vocabulary.type = readNonStandardVocabularyType(p, ctxt);
+                    break;
+
+                case "symbols":
+                    vocabulary.symbols = readInteger(p, ctxt);
+                    break;
+
+                case "rows":
+                    vocabulary.rows = readInteger(p, ctxt);
+                    break;
+
+                case "book_done":
+                    vocabulary.bookDone = readBoolean(p, ctxt);
+                    break;
+
+                case "info":
+                    readInfo(p, ctxt, vocabulary);
+                    break;
+
+                default:
+                    p.skipChildren();
+            }
+        }
+    }
+
+    private void readInfo(final JsonParser p, final DeserializationContext ctxt, final VocabularyStats vocabulary) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return;
+        }
+
+        vocabulary.infoPresent = true;
+
+        for (String field = startObject(p, ctxt); field != null; field = p.nextFieldName()) {
+            p.nextToken();
+
+            switch (field) {
+                case "id":
+                    vocabulary.infoId = readInteger(p, ctxt);
+                    break;
+
+                case "user_id":
+                    vocabulary.userId = readInteger(p, ctxt);
+                    break;
+
+                case "mode":
+                    vocabulary.mode = readVocabularyMode(p, ctxt);
+                    break;
+
+                case "texttype":
+                    vocabulary.texttype = readInteger(p, ctxt);
+                    break;
+
+                case "num_races":
+                    vocabulary.infoNumRaces = readInteger(p, ctxt);
+                    break;
+
+                case "avg_speed":
+                    vocabulary.avgSpeed = readDouble(p, ctxt);
+                    break;
+
+                case "best_speed":
+                    vocabulary.bestSpeed = readInteger(p, ctxt);
+                    break;
+
+                case "avg_error":
+                    vocabulary.avgError = readDouble(p, ctxt);
+                    break;
+
+                case "haul":
+                    vocabulary.haul = readInteger(p, ctxt);
+                    break;
+
+                case "qual":
+                    vocabulary.qual = readInteger(p, ctxt);
+                    break;
+
+                case "dirty":
+                    vocabulary.dirty = readInteger(p, ctxt);
+                    break;
+
+                case "updated":
+                    vocabulary.updated = readString(p, ctxt);
+                    break;
+
+                default:
+                    p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @return name of the first field, {@code null} for an empty object
+     */
+    private String startObject(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.isExpectedStartObjectToken()) {
+            return p.nextFieldName();
+        }
+
+        if (p.hasToken(JsonToken.FIELD_NAME)) { // the start token has already been consumed, e.g. by a type resolver
+            return p.getCurrentName();
+        }
+
+        ctxt.reportWrongTokenException(this, JsonToken.START_OBJECT, "Expected an object in %s response", "/get-stats-overview");
+        return null; // not reachable, reportWrongTokenException always throws
+    }
+
+    private String readString(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            return p.getText();
+        }
+
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+
+        return _parseString(p, ctxt); // numbers and booleans are coerced to strings
+    }
+
+    private Integer readInteger(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT) && (p.getNumberType() == JsonParser.NumberType.INT)) {
+            return p.getIntValue();
+        }
+
+        return _parseInteger(p, ctxt, Integer.class);
+    }
+
+    private Double readDouble(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_FLOAT) || p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+            return p.getDoubleValue();
+        }
+
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+
+        return ctxt.readValue(p, Double.class); // string and other coercions
+    }
+
+    private Boolean readBoolean(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        return _parseBoolean(p, ctxt, Boolean.class);
+    }
+
+    private NonStandardVocabularyType readNonStandardVocabularyType(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        String value = readString(p, ctxt);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return NonStandardVocabularyType.fromValue(value);
+        }
+        catch (IllegalArgumentException e) { // "type": "" or "type": 0 of the deleted vocabularies, see JacksonUtils#createObjectMapper
+            return null;
+        }
+    }
+
+    private VocabularyMode readVocabularyMode(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+        String value = readString(p, ctxt);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return VocabularyMode.fromValue(value);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String intern(final String value) {
+        return (value == null) ? null : value.intern();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
+import ru.klavogonki.openapi.model.NonStandardVocabularyType;
+import ru.klavogonki.openapi.model.VocabularyMode;
+
+/**
+ * Stats of a player in a single vocabulary: a {@link GetStatsOverviewGameType} entry of {@code gametypes}
+ * with the fields of its nested {@link GetStatsOverviewGameTypeInfo}, in a single object.
+ * <br>
+ * The code and the name are interned by {@link StatsOverviewReader}, so the same vocabulary of different players shares the strings.
+ */
+public class VocabularyStats {
+    // gametypes entry
+    String code; // key of the entry
+    Integer id;
+    String name;
+    Integer numRaces;
+    NonStandardVocabularyType type;
+    Integer symbols;
+    Integer rows;
+    Boolean bookDone;
+
+    // info of the gametypes entry
+    boolean infoPresent; // false if "info" is absent or null, then all the info fields are null
+    Integer infoId;
+    Integer userId;
+    VocabularyMode mode;
+    Integer texttype;
+    Integer infoNumRaces;
+    Double avgSpeed;
+    Integer bestSpeed;
+    Double avgError;
+    Integer haul;
+    Integer qual;
+    Integer dirty;
+    String updated;
+
+    public String getCode() {
+        return code;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getNumRaces() {
+        return numRaces;
+    }
+
+    public NonStandardVocabularyType getType() {
+        return type;
+    }
+
+    public Integer getSymbols() {
+        return symbols;
+    }
+
+    public Integer getRows() {
+        return rows;
+    }
+
+    public Boolean getBookDone() {
+        return bookDone;
+    }
+
+    public boolean isInfoPresent() {
+        return infoPresent;
+    }
+
+    public Integer getInfoId() {
+        return infoId;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public VocabularyMode getMode() {
+        return mode;
+    }
+
+    public Integer getTexttype() {
+        return texttype;
+    }
+
+    public Integer getInfoNumRaces() {
+        return infoNumRaces;
+    }
+
+    public Double getAvgSpeed() {
+        return avgSpeed;
+    }
+
+    public Integer getBestSpeed() {
+        return bestSpeed;
+    }
+
+    public Double getAvgError() {
+        return avgError;
+    }
+
+    public Integer getHaul() {
+        return haul;
+    }
+
+    public Integer getQual() {
+        return qual;
+    }
+
+    public Integer getDirty() {
+        return dirty;
+    }
+
+    public String getUpdated() {
+        return updated;
+    }
+}
@@ -0,0 +1,438 @@
+package ru.klavogonki.kgparser.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.Car;
+import ru.klavogonki.kgparser.Rank;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.processing.FakeDataFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embeddable mock of the klavogonki.ru {@code /api/profile} endpoints used by the downloader:
+ * {@code /get-summary}, {@code /get-index-data} and {@code /get-stats-overview}, see {@code kg-api.yaml}.
+ * <br>
+ * The players are synthetic and valid for {@link ru.klavogonki.kgparser.PlayerJsonParser}.
+ * The data of a player depends only on the player id and the {@link Config#seed seed},
+ * so all endpoints and all requests return consistent data for the same player.
+ * <br>
+ * Latency and the share of failed requests (HTTP 503), non-existing, hidden and blocked players are configurable,
+ * so the whole download / import can be benchmarked and tested without touching the real site.
+ * Point the downloader to the server with {@code --base-url=<baseUrl>}.
+ */
+public class MockKgApiServer implements Closeable {
+    private static final Logger logger = LogManager.getLogger(MockKgApiServer.class);
+
+    public static final String SUMMARY_PATH = "/api/profile/get-summary";
+    public static final String INDEX_DATA_PATH = "/api/profile/get-index-data";
+    public static final String STATS_OVERVIEW_PATH = "/api/profile/get-stats-overview";
+
+    public static final int HTTP_SERVICE_UNAVAILABLE = 503;
+    public static final int HTTP_BAD_REQUEST = 400;
+
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private static final long MIN_REGISTERED_SEC = LocalDateTime.of(2008, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final int REGISTERED_RANGE_DAYS = 13 * 365;
+    private static final LocalDateTime LAST_UPDATED = LocalDateTime.of(2021, 1, 1, 12, 0);
+
+    private static final List<Car> PUBLIC_CARS = Arrays.stream(Car.values())
+        .filter(Car::isPublic)
+        .collect(Collectors.toList());
+
+    public enum PlayerType {
+        EXISTING,
+        NON_EXISTING,
+        HIDDEN_PROFILE,
+        BLOCKED
+    }
+
+    /**
+     * All rates are from {@code 0} to {@code 1}.
+     */
+    public static class Config {
+        int port; // 0 means any free port
+        int maxPlayerId = 1000; // players with greater ids do not exist
+        double nonExistingRate = 0.1;
+        double hiddenProfileRate = 0.05;
+        double blockedRate = 0.01;
+        double errorRate;
+        int minLatencyMillis;
+        int meanLatencyMillis; // mean of the exponentially distributed latency added to minLatencyMillis
+        long seed = 1;
+        int threads = 16;
+
+        public Config port(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Config maxPlayerId(final int maxPlayerId) {
+            this.maxPlayerId = maxPlayerId;
+            return this;
+        }
+
+        public Config nonExistingRate(final double nonExistingRate) {
+            this.nonExistingRate = validateRate("nonExistingRate", nonExistingRate);
+            return this;
+        }
+
+        public Config hiddenProfileRate(final double hiddenProfileRate) {
+            this.hiddenProfileRate = validateRate("hiddenProfileRate", hiddenProfileRate);
+            return this;
+        }
+
+        public Config blockedRate(final double blockedRate) {
+            this.blockedRate = validateRate("blockedRate", blockedRate);
+            return this;
+        }
+
+        public Config errorRate(final double errorRate) {
+            this.errorRate = validateRate("errorRate", errorRate);
+            return this;
+        }
+
+        public Config latency(final int minLatencyMillis, final int meanLatencyMillis) {
+            if ((minLatencyMillis < 0) || (meanLatencyMillis < 0)) {
+                throw new IllegalArgumentException(String.format("Incorrect latency: min = %d ms, mean = %d ms, latency must be >= 0", minLatencyMillis, meanLatencyMillis));
+            }
+
+            this.minLatencyMillis = minLatencyMillis;
+            this.meanLatencyMillis = meanLatencyMillis;
+            return this;
+        }
+
+        public Config seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Config threads(final int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException(String.format("Incorrect threads: %d, threads must be >= 1", threads));
+            }
+
+            this.threads = threads;
+            return this;
+        }
+
+        private static double validateRate(final String name, final double rate) {
+            if ((rate < 0) || (rate > 1)) {
+                throw new IllegalArgumentException(String.format("Incorrect %s: %s, rate must be in [0; 1]", name, rate));
+            }
+
+            return rate;
+        }
+    }
+
+    private final Config config;
+    private final HttpServer server;
+    private final ExecutorService executorService;
+
+    private final Map<DataEndpoint, AtomicInteger> requests = new EnumMap<>(DataEndpoint.class);
+    private final AtomicInteger failedRequests = new AtomicInteger();
+
+    private MockKgApiServer(final Config config, final HttpServer server, final ExecutorService executorService) {
+        this.config = config;
+        this.server = server;
+        this.executorService = executorService;
+
+        for (DataEndpoint endpoint : DataEndpoint.values()) {
+            requests.put(endpoint, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Starts the server on {@code localhost}.
+     */
+    public static MockKgApiServer start(final Config config) {
+        if ((config.nonExistingRate + config.hiddenProfileRate + config.blockedRate) > 1) {
+            throw new IllegalArgumentException(String.format(
+                "nonExistingRate %s + hiddenProfileRate %s + blockedRate %s must be <= 1",
+                config.nonExistingRate,
+                config.hiddenProfileRate,
+                config.blockedRate
+            ));
+        }
+
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", config.port), 0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot start mock API server on port %d", config.port), e);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(config.threads); // requests sleep for the latency, do not serialize them
+        MockKgApiServer mockServer = new MockKgApiServer(config, server, executorService);
+
+        server.createContext(SUMMARY_PATH, exchange -> mockServer.handle(exchange, DataEndpoint.SUMMARY, "id"));
+        server.createContext(INDEX_DATA_PATH, exchange -> mockServer.handle(exchange, DataEndpoint.INDEX_DATA, "userId"));
+        server.createContext(STATS_OVERVIEW_PATH, exchange -> mockServer.handle(exchange, DataEndpoint.STATS_OVERVIEW, "userId"));
+        server.setExecutor(executorService);
+        server.start();
+
+        logger.info("Mock API server started at {}. Max player id: {}.", mockServer.getBaseUrl(), config.maxPlayerId);
+        return mockServer;
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getRequestsCount(final DataEndpoint endpoint) {
+        return requests.get(endpoint).get();
+    }
+
+    public int getFailedRequestsCount() {
+        return failedRequests.get();
+    }
+
+    /**
+     * @return type of the player, it is the same for all requests
+     */
+    public PlayerType getPlayerType(final int playerId) {
+        if ((playerId < 1) || (playerId > config.maxPlayerId)) {
+            return PlayerType.NON_EXISTING;
+        }
+
+        double value = createPlayerRandom(playerId).nextDouble();
+
+        if (value < config.nonExistingRate) {
+            return PlayerType.NON_EXISTING;
+        }
+        value -= config.nonExistingRate;
+
+        if (value < config.hiddenProfileRate) {
+            return PlayerType.HIDDEN_PROFILE;
+        }
+        value -= config.hiddenProfileRate;
+
+        if (value < config.blockedRate) {
+            return PlayerType.BLOCKED;
+        }
+
+        return PlayerType.EXISTING;
+    }
+
+    private void handle(final HttpExchange exchange, final DataEndpoint endpoint, final String playerIdParameter) throws IOException {
+        try {
+            requests.get(endpoint).incrementAndGet();
+            sleepLatency();
+
+            if ((config.errorRate > 0) && (ThreadLocalRandom.current().nextDouble() < config.errorRate)) {
+                failedRequests.incrementAndGet();
+                exchange.sendResponseHeaders(HTTP_SERVICE_UNAVAILABLE, -1);
+                return;
+            }
+
+            Integer playerId = getPlayerId(exchange.getRequestURI(), playerIdParameter);
+            if (playerId == null) {
+                exchange.sendResponseHeaders(HTTP_BAD_REQUEST, -1);
+                return;
+            }
+
+            Object response = createResponse(endpoint, playerId);
+            writeJson(exchange, JacksonUtils.serializeToString(response));
+        }
+        catch (RuntimeException e) { // HttpServer silently drops the connection on an exception
+            logger.error("Mock API server: error on handling {}", exchange.getRequestURI(), e);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_INTERNAL_SERVER_ERROR, -1);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void sleepLatency() {
+        long latencyMillis = config.minLatencyMillis;
+        if (config.meanLatencyMillis > 0) {
+            double exponential = -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+            latencyMillis += Math.round(config.meanLatencyMillis * exponential);
+        }
+
+        if (latencyMillis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(latencyMillis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Integer getPlayerId(final URI uri, final String playerIdParameter) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+
+        for (String parameter : query.split("&")) {
+            String name = StringUtils.substringBefore(parameter, "=");
+            if (name.equals(playerIdParameter)) {
+                String value = StringUtils.substringAfter(parameter, "=");
+                return StringUtils.isNumeric(value) ? Integer.valueOf(value) : null;
+            }
+        }
+
+        return null;
+    }
+
+    Object createResponse(final DataEndpoint endpoint, final int playerId) {
+        PlayerType playerType = getPlayerType(playerId);
+
+        if (playerType == PlayerType.NON_EXISTING) {
+            switch (endpoint) {
+                case SUMMARY:
+                    return FakeDataFactory.createSummaryError(ApiErrors.INVALID_USER_ID_ERROR);
+
+                case INDEX_DATA:
+                    return FakeDataFactory.createIndexDataError(ApiErrors.INVALID_USER_ID_ERROR);
+
+                case STATS_OVERVIEW:
+                    return FakeDataFactory.createStatsOverviewError(ApiErrors.INVALID_USER_ID_ERROR);
+
+                default:
+                    throw new IllegalStateException(String.format("Unknown endpoint: %s", endpoint));
+            }
+        }
+
+        // the same sequence of random values for all endpoints
+        Random random = createPlayerRandom(playerId);
+        random.nextDouble(); // player type
+
+        int racesCount = (random.nextInt(4) == 0) ? 0 : random.nextInt(20000) + 1;
+        Integer bestSpeed = (racesCount == 0) ? null : random.nextInt(850) + 50;
+        Rank rank = (bestSpeed == null) ? Rank.novice : Rank.getRankByNormalRecord(bestSpeed);
+        Car car = PUBLIC_CARS.get(random.nextInt(PUBLIC_CARS.size()));
+        int carsCount = random.nextInt(3) + 1;
+        long registeredSec = MIN_REGISTERED_SEC + (random.nextInt(REGISTERED_RANGE_DAYS) * 86400L);
+        LocalDateTime updated = (racesCount == 0) ? null : LAST_UPDATED.minusMinutes(random.nextInt(REGISTERED_RANGE_DAYS * 1440));
+
+        switch (endpoint) {
+            case SUMMARY:
+                int blocked = (playerType == PlayerType.BLOCKED) ? 1 : 0;
+                return FakeDataFactory.createSummary(playerId, "player" + playerId, rank, car, blocked);
+
+            case INDEX_DATA:
+                if (playerType == PlayerType.HIDDEN_PROFILE) {
+                    return FakeDataFactory.createIndexDataError(ApiErrors.HIDDEN_PROFILE_USER_ERROR);
+                }
+
+                return FakeDataFactory.createIndexData(playerId, registeredSec, racesCount, bestSpeed, carsCount);
+
+            case STATS_OVERVIEW:
+                if (playerType == PlayerType.HIDDEN_PROFILE) {
+                    return FakeDataFactory.createStatsOverviewError(ApiErrors.PERMISSION_BLOCKED_ERROR);
+                }
+
+                return FakeDataFactory.createNormalStatsOverview(playerId, racesCount, bestSpeed, updated);
+
+            default:
+                throw new IllegalStateException(String.format("Unknown endpoint: %s", endpoint));
+        }
+    }
+
+    private Random createPlayerRandom(final int playerId) {
+        // the first values of java.util.Random with close seeds are close too, SplittableRandom mixes the seed well
+        return new Random(new SplittableRandom((config.seed * 31) + playerId).nextLong());
+    }
+
+    private static void writeJson(final HttpExchange exchange, final String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpDownloader.ACCEPT_ENCODING_HEADER);
+        if ((acceptEncoding != null) && acceptEncoding.contains(HttpDownloader.GZIP_ENCODING)) {
+            body = gzip(body);
+            exchange.getResponseHeaders().add(HttpDownloader.CONTENT_ENCODING_HEADER, HttpDownloader.GZIP_ENCODING);
+        }
+
+        exchange.getResponseHeaders().add(CONTENT_TYPE_HEADER, JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(result)) {
+            out.write(bytes);
+        }
+
+        return result.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+
+        logger.info(
+            "Mock API server {} stopped. Requests: summary: {}, index data: {}, stats overview: {}. Failed requests: {}.",
+            getBaseUrl(),
+            getRequestsCount(DataEndpoint.SUMMARY),
+            getRequestsCount(DataEndpoint.INDEX_DATA),
+            getRequestsCount(DataEndpoint.STATS_OVERVIEW),
+            failedRequests.get()
+        );
+    }
+
+    /**
+     * Runs the server until the JVM is stopped, e.g. to benchmark the download against it.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.out.printf("Usage: %s <port> <maxPlayerId> [<minLatencyMillis> <meanLatencyMillis>] [<errorRate>] %n", MockKgApiServer.class.getSimpleName());
+            return;
+        }
+
+        Config config = new Config()
+            .port(Integer.parseInt(args[0]))
+            .maxPlayerId(Integer.parseInt(args[1]));
+
+        if (args.length >= 4) {
+            config.latency(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        }
+
+        if (args.length >= 5) {
+            config.errorRate(Double.parseDouble(args[4]));
+        }
+
+        MockKgApiServer server = start(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        Thread.currentThread().join(); // forever
+    }
+}
@@ -0,0 +1,55 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.storage.RawDataWriter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the fetched responses in memory until the player is {@link #remove(int) taken} by the pipeline,
+ * optionally also writing them to the {@code delegate} storage.
+ */
+class CollectingRawDataWriter implements RawDataWriter {
+    private final RawDataWriter delegate; // null if the raw json is not persisted
+    private final Map<Integer, RawPlayerData> players = new ConcurrentHashMap<>();
+
+    CollectingRawDataWriter(final RawDataWriter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(final int playerId, final DataEndpoint endpoint, final String json) throws IOException {
+        if (delegate != null) {
+            delegate.write(playerId, endpoint, json);
+        }
+
+        players
+            .computeIfAbsent(playerId, RawPlayerData::new)
+            .put(endpoint, json);
+    }
+
+    /**
+     * @return collected responses of the player, or {@code null} if nothing has been written for the player
+     */
+    RawPlayerData remove(final int playerId) {
+        return players.remove(playerId);
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        if (delegate != null) {
+            return delegate.getLocation(playerId, endpoint);
+        }
+
+        return String.format("memory!%s/%d", endpoint.getName(), playerId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.SnapshotParseOptions;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Options of {@link PlayerImportPipeline}, in form {@code --name=value}.
+ * The parse stage uses {@link SnapshotParseOptions#getParseThreads()}.
+ * <br>
+ * The downloader does not use them, so they are not a part of {@link PlayerDataDownloader.Config}:
+ * pass {@link #NAMES} to {@link PlayerDataDownloader.Config#parseFromArguments(String[], Set)} to skip them there.
+ */
+public class PipelineOptions {
+    private static final Logger logger = LogManager.getLogger(PipelineOptions.class);
+
+    public static final String CONSUMER_THREADS_OPTION = "consumer-threads";
+    public static final String QUEUE_SIZE_OPTION = "queue-size";
+    public static final String WRITE_RAW_JSON_OPTION = "write-raw-json";
+
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * Names of the pipeline options and of the {@link SnapshotParseOptions}, since the pipeline parses the players as well.
+     */
+    public static final Set<String> NAMES = createNames();
+
+    int consumerThreads = 1;
+    int queueSize = DEFAULT_QUEUE_SIZE; // capacity of each queue between the stages
+    boolean writeRawJson = true; // false to keep the downloaded json only in memory
+
+    SnapshotParseOptions parseOptions = new SnapshotParseOptions();
+
+    public int getConsumerThreads() {
+        return consumerThreads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public boolean isWriteRawJson() {
+        return writeRawJson;
+    }
+
+    public SnapshotParseOptions getParseOptions() {
+        return parseOptions;
+    }
+
+    public void log() {
+        logger.debug("Pipeline options: ");
+        logger.debug("  consumerThreads: {}", consumerThreads);
+        logger.debug("  queueSize: {}", queueSize);
+        logger.debug("  writeRawJson: {}", writeRawJson);
+
+        parseOptions.log();
+    }
+
+    /**
+     * @param args all arguments, the required arguments and the options not in {@link #NAMES} are skipped
+     */
+    public static PipelineOptions parseFromArguments(final String[] args) {
+        PipelineOptions options = new PipelineOptions();
+
+        PlayerDataDownloader.Config.forEachOption(args, (name, value) -> {
+            if (NAMES.contains(name) && !SnapshotParseOptions.NAMES.contains(name)) {
+                options.parseOption(name, value);
+            }
+        });
+
+        options.parseOptions = SnapshotParseOptions.parseFromArguments(args);
+
+        return options;
+    }
+
+    private void parseOption(final String name, final String value) {
+        switch (name) {
+            case CONSUMER_THREADS_OPTION:
+                consumerThreads = PlayerDataDownloader.Config.parsePositiveInt(name, value);
+                break;
+
+            case QUEUE_SIZE_OPTION:
+                queueSize = PlayerDataDownloader.Config.parsePositiveInt(name, value);
+                break;
+
+            case WRITE_RAW_JSON_OPTION:
+                writeRawJson = Boolean.parseBoolean(value);
+                break;
+
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option: %s%s", PlayerDataDownloader.Config.OPTION_PREFIX, name));
+        }
+    }
+
+    private static Set<String> createNames() {
+        Set<String> names = new HashSet<>(SnapshotParseOptions.NAMES);
+        names.add(CONSUMER_THREADS_OPTION);
+        names.add(QUEUE_SIZE_OPTION);
+        names.add(WRITE_RAW_JSON_OPTION);
+        return Set.copyOf(names);
+    }
+}
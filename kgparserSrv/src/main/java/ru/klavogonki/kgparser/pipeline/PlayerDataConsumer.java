@@ -0,0 +1,19 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import ru.klavogonki.kgparser.PlayerJsonData;
+
+/**
+ * Last stage of the {@link PlayerImportPipeline}, e.g. saving the players to the database.
+ * <br>
+ * Each consumer thread of the pipeline gets its own instance, so the implementations do not need to be thread-safe.
+ */
+public interface PlayerDataConsumer {
+
+    void accept(int playerId, PlayerJsonData player);
+
+    /**
+     * Called once after the last player, e.g. to save the remainder of a batch.
+     */
+    default void finish() {
+    }
+}
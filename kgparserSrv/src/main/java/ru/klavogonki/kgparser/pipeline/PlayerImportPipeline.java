@@ -0,0 +1,353 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.PlayerJsonParser;
+import ru.klavogonki.kgparser.download.DownloadJournal;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.NegativePlayerCache;
+import ru.klavogonki.kgparser.download.PlayerFetcher;
+import ru.klavogonki.kgparser.download.PlayerIdBatchQueue;
+import ru.klavogonki.kgparser.telemetry.CrawlTelemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Downloads, parses and consumes (e.g. saves to the database) the players in one pass:
+ * <pre>
+ * fetch (threadsCount threads) -> [queue] -> parse (parseThreads threads) -> [queue] -> consume (consumerThreads threads)
+ * </pre>
+ * See {@link PipelineOptions}. The queues are bounded by {@code queueSize}, so a slow stage blocks the previous stages instead of accumulating the players in memory.
+ * <br>
+ * Writing the raw json is optional, if it is turned off, the responses exist only in memory.
+ * <br>
+ * A player that cannot be parsed is logged and skipped, the other players are still handled.
+ * A consumer failure aborts the whole pipeline.
+ */
+public class PlayerImportPipeline {
+    private static final Logger logger = LogManager.getLogger(PlayerImportPipeline.class);
+
+    private static final long QUEUE_POLL_TIMEOUT_MILLIS = 1000;
+
+    private static final RawPlayerData END_OF_RAW_PLAYERS = new RawPlayerData(-1);
+    private static final ImmutablePair<Integer, PlayerJsonData> END_OF_PARSED_PLAYERS = new ImmutablePair<>(-1, null);
+
+    private final PlayerDataDownloader.Config config;
+    private final PipelineOptions options;
+    private final Supplier<PlayerDataConsumer> consumerFactory;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final AtomicInteger playersFetched = new AtomicInteger();
+    private final AtomicInteger playersParsed = new AtomicInteger();
+    private final AtomicInteger playersConsumed = new AtomicInteger();
+    private final Set<Integer> parseFailedPlayerIds = ConcurrentHashMap.newKeySet();
+    private final List<Integer> fetchFailedPlayerIds = new ArrayList<>();
+
+    /**
+     * Pipeline with the default {@link PipelineOptions}.
+     */
+    public PlayerImportPipeline(final PlayerDataDownloader.Config config, final Supplier<PlayerDataConsumer> consumerFactory) {
+        this(config, new PipelineOptions(), consumerFactory);
+    }
+
+    /**
+     * @param consumerFactory called once per consumer thread
+     */
+    public PlayerImportPipeline(final PlayerDataDownloader.Config config, final PipelineOptions options, final Supplier<PlayerDataConsumer> consumerFactory) {
+        this.config = config;
+        this.options = options;
+        this.consumerFactory = consumerFactory;
+    }
+
+    public void run() {
+        LocalDateTime startDate = LocalDateTime.now();
+
+        config.applyBaseUrl();
+        HttpDownloader httpDownloader = new HttpDownloader(config.getMaxRequestsInFlight());
+        PlayerDataDownloader.resolveMaxPlayerId(config, httpDownloader);
+
+        CollectingRawDataWriter writer = new CollectingRawDataWriter(options.isWriteRawJson() ? config.getStorageType().createWriter(config) : null);
+        DownloadJournal journal = DownloadJournal.inMemory(); // no resume: without the raw json, an interrupted pipeline has nothing to resume from
+
+        PlayerIdBatchQueue idQueue = new PlayerIdBatchQueue(config.getMinPlayerId(), config.getMaxPlayerId(), config.getBatchSize());
+        int fetchThreads = Math.min(config.getThreadsCount(), idQueue.getTotalBatches());
+
+        BlockingQueue<RawPlayerData> rawPlayers = new ArrayBlockingQueue<>(options.getQueueSize());
+        BlockingQueue<ImmutablePair<Integer, PlayerJsonData>> parsedPlayers = new ArrayBlockingQueue<>(options.getQueueSize());
+
+        ExecutorService followUpExecutor = Executors.newFixedThreadPool(fetchThreads);
+        CrawlTelemetry telemetry = new CrawlTelemetry(idQueue.getTotalPlayers(), idQueue::getCompletedPlayers);
+        telemetry.start(config.getProgressInterval());
+
+        NegativePlayerCache negativeCache = PlayerDataDownloader.openNegativeCache(config);
+        PlayerFetcher fetcher = new PlayerFetcher(httpDownloader, writer, journal, followUpExecutor, config.isSkipBlocked(), telemetry, false, negativeCache); // the parser needs the responses in memory anyway
+
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(fetchThreads);
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(options.getParseOptions().getParseThreads());
+        ExecutorService consumeExecutor = Executors.newFixedThreadPool(options.getConsumerThreads());
+
+        logger.info(
+            "Starting the pipeline for players [{}; {}]. Fetch threads: {}, parse threads: {}, consumer threads: {}, queue size: {}, write raw json: {}.",
+            config.getMinPlayerId(),
+            config.getMaxPlayerId(),
+            fetchThreads,
+            options.getParseOptions().getParseThreads(),
+            options.getConsumerThreads(),
+            options.getQueueSize(),
+            options.isWriteRawJson()
+        );
+
+        submit(consumeExecutor, options.getConsumerThreads(), "pipeline-consumer-%d", () -> consumeTask(parsedPlayers));
+        submit(parseExecutor, options.getParseOptions().getParseThreads(), "pipeline-parser-%d", () -> parseTask(rawPlayers, parsedPlayers));
+        submit(fetchExecutor, fetchThreads, "pipeline-fetcher-%d", () -> fetchTask(fetcher, writer, idQueue, rawPlayers));
+
+        // stop the stages one after another, so that each stage handles everything the previous stage has produced
+        awaitTermination(fetchExecutor);
+        retryFailedPlayers(fetcher, writer, idQueue.getFailedPlayerIds(), rawPlayers);
+        followUpExecutor.shutdown();
+
+        telemetry.stop();
+        telemetry.logProgress();
+        telemetry.writeSummary(new File(config.getTelemetryFilePath()));
+
+        putEndMarkers(rawPlayers, END_OF_RAW_PLAYERS, options.getParseOptions().getParseThreads());
+        awaitTermination(parseExecutor);
+
+        putEndMarkers(parsedPlayers, END_OF_PARSED_PLAYERS, options.getConsumerThreads());
+        awaitTermination(consumeExecutor);
+
+        PlayerDataDownloader.closeNegativeCache(negativeCache);
+
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            logger.error(String.format("Cannot close %s storage of %s", config.getStorageType().getName(), config.getSnapshotDirectory()), e);
+        }
+
+        LocalDateTime endDate = LocalDateTime.now();
+        logger.info("=======================================================");
+        logger.info("Pipeline start date: {}", startDate);
+        logger.info("Pipeline end date: {}", endDate);
+        PlayerDataDownloader.logDateTimeDiff(startDate, endDate);
+        logger.info("Players fetched: {}, parsed: {}, consumed: {}.", playersFetched.get(), playersParsed.get(), playersConsumed.get());
+
+        if (!fetchFailedPlayerIds.isEmpty()) {
+            logger.error("Failed to download data for {} players: {}", fetchFailedPlayerIds.size(), fetchFailedPlayerIds);
+        }
+
+        if (!parseFailedPlayerIds.isEmpty()) {
+            logger.error("Failed to parse data for {} players: {}", parseFailedPlayerIds.size(), getParseFailedPlayerIds());
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new RuntimeException("The pipeline has been aborted", error);
+        }
+    }
+
+    public int getPlayersFetched() {
+        return playersFetched.get();
+    }
+
+    public int getPlayersParsed() {
+        return playersParsed.get();
+    }
+
+    public int getPlayersConsumed() {
+        return playersConsumed.get();
+    }
+
+    public List<Integer> getFetchFailedPlayerIds() {
+        return fetchFailedPlayerIds;
+    }
+
+    public List<Integer> getParseFailedPlayerIds() {
+        List<Integer> result = new ArrayList<>(parseFailedPlayerIds);
+        result.sort(Integer::compareTo);
+        return result;
+    }
+
+    private Void fetchTask(final PlayerFetcher fetcher, final CollectingRawDataWriter writer, final PlayerIdBatchQueue idQueue, final BlockingQueue<RawPlayerData> rawPlayers) throws InterruptedException {
+        ImmutablePair<Integer, Integer> batch;
+        while ((failure.get() == null) && ((batch = idQueue.nextBatch()) != null)) {
+            List<Integer> batchFailedPlayerIds = new ArrayList<>();
+
+            for (int playerId = batch.getLeft(); playerId <= batch.getRight(); playerId++) {
+                if (!fetchPlayer(fetcher, writer, playerId, rawPlayers)) {
+                    batchFailedPlayerIds.add(playerId);
+                }
+            }
+
+            idQueue.batchCompleted(batch, batchFailedPlayerIds);
+        }
+
+        return null;
+    }
+
+    private boolean fetchPlayer(final PlayerFetcher fetcher, final CollectingRawDataWriter writer, final int playerId, final BlockingQueue<RawPlayerData> rawPlayers) throws InterruptedException {
+        if (!fetcher.fetch(playerId)) { // keep the partially fetched data, the retry requests only the failed endpoints
+            return false;
+        }
+
+        put(rawPlayers, writer.remove(playerId));
+        playersFetched.incrementAndGet();
+        return true;
+    }
+
+    private void retryFailedPlayers(final PlayerFetcher fetcher, final CollectingRawDataWriter writer, final List<Integer> failedPlayerIds, final BlockingQueue<RawPlayerData> rawPlayers) {
+        for (Integer playerId : failedPlayerIds) {
+            try {
+                if ((failure.get() != null) || !fetchPlayer(fetcher, writer, playerId, rawPlayers)) {
+                    fetchFailedPlayerIds.add(playerId);
+                    writer.remove(playerId);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+                fetchFailedPlayerIds.add(playerId);
+                writer.remove(playerId);
+            }
+        }
+    }
+
+    private Void parseTask(final BlockingQueue<RawPlayerData> rawPlayers, final BlockingQueue<ImmutablePair<Integer, PlayerJsonData>> parsedPlayers) throws InterruptedException {
+        while (true) {
+            RawPlayerData rawPlayer = take(rawPlayers);
+            if ((rawPlayer == null) || (rawPlayer == END_OF_RAW_PLAYERS)) {
+                return null;
+            }
+
+            int playerId = rawPlayer.getPlayerId();
+
+            Optional<PlayerJsonData> player;
+            try {
+                player = PlayerJsonParser.readPlayerData(config.getStartDate(), playerId, rawPlayer, true); // the digest is saved to the database
+            }
+            catch (RuntimeException e) { // do not stop the whole import because of a single incorrect player
+                logger.error(String.format("Failed to parse data of player %d", playerId), e);
+                parseFailedPlayerIds.add(playerId);
+                continue;
+            }
+
+            if (player.isEmpty()) {
+                logger.error("Failed to parse data of player {}: no data returned.", playerId);
+                parseFailedPlayerIds.add(playerId);
+                continue;
+            }
+
+            put(parsedPlayers, new ImmutablePair<>(playerId, player.get()));
+            playersParsed.incrementAndGet();
+        }
+    }
+
+    private Void consumeTask(final BlockingQueue<ImmutablePair<Integer, PlayerJsonData>> parsedPlayers) throws InterruptedException {
+        PlayerDataConsumer consumer = consumerFactory.get();
+
+        while (true) {
+            ImmutablePair<Integer, PlayerJsonData> player = take(parsedPlayers);
+            if (player == null) { // aborted
+                return null;
+            }
+
+            if (player == END_OF_PARSED_PLAYERS) {
+                consumer.finish();
+                return null;
+            }
+
+            consumer.accept(player.getLeft(), player.getRight());
+            playersConsumed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Puts the item to the queue, waiting while the queue is full, unless the pipeline is aborted.
+     */
+    private <T> void put(final BlockingQueue<T> queue, final T item) throws InterruptedException {
+        while (failure.get() == null) {
+            if (queue.offer(item, QUEUE_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return next item of the queue, or {@code null} if the pipeline is aborted
+     */
+    private <T> T take(final BlockingQueue<T> queue) throws InterruptedException {
+        while (failure.get() == null) {
+            T item = queue.poll(QUEUE_POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return item;
+            }
+        }
+
+        return null;
+    }
+
+    private <T> void putEndMarkers(final BlockingQueue<T> queue, final T endMarker, final int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                put(queue, endMarker);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private void submit(final ExecutorService executor, final int threadsCount, final String threadNameFormat, final Callable<Void> task) {
+        for (int i = 0; i < threadsCount; i++) {
+            String threadName = String.format(threadNameFormat, i + 1);
+
+            executor.submit(() -> {
+                Thread.currentThread().setName(threadName);
+
+                try {
+                    return task.call();
+                }
+                catch (Throwable e) { // abort all stages, otherwise the other stages would wait for this one forever
+                    logger.error(String.format("Pipeline thread %s failed. Aborting the pipeline.", threadName), e);
+                    failure.compareAndSet(null, e);
+                    throw e;
+                }
+            });
+        }
+
+        executor.shutdown(); // no more tasks, the executor terminates when the submitted tasks finish
+    }
+
+    private void awaitTermination(final ExecutorService executor) {
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.HOURS); // wait more or less infinitely
+        }
+        catch (InterruptedException e) {
+            logger.error("Pipeline was interrupted. Shutting down NOW.", e);
+            executor.shutdownNow();
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+}
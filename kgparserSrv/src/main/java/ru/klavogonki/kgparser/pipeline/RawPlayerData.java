@@ -0,0 +1,66 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.storage.RawDataReader;
+import ru.klavogonki.kgparser.util.ContentDigest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Raw json responses of a single player, kept in memory between the fetch and the parse stages of the {@link PlayerImportPipeline}.
+ */
+class RawPlayerData implements RawDataReader {
+    private final int playerId;
+    private final Map<DataEndpoint, String> responses = new ConcurrentHashMap<>(); // the endpoints are fetched concurrently
+
+    RawPlayerData(final int playerId) {
+        this.playerId = playerId;
+    }
+
+    int getPlayerId() {
+        return playerId;
+    }
+
+    void put(final DataEndpoint endpoint, final String json) {
+        responses.put(endpoint, json);
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz) {
+        return JacksonUtils.parse(read(playerId, endpoint), getLocation(playerId, endpoint), clazz);
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz, final ContentDigest digest) {
+        String json = read(playerId, endpoint); // already in memory
+
+        digest.addResponse(json);
+        return JacksonUtils.parse(json, getLocation(playerId, endpoint), clazz);
+    }
+
+    @Override
+    public String read(final int playerId, final DataEndpoint endpoint) {
+        if (playerId != this.playerId) {
+            throw new IllegalArgumentException(String.format("Requested player %d, but the data is of player %d", playerId, this.playerId));
+        }
+
+        String json = responses.get(endpoint);
+        if (json == null) {
+            throw new IllegalStateException(String.format("No %s response for player %d", endpoint.getName(), playerId));
+        }
+
+        return json;
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return String.format("memory!%s/%d", endpoint.getName(), playerId);
+    }
+
+    @Override
+    public void close() {
+        responses.clear();
+    }
+}
@@ -1,6 +1,23 @@
 package ru.klavogonki.kgparser.processing;
 
 import ru.klavogonki.kgparser.*;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.util.DateUtils;
+import ru.klavogonki.openapi.model.Bio;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetIndexDataStats;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+import ru.klavogonki.openapi.model.GetSummaryUser;
+import ru.klavogonki.openapi.model.Microtime;
+import ru.klavogonki.openapi.model.VocabularyMode;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Copyright 2014 LLC "Open Code"
@@ -82,4 +99,84 @@ public class FakeDataFactory
 
 		return player;
 	}
-}
\ No newline at end of file
+
+	// API responses, valid for PlayerJsonParser
+
+	public static GetSummaryResponse createSummary(int playerId, String login, Rank rank, Car car, int blocked) {
+		ru.klavogonki.openapi.model.Car summaryCar = new ru.klavogonki.openapi.model.Car()
+			.car(car.id)
+			.color("#BF1300");
+
+		return new GetSummaryResponse()
+			.user(new GetSummaryUser().id(playerId).login(login))
+			.isOnline(false)
+			.car(summaryCar)
+			.level(Rank.getLevel(rank).intValue())
+			.title(Rank.getDisplayName(rank))
+			.blocked(blocked);
+	}
+
+	public static GetSummaryResponse createSummaryError(String error) {
+		return new GetSummaryResponse().err(error);
+	}
+
+	public static GetIndexDataResponse createIndexData(int playerId, long registeredSec, int totalRacesCount, Integer bestSpeed, int carsCount) {
+		GetIndexDataStats stats = new GetIndexDataStats()
+			.registered(new Microtime().sec(registeredSec).usec(0L))
+			.achievesCnt(0)
+			.totalNumRaces(totalRacesCount)
+			.bestSpeed(bestSpeed)
+			.ratingLevel(1)
+			.friendsCnt(0)
+			.vocsCnt(0)
+			.carsCnt(carsCount);
+
+		return new GetIndexDataResponse()
+			.ok(ApiErrors.OK_CORRECT_VALUE)
+			.bio(new Bio().userId(playerId).text(""))
+			.stats(stats);
+	}
+
+	public static GetIndexDataResponse createIndexDataError(String error) {
+		return new GetIndexDataResponse().err(error);
+	}
+
+	/**
+	 * @param updated can be {@code null} only if {@code racesCount} is {@code 0}
+	 * @return stats overview with only the {@link StandardDictionary#normal normal} vocabulary
+	 */
+	public static GetStatsOverviewResponse createNormalStatsOverview(int playerId, int racesCount, Integer bestSpeed, LocalDateTime updated) {
+		String code = StandardDictionary.normal.name();
+
+		GetStatsOverviewGameTypeInfo info = new GetStatsOverviewGameTypeInfo()
+			.id(playerId) // any positive id
+			.userId(playerId)
+			.mode(VocabularyMode.NORMAL)
+			.texttype(Dictionary.getTextType(code))
+			.numRaces(racesCount)
+			.avgSpeed((bestSpeed == null) ? null : bestSpeed * 0.9)
+			.bestSpeed(bestSpeed)
+			.avgError((racesCount == 0) ? null : 1.5)
+			.haul(0)
+			.qual(0)
+			.dirty(0)
+			.updated((updated == null) ? null : DateUtils.formatDateTimeForUi(updated));
+
+		GetStatsOverviewGameType gameType = new GetStatsOverviewGameType()
+			.name(StandardDictionary.getDisplayName(StandardDictionary.normal))
+			.numRaces(racesCount)
+			.info(info);
+
+		Map<String, GetStatsOverviewGameType> gameTypes = new LinkedHashMap<>();
+		gameTypes.put(code, gameType);
+
+		return new GetStatsOverviewResponse()
+			.ok(ApiErrors.OK_CORRECT_VALUE)
+			.gametypes(gameTypes)
+			.recentGametypes(new ArrayList<>());
+	}
+
+	public static GetStatsOverviewResponse createStatsOverviewError(String error) {
+		return new GetStatsOverviewResponse().err(error);
+	}
+}
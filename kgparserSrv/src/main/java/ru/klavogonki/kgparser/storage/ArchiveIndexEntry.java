@@ -0,0 +1,59 @@
+package ru.klavogonki.kgparser.storage;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fixed-size entry of the segment archive index: where the record of {@code (playerId, endpoint)} is stored.
+ */
+class ArchiveIndexEntry {
+    static final int SIZE_IN_BYTES = Integer.BYTES + Byte.BYTES + Byte.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    final int playerId;
+    final DataEndpoint endpoint;
+    final boolean compressed;
+    final int segment;
+    final long offset;
+    final int length;
+
+    ArchiveIndexEntry(final int playerId, final DataEndpoint endpoint, final boolean compressed, final int segment, final long offset, final int length) {
+        this.playerId = playerId;
+        this.endpoint = endpoint;
+        this.compressed = compressed;
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(playerId);
+        out.writeByte(endpoint.ordinal());
+        out.writeBoolean(compressed);
+        out.writeInt(segment);
+        out.writeLong(offset);
+        out.writeInt(length);
+    }
+
+    static ArchiveIndexEntry readFrom(final DataInput in) throws IOException {
+        int playerId = in.readInt();
+        int endpointOrdinal = in.readUnsignedByte();
+        boolean compressed = in.readBoolean();
+        int segment = in.readInt();
+        long offset = in.readLong();
+        int length = in.readInt();
+
+        DataEndpoint[] endpoints = DataEndpoint.values();
+        if (endpointOrdinal >= endpoints.length) {
+            throw new IOException(String.format("Incorrect endpoint ordinal %d for player %d", endpointOrdinal, playerId));
+        }
+
+        return new ArchiveIndexEntry(playerId, endpoints[endpointOrdinal], compressed, segment, offset, length);
+    }
+
+    static long getKey(final int playerId, final DataEndpoint endpoint) {
+        return ((long) playerId * DataEndpoint.values().length) + endpoint.ordinal();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.klavogonki.kgparser.storage;
+
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.util.ContentDigest;
+import ru.klavogonki.kgparser.util.GzipUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the files written by {@link JsonFilesWriter}.
+ */
+public class JsonFilesReader implements RawDataReader {
+    private final PlayerDataDownloader.Config config;
+
+    public JsonFilesReader(final PlayerDataDownloader.Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz) {
+        return JacksonUtils.parse(new File(getLocation(playerId, endpoint)), clazz);
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz, final ContentDigest digest) {
+        String location = getLocation(playerId, endpoint);
+
+        try (InputStream in = digest.addResponse(GzipUtils.decompressIfGzipped(new FileInputStream(location)))) {
+            return JacksonUtils.parse(in, location, clazz);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read file %s", location), e);
+        }
+    }
+
+    @Override
+    public String read(final int playerId, final DataEndpoint endpoint) {
+        String location = getLocation(playerId, endpoint);
+
+        try (InputStream in = GzipUtils.decompressIfGzipped(new FileInputStream(location))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read file %s", location), e);
+        }
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return config.getDataDirectory(playerId, endpoint.getName());
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
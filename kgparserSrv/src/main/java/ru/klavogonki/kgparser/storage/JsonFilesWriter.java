@@ -0,0 +1,74 @@
+package ru.klavogonki.kgparser.storage;
+
+import org.apache.commons.io.FileUtils;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.util.GzipUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes each response to a separate {@code <snapshot dir>/<endpoint>/<playerId>.json} file.
+ * <br>
+ * If {@code compress} is {@code true}, the files are gzip-compressed, but keep the same names,
+ * so that the readers do not depend on the compression: {@link JacksonUtils#parse(File, Class)} detects it by the content.
+ */
+public class JsonFilesWriter implements RawDataWriter {
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+    private final PlayerDataDownloader.Config config;
+
+    public JsonFilesWriter(final PlayerDataDownloader.Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public void write(final int playerId, final DataEndpoint endpoint, final String json) throws IOException {
+        File file = new File(getLocation(playerId, endpoint));
+
+        if (config.isCompress()) {
+            FileUtils.writeByteArrayToFile(file, GzipUtils.gzip(json.getBytes(StandardCharsets.UTF_8)));
+        }
+        else {
+            FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+
+    @Override
+    public WritableByteChannel openChannel(final int playerId, final DataEndpoint endpoint) throws IOException {
+        File file = new File(getLocation(playerId, endpoint));
+        FileUtils.forceMkdirParent(file);
+
+        if (config.isCompress()) { // closing the channel closes and finishes the gzip stream
+            OutputStream out = Files.newOutputStream(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            return Channels.newChannel(new GZIPOutputStream(out, GZIP_BUFFER_SIZE));
+        }
+
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return config.getDataDirectory(playerId, endpoint.getName());
+    }
+
+    @Override
+    public void close() {
+        // nothing to close, each file is closed after writing
+    }
+}
@@ -0,0 +1,38 @@
+package ru.klavogonki.kgparser.storage;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.util.ContentDigest;
+
+import java.io.Closeable;
+
+/**
+ * Reads the raw json responses written by a {@link RawDataWriter}.
+ * <br>
+ * Implementations must be thread-safe.
+ */
+public interface RawDataReader extends Closeable {
+
+    /**
+     * @throws RuntimeException if the record does not exist or cannot be parsed
+     */
+    <T> T parse(int playerId, DataEndpoint endpoint, Class<T> clazz);
+
+    /**
+     * Parses the record as {@link #parse(int, DataEndpoint, Class)} does, and adds its raw (decompressed) json
+     * to the {@code digest} in the same pass, without reading the record to a {@code String}.
+     *
+     * @throws RuntimeException if the record does not exist or cannot be parsed
+     */
+    <T> T parse(int playerId, DataEndpoint endpoint, Class<T> clazz, ContentDigest digest);
+
+    /**
+     * @return raw (decompressed) json of the record, e.g. to copy it to another snapshot
+     * @throws RuntimeException if the record does not exist or cannot be read
+     */
+    String read(int playerId, DataEndpoint endpoint);
+
+    /**
+     * @return human-readable location of the record, for logging
+     */
+    String getLocation(int playerId, DataEndpoint endpoint);
+}
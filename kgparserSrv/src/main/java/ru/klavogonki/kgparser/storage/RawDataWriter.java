@@ -0,0 +1,37 @@
+package ru.klavogonki.kgparser.storage;
+
+import ru.klavogonki.kgparser.download.DataEndpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Storage of the raw json responses downloaded by {@link ru.klavogonki.kgparser.PlayerDataDownloader}.
+ * <br>
+ * Implementations must be thread-safe.
+ */
+public interface RawDataWriter extends Closeable {
+
+    void write(int playerId, DataEndpoint endpoint, String json) throws IOException;
+
+    /**
+     * @return {@code true} if the json can be written directly by {@link #openChannel}, without building a {@link String}
+     */
+    default boolean isStreamingSupported() {
+        return false;
+    }
+
+    /**
+     * Opens the record for writing, replacing the previous content. The caller closes the channel.
+     * @throws UnsupportedOperationException if {@link #isStreamingSupported()} is {@code false}
+     */
+    default WritableByteChannel openChannel(int playerId, DataEndpoint endpoint) throws IOException {
+        throw new UnsupportedOperationException(String.format("%s does not support streaming", getClass().getSimpleName()));
+    }
+
+    /**
+     * @return human-readable location of the record, for logging
+     */
+    String getLocation(int playerId, DataEndpoint endpoint);
+}
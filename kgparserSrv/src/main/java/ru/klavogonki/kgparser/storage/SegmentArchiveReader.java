@@ -0,0 +1,172 @@
+package ru.klavogonki.kgparser.storage;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.util.ContentDigest;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the archive written by {@link SegmentArchiveWriter}.
+ * <br>
+ * The segments are memory-mapped, the records are parsed directly from the mapped memory,
+ * without opening a file per record and without copying the record to the heap.
+ * <br>
+ * This class is thread-safe.
+ */
+public class SegmentArchiveReader implements RawDataReader {
+    private static final Logger logger = LogManager.getLogger(SegmentArchiveReader.class);
+
+    private final File directory;
+    private final Map<Long, ArchiveIndexEntry> entries;
+    private final Map<Integer, MappedByteBuffer> segments;
+
+    private SegmentArchiveReader(final File directory, final Map<Long, ArchiveIndexEntry> entries, final Map<Integer, MappedByteBuffer> segments) {
+        this.directory = directory;
+        this.entries = entries;
+        this.segments = segments;
+    }
+
+    public static boolean exists(final File directory) {
+        return new File(directory, SegmentArchiveWriter.INDEX_FILE_NAME).exists();
+    }
+
+    public static SegmentArchiveReader open(final File directory) {
+        File indexFile = new File(directory, SegmentArchiveWriter.INDEX_FILE_NAME);
+
+        try {
+            Map<Long, ArchiveIndexEntry> entries = readIndex(indexFile);
+            Map<Integer, MappedByteBuffer> segments = mapSegments(directory);
+
+            logger.info("Segment archive {} opened. Records: {}, segments: {}.", directory.getPath(), entries.size(), segments.size());
+            return new SegmentArchiveReader(directory, entries, segments);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot open segment archive %s", directory.getPath()), e);
+        }
+    }
+
+    private static Map<Long, ArchiveIndexEntry> readIndex(final File indexFile) throws IOException {
+        long entriesCount = indexFile.length() / ArchiveIndexEntry.SIZE_IN_BYTES; // an incomplete last entry is ignored
+        Map<Long, ArchiveIndexEntry> entries = new HashMap<>((int) Math.min(entriesCount * 4 / 3 + 1, Integer.MAX_VALUE));
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            for (long i = 0; i < entriesCount; i++) {
+                ArchiveIndexEntry entry = ArchiveIndexEntry.readFrom(in);
+                entries.put(ArchiveIndexEntry.getKey(entry.playerId, entry.endpoint), entry); // the last entry wins
+            }
+        }
+
+        return entries;
+    }
+
+    private static Map<Integer, MappedByteBuffer> mapSegments(final File directory) throws IOException {
+        Map<Integer, MappedByteBuffer> segments = new HashMap<>();
+
+        int maxSegment = SegmentArchiveWriter.getMaxSegment(directory);
+        for (int segment = 0; segment <= maxSegment; segment++) {
+            File segmentFile = SegmentArchiveWriter.getSegmentFile(directory, segment);
+            if (!segmentFile.exists()) { // e.g. a resumed download that has not written a single record to its first segment
+                continue;
+            }
+
+            try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+                segments.put(segment, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())); // the mapping stays valid after the channel is closed
+            }
+        }
+
+        return segments;
+    }
+
+    public boolean contains(final int playerId, final DataEndpoint endpoint) {
+        return entries.containsKey(ArchiveIndexEntry.getKey(playerId, endpoint));
+    }
+
+    public int getRecordsCount() {
+        return entries.size();
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz) {
+        String location = getLocation(playerId, endpoint);
+
+        try (InputStream in = openRecord(playerId, endpoint)) {
+            return JacksonUtils.parse(in, location, clazz);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot read record %s", location), e);
+        }
+    }
+
+    @Override
+    public <T> T parse(final int playerId, final DataEndpoint endpoint, final Class<T> clazz, final ContentDigest digest) {
+        String location = getLocation(playerId, endpoint);
+
+        try (InputStream in = digest.addResponse(openRecord(playerId, endpoint))) {
+            return JacksonUtils.parse(in, location, clazz);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot read record %s", location), e);
+        }
+    }
+
+    @Override
+    public String read(final int playerId, final DataEndpoint endpoint) {
+        try (InputStream in = openRecord(playerId, endpoint)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read record %s", getLocation(playerId, endpoint)), e);
+        }
+    }
+
+    /**
+     * @return stream over the (decompressed) record, reading directly from the mapped segment
+     */
+    public InputStream openRecord(final int playerId, final DataEndpoint endpoint) throws IOException {
+        ArchiveIndexEntry entry = entries.get(ArchiveIndexEntry.getKey(playerId, endpoint));
+        if (entry == null) {
+            throw new IOException(String.format("No record %s", getLocation(playerId, endpoint)));
+        }
+
+        MappedByteBuffer segment = segments.get(entry.segment);
+        if ((segment == null) || (entry.offset + entry.length > segment.capacity())) {
+            throw new IOException(String.format("Record %s points outside of segment %d", getLocation(playerId, endpoint), entry.segment));
+        }
+
+        ByteBuffer record = segment.duplicate(); // own position and limit for each reader thread
+        record.position((int) entry.offset);
+        record.limit((int) entry.offset + entry.length);
+
+        InputStream in = new ByteBufferBackedInputStream(record.slice());
+        return entry.compressed ? new GZIPInputStream(in) : in;
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return String.format("%s!%s/%d", directory.getPath(), endpoint.getName(), playerId);
+    }
+
+    @Override
+    public void close() {
+        // MappedByteBuffers are unmapped by GC, there is no public API to unmap them explicitly
+        segments.clear();
+    }
+}
@@ -0,0 +1,202 @@
+package ru.klavogonki.kgparser.storage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.util.GzipUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Packs the raw json responses into a few large append-only segment files instead of one file per player per endpoint.
+ * <br>
+ * Archive directory layout:
+ * <ul>
+ *     <li>{@code segment-00000.dat}, {@code segment-00001.dat}, ... - records, one after another, without any separators</li>
+ *     <li>{@code index.dat} - fixed-size {@link ArchiveIndexEntry entries} {@code (playerId, endpoint) -> (segment, offset, length)}</li>
+ * </ul>
+ * A record is appended to the segment before its index entry, so a record without an index entry
+ * (e.g. after a crash) is just ignored by {@link SegmentArchiveReader}. If a pair is written more than once, the last entry wins.
+ * <br>
+ * When a segment exceeds {@code maxSegmentSize}, the next record is written to a new segment.
+ * An archive opened for resume always starts a new segment, the old segments are never appended to.
+ * <br>
+ * Records are gzip-compressed if {@code compress} is {@code true}.
+ * <br>
+ * This class is thread-safe.
+ */
+public class SegmentArchiveWriter implements RawDataWriter {
+    private static final Logger logger = LogManager.getLogger(SegmentArchiveWriter.class);
+
+    public static final String ARCHIVE_DIRECTORY_NAME = "archive";
+    public static final String INDEX_FILE_NAME = "index.dat";
+    public static final String SEGMENT_FILE_NAME_FORMAT = "segment-%05d.dat";
+    public static final String SEGMENT_FILE_NAME_PATTERN = "segment-\\d{5}\\.dat";
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    private final File directory;
+    private final long maxSegmentSize;
+    private final boolean compress;
+
+    private final DataOutputStream index;
+
+    private int segment;
+    private FileChannel segmentChannel;
+    private long segmentSize;
+
+    private long recordsWritten;
+    private long bytesWritten;
+
+    private SegmentArchiveWriter(final File directory, final long maxSegmentSize, final boolean compress, final DataOutputStream index, final int firstSegment) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.compress = compress;
+        this.index = index;
+        this.segment = firstSegment - 1; // the segment will be opened on the first write
+    }
+
+    /**
+     * @param directory archive directory
+     * @param resume {@code true} - append to the existing archive, {@code false} - create a new archive, the directory must not contain an archive
+     */
+    public static SegmentArchiveWriter open(final File directory, final boolean resume, final boolean compress) {
+        return open(directory, resume, compress, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    public static SegmentArchiveWriter open(final File directory, final boolean resume, final boolean compress, final long maxSegmentSize) {
+        if ((maxSegmentSize < 1) || (maxSegmentSize > Integer.MAX_VALUE)) { // a segment must fit into a single MappedByteBuffer
+            throw new IllegalArgumentException(String.format("Incorrect maxSegmentSize: %d, maxSegmentSize must be in [1; %d]", maxSegmentSize, Integer.MAX_VALUE));
+        }
+
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+
+        if (!resume && indexFile.exists()) {
+            throw new IllegalStateException(String.format("Archive %s already exists. Resume the download or use another directory.", directory.getPath()));
+        }
+
+        try {
+            FileUtils.forceMkdir(directory);
+
+            int firstSegment = getMaxSegment(directory) + 1;
+
+            if (resume && indexFile.exists()) {
+                truncateIncompleteIndexEntry(indexFile);
+            }
+
+            DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                indexFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+            )));
+
+            logger.info("Segment archive {} opened. First segment to write: {}, compression: {}.", directory.getPath(), firstSegment, compress);
+            return new SegmentArchiveWriter(directory, maxSegmentSize, compress, index, firstSegment);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(String.format("Cannot open segment archive %s", directory.getPath()), e);
+        }
+    }
+
+    private static void truncateIncompleteIndexEntry(final File indexFile) throws IOException {
+        long length = indexFile.length();
+        long incompleteBytes = length % ArchiveIndexEntry.SIZE_IN_BYTES;
+        if (incompleteBytes == 0) {
+            return;
+        }
+
+        logger.warn("Index file {} ends with an incomplete entry of {} bytes. Truncating it.", indexFile.getPath(), incompleteBytes);
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length - incompleteBytes);
+        }
+    }
+
+    static int getMaxSegment(final File directory) {
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.matches(SEGMENT_FILE_NAME_PATTERN));
+        if (segmentFiles == null) {
+            return -1;
+        }
+
+        int max = -1;
+        for (File segmentFile : segmentFiles) {
+            String number = segmentFile.getName().replaceAll("\\D", "");
+            max = Math.max(max, Integer.parseInt(number));
+        }
+
+        return max;
+    }
+
+    static File getSegmentFile(final File directory, final int segment) {
+        return new File(directory, String.format(SEGMENT_FILE_NAME_FORMAT, segment));
+    }
+
+    @Override
+    public void write(final int playerId, final DataEndpoint endpoint, final String json) throws IOException {
+        byte[] record = json.getBytes(StandardCharsets.UTF_8);
+        if (compress) {
+            record = GzipUtils.gzip(record); // compress outside of the lock
+        }
+
+        synchronized (this) {
+            if ((segmentChannel == null) || ((segmentSize > 0) && (segmentSize + record.length > maxSegmentSize))) {
+                startNewSegment();
+            }
+
+            long offset = segmentSize;
+
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                segmentChannel.write(buffer);
+            }
+
+            segmentSize += record.length;
+
+            new ArchiveIndexEntry(playerId, endpoint, compress, segment, offset, record.length).writeTo(index);
+            index.flush(); // the entry must survive a JVM crash, since the download journal may already rely on it
+
+            recordsWritten++;
+            bytesWritten += record.length;
+        }
+    }
+
+    private void startNewSegment() throws IOException {
+        if (segmentChannel != null) {
+            segmentChannel.close();
+        }
+
+        segment++;
+        segmentSize = 0;
+
+        File segmentFile = getSegmentFile(directory, segment);
+        segmentChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        logger.info("Writing to a new archive segment {}.", segmentFile.getPath());
+    }
+
+    @Override
+    public String getLocation(final int playerId, final DataEndpoint endpoint) {
+        return String.format("%s!%s/%d", directory.getPath(), endpoint.getName(), playerId);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.close();
+
+        if (segmentChannel != null) {
+            segmentChannel.close();
+        }
+
+        logger.info("Segment archive {} closed. Records written: {}, bytes written: {}.", directory.getPath(), recordsWritten, bytesWritten);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.klavogonki.kgparser.storage;
+
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * How {@link ru.klavogonki.kgparser.PlayerDataDownloader} stores the raw json responses of a snapshot.
+ */
+public enum StorageType {
+    /**
+     * One {@code <endpoint>/<playerId>.json} file per player per endpoint.
+     */
+    FILES("files"),
+
+    /**
+     * Packed {@link SegmentArchiveWriter segment archive}.
+     */
+    ARCHIVE("archive");
+
+    private final String name;
+
+    StorageType(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static StorageType getByName(final String name) {
+        return Arrays
+            .stream(values())
+            .filter(type -> type.name.equals(name))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException(String.format("Unknown storage type: %s", name)));
+    }
+
+    public RawDataWriter createWriter(final PlayerDataDownloader.Config config) {
+        switch (this) {
+            case FILES:
+                return new JsonFilesWriter(config);
+
+            case ARCHIVE:
+                return SegmentArchiveWriter.open(getArchiveDirectory(config), config.isResume(), config.isCompress());
+
+            default:
+                throw new IllegalStateException(String.format("Unknown storage type: %s", this));
+        }
+    }
+
+    /**
+     * Opens the reader for the snapshot, detecting its storage type.
+     */
+    public static RawDataReader openReader(final PlayerDataDownloader.Config config) {
+        File archiveDirectory = getArchiveDirectory(config);
+        if (SegmentArchiveReader.exists(archiveDirectory)) {
+            return SegmentArchiveReader.open(archiveDirectory);
+        }
+
+        return new JsonFilesReader(config);
+    }
+
+    public static File getArchiveDirectory(final PlayerDataDownloader.Config config) {
+        return new File(config.getSnapshotDirectory(), SegmentArchiveWriter.ARCHIVE_DIRECTORY_NAME);
+    }
+}
@@ -0,0 +1,342 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.download.StreamedResponse;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.util.DateUtils;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Live instrumentation of a crawl: per-endpoint latency histograms, bytes, errors by {@link ru.klavogonki.kgparser.jsonParser.ApiErrors} type,
+ * requests per second and ETA.
+ * <br>
+ * The telemetry is available via JMX as {@value #OBJECT_NAME}, as a periodic one-line progress log,
+ * and as a {@link TelemetrySummary} json file written at the end of the run.
+ * <br>
+ * This class is thread-safe.
+ */
+public class CrawlTelemetry implements CrawlTelemetryMXBean {
+    private static final Logger logger = LogManager.getLogger(CrawlTelemetry.class);
+
+    public static final String OBJECT_NAME = "ru.klavogonki.kgparser:type=CrawlTelemetry";
+
+    public static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofSeconds(30);
+
+    // not an API error: the request has failed after all retries
+    public static final String REQUEST_FAILED_ERROR = "request failed";
+
+    private static final String ERROR_FIELD = "err";
+    private static final String OK_FIELD = "ok";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final int totalPlayers;
+    private final IntSupplier completedPlayers;
+
+    private final Map<DataEndpoint, EndpointTelemetry> endpoints = new EnumMap<>(DataEndpoint.class);
+
+    private final LocalDateTime startDate = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+
+    private ScheduledExecutorService progressLogExecutor;
+    private ObjectName objectName;
+
+    /**
+     * @param completedPlayers e.g. {@link ru.klavogonki.kgparser.download.PlayerIdBatchQueue#getCompletedPlayers()}
+     */
+    public CrawlTelemetry(final int totalPlayers, final IntSupplier completedPlayers) {
+        this.totalPlayers = totalPlayers;
+        this.completedPlayers = completedPlayers;
+
+        for (DataEndpoint endpoint : DataEndpoint.values()) { // filled once, so the EnumMap is only read concurrently
+            endpoints.put(endpoint, new EndpointTelemetry());
+        }
+    }
+
+    public void recordResponse(final DataEndpoint endpoint, final long latencyNanos, final String json) {
+        long bytes = json.getBytes(StandardCharsets.UTF_8).length;
+        endpoints.get(endpoint).recordResponse(latencyNanos, bytes, getApiError(json));
+    }
+
+    public void recordResponse(final DataEndpoint endpoint, final long latencyNanos, final StreamedResponse response) {
+        endpoints.get(endpoint).recordResponse(latencyNanos, response.getBytes(), getApiError(response.getHead())); // error responses are shorter than the head
+    }
+
+    public void recordFailure(final DataEndpoint endpoint, final long latencyNanos) {
+        endpoints.get(endpoint).recordFailure(latencyNanos);
+    }
+
+    /**
+     * Endpoint has not been requested, e.g. because of the fetch plan.
+     */
+    public void recordSkipped(final DataEndpoint endpoint, final String error) {
+        endpoints.get(endpoint).recordSkipped(error);
+    }
+
+    public EndpointTelemetry getEndpoint(final DataEndpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * Reads only the top-level fields up to {@code "err"} or {@code "ok"}, which are mutually-exclusive.
+     * A successful response starts with {@code "ok"}, so a large response is not parsed.
+     * @return {@code "err"} value of the response, {@code null} for a successful or an incorrect response
+     */
+    static String getApiError(final String json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+
+                if (ERROR_FIELD.equals(field)) {
+                    return parser.getValueAsString();
+                }
+
+                if (OK_FIELD.equals(field)) {
+                    return null;
+                }
+
+                parser.skipChildren();
+            }
+
+            return null;
+        }
+        catch (IOException e) { // the parser reports incorrect json, the telemetry must not fail
+            return null;
+        }
+    }
+
+    @Override
+    public int getTotalPlayers() {
+        return totalPlayers;
+    }
+
+    @Override
+    public int getCompletedPlayers() {
+        return completedPlayers.getAsInt();
+    }
+
+    @Override
+    public long getRequestsCount() {
+        return endpoints
+            .values()
+            .stream()
+            .mapToLong(EndpointTelemetry::getRequests)
+            .sum();
+    }
+
+    @Override
+    public long getFailedRequestsCount() {
+        return endpoints
+            .values()
+            .stream()
+            .mapToLong(EndpointTelemetry::getFailedRequests)
+            .sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return endpoints
+            .values()
+            .stream()
+            .mapToLong(EndpointTelemetry::getBytes)
+            .sum();
+    }
+
+    @Override
+    public double getRequestsPerSecond() {
+        double seconds = getElapsedSeconds();
+        if (seconds <= 0) {
+            return 0;
+        }
+
+        return getRequestsCount() / seconds;
+    }
+
+    @Override
+    public long getEtaSeconds() {
+        int completed = getCompletedPlayers();
+        if (completed == 0) {
+            return -1;
+        }
+
+        double secondsPerPlayer = getElapsedSeconds() / completed;
+        return Math.round(secondsPerPlayer * Math.max(totalPlayers - completed, 0));
+    }
+
+    @Override
+    public Map<String, Long> getP95LatencyMillis() {
+        Map<String, Long> result = new TreeMap<>();
+        endpoints.forEach((endpoint, telemetry) -> result.put(endpoint.getName(), telemetry.getLatency().getPercentileMillis(95)));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        endpoints.forEach((endpoint, telemetry) ->
+            telemetry.getErrors().forEach((error, count) -> result.put(endpoint.getName() + ": " + error, count))
+        );
+        return result;
+    }
+
+    private double getElapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    /**
+     * Registers the telemetry in the platform MBean server and starts the periodic progress log.
+     */
+    public void start(final Duration progressInterval) {
+        registerMBean();
+
+        progressLogExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-telemetry");
+            thread.setDaemon(true); // must not keep the JVM alive
+            return thread;
+        });
+
+        long intervalMillis = progressInterval.toMillis();
+        progressLogExecutor.scheduleAtFixedRate(this::logProgress, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the progress log and unregisters the MBean. The counters are still available.
+     */
+    public void stop() {
+        if (progressLogExecutor != null) {
+            progressLogExecutor.shutdownNow();
+            progressLogExecutor = null;
+        }
+
+        unregisterMBean();
+    }
+
+    public void logProgress() {
+        int completed = getCompletedPlayers();
+        double percent = (totalPlayers > 0) ? (completed * 100.0 / totalPlayers) : 0;
+        long etaSeconds = getEtaSeconds();
+
+        logger.info(
+            "Progress: players {} / {} ({}%), requests: {} ({} failed), {} req/s, {} KB/s, p95 latency: {} ms, ETA: {}",
+            completed,
+            totalPlayers,
+            String.format("%.1f", percent),
+            getRequestsCount(),
+            getFailedRequestsCount(),
+            String.format("%.1f", getRequestsPerSecond()),
+            String.format("%.1f", getBytesReceived() / 1024.0 / Math.max(getElapsedSeconds(), 1e-3)),
+            getP95LatencyMillis(),
+            (etaSeconds < 0) ? "unknown" : formatDuration(etaSeconds)
+        );
+    }
+
+    static String formatDuration(final long seconds) {
+        return String.format("%02d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    }
+
+    public TelemetrySummary getSummary() {
+        TelemetrySummary summary = new TelemetrySummary();
+        summary.startDate = DateUtils.formatDateTimeForUi(startDate);
+        summary.endDate = DateUtils.formatDateTimeForUi(LocalDateTime.now());
+        summary.durationSeconds = Math.round(getElapsedSeconds());
+        summary.totalPlayers = totalPlayers;
+        summary.completedPlayers = getCompletedPlayers();
+        summary.requests = getRequestsCount();
+        summary.failedRequests = getFailedRequestsCount();
+        summary.bytes = getBytesReceived();
+        summary.requestsPerSecond = getRequestsPerSecond();
+
+        endpoints.forEach((endpoint, telemetry) -> {
+            LatencyHistogram latency = telemetry.getLatency();
+
+            TelemetrySummary.EndpointSummary endpointSummary = new TelemetrySummary.EndpointSummary();
+            endpointSummary.requests = telemetry.getRequests();
+            endpointSummary.failedRequests = telemetry.getFailedRequests();
+            endpointSummary.skipped = telemetry.getSkipped();
+            endpointSummary.bytes = telemetry.getBytes();
+            endpointSummary.meanLatencyMillis = latency.getMeanMillis();
+            endpointSummary.p50LatencyMillis = latency.getPercentileMillis(50);
+            endpointSummary.p95LatencyMillis = latency.getPercentileMillis(95);
+            endpointSummary.p99LatencyMillis = latency.getPercentileMillis(99);
+            endpointSummary.maxLatencyMillis = latency.getMaxMillis();
+            endpointSummary.latencyHistogram = latency.getBuckets();
+            endpointSummary.errors = telemetry.getErrors();
+
+            summary.endpoints.put(endpoint.getName(), endpointSummary);
+        });
+
+        return summary;
+    }
+
+    public void writeSummary(final File file) {
+        try {
+            FileUtils.forceMkdirParent(file); // e.g. the raw json is not written by the pipeline
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot create parent directory of %s", file.getPath()), e);
+        }
+
+        JacksonUtils.serialize(file, getSummary());
+        logger.info("Crawl telemetry summary written to {}", file.getPath());
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            if (server.isRegistered(name)) { // e.g. a previous crawl in the same JVM
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+            objectName = name;
+        }
+        catch (JMException e) { // the crawl can work without JMX
+            logger.warn(String.format("Cannot register MBean %s", OBJECT_NAME), e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (JMException e) {
+            logger.warn(String.format("Cannot unregister MBean %s", OBJECT_NAME), e);
+        }
+
+        objectName = null;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CrawlTelemetry}, e.g. for JConsole or VisualVM.
+ */
+public interface CrawlTelemetryMXBean {
+
+    int getTotalPlayers();
+
+    int getCompletedPlayers();
+
+    long getRequestsCount();
+
+    long getFailedRequestsCount();
+
+    long getBytesReceived();
+
+    double getRequestsPerSecond();
+
+    /**
+     * @return estimated seconds until all players are downloaded, {@code -1} if unknown yet
+     */
+    long getEtaSeconds();
+
+    /**
+     * @return endpoint name to p95 latency
+     */
+    Map<String, Long> getP95LatencyMillis();
+
+    /**
+     * @return {@code <endpoint name>: <error>} to count
+     */
+    Map<String, Long> getErrors();
+}
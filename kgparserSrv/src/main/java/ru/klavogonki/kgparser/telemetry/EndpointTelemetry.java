@@ -0,0 +1,85 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a single {@link ru.klavogonki.kgparser.download.DataEndpoint}.
+ * <br>
+ * This class is thread-safe.
+ */
+public class EndpointTelemetry {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    void recordResponse(final long latencyNanos, final long responseBytes, final String error) {
+        requests.increment();
+        bytes.add(responseBytes);
+        latency.record(latencyNanos);
+
+        if (error != null) {
+            recordError(error);
+        }
+    }
+
+    void recordFailure(final long latencyNanos) {
+        requests.increment();
+        failedRequests.increment();
+        latency.record(latencyNanos);
+        recordError(CrawlTelemetry.REQUEST_FAILED_ERROR);
+    }
+
+    void recordSkipped(final String error) {
+        skipped.increment();
+        recordError(error);
+    }
+
+    private void recordError(final String error) {
+        errors
+            .computeIfAbsent(error, key -> new LongAdder())
+            .increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return error (an {@link ru.klavogonki.kgparser.jsonParser.ApiErrors} value or {@link CrawlTelemetry#REQUEST_FAILED_ERROR}) to count, sorted by error
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<>();
+        errors.forEach((error, count) -> result.put(error, count.sum()));
+        return result;
+    }
+
+    public long getErrorsCount() {
+        return errors
+            .values()
+            .stream()
+            .mapToLong(LongAdder::sum)
+            .sum();
+    }
+}
@@ -0,0 +1,107 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, from a few milliseconds up to the request timeout.
+ * <br>
+ * Percentiles are approximated by the upper bound of the bucket they fall into.
+ * <br>
+ * This class is thread-safe and lock-free.
+ */
+public class LatencyHistogram {
+    // upper bounds of the buckets, in milliseconds. The last bucket (above the last bound) is unbounded
+    static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000};
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MILLIS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(final long latencyNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+
+        bucketCounts.incrementAndGet(getBucketIndex(millis));
+        count.increment();
+        totalNanos.add(latencyNanos);
+        maxNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    private static int getBucketIndex(final long millis) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            if (millis <= BUCKET_UPPER_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+
+        return BUCKET_UPPER_BOUNDS_MILLIS.length;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanMillis() {
+        long requests = count.sum();
+        if (requests == 0) {
+            return 0;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / requests);
+    }
+
+    public long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * @param percentile percentile in {@code (0; 100]}, e.g. {@code 95}
+     * @return upper bound of the bucket containing the percentile, max latency for the last bucket, {@code 0} if nothing has been recorded
+     */
+    public long getPercentileMillis(final double percentile) {
+        if ((percentile <= 0) || (percentile > 100)) {
+            throw new IllegalArgumentException(String.format("Incorrect percentile: %s, percentile must be in (0; 100]", percentile));
+        }
+
+        long total = 0;
+        long[] counts = new long[bucketCounts.length()];
+        for (int i = 0; i < counts.length; i++) { // snapshot, the histogram may be updated concurrently
+            counts[i] = bucketCounts.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_UPPER_BOUNDS_MILLIS[i], getMaxMillis());
+            }
+        }
+
+        return getMaxMillis();
+    }
+
+    /**
+     * @return bucket label (e.g. {@code "<=250ms"}) to requests count, in the bucket order
+     */
+    public Map<String, Long> getBuckets() {
+        Map<String, Long> buckets = new LinkedHashMap<>();
+
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            buckets.put("<=" + BUCKET_UPPER_BOUNDS_MILLIS[i] + "ms", bucketCounts.get(i));
+        }
+
+        buckets.put(">" + BUCKET_UPPER_BOUNDS_MILLIS[BUCKET_UPPER_BOUNDS_MILLIS.length - 1] + "ms", bucketCounts.get(BUCKET_UPPER_BOUNDS_MILLIS.length));
+        return buckets;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of a whole crawl, written to json at the end of the run to compare the runs.
+ */
+public class TelemetrySummary {
+    public String startDate;
+    public String endDate;
+    public long durationSeconds;
+    public int totalPlayers;
+    public int completedPlayers;
+    public long requests;
+    public long failedRequests;
+    public long bytes;
+    public double requestsPerSecond;
+    public Map<String, EndpointSummary> endpoints = new LinkedHashMap<>();
+
+    public static class EndpointSummary {
+        public long requests;
+        public long failedRequests;
+        public long skipped;
+        public long bytes;
+        public long meanLatencyMillis;
+        public long p50LatencyMillis;
+        public long p95LatencyMillis;
+        public long p99LatencyMillis;
+        public long maxLatencyMillis;
+        public Map<String, Long> latencyHistogram;
+        public Map<String, Long> errors;
+    }
+}
@@ -0,0 +1,180 @@
+package ru.klavogonki.kgparser.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digest of the raw json responses of a player, see {@link ru.klavogonki.kgparser.PlayerJsonData#contentDigest}.
+ * <br>
+ * Equal digests of the same player in 2 snapshots mean that all the responses are byte-to-byte equal,
+ * so the player does not need to be mapped and saved again.
+ * Any difference changes the digest, including the fields that are not imported, e.g. {@code isOnline} of the summary:
+ * such a player is just saved again.
+ * <br>
+ * The responses are added one by one, in a fixed order, either as strings or as streams that are parsed at the same time,
+ * see {@link ru.klavogonki.kgparser.storage.RawDataReader#parse(int, ru.klavogonki.kgparser.download.DataEndpoint, Class, ContentDigest)}.
+ * <br>
+ * This class is not thread-safe.
+ */
+public class ContentDigest {
+
+    public static final String ALGORITHM = "SHA-256";
+
+    public static final int LENGTH = 64; // hex string length
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int DRAIN_BUFFER_SIZE = 1024;
+
+    private final MessageDigest messageDigest = createMessageDigest();
+
+    /**
+     * @param responses raw json responses, in a fixed order
+     * @return lowercase hex string of {@link #LENGTH} characters
+     */
+    public static String of(final String... responses) {
+        ContentDigest digest = new ContentDigest();
+
+        for (String response : responses) {
+            digest.addResponse(response);
+        }
+
+        return digest.getValue();
+    }
+
+    public void addResponse(final String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+
+        messageDigest.update(bytes);
+        endResponse(bytes.length);
+    }
+
+    /**
+     * @return stream that adds all bytes read from {@code in} to the digest, as a single response.
+     * When the stream is closed, its bytes not read yet (e.g. a trailing newline after the json) are added as well, and the response is completed.
+     */
+    public InputStream addResponse(final InputStream in) {
+        return new DigestingInputStream(in);
+    }
+
+    /**
+     * Completes the digest, no responses can be added after it.
+     *
+     * @return lowercase hex string of {@link #LENGTH} characters
+     */
+    public String getValue() {
+        return toHex(messageDigest.digest());
+    }
+
+    // length suffix, so that moving a part of one response to another changes the digest
+    private void endResponse(final int length) {
+        messageDigest.update(intToBytes(length));
+    }
+
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(String.format("%s algorithm is not supported by the JVM", ALGORITHM), e); // every JVM must support SHA-256
+        }
+    }
+
+    private static byte[] intToBytes(final int value) {
+        return new byte[] {
+            (byte) (value >>> 24),
+            (byte) (value >>> 16),
+            (byte) (value >>> 8),
+            (byte) value
+        };
+    }
+
+    private static String toHex(final byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >>> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+
+        return new String(chars);
+    }
+
+    private class DigestingInputStream extends FilterInputStream {
+        private int length;
+        private boolean closed;
+
+        DigestingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                messageDigest.update((byte) b);
+                length++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count) throws IOException {
+            int bytesRead = in.read(buffer, offset, count);
+            if (bytesRead > 0) {
+                messageDigest.update(buffer, offset, bytesRead);
+                length += bytesRead;
+            }
+
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            long skipped = 0;
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+
+            while (skipped < count) {
+                int bytesRead = read(buffer, 0, (int) Math.min(buffer.length, count - skipped)); // the skipped bytes are digested as well
+                if (bytesRead < 0) {
+                    break;
+                }
+
+                skipped += bytesRead;
+            }
+
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) { // Jackson closes the source after parsing, then the caller closes it again
+                return;
+            }
+
+            closed = true;
+
+            try {
+                byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+                while (read(buffer, 0, buffer.length) >= 0) {
+                    // drain the bytes the parser has not read
+                }
+
+                endResponse(length);
+            }
+            finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.klavogonki.kgparser.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compression of the raw json, see {@code --compress} option of {@link ru.klavogonki.kgparser.PlayerDataDownloader}.
+ */
+public class GzipUtils {
+
+    // first 2 bytes of any gzip stream, see RFC 1952. A json text cannot start with them
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+
+    public static byte[] gzip(final byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @return stream that decompresses {@code in} if it is gzip-compressed, or returns it as is otherwise
+     */
+    public static InputStream decompressIfGzipped(final InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+
+        buffered.mark(2);
+        int byte1 = buffered.read();
+        int byte2 = buffered.read();
+        buffered.reset();
+
+        if ((byte1 == GZIP_MAGIC_1) && (byte2 == GZIP_MAGIC_2)) {
+            return new GZIPInputStream(buffered);
+        }
+
+        return buffered;
+    }
+}
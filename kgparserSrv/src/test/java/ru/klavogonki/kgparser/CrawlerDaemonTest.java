@@ -0,0 +1,104 @@
+package ru.klavogonki.kgparser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.mock.MockKgApiServer;
+import ru.klavogonki.kgparser.storage.JsonFilesReader;
+
+import java.io.File;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CrawlerDaemonTest {
+
+    private static final int MAX_PLAYER_ID = 20;
+
+    @AfterEach
+    void resetBaseUrl() {
+        UrlConstructor.resetApiBaseUrl();
+    }
+
+    @Test
+    @DisplayName("Each cycle must publish a complete snapshot, dead players must be carried forward to the next cycle")
+    void testCycles(@TempDir File rootDir) {
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(MAX_PLAYER_ID).nonExistingRate(0.3))) {
+            CrawlerDaemon daemon = new CrawlerDaemon(createConfig(rootDir, server));
+            daemon.run(2);
+
+            String latestSnapshot = CrawlerDaemon.readLatestSnapshot(rootDir);
+            assertThat(latestSnapshot).isNotNull().isEqualTo(daemon.getState().getLatestSnapshot());
+            assertThat(daemon.getState().getCycleStartDate()).isNull();
+            assertThat(rootDir.listFiles(File::isDirectory)).hasSize(2);
+
+            long deadPlayers = IntStream
+                .rangeClosed(1, MAX_PLAYER_ID)
+                .filter(playerId -> server.getPlayerType(playerId) == MockKgApiServer.PlayerType.NON_EXISTING)
+                .count();
+            assertThat(server.getRequestsCount(DataEndpoint.SUMMARY)).isEqualTo(MAX_PLAYER_ID + MAX_PLAYER_ID - deadPlayers);
+
+            assertSnapshotComplete(rootDir, latestSnapshot);
+        }
+    }
+
+    @Test
+    @DisplayName("Restarted daemon must continue the interrupted cycle from the saved cursor")
+    void testResume(@TempDir File rootDir) {
+        String interruptedCycle = "2021-01-01 00-00-00";
+
+        CrawlerDaemon.State state = new CrawlerDaemon.State();
+        state.cycleStartDate = interruptedCycle;
+        state.nextPlayerId = 11;
+        state.maxPlayerId = MAX_PLAYER_ID;
+        state.save(new File(rootDir, CrawlerDaemon.STATE_FILE_NAME));
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(MAX_PLAYER_ID))) {
+            CrawlerDaemon daemon = new CrawlerDaemon(createConfig(rootDir, server));
+            assertThat(daemon.getState().getNextPlayerId()).isEqualTo(11);
+
+            daemon.run(1);
+
+            assertThat(server.getRequestsCount(DataEndpoint.SUMMARY)).isEqualTo(10);
+            assertThat(CrawlerDaemon.readLatestSnapshot(rootDir)).isEqualTo(interruptedCycle);
+            assertThat(daemon.getState().getCycleStartDate()).isNull();
+        }
+    }
+
+    @Test
+    void testRefreshPlanIsNotSupported(@TempDir File rootDir) {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {
+            rootDir.getPath(), "1", "2", "1", "--refresh-plan=plan.txt", "--previous-snapshot=2021-01-01 00-00-00"
+        });
+
+        assertThatThrownBy(() -> new CrawlerDaemon(config))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--refresh-plan");
+    }
+
+    private static PlayerDataDownloader.Config createConfig(final File rootDir, final MockKgApiServer server) {
+        return PlayerDataDownloader.Config.parseFromArguments(new String[] {
+            rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2",
+            "--base-url=" + server.getBaseUrl(),
+            "--daemon-cycle=1",
+            "--batch-size=5",
+            "--dead-resample-rate=0"
+        });
+    }
+
+    private static void assertSnapshotComplete(final File rootDir, final String snapshot) {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "1"});
+        config.setStartDate(snapshot);
+
+        JsonFilesReader reader = new JsonFilesReader(config);
+        for (int playerId = 1; playerId <= MAX_PLAYER_ID; playerId++) {
+            for (DataEndpoint endpoint : DataEndpoint.values()) {
+                assertThat(reader.read(playerId, endpoint)).isNotEmpty();
+            }
+        }
+    }
+}
@@ -1,91 +1,175 @@
 package ru.klavogonki.kgparser;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.junit.jupiter.api.Test;
+import ru.klavogonki.kgparser.distributed.CrawlCoordinator;
+import ru.klavogonki.kgparser.download.NegativePlayerCache;
+import ru.klavogonki.kgparser.download.PlayerIdBatchQueue;
 
-import java.util.List;
+import java.io.File;
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class PlayerDataDownloaderTest {
 
     @Test
-    void testSplitPlayerIdsWithoutMod() {
-        List<ImmutablePair<Integer, Integer>> split = PlayerDataDownloader.split(9, 100, 999);
-
-        assertThat(split)
-            .hasSize(9)
-            .containsExactly(
-                new ImmutablePair<>(100, 199),
-                new ImmutablePair<>(200, 299),
-                new ImmutablePair<>(300, 399),
-                new ImmutablePair<>(400, 499),
-                new ImmutablePair<>(500, 599),
-                new ImmutablePair<>(600, 699),
-                new ImmutablePair<>(700, 799),
-                new ImmutablePair<>(800, 899),
-                new ImmutablePair<>(900, 999)
-            );
+    void testParseRequiredArguments() {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "100", "999", "10"});
+
+        assertThat(config.rootDir).isEqualTo("c:/java/kg");
+        assertThat(config.minPlayerId).isEqualTo(100);
+        assertThat(config.maxPlayerId).isEqualTo(999);
+        assertThat(config.threadsCount).isEqualTo(10);
+        assertThat(config.getTotalPlayers()).isEqualTo(900);
+
+        // defaults
+        assertThat(config.getMaxRequestsInFlight()).isEqualTo(10);
+        assertThat(config.batchSize).isEqualTo(PlayerIdBatchQueue.DEFAULT_BATCH_SIZE);
+    }
+
+    @Test
+    void testParseOptions() {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "100", "999", "10", "--batch-size=50", "--max-requests-in-flight=20"});
+
+        assertThat(config.getMaxRequestsInFlight()).isEqualTo(20);
+        assertThat(config.batchSize).isEqualTo(50);
     }
 
     @Test
-    void testSplitPlayerIdsWithMod() {
-        List<ImmutablePair<Integer, Integer>> split = PlayerDataDownloader.split(9, 100, 1000);
-
-        assertThat(split)
-            .hasSize(10)
-            .containsExactly(
-                new ImmutablePair<>(100, 199),
-                new ImmutablePair<>(200, 299),
-                new ImmutablePair<>(300, 399),
-                new ImmutablePair<>(400, 499),
-                new ImmutablePair<>(500, 599),
-                new ImmutablePair<>(600, 699),
-                new ImmutablePair<>(700, 799),
-                new ImmutablePair<>(800, 899),
-                new ImmutablePair<>(900, 999),
-                new ImmutablePair<>(1000, 1000)
-            );
+    void testAutoMaxPlayerId() {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", PlayerDataDownloader.Config.MAX_PLAYER_ID_AUTO, "10", "--max-player-id-gap=20"});
+
+        assertThat(config.isDiscoverMaxPlayerId()).isTrue();
+        assertThat(config.maxPlayerIdGap).isEqualTo(20);
+        assertThat(config.threadsCount).isEqualTo(10);
+
+        assertThat(PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"}).isDiscoverMaxPlayerId()).isFalse();
     }
 
     @Test
-    void testThreadsMoreThanPlayers() {
-        List<ImmutablePair<Integer, Integer>> split = PlayerDataDownloader.split(9, 1, 1);
-
-        assertThat(split)
-            .hasSize(1)
-            .containsExactly(
-                new ImmutablePair<>(1, 1)
-            );
+    void testBaseUrlOption() {
+        assertThat(PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"}).getBaseUrl()).isNull();
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--base-url=http://localhost:8080"});
+        assertThat(config.getBaseUrl()).isEqualTo("http://localhost:8080");
+        assertThat(config.isStreamResponses()).isFalse();
+
+        assertThat(PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--stream-responses=true"}).isStreamResponses()).isTrue();
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--base-url="}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--base-url");
     }
 
     @Test
-    void testOnePlayerPerThread() {
-        List<ImmutablePair<Integer, Integer>> split = PlayerDataDownloader.split(9, 100, 108);
-
-        assertThat(split)
-            .hasSize(9)
-            .containsExactly(
-                new ImmutablePair<>(100, 100),
-                new ImmutablePair<>(101, 101),
-                new ImmutablePair<>(102, 102),
-                new ImmutablePair<>(103, 103),
-                new ImmutablePair<>(104, 104),
-                new ImmutablePair<>(105, 105),
-                new ImmutablePair<>(106, 106),
-                new ImmutablePair<>(107, 107),
-                new ImmutablePair<>(108, 108)
-            );
+    void testPreviousSnapshotOption() {
+        PlayerDataDownloader.Config defaultConfig = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultConfig.getPreviousSnapshotConfig()).isNull();
+        assertThat(defaultConfig.getDeadResampleRate()).isEqualTo(NegativePlayerCache.DEFAULT_RESAMPLE_RATE);
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--previous-snapshot=2020-12-28 00-28-13", "--dead-resample-rate=0.5"});
+        assertThat(config.getPreviousSnapshotConfig().getSnapshotDirectory()).isEqualTo("c:/java/kg" + File.separator + "2020-12-28 00-28-13");
+        assertThat(config.getDeadResampleRate()).isEqualTo(0.5);
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--previous-snapshot=yesterday"}))
+            .isInstanceOf(RuntimeException.class);
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--dead-resample-rate=2"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--dead-resample-rate");
+    }
+
+    @Test
+    void testRefreshPlanOption() {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--refresh-plan=c:/java/kg/plan.txt", "--previous-snapshot=2020-12-28 00-28-13"});
+        assertThat(config.getRefreshPlanFile()).isEqualTo("c:/java/kg/plan.txt");
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--refresh-plan=c:/java/kg/plan.txt"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--previous-snapshot");
+    }
+
+    @Test
+    void testPlayerIdsOption() {
+        assertThat(PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"}).getPlayerIdsFile()).isNull();
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--player-ids=c:/java/kg/quarantine.txt", "--resume=2020-12-28 00-28-13"});
+        assertThat(config.getPlayerIdsFile()).isEqualTo("c:/java/kg/quarantine.txt");
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--player-ids=c:/java/kg/quarantine.txt"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--resume");
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--player-ids=", "--resume=2020-12-28 00-28-13"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--player-ids");
+    }
+
+    @Test
+    void testDistributedOptions() {
+        PlayerDataDownloader.Config defaultConfig = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultConfig.getCoordinatorPort()).isEqualTo(CrawlCoordinator.DEFAULT_PORT);
+        assertThat(defaultConfig.getLeaseTimeout()).isEqualTo(CrawlCoordinator.DEFAULT_LEASE_TIMEOUT);
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--coordinator-port=9000", "--lease-timeout=30"});
+        assertThat(config.getCoordinatorPort()).isEqualTo(9000);
+        assertThat(config.getLeaseTimeout()).isEqualTo(Duration.ofSeconds(30));
+
+        PlayerDataDownloader.Config workerConfig = PlayerDataDownloader.Config.parseOptions(4, new String[] {"http://localhost:9000", "4", "--base-url=http://localhost:8080"}, 2);
+        assertThat(workerConfig.getThreadsCount()).isEqualTo(4);
+        assertThat(workerConfig.getBaseUrl()).isEqualTo("http://localhost:8080");
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--lease-timeout=0"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--lease-timeout");
+    }
+
+    @Test
+    void testOtherOptions() {
+        // the snapshot parse options are not downloader options
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--quarantine=c:/java/kg/quarantine.txt"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown option: --quarantine");
+
+        // unless they are parsed by another options type from the same arguments
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--quarantine=c:/java/kg/quarantine.txt", "--batch-size=50"}, SnapshotParseOptions.NAMES);
+        assertThat(config.getBatchSize()).isEqualTo(50);
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--bulk-load=true"}, SnapshotParseOptions.NAMES))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown option: --bulk-load");
+
+        // the pipeline options are not downloader options either
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--queue-size=50"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown option: --queue-size");
+    }
+
+    @Test
+    void testResumeOption() {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--resume=2020-12-28 00-28-13"});
+        assertThat(config.isResume()).isTrue();
+
+        config.setStartDate(config.resumeStartDate);
+        assertThat(config.getJournalFilePath()).isEqualTo("c:/java/kg" + File.separator + "2020-12-28 00-28-13" + File.separator + PlayerDataDownloader.Config.JOURNAL_FILE_NAME);
+
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--resume=yesterday"}))
+            .isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void testNonOptionArgumentsAfterRequiredAreIgnored() { // e.g. start date passed by KgParserApplication
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "628000", "1", "2020-12-28 00-28-13"});
+
+        assertThat(config.maxPlayerId).isEqualTo(628000);
+        assertThat(config.batchSize).isEqualTo(PlayerIdBatchQueue.DEFAULT_BATCH_SIZE);
     }
 
     @Test
-    void testOneThread() {
-        List<ImmutablePair<Integer, Integer>> split = PlayerDataDownloader.split(1, 100, 109);
-
-        assertThat(split)
-            .hasSize(1)
-            .containsExactly(
-                new ImmutablePair<>(100, 109)
-            );
+    void testUnknownOption() {
+        assertThatThrownBy(() -> PlayerDataDownloader.Config.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--no-such-option=1"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--no-such-option");
     }
 }
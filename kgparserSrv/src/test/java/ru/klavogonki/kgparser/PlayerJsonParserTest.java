@@ -1,25 +1,42 @@
 package ru.klavogonki.kgparser;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.ArrayUtils;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.http.UrlConstructor;
 import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.jsonParser.VocabularyStats;
+import ru.klavogonki.kgparser.mock.MockKgApiServer;
+import ru.klavogonki.kgparser.pipeline.PlayerImportPipeline;
+import ru.klavogonki.kgparser.storage.JsonFilesReader;
+import ru.klavogonki.kgparser.storage.SegmentArchiveReader;
+import ru.klavogonki.kgparser.storage.SegmentArchiveWriter;
+import ru.klavogonki.kgparser.util.ContentDigest;
+import ru.klavogonki.kgparser.util.GzipUtils;
 import ru.klavogonki.kgparser.util.TestUtils;
 import ru.klavogonki.openapi.model.Bio;
 import ru.klavogonki.openapi.model.BioAssert;
 import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeAssert;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
-import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfoAssert;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
 import ru.klavogonki.openapi.model.Microtime;
 import ru.klavogonki.openapi.model.MicrotimeAssert;
 import ru.klavogonki.openapi.model.NonStandardVocabularyType;
 import ru.klavogonki.openapi.model.VocabularyMode;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class PlayerJsonParserTest {
 
@@ -74,6 +91,114 @@ class PlayerJsonParserTest {
         assertThat(playerOptional).isPresent();
     }
 
+    @Test
+    @DisplayName("Data of an existing user must be successfully parsed from a compressed segment archive")
+    void testExistingUserParseFromArchive(@TempDir File archiveDir) throws IOException {
+        int playerId = 242585;
+
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(archiveDir, false, true)) {
+            writer.write(playerId, DataEndpoint.SUMMARY, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json"));
+            writer.write(playerId, DataEndpoint.INDEX_DATA, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-index-data-242585.json"));
+            writer.write(playerId, DataEndpoint.STATS_OVERVIEW, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json"));
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(archiveDir)) {
+            Optional<PlayerJsonData> playerOptional = PlayerJsonParser.readPlayerData(LocalDateTime.now(), playerId, reader);
+            assertThat(playerOptional).isPresent();
+            assertThat(playerOptional.get().summary.getUser().getId()).isEqualTo(playerId);
+        }
+    }
+
+    @Test
+    @DisplayName("Content digest must not depend on the compression and must change with any change of the raw responses")
+    void testContentDigest(@TempDir File tempDir) throws IOException {
+        int playerId = 242585;
+        String summary = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json");
+        String indexData = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-index-data-242585.json");
+        String statsOverview = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json");
+
+        String compressedDigest = readContentDigest(new File(tempDir, "compressed"), true, playerId, summary, indexData, statsOverview);
+        String plainDigest = readContentDigest(new File(tempDir, "plain"), false, playerId, summary, indexData, statsOverview);
+
+        assertThat(compressedDigest)
+            .hasSize(ContentDigest.LENGTH)
+            .isEqualTo(plainDigest)
+            .isEqualTo(ContentDigest.of(summary, indexData, statsOverview));
+
+        String changedStatsOverview = statsOverview.replace("\"num_races\": 29445", "\"num_races\": 29446"); // both game type and info num_races
+        assertThat(changedStatsOverview).isNotEqualTo(statsOverview);
+
+        String changedDigest = readContentDigest(new File(tempDir, "changed"), true, playerId, summary, indexData, changedStatsOverview);
+        assertThat(changedDigest)
+            .hasSize(ContentDigest.LENGTH)
+            .isNotEqualTo(compressedDigest);
+    }
+
+    @Test
+    @DisplayName("Content digest of json files must include the bytes after the json, and must only be calculated if requested")
+    void testContentDigestOfJsonFiles(@TempDir File rootDir) throws IOException {
+        int playerId = 242585;
+        String summary = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json") + "\n";
+        String indexData = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-index-data-242585.json");
+        String statsOverview = TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json");
+
+        PlayerDataDownloader.Config config = createParserConfig(rootDir, playerId, "2021-01-01 00-00-00");
+        FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(playerId)), summary, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(config.getPlayerIndexDataFilePath(playerId)), indexData, StandardCharsets.UTF_8);
+        FileUtils.writeByteArrayToFile(new File(config.getStatsOverviewFilePath(playerId)), GzipUtils.gzip(statsOverview.getBytes(StandardCharsets.UTF_8)));
+
+        try (JsonFilesReader reader = new JsonFilesReader(config)) {
+            assertThat(PlayerJsonParser.readPlayerData(LocalDateTime.now(), playerId, reader, true).orElseThrow().contentDigest)
+                .isEqualTo(ContentDigest.of(summary, indexData, statsOverview));
+
+            assertThat(PlayerJsonParser.readPlayerData(LocalDateTime.now(), playerId, reader).orElseThrow().contentDigest).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("Skipped index data and stats overview of a non-existing user must be parsed as \"invalid user id\" errors")
+    void testNonExistingPlayerWithSkippedDataParse(@TempDir File tempDir) throws IOException {
+        File summaryFile = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-summary-30001.json");
+        File indexDataFile = writeSkippedFile(tempDir, "get-index-data-30001.json");
+        File statsOverviewFile = writeSkippedFile(tempDir, "get-stats-overview-30001.json");
+
+        Optional<PlayerJsonData> playerOptional = PlayerJsonParser.readPlayerData(LocalDateTime.now(), 30001, summaryFile, indexDataFile, statsOverviewFile);
+        assertThat(playerOptional).isPresent();
+
+        PlayerJsonData player = playerOptional.get();
+        assertThat(player.summary.getErr()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+        assertThat(player.indexData.getErr()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+        assertThat(player.statsOverview.getErr()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+    }
+
+    @Test
+    @DisplayName("Skipped index data and stats overview of a blocked user must be parsed as skipped")
+    void testBlockedPlayerWithSkippedDataParse(@TempDir File tempDir) throws IOException {
+        File summaryFile = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-summary-142478.json");
+        File indexDataFile = writeSkippedFile(tempDir, "get-index-data-142478.json");
+        File statsOverviewFile = writeSkippedFile(tempDir, "get-stats-overview-142478.json");
+
+        Optional<PlayerJsonData> playerOptional = PlayerJsonParser.readPlayerData(LocalDateTime.now(), 142478, summaryFile, indexDataFile, statsOverviewFile);
+        assertThat(playerOptional).isPresent();
+
+        PlayerJsonData player = playerOptional.get();
+        assertThat(player.summary.getBlocked()).isEqualTo(4);
+        assertThat(player.indexData.getErr()).isEqualTo(ApiErrors.SKIPPED_ERROR);
+        assertThat(player.statsOverview.getErr()).isEqualTo(ApiErrors.SKIPPED_ERROR);
+    }
+
+    @Test
+    @DisplayName("Skipped index data of an active user must fail the parsing")
+    void testActivePlayerWithSkippedDataParse(@TempDir File tempDir) throws IOException {
+        File summaryFile = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json");
+        File indexDataFile = writeSkippedFile(tempDir, "get-index-data-242585.json");
+        File statsOverviewFile = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json");
+
+        assertThatThrownBy(() -> PlayerJsonParser.readPlayerData(LocalDateTime.now(), 242585, summaryFile, indexDataFile, statsOverviewFile))
+            .isInstanceOf(PlayerJsonParser.ParserException.class)
+            .hasMessageContaining("has been skipped");
+    }
+
     @Test
     @DisplayName("Data of an existing user with personal car id must be successfully parsed")
     void testExistingUserWithPersonalCarIdParse() {
@@ -196,24 +321,20 @@ class PlayerJsonParserTest {
         PlayerJsonData player = playerOptional.get();
         assertThat(player.summary.getBlocked()).isZero(); // user is not blocked
 
-        GetStatsOverviewGameType marathonStats = player.statsOverview.getGametypes().get(StandardDictionary.marathon.name());
-
-        GetStatsOverviewGameTypeAssert
-            .assertThat(marathonStats)
-            .hasNumRaces(1);
-
-        GetStatsOverviewGameTypeInfo marathonStatsInfo = marathonStats.getInfo();
-        GetStatsOverviewGameTypeInfoAssert
-            .assertThat(marathonStatsInfo)
-            .hasUserId(24646)
-            .hasNumRaces(1)
-            .hasAvgSpeed(null)
-            .hasBestSpeed(0)
-            .hasAvgError(null)
-            .hasHaul(299)
-            .hasQual(0)
-            .hasDirty(0)
-            .hasUpdated("2008-08-16 15:30:36")
+        VocabularyStats marathonStats = player.statsOverview.getVocabulary(StandardDictionary.marathon.name());
+
+        assertThat(marathonStats)
+            .returns(1, VocabularyStats::getNumRaces)
+            .returns(true, VocabularyStats::isInfoPresent)
+            .returns(24646, VocabularyStats::getUserId)
+            .returns(1, VocabularyStats::getInfoNumRaces)
+            .returns(null, VocabularyStats::getAvgSpeed)
+            .returns(0, VocabularyStats::getBestSpeed)
+            .returns(null, VocabularyStats::getAvgError)
+            .returns(299, VocabularyStats::getHaul)
+            .returns(0, VocabularyStats::getQual)
+            .returns(0, VocabularyStats::getDirty)
+            .returns("2008-08-16 15:30:36", VocabularyStats::getUpdated)
         ;
     }
 
@@ -230,31 +351,27 @@ class PlayerJsonParserTest {
         PlayerJsonData player = playerOptional.get();
         assertThat(player.summary.getBlocked()).isZero(); // user is not blocked
 
-        GetStatsOverviewGameType bookStats = player.statsOverview.getGametypes().get("voc-11315");
-
-        GetStatsOverviewGameTypeAssert
-            .assertThat(bookStats)
-            .hasId(11315)
-            .hasName("Стефани Майер. Новолуние")
-            .hasType(NonStandardVocabularyType.BOOK)
-            .hasSymbols(655617)
-            .hasRows(1476)
-            .hasNumRaces(1)
-            .hasBookDone(false);
-
-        GetStatsOverviewGameTypeInfo bookStatsInfo = bookStats.getInfo();
-        GetStatsOverviewGameTypeInfoAssert
-            .assertThat(bookStatsInfo)
-            .hasId(12222256)
-            .hasUserId(215941)
-            .hasNumRaces(1)
-            .hasAvgSpeed(null)
-            .hasBestSpeed(null)
-            .hasAvgError(null)
-            .hasHaul(130)
-            .hasQual(0)
-            .hasDirty(0)
-            .hasUpdated("2015-01-26 11:12:44")
+        VocabularyStats bookStats = player.statsOverview.getVocabulary("voc-11315");
+
+        assertThat(bookStats)
+            .returns(11315, VocabularyStats::getId)
+            .returns("Стефани Майер. Новолуние", VocabularyStats::getName)
+            .returns(NonStandardVocabularyType.BOOK, VocabularyStats::getType)
+            .returns(655617, VocabularyStats::getSymbols)
+            .returns(1476, VocabularyStats::getRows)
+            .returns(1, VocabularyStats::getNumRaces)
+            .returns(false, VocabularyStats::getBookDone)
+            .returns(true, VocabularyStats::isInfoPresent)
+            .returns(12222256, VocabularyStats::getInfoId)
+            .returns(215941, VocabularyStats::getUserId)
+            .returns(1, VocabularyStats::getInfoNumRaces)
+            .returns(null, VocabularyStats::getAvgSpeed)
+            .returns(null, VocabularyStats::getBestSpeed)
+            .returns(null, VocabularyStats::getAvgError)
+            .returns(130, VocabularyStats::getHaul)
+            .returns(0, VocabularyStats::getQual)
+            .returns(0, VocabularyStats::getDirty)
+            .returns("2015-01-26 11:12:44", VocabularyStats::getUpdated)
         ;
     }
 
@@ -271,32 +388,27 @@ class PlayerJsonParserTest {
         PlayerJsonData player = playerOptional.get();
         assertThat(player.summary.getBlocked()).isZero(); // user is not blocked
 
-        GetStatsOverviewGameType vocabularyWithEmptyType = player.statsOverview.getGametypes().get("voc-106275");
-
-        GetStatsOverviewGameTypeAssert
-            .assertThat(vocabularyWithEmptyType)
-            .hasId(106275)
-            .hasType(null) // null type, goddamn
-            .hasSymbols(3)
-            .hasRows(1)
-            .hasNumRaces(1)
-        ;
-
-        GetStatsOverviewGameTypeInfo marathonStatsInfo = vocabularyWithEmptyType.getInfo();
-        GetStatsOverviewGameTypeInfoAssert
-            .assertThat(marathonStatsInfo)
-            .hasId(12852030)
-            .hasUserId(80523)
-            .hasMode(VocabularyMode.NORMAL)
-            .hasTexttype(106275)
-            .hasNumRaces(1)
-            .hasAvgSpeed(285D)
-            .hasBestSpeed(285)
-            .hasAvgError(1.96078)
-            .hasHaul(64)
-            .hasQual(0)
-            .hasDirty(0)
-            .hasUpdated("2015-05-28 20:28:07")
+        VocabularyStats vocabularyWithEmptyType = player.statsOverview.getVocabulary("voc-106275");
+
+        assertThat(vocabularyWithEmptyType)
+            .returns(106275, VocabularyStats::getId)
+            .returns(null, VocabularyStats::getType) // null type, goddamn
+            .returns(3, VocabularyStats::getSymbols)
+            .returns(1, VocabularyStats::getRows)
+            .returns(1, VocabularyStats::getNumRaces)
+            .returns(true, VocabularyStats::isInfoPresent)
+            .returns(12852030, VocabularyStats::getInfoId)
+            .returns(80523, VocabularyStats::getUserId)
+            .returns(VocabularyMode.NORMAL, VocabularyStats::getMode)
+            .returns(106275, VocabularyStats::getTexttype)
+            .returns(1, VocabularyStats::getInfoNumRaces)
+            .returns(285D, VocabularyStats::getAvgSpeed)
+            .returns(285, VocabularyStats::getBestSpeed)
+            .returns(1.96078, VocabularyStats::getAvgError)
+            .returns(64, VocabularyStats::getHaul)
+            .returns(0, VocabularyStats::getQual)
+            .returns(0, VocabularyStats::getDirty)
+            .returns("2015-05-28 20:28:07", VocabularyStats::getUpdated)
         ;
     }
 
@@ -313,33 +425,262 @@ class PlayerJsonParserTest {
         PlayerJsonData player = playerOptional.get();
         assertThat(player.summary.getBlocked()).isZero(); // user is not blocked
 
-        GetStatsOverviewGameType vocabularyWithNegativeSymbols = player.statsOverview.getGametypes().get("voc-186079");
-
-        GetStatsOverviewGameTypeAssert
-            .assertThat(vocabularyWithNegativeSymbols)
-            .hasId(186079)
-            .hasType(NonStandardVocabularyType.BOOK)
-            .hasSymbols(-56) // Mein Gott, muss das sein?!
-            .hasRows(3)
-            .hasNumRaces(1)
-            .hasBookDone(false)
+        VocabularyStats vocabularyWithNegativeSymbols = player.statsOverview.getVocabulary("voc-186079");
+
+        assertThat(vocabularyWithNegativeSymbols)
+            .returns(186079, VocabularyStats::getId)
+            .returns(NonStandardVocabularyType.BOOK, VocabularyStats::getType)
+            .returns(-56, VocabularyStats::getSymbols) // Mein Gott, muss das sein?!
+            .returns(3, VocabularyStats::getRows)
+            .returns(1, VocabularyStats::getNumRaces)
+            .returns(false, VocabularyStats::getBookDone)
+            .returns(true, VocabularyStats::isInfoPresent)
+            .returns(30411112, VocabularyStats::getInfoId)
+            .returns(486990, VocabularyStats::getUserId)
+            .returns(VocabularyMode.NORMAL, VocabularyStats::getMode)
+            .returns(186079, VocabularyStats::getTexttype)
+            .returns(1, VocabularyStats::getInfoNumRaces)
+            .returns(117D, VocabularyStats::getAvgSpeed)
+            .returns(117, VocabularyStats::getBestSpeed)
+            .returns(7.14286, VocabularyStats::getAvgError)
+            .returns(7, VocabularyStats::getHaul)
+            .returns(0, VocabularyStats::getQual)
+            .returns(0, VocabularyStats::getDirty)
+            .returns("2020-09-16 19:36:19", VocabularyStats::getUpdated)
         ;
+    }
 
-        GetStatsOverviewGameTypeInfo marathonStatsInfo = vocabularyWithNegativeSymbols.getInfo();
-        GetStatsOverviewGameTypeInfoAssert
-            .assertThat(marathonStatsInfo)
-            .hasId(30411112)
-            .hasUserId(486990)
-            .hasMode(VocabularyMode.NORMAL)
-            .hasTexttype(186079)
-            .hasNumRaces(1)
-            .hasAvgSpeed(117D)
-            .hasBestSpeed(117)
-            .hasAvgError(7.14286)
-            .hasHaul(7)
-            .hasQual(0)
-            .hasDirty(0)
-            .hasUpdated("2020-09-16 19:36:19")
-        ;
+    @Test
+    @DisplayName("Parallel parsing must pass the same players as the sequential one, in player id order if it is requested")
+    void testParallelHandlePlayers(@TempDir File rootDir) throws IOException {
+        int maxPlayerId = 5 * PlayerJsonParser.PARSE_CHUNK_SIZE;
+        String startDate = "2021-01-01 00-00-00";
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(maxPlayerId).nonExistingRate(0.3).hiddenProfileRate(0.1).blockedRate(0.1))) {
+            PlayerDataDownloader.Config downloadConfig = createParserConfig(rootDir, maxPlayerId, startDate, "--base-url=" + server.getBaseUrl());
+            new PlayerImportPipeline(downloadConfig, () -> (playerId, player) -> {}).run();
+        }
+        finally {
+            UrlConstructor.resetApiBaseUrl();
+        }
+
+        PlayerDataDownloader.Config config = createParserConfig(rootDir, maxPlayerId, startDate);
+        SnapshotParseOptions parallelOptions = createParseOptions("--parse-threads=4");
+
+        List<String> sequentialPlayers = handlePlayers(config, new SnapshotParseOptions(), true);
+        assertThat(sequentialPlayers).hasSize(maxPlayerId);
+
+        List<String> orderedPlayers = handlePlayers(config, parallelOptions, true);
+        assertThat(orderedPlayers).containsExactlyElementsOf(sequentialPlayers);
+
+        List<String> unorderedPlayers = handlePlayers(config, parallelOptions, false);
+        assertThat(unorderedPlayers).containsExactlyInAnyOrderElementsOf(sequentialPlayers);
+
+        // a broken file must fail the parsing, as in the sequential mode
+        FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(377)), "{", StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> handlePlayers(config, parallelOptions, true))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("377");
+    }
+
+    @Test
+    @DisplayName("Snapshot validation must go on after invalid players and report them grouped by the error class")
+    void testValidateSnapshot(@TempDir File rootDir) throws IOException {
+        int maxPlayerId = 3 * PlayerJsonParser.PARSE_CHUNK_SIZE;
+        String startDate = "2021-01-01 00-00-00";
+        List<Integer> brokenPlayerIds = List.of(17, 250, 260);
+
+        int expectedHiddenProfiles = 0;
+        int expectedNonExisting = 0;
+        int totalRacesMismatchPlayerId = 0;
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(maxPlayerId).nonExistingRate(0.3).hiddenProfileRate(0.1).blockedRate(0.1))) {
+            PlayerDataDownloader.Config downloadConfig = createParserConfig(rootDir, maxPlayerId, startDate, "--base-url=" + server.getBaseUrl());
+            new PlayerImportPipeline(downloadConfig, () -> (playerId, player) -> {}).run();
+
+            for (int playerId = 1; playerId <= maxPlayerId; playerId++) {
+                if (brokenPlayerIds.contains(playerId)) {
+                    continue;
+                }
+
+                MockKgApiServer.PlayerType playerType = server.getPlayerType(playerId);
+                if (playerType == MockKgApiServer.PlayerType.HIDDEN_PROFILE) {
+                    expectedHiddenProfiles++;
+                }
+                else if (playerType == MockKgApiServer.PlayerType.NON_EXISTING) {
+                    expectedNonExisting++;
+                }
+                else if ((playerType == MockKgApiServer.PlayerType.EXISTING) && (totalRacesMismatchPlayerId == 0)) {
+                    totalRacesMismatchPlayerId = playerId;
+                }
+            }
+        }
+        finally {
+            UrlConstructor.resetApiBaseUrl();
+        }
+
+        File reportFile = new File(rootDir, "validation-report.txt");
+        PlayerDataDownloader.Config config = createParserConfig(rootDir, maxPlayerId, startDate);
+        SnapshotParseOptions options = createParseOptions("--parse-threads=4", "--validation-report=" + reportFile.getPath());
+
+        // 1 broken json and 2 unknown errors
+        FileUtils.writeStringToFile(new File(config.getPlayerSummaryFilePath(17)), "{", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(config.getStatsOverviewFilePath(250)), "{\"err\": \"unknown error\"}", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(config.getStatsOverviewFilePath(260)), "{\"err\": \"unknown error\"}", StandardCharsets.UTF_8);
+
+        // the races of a vocabulary do not sum up to the total races
+        File statsOverviewFile = new File(config.getStatsOverviewFilePath(totalRacesMismatchPlayerId));
+        GetStatsOverviewResponse statsOverview = JacksonUtils.parse(statsOverviewFile, GetStatsOverviewResponse.class);
+        GetStatsOverviewGameType gameType = statsOverview.getGametypes().values().iterator().next();
+        gameType.setNumRaces(gameType.getNumRaces() + 5);
+        gameType.getInfo().setNumRaces(gameType.getNumRaces());
+        JacksonUtils.serialize(statsOverviewFile, statsOverview);
+
+        SnapshotValidationReport report = PlayerJsonParser.validateSnapshot(config, options);
+
+        assertThat(report.getTotalPlayers()).isEqualTo(maxPlayerId);
+        assertThat(report.getInvalidPlayers()).isEqualTo(brokenPlayerIds.size());
+        assertThat(report.getValidPlayers()).isEqualTo(maxPlayerId - brokenPlayerIds.size());
+        assertThat(report.getNonExistingPlayers()).isEqualTo(expectedNonExisting);
+        assertThat(report.getExistingPlayers()).isEqualTo(report.getValidPlayers() - expectedNonExisting);
+        assertThat(report.getHiddenProfiles().getCount()).isEqualTo(expectedHiddenProfiles);
+        assertThat(report.getSummaryIndexDataMismatches().getCount()).isZero();
+
+        assertThat(report.getTotalRacesMismatches().getCount()).isEqualTo(1);
+        assertThat(report.getTotalRacesMismatches().getExamplePlayerIds()).containsExactly(totalRacesMismatchPlayerId);
+
+        assertThat(report.hasErrors()).isTrue();
+        List<SnapshotValidationReport.PlayerGroup> errors = report.getErrors();
+        assertThat(errors).hasSize(2);
+
+        SnapshotValidationReport.PlayerGroup unknownError = errors.get(0); // the most frequent first
+        assertThat(unknownError.getCount()).isEqualTo(2);
+        assertThat(unknownError.getExamplePlayerIds()).containsExactlyInAnyOrder(250, 260);
+        assertThat(unknownError.getName()).isEqualTo("ParserException: Stats overview file <stats-overview>: Unknown error: unknown error");
+
+        SnapshotValidationReport.PlayerGroup brokenJson = errors.get(1);
+        assertThat(brokenJson.getCount()).isEqualTo(1);
+        assertThat(brokenJson.getExamplePlayerIds()).containsExactly(17);
+        assertThat(brokenJson.getName()).contains("<summary>");
+
+        assertThat(reportFile).exists();
+        assertThat(FileUtils.readFileToString(reportFile, StandardCharsets.UTF_8))
+            .contains("Invalid players: 3")
+            .contains("Error classes: 2");
+    }
+
+    @Test
+    @DisplayName("Players that cannot be parsed must be quarantined without stopping the parsing, and re-imported from the quarantine file")
+    void testQuarantine(@TempDir File rootDir) throws IOException {
+        int maxPlayerId = 3 * PlayerJsonParser.PARSE_CHUNK_SIZE;
+        String startDate = "2021-01-01 00-00-00";
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(maxPlayerId).nonExistingRate(0.3).hiddenProfileRate(0.1).blockedRate(0.1))) {
+            PlayerDataDownloader.Config downloadConfig = createParserConfig(rootDir, maxPlayerId, startDate, "--base-url=" + server.getBaseUrl());
+            new PlayerImportPipeline(downloadConfig, () -> (playerId, player) -> {}).run();
+        }
+        finally {
+            UrlConstructor.resetApiBaseUrl();
+        }
+
+        File quarantineFile = new File(rootDir, "quarantine.txt");
+        PlayerDataDownloader.Config config = createParserConfig(rootDir, maxPlayerId, startDate);
+        SnapshotParseOptions options = createParseOptions("--parse-threads=4", "--quarantine=" + quarantineFile.getPath());
+
+        File brokenSummary = new File(config.getPlayerSummaryFilePath(17));
+        File brokenIndexData = new File(config.getPlayerIndexDataFilePath(123));
+        File brokenStatsOverview = new File(config.getStatsOverviewFilePath(250));
+        String summary = FileUtils.readFileToString(brokenSummary, StandardCharsets.UTF_8);
+        String indexData = FileUtils.readFileToString(brokenIndexData, StandardCharsets.UTF_8);
+        String statsOverview = FileUtils.readFileToString(brokenStatsOverview, StandardCharsets.UTF_8);
+
+        FileUtils.writeStringToFile(brokenSummary, "{", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(brokenIndexData, "{\"ok\": ", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(brokenStatsOverview, "{\"err\": \"unknown error\"}", StandardCharsets.UTF_8);
+
+        List<Integer> handledPlayerIds = new ArrayList<>();
+        PlayerJsonParser.handlePlayers(config, options, (playerId, player) -> handledPlayerIds.add(playerId));
+
+        assertThat(handledPlayerIds)
+            .hasSize(maxPlayerId - 3)
+            .isSorted()
+            .doesNotContain(17, 123, 250);
+
+        assertThat(PlayerQuarantine.readPlayerIds(quarantineFile)).containsExactly(17, 123, 250);
+
+        List<String> lines = FileUtils.readLines(quarantineFile, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(3);
+        assertThat(lines).anySatisfy(line -> assertThat(line)
+            .startsWith("250" + PlayerQuarantine.SEPARATOR)
+            .contains(brokenStatsOverview.getPath())
+            .contains("Unknown error: unknown error")
+        );
+
+        // "download" the quarantined players again and re-import them, the same file is the new quarantine
+        FileUtils.writeStringToFile(brokenSummary, summary, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(brokenIndexData, indexData, StandardCharsets.UTF_8);
+
+        SnapshotParseOptions reimportOptions = createParseOptions("--quarantine=" + quarantineFile.getPath(), "--reimport=" + quarantineFile.getPath());
+
+        List<Integer> reimportedPlayerIds = new ArrayList<>();
+        PlayerJsonParser.handlePlayers(config, reimportOptions, (playerId, player) -> reimportedPlayerIds.add(playerId));
+
+        assertThat(reimportedPlayerIds).containsExactly(17, 123);
+        assertThat(PlayerQuarantine.readPlayerIds(quarantineFile)).containsExactly(250); // still broken
+
+        FileUtils.writeStringToFile(brokenStatsOverview, statsOverview, StandardCharsets.UTF_8);
+
+        reimportedPlayerIds.clear();
+        PlayerJsonParser.handlePlayers(config, reimportOptions, (playerId, player) -> reimportedPlayerIds.add(playerId));
+
+        assertThat(reimportedPlayerIds).containsExactly(250);
+        assertThat(PlayerQuarantine.readPlayerIds(quarantineFile)).isEmpty();
+    }
+
+    private static String readContentDigest(
+        final File archiveDir,
+        final boolean compress,
+        final int playerId,
+        final String summary,
+        final String indexData,
+        final String statsOverview
+    ) throws IOException {
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(archiveDir, false, compress)) {
+            writer.write(playerId, DataEndpoint.SUMMARY, summary);
+            writer.write(playerId, DataEndpoint.INDEX_DATA, indexData);
+            writer.write(playerId, DataEndpoint.STATS_OVERVIEW, statsOverview);
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(archiveDir)) {
+            return PlayerJsonParser.readPlayerData(LocalDateTime.now(), playerId, reader, true).orElseThrow().contentDigest;
+        }
+    }
+
+    private static PlayerDataDownloader.Config createParserConfig(final File rootDir, final int maxPlayerId, final String startDate, final String... options) {
+        String[] args = ArrayUtils.addAll(new String[] {rootDir.getPath(), "1", String.valueOf(maxPlayerId), "4"}, options);
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+        config.setStartDate(startDate);
+        return config;
+    }
+
+    private static SnapshotParseOptions createParseOptions(final String... options) {
+        return SnapshotParseOptions.parseFromArguments(options);
+    }
+
+    /**
+     * @return {@code <playerId>:<summary error>} of the handled players, in the order of the handler calls
+     */
+    private static List<String> handlePlayers(final PlayerDataDownloader.Config config, final SnapshotParseOptions options, final boolean ordered) {
+        List<String> players = new ArrayList<>();
+        PlayerJsonParser.handlePlayers(config, options, (playerId, player) -> players.add(playerId + ":" + player.orElseThrow().summary.getErr()), ordered);
+        return players;
+    }
+
+    private static File writeSkippedFile(final File dir, final String fileName) throws IOException {
+        File file = new File(dir, fileName);
+        FileUtils.writeStringToFile(file, ApiErrors.SKIPPED_RESPONSE_JSON, StandardCharsets.UTF_8);
+        return file;
     }
 }
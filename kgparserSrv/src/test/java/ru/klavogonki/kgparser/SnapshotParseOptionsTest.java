@@ -0,0 +1,47 @@
+package ru.klavogonki.kgparser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotParseOptionsTest {
+
+    @Test
+    void testParseThreadsOption() {
+        assertThat(SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"}).getParseThreads()).isEqualTo(1);
+        assertThat(SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--parse-threads=8"}).getParseThreads()).isEqualTo(8);
+
+        assertThatThrownBy(() -> SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--parse-threads=0"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--parse-threads");
+    }
+
+    @Test
+    void testValidationOptions() {
+        SnapshotParseOptions defaultOptions = SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultOptions.getValidationReportFile()).isNull();
+
+        SnapshotParseOptions options = SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--validation-report=c:/java/kg/report.txt", "--queue-size=50"});
+        assertThat(options.getValidationReportFile()).isEqualTo("c:/java/kg/report.txt");
+
+        assertThatThrownBy(() -> SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--validation-report="}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--validation-report");
+    }
+
+    @Test
+    void testQuarantineOptions() {
+        SnapshotParseOptions defaultOptions = SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultOptions.getQuarantineFile()).isNull();
+        assertThat(defaultOptions.getReimportFile()).isNull();
+
+        SnapshotParseOptions options = SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--quarantine=c:/java/kg/quarantine-2.txt", "--reimport=c:/java/kg/quarantine-1.txt"});
+        assertThat(options.getQuarantineFile()).isEqualTo("c:/java/kg/quarantine-2.txt");
+        assertThat(options.getReimportFile()).isEqualTo("c:/java/kg/quarantine-1.txt");
+
+        assertThatThrownBy(() -> SnapshotParseOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--reimport= "}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--reimport");
+    }
+}
@@ -0,0 +1,92 @@
+package ru.klavogonki.kgparser.distributed;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.mock.MockKgApiServer;
+import ru.klavogonki.kgparser.storage.JsonFilesReader;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CrawlCoordinatorTest {
+
+    private static final int MAX_PLAYER_ID = 60;
+    private static final int WORKERS_COUNT = 2;
+    private static final String START_DATE = "2021-01-01 00-00-00";
+
+    @Test
+    @DisplayName("Worker processes must download all players to a single snapshot, an abandoned lease must be given to another worker")
+    void testDistributedDownload(@TempDir File rootDir) throws Exception {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {
+            rootDir.getPath(), "1", String.valueOf(MAX_PLAYER_ID), "2",
+            "--batch-size=10",
+            "--lease-timeout=3" // worker JVMs start slowly, their first leases must not expire
+        });
+        config.setStartDate(START_DATE);
+
+        List<Process> workers = new ArrayList<>();
+
+        try (
+            MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(MAX_PLAYER_ID));
+            CrawlCoordinator coordinator = CrawlCoordinator.start(config, 0)
+        ) {
+            Lease abandoned = new CoordinatorClient(coordinator.getBaseUrl()).acquire("crashed-worker"); // no heartbeats, no completion
+            assertThat(abandoned.minPlayerId).isEqualTo(1);
+
+            for (int i = 1; i <= WORKERS_COUNT; i++) {
+                workers.add(startWorker(coordinator.getBaseUrl(), server.getBaseUrl(), new File(rootDir, String.format("worker-%d.log", i))));
+            }
+
+            for (Process worker : workers) {
+                assertThat(worker.waitFor(1, TimeUnit.MINUTES)).isTrue();
+                assertThat(worker.exitValue()).isZero();
+            }
+
+            coordinator.awaitCompletion();
+
+            LeaseManager leaseManager = coordinator.getLeaseManager();
+            assertThat(leaseManager.isFinished()).isTrue();
+            assertThat(leaseManager.getCompletedPlayers()).isEqualTo(MAX_PLAYER_ID);
+            assertThat(leaseManager.getExpiredLeases()).isGreaterThanOrEqualTo(1);
+            assertThat(leaseManager.getFailedPlayerIds()).isEmpty();
+
+            assertThat(server.getRequestsCount(DataEndpoint.SUMMARY)).isGreaterThanOrEqualTo(MAX_PLAYER_ID); // players of an expired lease are fetched again
+        }
+        finally {
+            workers.forEach(Process::destroyForcibly);
+        }
+
+        JsonFilesReader reader = new JsonFilesReader(config);
+        for (int playerId = 1; playerId <= MAX_PLAYER_ID; playerId++) {
+            for (DataEndpoint endpoint : DataEndpoint.values()) {
+                assertThat(reader.read(playerId, endpoint)).isNotEmpty();
+            }
+        }
+
+        assertThat(new File(config.getJournalFilePath())).exists();
+    }
+
+    private static Process startWorker(final String coordinatorUrl, final String apiBaseUrl, final File logFile) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        return new ProcessBuilder(
+            java,
+            "-cp", System.getProperty("java.class.path"),
+            CrawlWorker.class.getName(),
+            coordinatorUrl,
+            "2",
+            "--base-url=" + apiBaseUrl
+        )
+            .redirectErrorStream(true)
+            .redirectOutput(logFile)
+            .start();
+    }
+}
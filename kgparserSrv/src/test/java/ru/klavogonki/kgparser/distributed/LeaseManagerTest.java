@@ -0,0 +1,106 @@
+package ru.klavogonki.kgparser.distributed;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LeaseManagerTest {
+
+    private static final long TIMEOUT_MILLIS = 1000;
+
+    @Test
+    @DisplayName("Ranges must be leased in order, the manager must be finished when all leases are completed")
+    void testAcquireAndComplete() {
+        LeaseManager manager = new LeaseManager(1, 25, 10, TIMEOUT_MILLIS, new AtomicLong()::get);
+        assertThat(manager.getTotalPlayers()).isEqualTo(25);
+
+        Lease lease1 = manager.acquire("worker-1");
+        Lease lease2 = manager.acquire("worker-2");
+        Lease lease3 = manager.acquire("worker-1");
+        assertThat(manager.acquire("worker-3")).isNull();
+
+        assertThat(new int[] {lease1.minPlayerId, lease1.maxPlayerId}).containsExactly(1, 10);
+        assertThat(new int[] {lease2.minPlayerId, lease2.maxPlayerId}).containsExactly(11, 20);
+        assertThat(new int[] {lease3.minPlayerId, lease3.maxPlayerId}).containsExactly(21, 25);
+        assertThat(lease1.timeoutMillis).isEqualTo(TIMEOUT_MILLIS);
+
+        for (Lease lease : List.of(lease3, lease1, lease2)) {
+            assertThat(manager.isFinished()).isFalse();
+            assertThat(manager.startCompletion(lease.leaseId)).isTrue();
+            manager.complete(lease.leaseId, (lease == lease2) ? List.of(15) : Collections.emptyList());
+        }
+
+        assertThat(manager.isFinished()).isTrue();
+        assertThat(manager.getCompletedPlayers()).isEqualTo(25);
+        assertThat(manager.getFailedPlayerIds()).containsExactly(15);
+        assertThat(manager.acquire("worker-1")).isNull();
+    }
+
+    @Test
+    @DisplayName("Lease without a heartbeat must expire and its range must be given to the next worker")
+    void testExpiration() {
+        AtomicLong clock = new AtomicLong();
+        LeaseManager manager = new LeaseManager(1, 20, 10, TIMEOUT_MILLIS, clock::get);
+
+        Lease abandoned = manager.acquire("worker-1");
+        Lease alive = manager.acquire("worker-2");
+
+        clock.set(600);
+        assertThat(manager.heartbeat(alive.leaseId)).isTrue();
+
+        clock.set(1000); // abandoned lease expires, alive lease is extended until 1600
+        assertThat(manager.heartbeat(abandoned.leaseId)).isFalse();
+        assertThat(manager.startCompletion(abandoned.leaseId)).isFalse();
+        assertThat(manager.getExpiredLeases()).isEqualTo(1);
+
+        Lease reassigned = manager.acquire("worker-3");
+        assertThat(reassigned.leaseId).isNotEqualTo(abandoned.leaseId);
+        assertThat(new int[] {reassigned.minPlayerId, reassigned.maxPlayerId}).containsExactly(abandoned.minPlayerId, abandoned.maxPlayerId);
+
+        assertThat(manager.startCompletion(alive.leaseId)).isTrue();
+        clock.set(10_000); // a lease being completed must not expire
+        manager.complete(alive.leaseId, Collections.emptyList());
+
+        assertThat(manager.isFinished()).isFalse(); // reassigned lease has expired too
+        assertThat(manager.getExpiredLeases()).isEqualTo(2);
+
+        Lease last = manager.acquire("worker-3");
+        assertThat(manager.startCompletion(last.leaseId)).isTrue();
+        manager.complete(last.leaseId, Collections.emptyList());
+
+        assertThat(manager.isFinished()).isTrue();
+        assertThat(manager.getCompletedPlayers()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("Released lease must be given to the next worker")
+    void testRelease() {
+        LeaseManager manager = new LeaseManager(1, 20, 10, TIMEOUT_MILLIS, new AtomicLong()::get);
+
+        Lease lease = manager.acquire("worker-1");
+        assertThatThrownBy(() -> manager.release(lease.leaseId))
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(manager.startCompletion(lease.leaseId)).isTrue();
+        manager.release(lease.leaseId);
+
+        Lease next = manager.acquire("worker-2");
+        assertThat(next.minPlayerId).isEqualTo(1);
+        assertThat(manager.getCompletedPlayers()).isZero();
+    }
+
+    @Test
+    void testIncorrectArguments() {
+        assertThatThrownBy(() -> new LeaseManager(1, 10, 0, TIMEOUT_MILLIS))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> new LeaseManager(11, 10, 5, TIMEOUT_MILLIS))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyControllerTest {
+
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    @DisplayName("Successful requests must raise the limit additively up to maxLimit")
+    void testAdditiveIncrease() throws InterruptedException {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 4);
+        assertThat(controller.getLimit()).isEqualTo(1);
+
+        succeed(controller, 1); // 1 -> 2
+        assertThat(controller.getLimit()).isEqualTo(2);
+
+        succeed(controller, 2); // 2 -> 2.5 -> 2.9
+        assertThat(controller.getLimit()).isEqualTo(2);
+
+        succeed(controller, 100);
+        assertThat(controller.getLimit()).isEqualTo(4);
+        assertThat(controller.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Failure must halve the limit, but not below minLimit and at most once per cooldown")
+    void testMultiplicativeDecrease() throws InterruptedException {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(2, 16);
+        succeed(controller, 1000);
+        assertThat(controller.getLimit()).isEqualTo(16);
+
+        controller.acquire();
+        controller.onFailure();
+        assertThat(controller.getLimit()).isEqualTo(8);
+
+        controller.acquire();
+        controller.onFailure(); // within cooldown
+        assertThat(controller.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("Slow response must decrease the limit")
+    void testSlowResponse() throws InterruptedException {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 8, Duration.ofMillis(100));
+        succeed(controller, 1000);
+        assertThat(controller.getLimit()).isEqualTo(8);
+
+        controller.acquire();
+        controller.onSuccess(TimeUnit.SECONDS.toNanos(1));
+        assertThat(controller.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("acquire must block while the limit is reached")
+    void testAcquireBlocks() throws InterruptedException {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 1);
+        controller.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                controller.acquire();
+                acquired.countDown();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        assertThat(acquired.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        controller.release();
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+        thread.join();
+    }
+
+    @Test
+    @DisplayName("Release without acquire must fail")
+    void testReleaseWithoutAcquire() {
+        AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(1, 1);
+
+        assertThatThrownBy(controller::release)
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Incorrect limits must be rejected")
+    void testIncorrectLimits() {
+        assertThatThrownBy(() -> new AdaptiveConcurrencyController(0, 1))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> new AdaptiveConcurrencyController(3, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void succeed(final AdaptiveConcurrencyController controller, final int requests) throws InterruptedException {
+        for (int i = 0; i < requests; i++) {
+            controller.acquire();
+            controller.onSuccess(FAST_NANOS);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownloadJournalTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    @DisplayName("Completed pairs must be read on resume, failed pairs must be downloaded again")
+    void testResume() throws IOException {
+        File file = new File(tempDir, "journal.log");
+
+        try (DownloadJournal journal = DownloadJournal.open(file, false)) {
+            journal.recordCompleted(1, DataEndpoint.SUMMARY);
+            journal.recordCompleted(1, DataEndpoint.INDEX_DATA);
+            journal.recordFailed(1, DataEndpoint.STATS_OVERVIEW);
+            journal.recordFailed(2, DataEndpoint.SUMMARY);
+            journal.recordCompleted(2, DataEndpoint.SUMMARY); // retry succeeded
+        }
+
+        try (DownloadJournal journal = DownloadJournal.open(file, true)) {
+            assertThat(journal.isCompleted(1, DataEndpoint.SUMMARY)).isTrue();
+            assertThat(journal.isCompleted(1, DataEndpoint.INDEX_DATA)).isTrue();
+            assertThat(journal.isCompleted(1, DataEndpoint.STATS_OVERVIEW)).isFalse();
+            assertThat(journal.isCompleted(2, DataEndpoint.SUMMARY)).isTrue();
+            assertThat(journal.isCompleted(3, DataEndpoint.SUMMARY)).isFalse();
+
+            assertThat(journal.getCompletedCount()).isEqualTo(3);
+            assertThat(journal.getFailedCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Forgotten player must be downloaded again, its new records must be appended to the journal")
+    void testForget() throws IOException {
+        File file = new File(tempDir, "journal.log");
+
+        try (DownloadJournal journal = DownloadJournal.open(file, false)) {
+            journal.recordCompleted(1, DataEndpoint.SUMMARY);
+            journal.recordCompleted(1, DataEndpoint.INDEX_DATA);
+            journal.recordCompleted(2, DataEndpoint.SUMMARY);
+        }
+
+        try (DownloadJournal journal = DownloadJournal.open(file, true)) {
+            journal.forget(1);
+
+            assertThat(journal.isCompleted(1, DataEndpoint.SUMMARY)).isFalse();
+            assertThat(journal.isCompleted(1, DataEndpoint.INDEX_DATA)).isFalse();
+            assertThat(journal.isCompleted(2, DataEndpoint.SUMMARY)).isTrue();
+
+            journal.recordCompleted(1, DataEndpoint.SUMMARY);
+        }
+
+        try (DownloadJournal journal = DownloadJournal.open(file, true)) {
+            assertThat(journal.isCompleted(1, DataEndpoint.SUMMARY)).isTrue();
+            assertThat(journal.isCompleted(1, DataEndpoint.INDEX_DATA)).isTrue(); // the old record is still in the file
+            assertThat(FileUtils.readLines(file, StandardCharsets.UTF_8)).hasSize(4);
+        }
+    }
+
+    @Test
+    @DisplayName("Incomplete last line must be skipped on resume")
+    void testIncompleteLine() throws IOException {
+        File file = new File(tempDir, "journal.log");
+        FileUtils.writeStringToFile(file, "1\tsummary\tOK\n2\tindex-d", StandardCharsets.UTF_8);
+
+        try (DownloadJournal journal = DownloadJournal.open(file, true)) {
+            assertThat(journal.isCompleted(1, DataEndpoint.SUMMARY)).isTrue();
+            assertThat(journal.getCompletedCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("New journal must ignore the existing file")
+    void testNoResume() throws IOException {
+        File file = new File(tempDir, "journal.log");
+        FileUtils.writeStringToFile(file, "1\tsummary\tOK\n", StandardCharsets.UTF_8);
+
+        try (DownloadJournal journal = DownloadJournal.open(file, false)) {
+            assertThat(journal.isCompleted(1, DataEndpoint.SUMMARY)).isFalse();
+        }
+
+        assertThat(FileUtils.readFileToString(file, StandardCharsets.UTF_8)).isEmpty();
+    }
+}
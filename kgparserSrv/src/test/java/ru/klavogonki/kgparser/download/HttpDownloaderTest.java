@@ -0,0 +1,248 @@
+package ru.klavogonki.kgparser.download;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpDownloaderTest {
+
+    private static final String JSON = "{\"err\":\"invalid user id\"}";
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst(HttpDownloader.ACCEPT_ENCODING_HEADER);
+            if (!HttpDownloader.GZIP_ENCODING.equals(acceptEncoding)) { // client must ask for gzip
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = gzip(JSON);
+            exchange.getResponseHeaders().add(HttpDownloader.CONTENT_ENCODING_HEADER, HttpDownloader.GZIP_ENCODING);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        server.createContext("/plain", exchange -> {
+            byte[] body = JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        server.createContext("/error", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        server.createContext("/not-found", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+
+        server.createContext("/flaky", exchange -> { // 2 failures, then success
+            if (flakyRequests.incrementAndGet() <= 2) {
+                exchange.sendResponseHeaders(502, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] body = JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        server.createContext("/html", exchange -> {
+            byte[] body = "<html><body>Server is overloaded</body></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Gzip-encoded response must be decoded")
+    void testGzipResponse() throws IOException {
+        HttpDownloader downloader = new HttpDownloader(2);
+
+        assertThat(downloader.loadUrlToString(baseUrl + "/gzip")).isEqualTo(JSON);
+    }
+
+    @Test
+    @DisplayName("Response without Content-Encoding must be read as is")
+    void testPlainResponse() throws IOException {
+        HttpDownloader downloader = new HttpDownloader(2);
+
+        assertThat(downloader.loadUrlToString(baseUrl + "/plain")).isEqualTo(JSON);
+    }
+
+    @Test
+    @DisplayName("5xx HTTP status must be retried, then throw an IOException")
+    void testErrorStatus() {
+        HttpDownloader downloader = createFastRetryDownloader();
+
+        assertThatThrownBy(() -> downloader.loadUrlToString(baseUrl + "/error"))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("3 attempts")
+            .hasStackTraceContaining("503");
+    }
+
+    @Test
+    @DisplayName("Non-retryable HTTP status must throw an IOException without retries")
+    void testNonRetryableStatus() {
+        HttpDownloader downloader = createFastRetryDownloader();
+
+        assertThatThrownBy(() -> downloader.loadUrlToString(baseUrl + "/not-found"))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("404");
+
+        assertThat(downloader.getConcurrencyController().getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Temporary failures must be retried until success")
+    void testRetry() throws IOException {
+        HttpDownloader downloader = createFastRetryDownloader();
+
+        assertThat(downloader.loadUrlToString(baseUrl + "/flaky")).isEqualTo(JSON);
+        assertThat(flakyRequests.get()).isEqualTo(3);
+        assertThat(downloader.getConcurrencyController().getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Non-json response must be treated as a failure")
+    void testNonJsonResponse() {
+        HttpDownloader downloader = createFastRetryDownloader();
+
+        assertThatThrownBy(() -> downloader.loadUrlToString(baseUrl + "/html"))
+            .isInstanceOf(IOException.class)
+            .hasStackTraceContaining("non-json");
+    }
+
+    @Test
+    @DisplayName("Gzip-encoded response must be streamed decoded to the channel")
+    void testStreamToFile(@TempDir Path tempDir) throws IOException {
+        HttpDownloader downloader = new HttpDownloader(2);
+        Path file = tempDir.resolve("response.json");
+
+        StreamedResponse response = downloader.loadUrlToChannel(baseUrl + "/gzip", () -> FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+
+        assertThat(file).hasContent(JSON);
+        assertThat(response.getBytes()).isEqualTo(JSON.length());
+        assertThat(response.getHead()).isEqualTo(JSON);
+        assertThat(response.isHeadComplete()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Response longer than the head and the buffer must be streamed completely")
+    void testStreamLargeResponse() throws IOException {
+        String largeJson = "{\"text\":\"" + "a".repeat(HttpDownloader.STREAM_BUFFER_SIZE * 3) + "\"}";
+        server.createContext("/large", exchange -> {
+            byte[] body = largeJson.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpDownloader.HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+
+        HttpDownloader downloader = new HttpDownloader(2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        StreamedResponse response = downloader.loadUrlToChannel(baseUrl + "/large", () -> Channels.newChannel(bytes));
+
+        assertThat(bytes.toString(StandardCharsets.UTF_8)).isEqualTo(largeJson);
+        assertThat(response.getBytes()).isEqualTo(largeJson.length());
+        assertThat(response.getHead()).hasSize(StreamedResponse.HEAD_SIZE);
+        assertThat(response.isHeadComplete()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Streamed non-json response must be retried from the empty destination, then fail")
+    void testStreamNonJsonResponse() {
+        HttpDownloader downloader = createFastRetryDownloader();
+        AtomicInteger opened = new AtomicInteger();
+
+        assertThatThrownBy(() -> downloader.loadUrlToChannel(baseUrl + "/html", () -> {
+            opened.incrementAndGet();
+            return Channels.newChannel(new ByteArrayOutputStream());
+        }))
+            .isInstanceOf(IOException.class)
+            .hasStackTraceContaining("non-json");
+
+        assertThat(opened.get()).isEqualTo(3);
+        assertThat(downloader.getConcurrencyController().getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Cheap json check")
+    void testLooksLikeJson() {
+        assertThat(HttpDownloader.looksLikeJson(JSON)).isTrue();
+        assertThat(HttpDownloader.looksLikeJson(" [1, 2]\n")).isTrue();
+        assertThat(HttpDownloader.looksLikeJson("")).isFalse();
+        assertThat(HttpDownloader.looksLikeJson("<html></html>")).isFalse();
+        assertThat(HttpDownloader.looksLikeJson("{\"truncated\": ")).isFalse();
+    }
+
+    @Test
+    @DisplayName("maxRequestsInFlight must be positive")
+    void testIncorrectMaxRequestsInFlight() {
+        assertThatThrownBy(() -> new HttpDownloader(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static HttpDownloader createFastRetryDownloader() {
+        return new HttpDownloader(
+            new AdaptiveConcurrencyController(1, 2),
+            new RetryBackoff(Duration.ofMillis(1), Duration.ofMillis(10), 3)
+        );
+    }
+
+    private static byte[] gzip(final String string) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonStructureCheckerTest {
+
+    @Test
+    @DisplayName("Complete json objects and arrays must pass the check")
+    void testCompleteJson() {
+        assertThat(check("{\"err\":\"invalid user id\"}")).isTrue();
+        assertThat(check(" [1, 2, {\"a\": [3]}]\n")).isTrue();
+        assertThat(check("{\"text\":\"braces } and ] \\\" inside a string\"}")).isTrue();
+        assertThat(check("{\"login\":\"Клавогонщик}\"}")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Truncated json, html and trailing garbage must fail the check")
+    void testIncorrectJson() {
+        assertThat(check("")).isFalse();
+        assertThat(check("{\"truncated\": ")).isFalse();
+        assertThat(check("{\"a\": {\"b\": 1}")).isFalse();
+        assertThat(check("{\"unclosed\": \"string}")).isFalse();
+        assertThat(check("<html><body>Server is overloaded</body></html>")).isFalse();
+        assertThat(check("{\"a\": 1} {\"b\": 2}")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Result must not depend on how the bytes are split to chunks")
+    void testChunks() {
+        byte[] bytes = "{\"text\":\"escaped \\\\\", \"b\": [1]}".getBytes(StandardCharsets.UTF_8);
+
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            JsonStructureChecker checker = new JsonStructureChecker();
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                checker.update(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            }
+
+            assertThat(checker.isComplete()).as("chunk size %d", chunkSize).isTrue();
+        }
+    }
+
+    private static boolean check(final String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        JsonStructureChecker checker = new JsonStructureChecker();
+        checker.update(bytes, 0, bytes.length);
+        return checker.isComplete();
+    }
+}
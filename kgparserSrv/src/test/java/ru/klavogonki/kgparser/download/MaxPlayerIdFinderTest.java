@@ -0,0 +1,63 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MaxPlayerIdFinderTest {
+
+    @Test
+    @DisplayName("Max player id must be found with a few dozen requests")
+    void testFind() throws IOException {
+        int maxPlayerId = 628123;
+        MaxPlayerIdFinder finder = new MaxPlayerIdFinder(playerId -> playerId <= maxPlayerId, MaxPlayerIdFinder.DEFAULT_GAP_TOLERANCE, MaxPlayerIdFinder.DEFAULT_INITIAL_STEP);
+
+        assertThat(finder.find(1)).isEqualTo(maxPlayerId);
+        assertThat(finder.getRequestsCount()).isLessThan(100);
+    }
+
+    @Test
+    @DisplayName("Gaps of deleted accounts shorter than gapTolerance must not stop the search")
+    void testGaps() throws IOException {
+        int maxPlayerId = 10_000;
+
+        // every 7th id is deleted, plus a gap of 5 ids right before the max player id
+        Set<Integer> deletedPlayerIds = Set.of(9_995, 9_996, 9_997, 9_998, 9_999);
+        MaxPlayerIdFinder.PlayerExistenceProbe probe = playerId ->
+            (playerId <= maxPlayerId) && ((playerId % 7) != 0) && !deletedPlayerIds.contains(playerId);
+
+        MaxPlayerIdFinder finder = new MaxPlayerIdFinder(probe, 6, 16);
+        assertThat(finder.find(1)).isEqualTo(maxPlayerId);
+
+        // a gap longer than the tolerance is taken for the end of the ids
+        MaxPlayerIdFinder intolerantFinder = new MaxPlayerIdFinder(probe, 2, 16);
+        assertThat(intolerantFinder.find(1)).isLessThan(maxPlayerId);
+    }
+
+    @Test
+    @DisplayName("Start player id must exist")
+    void testNoExistingPlayers() {
+        MaxPlayerIdFinder finder = new MaxPlayerIdFinder(playerId -> false, 3, 16);
+
+        assertThatThrownBy(() -> finder.find(100))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("[100; 102]");
+    }
+
+    @Test
+    @DisplayName("Probe failure must be propagated")
+    void testProbeFailure() {
+        MaxPlayerIdFinder finder = new MaxPlayerIdFinder(playerId -> {
+            throw new IOException("Connection refused");
+        }, 3, 16);
+
+        assertThatThrownBy(() -> finder.find(1))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Connection refused");
+    }
+}
@@ -0,0 +1,162 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.Car;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.Rank;
+import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.mock.MockKgApiServer;
+import ru.klavogonki.kgparser.pipeline.PipelineOptions;
+import ru.klavogonki.kgparser.pipeline.PlayerImportPipeline;
+import ru.klavogonki.kgparser.processing.FakeDataFactory;
+import ru.klavogonki.kgparser.storage.JsonFilesReader;
+import ru.klavogonki.kgparser.storage.JsonFilesWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NegativePlayerCacheTest {
+
+    private static final String PREVIOUS_START_DATE = "2021-01-01 00-00-00";
+
+    @AfterEach
+    void resetBaseUrl() {
+        UrlConstructor.resetApiBaseUrl();
+    }
+
+    @Test
+    @DisplayName("Non-existing and blocked players must be dead, players without a summary must not")
+    void testBuild(@TempDir File rootDir) throws IOException {
+        PlayerDataDownloader.Config config = createConfig(rootDir, 1, 4);
+
+        try (JsonFilesWriter writer = new JsonFilesWriter(config)) {
+            writer.write(1, DataEndpoint.SUMMARY, JacksonUtils.serializeToString(FakeDataFactory.createSummary(1, "alive", Rank.racer, Car.ZAZ_965, 0)));
+            writer.write(2, DataEndpoint.SUMMARY, JacksonUtils.serializeToString(FakeDataFactory.createSummaryError(ApiErrors.INVALID_USER_ID_ERROR)));
+            writer.write(3, DataEndpoint.SUMMARY, JacksonUtils.serializeToString(FakeDataFactory.createSummary(3, "blocked", Rank.novice, Car.ZAZ_965, 1)));
+            // no summary of player 4
+        }
+
+        NegativePlayerCache.DeadPlayerIds deadPlayerIds = NegativePlayerCache.DeadPlayerIds.build(new JsonFilesReader(config), 1, 4);
+        assertThat(IntStream.rangeClosed(1, 4).filter(deadPlayerIds::contains)).containsExactly(2, 3);
+
+        File file = new File(rootDir, NegativePlayerCache.FILE_NAME);
+        deadPlayerIds.save(file);
+
+        NegativePlayerCache.DeadPlayerIds loaded = NegativePlayerCache.DeadPlayerIds.load(file);
+        assertThat(IntStream.rangeClosed(0, 10).filter(loaded::contains)).containsExactly(2, 3);
+        assertThat(loaded.size()).isEqualTo(2);
+        assertThat(loaded.covers(1, 4)).isTrue();
+        assertThat(loaded.covers(1, 5)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Dead players must be carried forward unless resampled")
+    void testResampleRate() {
+        BitSet ids = new BitSet();
+        ids.set(5);
+        NegativePlayerCache.DeadPlayerIds deadPlayerIds = new NegativePlayerCache.DeadPlayerIds(1, 10, ids);
+
+        NegativePlayerCache neverResample = new NegativePlayerCache(deadPlayerIds, null, 0);
+        assertThat(neverResample.shouldCarryForward(5)).isTrue();
+        assertThat(neverResample.shouldCarryForward(6)).isFalse();
+
+        NegativePlayerCache alwaysResample = new NegativePlayerCache(deadPlayerIds, null, 1);
+        assertThat(alwaysResample.shouldCarryForward(5)).isFalse();
+        assertThat(alwaysResample.getResampledCount()).isEqualTo(1);
+
+        assertThatThrownBy(() -> new NegativePlayerCache(deadPlayerIds, null, 1.5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Live players out of the refresh plan must be carried forward, dead players must not depend on the plan")
+    void testRefreshPlan() {
+        BitSet deadIds = new BitSet();
+        deadIds.set(5);
+        NegativePlayerCache.DeadPlayerIds deadPlayerIds = new NegativePlayerCache.DeadPlayerIds(1, 10, deadIds);
+
+        BitSet scheduledIds = new BitSet();
+        scheduledIds.set(5);
+        scheduledIds.set(7);
+        RefreshPlan refreshPlan = new RefreshPlan(1, 8, scheduledIds);
+
+        NegativePlayerCache cache = new NegativePlayerCache(deadPlayerIds, null, 0, refreshPlan);
+        assertThat(cache.shouldCarryForward(5)).isTrue(); // dead
+        assertThat(cache.shouldCarryForward(6)).isTrue(); // not scheduled
+        assertThat(cache.shouldCarryForward(7)).isFalse(); // scheduled
+        assertThat(cache.shouldCarryForward(9)).isFalse(); // out of the plan
+        assertThat(cache.getNotScheduledCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Second download must not request the dead players and must still contain all players")
+    void testCarryForward(@TempDir File rootDir) {
+        int maxPlayerId = 150;
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(maxPlayerId).nonExistingRate(0.3).blockedRate(0.1))) {
+            // previous snapshot
+            PlayerDataDownloader.Config previousConfig = createConfig(rootDir, 1, maxPlayerId, "--base-url=" + server.getBaseUrl());
+            new PlayerImportPipeline(previousConfig, () -> (playerId, player) -> {}).run();
+
+            int summaryRequestsBefore = server.getRequestsCount(DataEndpoint.SUMMARY);
+            long deadPlayers = IntStream
+                .rangeClosed(1, maxPlayerId)
+                .filter(playerId -> server.getPlayerType(playerId) == MockKgApiServer.PlayerType.NON_EXISTING || server.getPlayerType(playerId) == MockKgApiServer.PlayerType.BLOCKED)
+                .count();
+            assertThat(deadPlayers).isPositive();
+
+            // next snapshot
+            String[] args = {
+                rootDir.getPath(), "1", String.valueOf(maxPlayerId), "4",
+                "--base-url=" + server.getBaseUrl(),
+                "--write-raw-json=false",
+                "--previous-snapshot=" + PREVIOUS_START_DATE,
+                "--dead-resample-rate=0"
+            };
+
+            PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, PipelineOptions.NAMES);
+            config.setStartDate("2021-01-02 00-00-00");
+
+            Map<Integer, PlayerJsonData> players = new ConcurrentHashMap<>();
+            PlayerImportPipeline pipeline = new PlayerImportPipeline(config, PipelineOptions.parseFromArguments(args), () -> players::put);
+            pipeline.run();
+
+            assertThat(server.getRequestsCount(DataEndpoint.SUMMARY) - summaryRequestsBefore).isEqualTo(maxPlayerId - deadPlayers);
+            assertThat(pipeline.getParseFailedPlayerIds()).isEmpty();
+            assertThat(players).hasSize(maxPlayerId);
+
+            IntStream
+                .rangeClosed(1, maxPlayerId)
+                .filter(playerId -> server.getPlayerType(playerId) == MockKgApiServer.PlayerType.NON_EXISTING)
+                .forEach(playerId -> assertThat(players.get(playerId).summary.getErr()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR));
+
+            assertThat(new File(previousConfig.getSnapshotDirectory(), NegativePlayerCache.FILE_NAME)).exists();
+        }
+    }
+
+    private static PlayerDataDownloader.Config createConfig(final File rootDir, final int minPlayerId, final int maxPlayerId, final String... options) {
+        String[] args = new String[PlayerDataDownloader.Config.REQUIRED_ARGUMENTS_COUNT + options.length];
+        args[0] = rootDir.getPath();
+        args[1] = String.valueOf(minPlayerId);
+        args[2] = String.valueOf(maxPlayerId);
+        args[3] = "4";
+        System.arraycopy(options, 0, args, PlayerDataDownloader.Config.REQUIRED_ARGUMENTS_COUNT, options.length);
+
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args);
+        config.setStartDate(PREVIOUS_START_DATE);
+        return config;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlayerFetchPlanTest {
+
+    @Test
+    @DisplayName("Follow-up requests must be skipped for a non-existing player")
+    void testNonExistingPlayer() {
+        GetSummaryResponse summary = new GetSummaryResponse().err(ApiErrors.INVALID_USER_ID_ERROR);
+
+        PlayerFetchPlan plan = PlayerFetchPlan.fromSummary(summary, false);
+        assertThat(plan.isFetchFollowUps()).isFalse();
+        assertThat(plan.getSkipReason()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+    }
+
+    @Test
+    @DisplayName("Follow-up requests must be skipped for a blocked player only if skipBlocked is set")
+    void testBlockedPlayer() {
+        GetSummaryResponse summary = new GetSummaryResponse().blocked(4);
+
+        assertThat(PlayerFetchPlan.fromSummary(summary, false).isFetchFollowUps()).isTrue();
+
+        PlayerFetchPlan plan = PlayerFetchPlan.fromSummary(summary, true);
+        assertThat(plan.isFetchFollowUps()).isFalse();
+        assertThat(plan.getSkipReason()).contains("blocked");
+    }
+
+    @Test
+    @DisplayName("Follow-up requests must be done for an active player and for an unknown error")
+    void testFetchAll() {
+        assertThat(PlayerFetchPlan.fromSummary(new GetSummaryResponse().blocked(0), true).isFetchFollowUps()).isTrue();
+        assertThat(PlayerFetchPlan.fromSummary(new GetSummaryResponse().err("some new error"), true).isFetchFollowUps()).isTrue();
+    }
+}
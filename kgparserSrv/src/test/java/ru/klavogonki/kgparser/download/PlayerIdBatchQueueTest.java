@@ -0,0 +1,147 @@
+package ru.klavogonki.kgparser.download;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PlayerIdBatchQueueTest {
+
+    @Test
+    void testBatchesWithoutMod() {
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(100, 999, 100);
+
+        assertThat(queue.getTotalBatches()).isEqualTo(9);
+        assertThat(takeAll(queue))
+            .containsExactly(
+                new ImmutablePair<>(100, 199),
+                new ImmutablePair<>(200, 299),
+                new ImmutablePair<>(300, 399),
+                new ImmutablePair<>(400, 499),
+                new ImmutablePair<>(500, 599),
+                new ImmutablePair<>(600, 699),
+                new ImmutablePair<>(700, 799),
+                new ImmutablePair<>(800, 899),
+                new ImmutablePair<>(900, 999)
+            );
+    }
+
+    @Test
+    void testBatchesWithMod() {
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(100, 1000, 300);
+
+        assertThat(queue.getTotalBatches()).isEqualTo(4);
+        assertThat(takeAll(queue))
+            .containsExactly(
+                new ImmutablePair<>(100, 399),
+                new ImmutablePair<>(400, 699),
+                new ImmutablePair<>(700, 999),
+                new ImmutablePair<>(1000, 1000)
+            );
+    }
+
+    @Test
+    void testBatchSizeMoreThanPlayers() {
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(1, 1, 100);
+
+        assertThat(queue.getTotalBatches()).isEqualTo(1);
+        assertThat(takeAll(queue))
+            .containsExactly(
+                new ImmutablePair<>(1, 1)
+            );
+    }
+
+    @Test
+    void testOnePlayerPerBatch() {
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(100, 103, 1);
+
+        assertThat(takeAll(queue))
+            .containsExactly(
+                new ImmutablePair<>(100, 100),
+                new ImmutablePair<>(101, 101),
+                new ImmutablePair<>(102, 102),
+                new ImmutablePair<>(103, 103)
+            );
+    }
+
+    @Test
+    void testIncorrectArguments() {
+        assertThatThrownBy(() -> new PlayerIdBatchQueue(1, 100, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> new PlayerIdBatchQueue(101, 100, 10))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testCompletionTracking() {
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(1, 25, 10);
+
+        List<ImmutablePair<Integer, Integer>> batches = takeAll(queue);
+        assertThat(queue.isCompleted()).isFalse();
+
+        queue.batchCompleted(batches.get(2), List.of(23));
+        queue.batchCompleted(batches.get(0), List.of(7, 3));
+        assertThat(queue.isCompleted()).isFalse();
+        assertThat(queue.getCompletedPlayers()).isEqualTo(15);
+
+        queue.batchCompleted(batches.get(1), Collections.emptyList());
+        assertThat(queue.isCompleted()).isTrue();
+        assertThat(queue.getCompletedBatches()).isEqualTo(3);
+        assertThat(queue.getCompletedPlayers()).isEqualTo(25);
+        assertThat(queue.getFailedPlayerIds()).containsExactly(3, 7, 23);
+    }
+
+    @Test
+    void testEachPlayerIsTakenExactlyOnceByConcurrentWorkers() throws InterruptedException {
+        int minPlayerId = 1;
+        int maxPlayerId = 100_000;
+        PlayerIdBatchQueue queue = new PlayerIdBatchQueue(minPlayerId, maxPlayerId, 7);
+
+        int[] timesTaken = new int[maxPlayerId + 1];
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executorService.submit(() -> {
+                ImmutablePair<Integer, Integer> batch;
+                while ((batch = queue.nextBatch()) != null) {
+                    for (int playerId = batch.getLeft(); playerId <= batch.getRight(); playerId++) {
+                        synchronized (timesTaken) {
+                            timesTaken[playerId]++;
+                        }
+                    }
+
+                    queue.batchCompleted(batch, Collections.emptyList());
+                }
+            });
+        }
+
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(queue.isCompleted()).isTrue();
+        for (int playerId = minPlayerId; playerId <= maxPlayerId; playerId++) {
+            assertThat(timesTaken[playerId]).isEqualTo(1);
+        }
+    }
+
+    private static List<ImmutablePair<Integer, Integer>> takeAll(final PlayerIdBatchQueue queue) {
+        List<ImmutablePair<Integer, Integer>> result = new ArrayList<>();
+
+        ImmutablePair<Integer, Integer> batch;
+        while ((batch = queue.nextBatch()) != null) {
+            result.add(batch);
+        }
+
+        assertThat(queue.nextBatch()).isNull(); // queue stays empty
+        return result;
+    }
+}
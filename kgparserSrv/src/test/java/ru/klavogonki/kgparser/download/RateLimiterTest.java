@@ -0,0 +1,33 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterTest {
+
+    @Test
+    @DisplayName("Permits must be spread evenly in time")
+    void testAcquire() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(100);
+        assertThat(rateLimiter.getIntervalNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(95); // first permit is immediate
+    }
+
+    @Test
+    void testIncorrectRate() {
+        assertThatThrownBy(() -> new RateLimiter(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RefreshSchedulerTest {
+
+    private static final LocalDate RUN_DATE = LocalDate.of(2021, 1, 31);
+
+    @Test
+    @DisplayName("Players with recently updated stats must be hot, the others must be cold")
+    void testGetTier() {
+        RefreshScheduler scheduler = new RefreshScheduler(RUN_DATE, 30);
+
+        assertThat(scheduler.getTier(100, LocalDateTime.of(2021, 1, 30, 23, 59))).isEqualTo(RefreshTier.HOT);
+        assertThat(scheduler.getTier(100, LocalDateTime.of(2021, 1, 1, 0, 0))).isEqualTo(RefreshTier.HOT);
+        assertThat(scheduler.getTier(100, LocalDateTime.of(2020, 12, 31, 23, 59))).isEqualTo(RefreshTier.COLD);
+
+        assertThat(scheduler.getTier(100, null)).isEqualTo(RefreshTier.COLD); // hidden profile
+        assertThat(scheduler.getTier(0, LocalDateTime.of(2021, 1, 30, 0, 0))).isEqualTo(RefreshTier.COLD);
+        assertThat(scheduler.getTier(null, null)).isEqualTo(RefreshTier.COLD); // non-existing player
+
+        assertThatThrownBy(() -> new RefreshScheduler(RUN_DATE, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Hot players must be due every day, cold players exactly once per interval")
+    void testIsDue() {
+        int intervalDays = RefreshTier.COLD.getIntervalDays();
+
+        for (int playerId = 1; playerId <= 100; playerId++) {
+            int finalPlayerId = playerId;
+
+            long hotDays = IntStream
+                .range(0, intervalDays)
+                .filter(day -> new RefreshScheduler(RUN_DATE.plusDays(day), 30).isDue(finalPlayerId, RefreshTier.HOT))
+                .count();
+            assertThat(hotDays).isEqualTo(intervalDays);
+
+            long coldDays = IntStream
+                .range(0, intervalDays)
+                .filter(day -> new RefreshScheduler(RUN_DATE.plusDays(day), 30).isDue(finalPlayerId, RefreshTier.COLD))
+                .count();
+            assertThat(coldDays).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Plan must contain all hot players and the due cold players, players out of its range must be scheduled")
+    void testCreatePlan(@TempDir File dir) {
+        RefreshScheduler scheduler = new RefreshScheduler(RUN_DATE, 30);
+        LocalDateTime yesterday = RUN_DATE.minusDays(1).atStartOfDay();
+
+        for (int playerId = 101; playerId <= 400; playerId++) {
+            if (playerId % 10 == 0) {
+                scheduler.add(playerId, 1000, yesterday);
+            }
+            else {
+                scheduler.add(playerId, 1000, null);
+            }
+        }
+
+        assertThat(scheduler.getPlayersCount(RefreshTier.HOT)).isEqualTo(30);
+        assertThat(scheduler.getScheduledCount(RefreshTier.HOT)).isEqualTo(30);
+        assertThat(scheduler.getPlayersCount(RefreshTier.COLD)).isEqualTo(270);
+        assertThat(scheduler.getScheduledCount(RefreshTier.COLD)).isEqualTo(10); // 1 of 30 players is due on a day, none of the due players is hot
+
+        RefreshPlan plan = scheduler.createPlan();
+        assertThat(plan.getMinPlayerId()).isEqualTo(101);
+        assertThat(plan.getMaxPlayerId()).isEqualTo(400);
+        assertThat(plan.getScheduledCount()).isEqualTo(40);
+
+        File file = new File(dir, "plan.txt");
+        plan.write(file);
+        RefreshPlan readPlan = RefreshPlan.read(file);
+
+        assertThat(readPlan.getMinPlayerId()).isEqualTo(101);
+        assertThat(readPlan.getMaxPlayerId()).isEqualTo(400);
+        assertThat(readPlan.getScheduledCount()).isEqualTo(40);
+
+        assertThat(IntStream.rangeClosed(1, 500).filter(readPlan::isScheduled).toArray())
+            .isEqualTo(IntStream.rangeClosed(1, 500).filter(plan::isScheduled).toArray());
+
+        assertThat(readPlan.isScheduled(100)).isTrue(); // out of range
+        assertThat(readPlan.isScheduled(110)).isTrue(); // hot
+        assertThat(readPlan.isScheduled(401)).isTrue(); // out of range
+
+        assertThatThrownBy(() -> new RefreshScheduler(RUN_DATE, 30).createPlan())
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
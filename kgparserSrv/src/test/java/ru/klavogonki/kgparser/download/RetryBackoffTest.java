@@ -0,0 +1,54 @@
+package ru.klavogonki.kgparser.download;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryBackoffTest {
+
+    @Test
+    @DisplayName("Max delay must grow exponentially and be capped")
+    void testMaxDelay() {
+        RetryBackoff backoff = new RetryBackoff(Duration.ofMillis(100), Duration.ofSeconds(1), 10);
+
+        assertThat(backoff.getMaxDelayMillis(1)).isEqualTo(100);
+        assertThat(backoff.getMaxDelayMillis(2)).isEqualTo(200);
+        assertThat(backoff.getMaxDelayMillis(4)).isEqualTo(800);
+        assertThat(backoff.getMaxDelayMillis(5)).isEqualTo(1000);
+        assertThat(backoff.getMaxDelayMillis(1000)).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Jittered delay must be within [0; max delay]")
+    void testJitter() {
+        RetryBackoff backoff = new RetryBackoff(Duration.ofMillis(100), Duration.ofSeconds(1), 10);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(backoff.getDelayMillis(3)).isBetween(0L, 400L);
+        }
+    }
+
+    @Test
+    @DisplayName("Retry must be allowed only before maxAttempts")
+    void testCanRetry() {
+        RetryBackoff backoff = new RetryBackoff(Duration.ofMillis(1), Duration.ofMillis(1), 3);
+
+        assertThat(backoff.canRetry(1)).isTrue();
+        assertThat(backoff.canRetry(2)).isTrue();
+        assertThat(backoff.canRetry(3)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Incorrect parameters must be rejected")
+    void testIncorrectParameters() {
+        assertThatThrownBy(() -> new RetryBackoff(Duration.ofMillis(1), Duration.ofMillis(1), 0))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> new RetryBackoff(Duration.ofSeconds(2), Duration.ofSeconds(1), 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
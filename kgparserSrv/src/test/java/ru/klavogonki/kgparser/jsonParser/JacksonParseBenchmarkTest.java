@@ -0,0 +1,27 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.klavogonki.kgparser.util.TestUtils;
+
+import java.io.File;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JacksonParseBenchmarkTest {
+
+    @Test
+    @DisplayName("Benchmark must parse the test stats overview files with both the data binding and the streaming reader")
+    void testRun() {
+        File dir = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json").getParentFile();
+
+        List<JacksonParseBenchmark.CorpusFile> corpus = JacksonParseBenchmark.readCorpus(dir);
+        assertThat(corpus).hasSize(16); // only the stats overview files
+
+        JacksonParseBenchmark.Result result = JacksonParseBenchmark.run(corpus, 1);
+        assertThat(result.files).isEqualTo(corpus.size());
+        assertThat(result.dataBindingNanosPerFile).isPositive();
+        assertThat(result.streamingReaderNanosPerFile).isPositive();
+    }
+}
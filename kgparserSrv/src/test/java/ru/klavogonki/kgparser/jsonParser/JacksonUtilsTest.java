@@ -32,8 +32,12 @@ import ru.klavogonki.openapi.model.MicrotimeAssert;
 import ru.klavogonki.openapi.model.VocabularyMode;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -617,4 +621,26 @@ class JacksonUtilsTest {
             logger.info(response);
         }
     }
+
+    @Test
+    @DisplayName("Cached readers must give the same results when used from several threads")
+    void testParseConcurrently() throws Exception {
+        File file = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json");
+        String expected = JacksonUtils.serializeToString(JacksonUtils.parse(file, GetStatsOverviewResponse.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(executor.submit(() -> JacksonUtils.serializeToString(JacksonUtils.parse(file, GetStatsOverviewResponse.class))));
+            }
+
+            for (Future<String> future : futures) {
+                assertThat(future.get()).isEqualTo(expected);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,183 @@
+package ru.klavogonki.kgparser.jsonParser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.klavogonki.kgparser.util.TestUtils;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameType;
+import ru.klavogonki.openapi.model.GetStatsOverviewGameTypeInfo;
+import ru.klavogonki.openapi.model.GetStatsOverviewResponse;
+import ru.klavogonki.openapi.model.VocabularyMode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsOverviewReaderTest {
+
+    @Test
+    @DisplayName("Streaming reader must read the same fields as the data binding for all test stats overview files")
+    void testSameAsDataBinding() {
+        File dir = TestUtils.readResourceFile("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json").getParentFile();
+        File[] files = dir.listFiles(file -> file.getName().startsWith("get-stats-overview-"));
+        assertThat(files).hasSize(16);
+
+        for (File file : files) {
+            GetStatsOverviewResponse expected = JacksonUtils.parse(file, GetStatsOverviewResponse.class);
+            StatsOverview actual = JacksonUtils.parse(file, StatsOverview.class);
+
+            assertSameAsDataBinding(file.getName(), actual, expected);
+        }
+    }
+
+    @Test
+    @DisplayName("ok, recent_gametypes and unknown fields must be skipped with their sub-trees, the scalars must be coerced as by the data binding")
+    void testSkippedFieldsAndCoercions() {
+        String json = "{\n" +
+            "  \"ok\": \"1\",\n" +
+            "  \"unknown\": {\"a\": [1, {\"b\": 2}], \"gametypes\": {}},\n" +
+            "  \"recent_gametypes\": [\"voc-107263\", \"normal\"],\n" +
+            "  \"gametypes\": {\n" +
+            "    \"voc-107263\": {\n" +
+            "      \"id\": 107263,\n" +
+            "      \"name\": \"Deleted\",\n" +
+            "      \"type\": 0,\n" +
+            "      \"symbols\": \"12\",\n" +
+            "      \"rows\": null,\n" +
+            "      \"book_done\": 1,\n" +
+            "      \"num_races\": 3,\n" +
+            "      \"extra\": [[], {}],\n" +
+            "      \"info\": {\"mode\": \"unknown-mode\", \"avg_speed\": 300, \"avg_error\": \"1.5\", \"updated\": null, \"extra\": {\"id\": 1}}\n" +
+            "    },\n" +
+            "    \"voc-1\": {\"name\": \"Empty type\", \"type\": \"\", \"info\": null}\n" +
+            "  }\n" +
+            "}";
+
+        StatsOverview actual = JacksonUtils.parse(json, "test json", StatsOverview.class);
+
+        assertThat(actual.getErr()).isNull();
+        assertThat(actual.getVocabularies())
+            .extracting(VocabularyStats::getCode)
+            .containsExactly("voc-107263", "voc-1");
+
+        VocabularyStats deleted = actual.getVocabulary("voc-107263");
+        assertThat(deleted)
+            .returns(107263, VocabularyStats::getId)
+            .returns(null, VocabularyStats::getType)
+            .returns(12, VocabularyStats::getSymbols)
+            .returns(null, VocabularyStats::getRows)
+            .returns(true, VocabularyStats::getBookDone)
+            .returns(3, VocabularyStats::getNumRaces)
+            .returns(true, VocabularyStats::isInfoPresent)
+            .returns(null, VocabularyStats::getInfoId)
+            .returns(null, VocabularyStats::getMode)
+            .returns(300d, VocabularyStats::getAvgSpeed)
+            .returns(1.5d, VocabularyStats::getAvgError)
+            .returns(null, VocabularyStats::getUpdated);
+
+        VocabularyStats emptyType = actual.getVocabulary("voc-1");
+        assertThat(emptyType)
+            .returns(null, VocabularyStats::getType)
+            .returns(false, VocabularyStats::isInfoPresent);
+
+        assertSameAsDataBinding("test json", actual, JacksonUtils.parse(json, "test json", GetStatsOverviewResponse.class));
+    }
+
+    @Test
+    @DisplayName("Error response must have the error and no vocabularies")
+    void testError() {
+        StatsOverview actual = JacksonUtils.parse("{\"err\": \"permission blocked\"}", "error json", StatsOverview.class);
+
+        assertThat(actual.getErr()).isEqualTo(ApiErrors.PERMISSION_BLOCKED_ERROR);
+        assertThat(actual.getVocabularies()).isEmpty();
+        assertThat(actual.getVocabulary("normal")).isNull();
+
+        StatsOverview nullGameTypes = JacksonUtils.parse("{\"ok\": 1, \"gametypes\": null}", "null gametypes json", StatsOverview.class);
+        assertThat(nullGameTypes.getVocabularies()).isNull();
+        assertThat(nullGameTypes.getVocabulary("normal")).isNull();
+    }
+
+    @Test
+    @DisplayName("Vocabulary codes and names of different players must be the same interned strings")
+    void testInterning() {
+        StatsOverview first = JacksonUtils.parse(
+            "{\"ok\": 1, \"gametypes\": {\"voc-5539\": {\"name\": \"Обычный в английском\", \"num_races\": 1, \"info\": {\"mode\": \"normal\"}}}}",
+            "first",
+            StatsOverview.class
+        );
+        StatsOverview second = JacksonUtils.parse(
+            "{\"ok\": 1, \"gametypes\": {\"voc-5539\": {\"name\": \"Обычный в английском\", \"num_races\": 2, \"info\": {\"mode\": \"normal\"}}}}",
+            "second",
+            StatsOverview.class
+        );
+
+        VocabularyStats firstStats = first.getVocabulary("voc-5539");
+        VocabularyStats secondStats = second.getVocabulary("voc-5539");
+
+        assertThat(secondStats.getCode()).isSameAs(firstStats.getCode());
+        assertThat(secondStats.getName()).isSameAs(firstStats.getName());
+        assertThat(secondStats.getMode()).isEqualTo(VocabularyMode.NORMAL);
+    }
+
+    @Test
+    @DisplayName("Non-object response must be rejected")
+    void testWrongToken() {
+        assertThatThrownBy(() -> JacksonUtils.parse("[1, 2]", "array json", StatsOverview.class))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("array json");
+
+        assertThatThrownBy(() -> JacksonUtils.parse("{\"gametypes\": {\"normal\": 5}}", "scalar game type json", StatsOverview.class))
+            .isInstanceOf(RuntimeException.class)
+            .hasMessageContaining("scalar game type json");
+    }
+
+    private static void assertSameAsDataBinding(final String name, final StatsOverview actual, final GetStatsOverviewResponse expected) {
+        assertThat(actual.getErr()).as(name).isEqualTo(expected.getErr());
+
+        List<String> expectedCodes = new ArrayList<>(expected.getGametypes().keySet());
+        assertThat(actual.getVocabularies())
+            .as(name)
+            .extracting(VocabularyStats::getCode)
+            .containsExactlyElementsOf(expectedCodes);
+
+        for (Map.Entry<String, GetStatsOverviewGameType> entry : expected.getGametypes().entrySet()) {
+            String description = String.format("%s: %s", name, entry.getKey());
+            GetStatsOverviewGameType gameType = entry.getValue();
+            VocabularyStats vocabulary = actual.getVocabulary(entry.getKey());
+
+            assertThat(vocabulary)
+                .as(description)
+                .returns(gameType.getId(), VocabularyStats::getId)
+                .returns(gameType.getName(), VocabularyStats::getName)
+                .returns(gameType.getNumRaces(), VocabularyStats::getNumRaces)
+                .returns(gameType.getType(), VocabularyStats::getType)
+                .returns(gameType.getSymbols(), VocabularyStats::getSymbols)
+                .returns(gameType.getRows(), VocabularyStats::getRows)
+                .returns(gameType.getBookDone(), VocabularyStats::getBookDone)
+                .returns(gameType.getInfo() != null, VocabularyStats::isInfoPresent);
+
+            GetStatsOverviewGameTypeInfo info = gameType.getInfo();
+            if (info == null) {
+                continue;
+            }
+
+            assertThat(vocabulary)
+                .as(description)
+                .returns(info.getId(), VocabularyStats::getInfoId)
+                .returns(info.getUserId(), VocabularyStats::getUserId)
+                .returns(info.getMode(), VocabularyStats::getMode)
+                .returns(info.getTexttype(), VocabularyStats::getTexttype)
+                .returns(info.getNumRaces(), VocabularyStats::getInfoNumRaces)
+                .returns(info.getAvgSpeed(), VocabularyStats::getAvgSpeed)
+                .returns(info.getBestSpeed(), VocabularyStats::getBestSpeed)
+                .returns(info.getAvgError(), VocabularyStats::getAvgError)
+                .returns(info.getHaul(), VocabularyStats::getHaul)
+                .returns(info.getQual(), VocabularyStats::getQual)
+                .returns(info.getDirty(), VocabularyStats::getDirty)
+                .returns(info.getUpdated(), VocabularyStats::getUpdated);
+        }
+    }
+}
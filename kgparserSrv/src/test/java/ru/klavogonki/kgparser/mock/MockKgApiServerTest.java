@@ -0,0 +1,137 @@
+package ru.klavogonki.kgparser.mock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.download.AdaptiveConcurrencyController;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.download.HttpDownloader;
+import ru.klavogonki.kgparser.download.RetryBackoff;
+import ru.klavogonki.kgparser.http.UrlConstructor;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+import ru.klavogonki.kgparser.pipeline.PipelineOptions;
+import ru.klavogonki.kgparser.pipeline.PlayerImportPipeline;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MockKgApiServerTest {
+
+    private static final int MAX_PLAYER_ID = 200;
+
+    @AfterEach
+    void resetBaseUrl() {
+        UrlConstructor.resetApiBaseUrl();
+    }
+
+    @Test
+    @DisplayName("All players served by the mock server must be downloaded and parsed by the pipeline")
+    void testPipeline(@TempDir File rootDir) {
+        Map<Integer, PlayerJsonData> players = new ConcurrentHashMap<>();
+
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().maxPlayerId(MAX_PLAYER_ID).hiddenProfileRate(0.2).blockedRate(0.1))) {
+            String[] args = {
+                rootDir.getPath(), "1", "250", "4",
+                "--base-url=" + server.getBaseUrl(),
+                "--write-raw-json=false",
+                "--batch-size=20",
+                "--parse-threads=2"
+            };
+
+            PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(args, PipelineOptions.NAMES);
+            config.setStartDate("2021-01-10 12-00-00");
+
+            PlayerImportPipeline pipeline = new PlayerImportPipeline(config, PipelineOptions.parseFromArguments(args), () -> players::put);
+            pipeline.run();
+
+            assertThat(pipeline.getFetchFailedPlayerIds()).isEmpty();
+            assertThat(pipeline.getParseFailedPlayerIds()).isEmpty();
+            assertThat(players).hasSize(250);
+            assertThat(server.getRequestsCount(DataEndpoint.SUMMARY)).isEqualTo(250);
+
+            IntStream.rangeClosed(1, 250).forEach(playerId -> {
+                GetSummaryResponse summary = players.get(playerId).summary;
+
+                switch (server.getPlayerType(playerId)) {
+                    case NON_EXISTING:
+                        assertThat(summary.getErr()).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+                        break;
+
+                    case HIDDEN_PROFILE:
+                        assertThat(summary.getUser().getId()).isEqualTo(playerId);
+                        assertThat(players.get(playerId).indexData.getErr()).isEqualTo(ApiErrors.HIDDEN_PROFILE_USER_ERROR);
+                        break;
+
+                    case BLOCKED:
+                        assertThat(summary.getBlocked()).isEqualTo(1);
+                        break;
+
+                    default:
+                        assertThat(summary.getBlocked()).isZero();
+                        assertThat(players.get(playerId).indexData.getBio().getUserId()).isEqualTo(playerId);
+                        assertThat(players.get(playerId).statsOverview.getVocabulary("normal")).isNotNull();
+                }
+            });
+
+            assertThat(IntStream.rangeClosed(MAX_PLAYER_ID + 1, 250).mapToObj(server::getPlayerType))
+                .containsOnly(MockKgApiServer.PlayerType.NON_EXISTING);
+        }
+    }
+
+    @Test
+    @DisplayName("Same player must get the same data on every request")
+    void testDeterministicData() throws IOException {
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().nonExistingRate(0).hiddenProfileRate(0).blockedRate(0))) {
+            UrlConstructor.setApiBaseUrl(server.getBaseUrl() + "/");
+            HttpDownloader downloader = new HttpDownloader(1);
+
+            String json = downloader.loadUrlToString(UrlConstructor.getIndexData(42));
+            assertThat(downloader.loadUrlToString(UrlConstructor.getIndexData(42))).isEqualTo(json);
+
+            GetIndexDataResponse indexData = JacksonUtils.parse(json, "index data", GetIndexDataResponse.class);
+            assertThat(indexData.getOk()).isEqualTo(ApiErrors.OK_CORRECT_VALUE);
+            assertThat(indexData.getBio().getUserId()).isEqualTo(42);
+        }
+    }
+
+    @Test
+    @DisplayName("Configured error rate must fail the requests with a 5xx status")
+    void testErrorRate() {
+        try (MockKgApiServer server = MockKgApiServer.start(new MockKgApiServer.Config().errorRate(1))) {
+            UrlConstructor.setApiBaseUrl(server.getBaseUrl());
+            HttpDownloader downloader = new HttpDownloader(
+                new AdaptiveConcurrencyController(1, 1),
+                new RetryBackoff(Duration.ofMillis(1), Duration.ofMillis(10), 2)
+            );
+
+            assertThatThrownBy(() -> downloader.loadUrlToString(UrlConstructor.getSummary(1)))
+                .isInstanceOf(IOException.class)
+                .hasStackTraceContaining("503");
+
+            assertThat(server.getFailedRequestsCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Incorrect rates must be rejected")
+    void testIncorrectConfig() {
+        assertThatThrownBy(() -> new MockKgApiServer.Config().errorRate(1.5))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> MockKgApiServer.start(new MockKgApiServer.Config().nonExistingRate(0.6).hiddenProfileRate(0.6)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
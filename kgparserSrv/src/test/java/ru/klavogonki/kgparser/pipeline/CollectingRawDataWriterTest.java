@@ -0,0 +1,72 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.PlayerJsonData;
+import ru.klavogonki.kgparser.PlayerJsonParser;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.storage.SegmentArchiveReader;
+import ru.klavogonki.kgparser.storage.SegmentArchiveWriter;
+import ru.klavogonki.kgparser.util.TestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CollectingRawDataWriterTest {
+
+    private static final int PLAYER_ID = 242585;
+
+    @Test
+    @DisplayName("Collected responses must be parsed from memory")
+    void testParseFromMemory() throws IOException {
+        CollectingRawDataWriter writer = new CollectingRawDataWriter(null);
+        writeAll(writer);
+
+        RawPlayerData rawPlayer = writer.remove(PLAYER_ID);
+        assertThat(rawPlayer).isNotNull();
+        assertThat(rawPlayer.getPlayerId()).isEqualTo(PLAYER_ID);
+        assertThat(writer.remove(PLAYER_ID)).isNull(); // removed from the writer
+
+        Optional<PlayerJsonData> playerOptional = PlayerJsonParser.readPlayerData(LocalDateTime.now(), PLAYER_ID, rawPlayer);
+        assertThat(playerOptional).isPresent();
+        assertThat(playerOptional.get().summary.getUser().getId()).isEqualTo(PLAYER_ID);
+    }
+
+    @Test
+    @DisplayName("Collected responses must also be written to the delegate storage")
+    void testDelegateWriter(@TempDir File archiveDir) throws IOException {
+        try (CollectingRawDataWriter writer = new CollectingRawDataWriter(SegmentArchiveWriter.open(archiveDir, false, false))) {
+            writeAll(writer);
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(archiveDir)) {
+            assertThat(reader.getRecordsCount()).isEqualTo(3);
+            assertThat(reader.contains(PLAYER_ID, DataEndpoint.STATS_OVERVIEW)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Missing response must not be silently ignored")
+    void testMissingResponse() throws IOException {
+        CollectingRawDataWriter writer = new CollectingRawDataWriter(null);
+        writer.write(PLAYER_ID, DataEndpoint.SUMMARY, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json"));
+
+        RawPlayerData rawPlayer = writer.remove(PLAYER_ID);
+
+        assertThatThrownBy(() -> PlayerJsonParser.readPlayerData(LocalDateTime.now(), PLAYER_ID, rawPlayer))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining(DataEndpoint.INDEX_DATA.getName());
+    }
+
+    private static void writeAll(final CollectingRawDataWriter writer) throws IOException {
+        writer.write(PLAYER_ID, DataEndpoint.SUMMARY, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-summary-242585.json"));
+        writer.write(PLAYER_ID, DataEndpoint.INDEX_DATA, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-index-data-242585.json"));
+        writer.write(PLAYER_ID, DataEndpoint.STATS_OVERVIEW, TestUtils.readResourceFileToString("ru/klavogonki/kgparser/jsonParser/get-stats-overview-242585.json"));
+    }
+}
@@ -0,0 +1,28 @@
+package ru.klavogonki.kgparser.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineOptionsTest {
+
+    @Test
+    void testPipelineOptions() {
+        PipelineOptions defaultOptions = PipelineOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1"});
+        assertThat(defaultOptions.getParseOptions().getParseThreads()).isEqualTo(1);
+        assertThat(defaultOptions.getConsumerThreads()).isEqualTo(1);
+        assertThat(defaultOptions.getQueueSize()).isEqualTo(PipelineOptions.DEFAULT_QUEUE_SIZE);
+        assertThat(defaultOptions.isWriteRawJson()).isTrue();
+
+        PipelineOptions options = PipelineOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--parse-threads=4", "--consumer-threads=2", "--queue-size=50", "--write-raw-json=false", "--batch-size=10"});
+        assertThat(options.getParseOptions().getParseThreads()).isEqualTo(4);
+        assertThat(options.getConsumerThreads()).isEqualTo(2);
+        assertThat(options.getQueueSize()).isEqualTo(50);
+        assertThat(options.isWriteRawJson()).isFalse();
+
+        assertThatThrownBy(() -> PipelineOptions.parseFromArguments(new String[] {"c:/java/kg", "1", "2", "1", "--queue-size=0"}))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("--queue-size");
+    }
+}
@@ -0,0 +1,75 @@
+package ru.klavogonki.kgparser.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.PlayerDataDownloader;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.openapi.model.GetIndexDataResponse;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonFilesWriterTest {
+
+    private static final int PLAYER_ID = 242585;
+    private static final String SUMMARY_JSON = "{\"err\":\"invalid user id\"}";
+    private static final String INDEX_DATA_JSON = "{\"err\":\"hidden profile\"}";
+
+    @Test
+    @DisplayName("Compressed files must be written gzipped and read transparently")
+    void testCompressedFiles(@TempDir File rootDir) throws IOException {
+        PlayerDataDownloader.Config config = createConfig(rootDir, true);
+
+        writeAll(config);
+
+        byte[] summaryBytes = Files.readAllBytes(new File(config.getPlayerSummaryFilePath(PLAYER_ID)).toPath());
+        assertThat(summaryBytes[0]).isEqualTo((byte) 0x1F); // gzip magic
+        assertThat(summaryBytes[1]).isEqualTo((byte) 0x8B);
+
+        assertReadAll(config);
+    }
+
+    @Test
+    @DisplayName("Uncompressed files must be written as is")
+    void testUncompressedFiles(@TempDir File rootDir) throws IOException {
+        PlayerDataDownloader.Config config = createConfig(rootDir, false);
+
+        writeAll(config);
+
+        assertThat(new File(config.getPlayerSummaryFilePath(PLAYER_ID))).hasContent(SUMMARY_JSON);
+        assertThat(new File(config.getPlayerIndexDataFilePath(PLAYER_ID))).hasContent(INDEX_DATA_JSON);
+
+        assertReadAll(config);
+    }
+
+    private static PlayerDataDownloader.Config createConfig(final File rootDir, final boolean compress) {
+        PlayerDataDownloader.Config config = PlayerDataDownloader.Config.parseFromArguments(new String[] {rootDir.getPath(), "1", "2", "1", "--compress=" + compress});
+        config.setStartDate("2021-01-10 12-00-00");
+        return config;
+    }
+
+    private static void writeAll(final PlayerDataDownloader.Config config) throws IOException {
+        try (JsonFilesWriter writer = new JsonFilesWriter(config)) {
+            writer.write(PLAYER_ID, DataEndpoint.SUMMARY, SUMMARY_JSON);
+
+            try (WritableByteChannel channel = writer.openChannel(PLAYER_ID, DataEndpoint.INDEX_DATA)) {
+                channel.write(ByteBuffer.wrap(INDEX_DATA_JSON.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+
+    private static void assertReadAll(final PlayerDataDownloader.Config config) {
+        try (JsonFilesReader reader = new JsonFilesReader(config)) {
+            assertThat(reader.parse(PLAYER_ID, DataEndpoint.SUMMARY, GetSummaryResponse.class).getErr()).isEqualTo("invalid user id");
+            assertThat(reader.parse(PLAYER_ID, DataEndpoint.INDEX_DATA, GetIndexDataResponse.class).getErr()).isEqualTo("hidden profile");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.klavogonki.kgparser.storage;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.openapi.model.GetSummaryResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SegmentArchiveTest {
+
+    private static final String SUMMARY_JSON = "{\"err\":\"invalid user id\"}";
+    private static final String INDEX_DATA_JSON = "{\"err\":\"permission blocked\"}";
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    @DisplayName("Written records must be read back, both plain and compressed")
+    void testWriteAndRead() throws IOException {
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, false, false)) {
+            writer.write(1, DataEndpoint.SUMMARY, SUMMARY_JSON);
+            writer.write(1, DataEndpoint.INDEX_DATA, INDEX_DATA_JSON);
+        }
+
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, true, true)) {
+            writer.write(2, DataEndpoint.SUMMARY, SUMMARY_JSON);
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(tempDir)) {
+            assertThat(reader.getRecordsCount()).isEqualTo(3);
+
+            assertThat(readRecord(reader, 1, DataEndpoint.SUMMARY)).isEqualTo(SUMMARY_JSON);
+            assertThat(readRecord(reader, 1, DataEndpoint.INDEX_DATA)).isEqualTo(INDEX_DATA_JSON);
+            assertThat(readRecord(reader, 2, DataEndpoint.SUMMARY)).isEqualTo(SUMMARY_JSON); // compressed
+
+            assertThat(reader.contains(2, DataEndpoint.INDEX_DATA)).isFalse();
+
+            GetSummaryResponse summary = reader.parse(2, DataEndpoint.SUMMARY, GetSummaryResponse.class);
+            assertThat(summary.getErr()).isEqualTo("invalid user id");
+        }
+    }
+
+    @Test
+    @DisplayName("Resumed archive must start a new segment, the last written record must win")
+    void testResume() throws IOException {
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, false, false)) {
+            writer.write(1, DataEndpoint.SUMMARY, "{\"old\":1}");
+        }
+
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, true, false)) {
+            writer.write(1, DataEndpoint.SUMMARY, SUMMARY_JSON);
+        }
+
+        assertThat(SegmentArchiveWriter.getMaxSegment(tempDir)).isEqualTo(1);
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(tempDir)) {
+            assertThat(readRecord(reader, 1, DataEndpoint.SUMMARY)).isEqualTo(SUMMARY_JSON);
+        }
+    }
+
+    @Test
+    @DisplayName("New archive must not overwrite an existing archive")
+    void testNoOverwrite() throws IOException {
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, false, false)) {
+            writer.write(1, DataEndpoint.SUMMARY, SUMMARY_JSON);
+        }
+
+        assertThatThrownBy(() -> SegmentArchiveWriter.open(tempDir, false, false))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Records must be split to segments of max size")
+    void testSegmentRollover() throws IOException {
+        int maxSegmentSize = SUMMARY_JSON.length() * 2;
+
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, false, false, maxSegmentSize)) {
+            for (int playerId = 1; playerId <= 5; playerId++) {
+                writer.write(playerId, DataEndpoint.SUMMARY, SUMMARY_JSON);
+            }
+        }
+
+        assertThat(SegmentArchiveWriter.getMaxSegment(tempDir)).isEqualTo(2); // 2 + 2 + 1 records
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(tempDir)) {
+            for (int playerId = 1; playerId <= 5; playerId++) {
+                assertThat(readRecord(reader, playerId, DataEndpoint.SUMMARY)).isEqualTo(SUMMARY_JSON);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Incomplete last index entry must be ignored")
+    void testIncompleteIndexEntry() throws IOException {
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, false, false)) {
+            writer.write(1, DataEndpoint.SUMMARY, SUMMARY_JSON);
+            writer.write(2, DataEndpoint.SUMMARY, SUMMARY_JSON);
+        }
+
+        File indexFile = new File(tempDir, SegmentArchiveWriter.INDEX_FILE_NAME);
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) { // simulate a crash during writing the last entry
+            file.setLength(file.length() - 3);
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(tempDir)) {
+            assertThat(reader.contains(1, DataEndpoint.SUMMARY)).isTrue();
+            assertThat(reader.contains(2, DataEndpoint.SUMMARY)).isFalse();
+        }
+
+        try (SegmentArchiveWriter writer = SegmentArchiveWriter.open(tempDir, true, false)) {
+            writer.write(2, DataEndpoint.SUMMARY, SUMMARY_JSON);
+        }
+
+        try (SegmentArchiveReader reader = SegmentArchiveReader.open(tempDir)) {
+            assertThat(readRecord(reader, 2, DataEndpoint.SUMMARY)).isEqualTo(SUMMARY_JSON);
+        }
+    }
+
+    private static String readRecord(final SegmentArchiveReader reader, final int playerId, final DataEndpoint endpoint) throws IOException {
+        try (InputStream in = reader.openRecord(playerId, endpoint)) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.klavogonki.kgparser.download.DataEndpoint;
+import ru.klavogonki.kgparser.jsonParser.ApiErrors;
+import ru.klavogonki.kgparser.jsonParser.JacksonUtils;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class CrawlTelemetryTest {
+
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(80);
+
+    @Test
+    @DisplayName("Api error must be read without parsing the whole response")
+    void testGetApiError() {
+        assertThat(CrawlTelemetry.getApiError("{\"err\":\"invalid user id\"}")).isEqualTo(ApiErrors.INVALID_USER_ID_ERROR);
+        assertThat(CrawlTelemetry.getApiError("{\"isOnline\":false,\"err\":\"hidden profile\"}")).isEqualTo(ApiErrors.HIDDEN_PROFILE_USER_ERROR);
+        assertThat(CrawlTelemetry.getApiError("{\"ok\":1,\"stats\":{\"err\":\"nested, not an error\"}}")).isNull();
+        assertThat(CrawlTelemetry.getApiError("{\"ok\":1,\"truncated")).isNull();
+        assertThat(CrawlTelemetry.getApiError("<html></html>")).isNull();
+    }
+
+    @Test
+    @DisplayName("Requests, errors and bytes must be counted per endpoint")
+    void testCounters() {
+        AtomicInteger completedPlayers = new AtomicInteger();
+        CrawlTelemetry telemetry = new CrawlTelemetry(10, completedPlayers::get);
+        assertThat(telemetry.getEtaSeconds()).isEqualTo(-1);
+
+        telemetry.recordResponse(DataEndpoint.SUMMARY, LATENCY_NANOS, "{\"ok\":1,\"login\":\"nosferatum\"}");
+        telemetry.recordResponse(DataEndpoint.SUMMARY, LATENCY_NANOS, "{\"err\":\"invalid user id\"}");
+        telemetry.recordSkipped(DataEndpoint.INDEX_DATA, ApiErrors.SKIPPED_ERROR);
+        telemetry.recordFailure(DataEndpoint.STATS_OVERVIEW, LATENCY_NANOS);
+        completedPlayers.set(2);
+
+        EndpointTelemetry summary = telemetry.getEndpoint(DataEndpoint.SUMMARY);
+        assertThat(summary.getRequests()).isEqualTo(2);
+        assertThat(summary.getBytes()).isEqualTo(29 + 25);
+        assertThat(summary.getErrors()).containsExactly(entry(ApiErrors.INVALID_USER_ID_ERROR, 1L));
+
+        assertThat(telemetry.getEndpoint(DataEndpoint.INDEX_DATA).getRequests()).isZero();
+        assertThat(telemetry.getEndpoint(DataEndpoint.INDEX_DATA).getSkipped()).isEqualTo(1);
+
+        assertThat(telemetry.getRequestsCount()).isEqualTo(3);
+        assertThat(telemetry.getFailedRequestsCount()).isEqualTo(1);
+        assertThat(telemetry.getErrors())
+            .containsEntry("summary: invalid user id", 1L)
+            .containsEntry("index-data: skipped", 1L)
+            .containsEntry("stats-overview: " + CrawlTelemetry.REQUEST_FAILED_ERROR, 1L);
+        assertThat(telemetry.getP95LatencyMillis()).containsEntry("summary", 80L);
+        assertThat(telemetry.getEtaSeconds()).isNotNegative();
+    }
+
+    @Test
+    @DisplayName("Telemetry must be registered in JMX while started, and the summary must be written to json")
+    void testJmxAndSummary(@TempDir File tempDir) throws Exception {
+        CrawlTelemetry telemetry = new CrawlTelemetry(5, () -> 5);
+        telemetry.recordResponse(DataEndpoint.INDEX_DATA, LATENCY_NANOS, "{\"err\":\"hidden profile\"}");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(CrawlTelemetry.OBJECT_NAME);
+
+        telemetry.start(Duration.ofHours(1));
+        try {
+            assertThat(server.getAttribute(name, "RequestsCount")).isEqualTo(1L);
+            assertThat(server.getAttribute(name, "CompletedPlayers")).isEqualTo(5);
+        }
+        finally {
+            telemetry.stop();
+        }
+
+        assertThat(server.isRegistered(name)).isFalse();
+
+        File summaryFile = new File(tempDir, "snapshot/telemetry.json"); // parent directory is created
+        telemetry.writeSummary(summaryFile);
+
+        TelemetrySummary summary = JacksonUtils.parse(summaryFile, TelemetrySummary.class);
+        assertThat(summary.completedPlayers).isEqualTo(5);
+        assertThat(summary.requests).isEqualTo(1);
+        assertThat(summary.endpoints.get("index-data").errors).containsEntry(ApiErrors.HIDDEN_PROFILE_USER_ERROR, 1L);
+        assertThat(summary.endpoints.get("index-data").p50LatencyMillis).isEqualTo(80);
+    }
+
+    @Test
+    void testFormatDuration() {
+        assertThat(CrawlTelemetry.formatDuration(3_725)).isEqualTo("01:02:05");
+    }
+}
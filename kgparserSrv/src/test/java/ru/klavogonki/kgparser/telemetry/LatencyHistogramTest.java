@@ -0,0 +1,61 @@
+package ru.klavogonki.kgparser.telemetry;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Percentiles must be approximated by the bucket upper bounds")
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getPercentileMillis(95)).isZero();
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(40)); // <= 50 ms
+        }
+
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(700)); // <= 1000 ms
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.getPercentileMillis(50)).isEqualTo(50);
+        assertThat(histogram.getPercentileMillis(90)).isEqualTo(50);
+        assertThat(histogram.getPercentileMillis(95)).isEqualTo(700); // bucket bound 1000 is above the max
+        assertThat(histogram.getMaxMillis()).isEqualTo(700);
+        assertThat(histogram.getMeanMillis()).isEqualTo(106);
+
+        assertThat(histogram.getBuckets())
+            .containsEntry("<=50ms", 90L)
+            .containsEntry("<=1000ms", 10L)
+            .containsEntry(">60000ms", 0L);
+    }
+
+    @Test
+    @DisplayName("Latency above the last bound must go to the unbounded bucket")
+    void testUnboundedBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MINUTES.toNanos(2));
+
+        assertThat(histogram.getBuckets()).containsEntry(">60000ms", 1L);
+        assertThat(histogram.getPercentileMillis(99)).isEqualTo(120_000);
+    }
+
+    @Test
+    @DisplayName("Incorrect percentile must throw")
+    void testIncorrectPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThatThrownBy(() -> histogram.getPercentileMillis(0))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> histogram.getPercentileMillis(101))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
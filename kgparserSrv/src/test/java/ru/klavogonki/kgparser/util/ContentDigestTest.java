@@ -0,0 +1,55 @@
+package ru.klavogonki.kgparser.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentDigestTest {
+
+    @Test
+    @DisplayName("Digest must be a lowercase hex string, the same for the same responses")
+    void testSameResponses() {
+        String digest = ContentDigest.of("{\"ok\": 1}", "{\"ok\": 1}", "{}");
+
+        assertThat(digest)
+            .hasSize(ContentDigest.LENGTH)
+            .matches("[0-9a-f]+")
+            .isEqualTo(ContentDigest.of("{\"ok\": 1}", "{\"ok\": 1}", "{}"));
+    }
+
+    @Test
+    @DisplayName("Digest must change if a part of a response is moved to another response or the order of the responses changes")
+    void testResponseBoundaries() {
+        String digest = ContentDigest.of("ab", "c");
+
+        assertThat(ContentDigest.of("a", "bc")).isNotEqualTo(digest);
+        assertThat(ContentDigest.of("abc")).isNotEqualTo(digest);
+        assertThat(ContentDigest.of("c", "ab")).isNotEqualTo(digest);
+    }
+
+    @Test
+    @DisplayName("Digest of the streamed responses must be equal to the digest of the strings, including the bytes not read before close")
+    void testStreamedResponses() throws IOException {
+        String first = "{\"ok\": 1}\n";
+        String second = "{\"ставка\": \"ок\"}";
+
+        ContentDigest digest = new ContentDigest();
+
+        try (InputStream in = digest.addResponse(new ByteArrayInputStream(first.getBytes(StandardCharsets.UTF_8)))) {
+            assertThat(in.read()).isEqualTo('{'); // the rest is read on close
+            in.close(); // closed twice, e.g. by the parser and by the caller
+        }
+
+        try (InputStream in = digest.addResponse(new ByteArrayInputStream(second.getBytes(StandardCharsets.UTF_8)))) {
+            assertThat(in.readAllBytes()).isEqualTo(second.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(digest.getValue()).isEqualTo(ContentDigest.of(first, second));
+    }
+}
@@ -1,7 +1,12 @@
 package ru.klavogonki.kgparser.util;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -14,4 +19,15 @@ public class TestUtils {
 
         return new File(resource.getFile());
     }
+
+    public static String readResourceFileToString(final String resourceName) {
+        File file = readResourceFile(resourceName);
+
+        try {
+            return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }